@@ -0,0 +1,19 @@
+-- Migration: Prevent double-booking of a doctor's time slot at the database level
+-- Version: V3__appointment_slot_exclusion.sql
+
+-- btree_gist is required to combine uuid equality with range overlap in one GiST index
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+-- Two non-canceled appointments (including live slot holds) of the same doctor may not overlap.
+-- Expired holds are deleted by the application before a new booking is inserted.
+ALTER TABLE appointment
+  ADD CONSTRAINT ex_appointment_doctor_slot
+  EXCLUDE USING gist (
+    doctor_id WITH =,
+    tstzrange(scheduled_start, scheduled_end, '[)') WITH &&
+  ) WHERE (status <> 'canceled');
+
+-- Sweeper lookup for expired slot holds
+CREATE INDEX IF NOT EXISTS idx_appointment_holding_until
+  ON appointment(holding_until)
+  WHERE holding_until IS NOT NULL;
@@ -0,0 +1,22 @@
+-- Migration: Indexes backing the paged admin appointment search
+-- Version: V4__appointment_admin_search_indexes.sql
+
+-- pg_trgm lets ILIKE '%term%' use a GIN index instead of a sequential scan
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_user_account_full_name_trgm
+  ON user_account USING gin (full_name gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_user_account_phone_number_trgm
+  ON user_account USING gin (phone_number gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_appointment_reason_trgm
+  ON appointment USING gin (reason gin_trgm_ops);
+
+-- ORDER BY scheduled_start DESC, id DESC with and without the status filter
+CREATE INDEX IF NOT EXISTS idx_appointment_scheduled_start
+  ON appointment(scheduled_start DESC, id DESC);
+
+-- status is the appointment_status enum; the query filters on status::text
+CREATE INDEX IF NOT EXISTS idx_appointment_status_scheduled_start
+  ON appointment((status::text), scheduled_start DESC, id DESC);
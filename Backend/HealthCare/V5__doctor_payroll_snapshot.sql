@@ -0,0 +1,16 @@
+-- Migration: Store computed payroll figures as per-period snapshots
+-- Version: V5__doctor_payroll_snapshot.sql
+
+ALTER TABLE doctor_payroll
+  ADD COLUMN IF NOT EXISTS completed_appointments integer DEFAULT 0,
+  ADD COLUMN IF NOT EXISTS refund_amount numeric DEFAULT 0,
+  ADD COLUMN IF NOT EXISTS computed_at timestamptz,
+  ADD COLUMN IF NOT EXISTS created_at timestamptz DEFAULT now(),
+  ADD COLUMN IF NOT EXISTS updated_at timestamptz DEFAULT now();
+
+-- One snapshot per doctor and period
+CREATE UNIQUE INDEX IF NOT EXISTS uq_doctor_payroll_doctor_period
+  ON doctor_payroll(doctor_id, period_year, period_month);
+
+CREATE INDEX IF NOT EXISTS idx_doctor_payroll_period
+  ON doctor_payroll(period_year, period_month);
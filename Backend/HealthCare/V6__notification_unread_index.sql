@@ -0,0 +1,7 @@
+-- Migration: Partial index backing unread-notification counts
+-- Version: V6__notification_unread_index.sql
+
+-- Counter reloads and reconciliation run COUNT ... WHERE user_id IN (...) AND is_read = false
+CREATE INDEX IF NOT EXISTS idx_notification_user_unread
+  ON notification_user(user_id)
+  WHERE is_read = false;
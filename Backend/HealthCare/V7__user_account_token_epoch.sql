@@ -0,0 +1,5 @@
+-- Migration: Per-user token revocation epoch
+-- Version: V7__user_account_token_epoch.sql
+
+-- Tokens issued (iat) before this instant are rejected: log out everywhere, account deactivation/deletion
+ALTER TABLE user_account ADD COLUMN IF NOT EXISTS tokens_valid_after TIMESTAMP WITH TIME ZONE;
@@ -0,0 +1,7 @@
+-- Migration: Appointment count fingerprint for payroll snapshots
+-- Version: V8__doctor_payroll_source_count.sql
+
+-- Number of appointments scheduled in the period when the snapshot was computed. A different count
+-- (appointment deleted or rescheduled out of the period) marks the snapshot stale even when
+-- MAX(updated_at) of the remaining rows did not move.
+ALTER TABLE doctor_payroll ADD COLUMN IF NOT EXISTS source_appointments bigint;
@@ -0,0 +1,11 @@
+-- Migration: Per-participant read cursors for the chat inbox
+-- Version: V9__chat_thread_read_cursor.sql
+
+-- Messages from the other participant created after the cursor count as unread
+ALTER TABLE chat_threads
+  ADD COLUMN IF NOT EXISTS first_user_last_read_at timestamptz,
+  ADD COLUMN IF NOT EXISTS second_user_last_read_at timestamptz;
+
+-- Keyset history pages and the inbox unread COUNT scan messages of one thread by created_at
+CREATE INDEX IF NOT EXISTS idx_chat_message_chat_created_id
+  ON chat_messages(chat_id, created_at, id);
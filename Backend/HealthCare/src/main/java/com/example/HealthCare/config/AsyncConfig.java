@@ -62,4 +62,17 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    @Bean(name = "notificationTaskExecutor")
+    public Executor notificationTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2); // Notification fan-out jobs
+        executor.setMaxPoolSize(4);  // Maximum number of threads
+        executor.setQueueCapacity(100); // Queue capacity for pending broadcasts
+        executor.setThreadNamePrefix("Notification-Async-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(60);
+        executor.initialize();
+        return executor;
+    }
 }
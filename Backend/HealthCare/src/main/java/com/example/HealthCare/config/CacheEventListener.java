@@ -4,27 +4,19 @@ import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
-import com.example.HealthCare.service.CacheService;
+import com.example.HealthCare.service.CacheWarmupService;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 
 @Component
 @RequiredArgsConstructor
-@Slf4j
 public class CacheEventListener {
 
-    private final CacheService cacheService;
+    private final CacheWarmupService cacheWarmupService;
 
+    // Nạp sẵn key nóng ở background; readiness (cacheWarmup) chỉ UP khi xong
     @EventListener(ApplicationReadyEvent.class)
     public void onApplicationReady() {
-        try {
-            Thread.sleep(2000);
-            cacheService.warmUpCaches();
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        } catch (RuntimeException e) {
-            log.error("Failed to warm up caches: {}", e.getMessage(), e);
-        }
+        cacheWarmupService.warmUpAsync();
     }
 }
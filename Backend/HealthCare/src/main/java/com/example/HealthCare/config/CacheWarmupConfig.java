@@ -0,0 +1,25 @@
+package com.example.HealthCare.config;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.example.HealthCare.config.cache.HotKeyTracker;
+
+/**
+ * Theo dõi key đọc nhiều của các cache trong cache.warmup.caches (dùng chung cho Redis và cache local),
+ * để CacheWarmupService lưu lại và nạp sẵn khi node khởi động.
+ */
+@Configuration
+public class CacheWarmupConfig {
+
+    @Bean
+    public HotKeyTracker hotKeyTracker(Environment environment) {
+        String[] caches = environment.getProperty("cache.warmup.caches", String[].class, new String[0]);
+        return new HotKeyTracker(new HashSet<>(Arrays.asList(caches)),
+                environment.getProperty("cache.warmup.max-candidates", Long.class, 2000L));
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.HealthCare.config;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import com.example.HealthCare.service.CacheWarmupService;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Báo OUT_OF_SERVICE cho tới khi warm-up cache lúc khởi động xong (hoặc hết thời gian chờ),
+ * nằm trong nhóm readiness (/actuator/health/readiness) để node mới chưa nhận traffic khi cache còn lạnh.
+ */
+@Component("cacheWarmup")
+@RequiredArgsConstructor
+public class CacheWarmupHealthIndicator implements HealthIndicator {
+
+    private final CacheWarmupService cacheWarmupService;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = cacheWarmupService.isReady() ? Health.up() : Health.outOfService();
+        return builder.withDetails(cacheWarmupService.getStatus()).build();
+    }
+}
@@ -4,32 +4,70 @@ import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.beans.factory.ObjectProvider;
+
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.cache.BatchStrategies;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import com.example.HealthCare.config.cache.CacheLoadLock;
+import com.example.HealthCare.config.cache.CacheTagIndex;
+import com.example.HealthCare.config.cache.CacheTtls;
+import com.example.HealthCare.config.cache.CompactRedisSerializer;
+import com.example.HealthCare.config.cache.HotKeyTracker;
+import com.example.HealthCare.config.cache.IndexedRedisCacheWriter;
+import com.example.HealthCare.config.cache.RedisCacheKeyIndex;
+import com.example.HealthCare.config.cache.SingleFlightCacheManager;
+import com.example.HealthCare.config.cache.TwoTierCacheManager;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 @EnableCaching
 @ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis")
 public class RedisConfig {
 
+    /**
+     * Serializer value dùng chung cho redisTemplate và cache: nhị phân (Smile + LZ4) cho DTO đã đăng ký
+     * trong CacheValueTypes, JSON như cũ cho mọi giá trị khác; luôn đọc được cả hai định dạng.
+     * Chỉ ghi nhị phân khi cache.redis.value-format=binary (mặc định json cho an toàn khi rolling deploy).
+     */
+    @Bean
+    public CompactRedisSerializer redisValueSerializer(Environment environment) {
+        return new CompactRedisSerializer(
+                new GenericJackson2JsonRedisSerializer(redisObjectMapper()),
+                redisBinaryMapper(),
+                "binary".equalsIgnoreCase(environment.getProperty("cache.redis.value-format", "json")),
+                environment.getProperty("cache.redis.compress-threshold-bytes", Integer.class, 1024));
+    }
+
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       CompactRedisSerializer redisValueSerializer) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
@@ -38,81 +76,82 @@ public class RedisConfig {
         template.setKeySerializer(stringRedisSerializer);
         template.setHashKeySerializer(stringRedisSerializer);
 
-        // Sử dụng GenericJackson2JsonRedisSerializer cho value với Redis-specific ObjectMapper
-        GenericJackson2JsonRedisSerializer jackson2JsonRedisSerializer = 
-            new GenericJackson2JsonRedisSerializer(redisObjectMapper());
-        template.setValueSerializer(jackson2JsonRedisSerializer);
-        template.setHashValueSerializer(jackson2JsonRedisSerializer);
+        // Value: CompactRedisSerializer (giá trị đơn như String/Long vẫn là JSON như trước)
+        template.setValueSerializer(redisValueSerializer);
+        template.setHashValueSerializer(redisValueSerializer);
 
         template.afterPropertiesSet();
         return template;
     }
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public RedisCacheKeyIndex redisCacheKeyIndex(RedisConnectionFactory connectionFactory) {
+        return new RedisCacheKeyIndex(new StringRedisTemplate(connectionFactory));
+    }
+
+    @Bean
+    public CacheTagIndex cacheTagIndex(RedisConnectionFactory connectionFactory) {
+        return new CacheTagIndex(new StringRedisTemplate(connectionFactory));
+    }
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory, Environment environment,
+                                     RedisCacheKeyIndex redisCacheKeyIndex, CacheTagIndex cacheTagIndex,
+                                     HotKeyTracker hotKeyTracker,
+                                     CompactRedisSerializer redisValueSerializer,
+                                     ObjectProvider<MeterRegistry> meterRegistry) {
         // Cấu hình default cho cache
         RedisCacheConfiguration defaultCacheConfiguration = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofHours(1)) // TTL 1 giờ
+                .entryTtl(CacheTtls.DEFAULT_TTL) // TTL 1 giờ
                 .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
-                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
-                    new GenericJackson2JsonRedisSerializer(redisObjectMapper())))
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(redisValueSerializer))
                 .disableCachingNullValues();
 
-        // Cấu hình riêng cho từng cache
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
-        
-        // Cache cho users - TTL 30 phút
-        cacheConfigurations.put("users", 
-            defaultCacheConfiguration.entryTtl(Duration.ofMinutes(30)));
-        
-        // Cache cho user details - TTL 15 phút  
-        cacheConfigurations.put("userDetails", 
-            defaultCacheConfiguration.entryTtl(Duration.ofMinutes(15)));
-        
-        // Cache cho roles - TTL 1 giờ (ít thay đổi)
-        cacheConfigurations.put("roles", 
-            defaultCacheConfiguration.entryTtl(Duration.ofHours(1)));
-        
-        // Cache cho privileges - TTL 2 giờ (rất ít thay đổi)
-        cacheConfigurations.put("privileges", 
-            defaultCacheConfiguration.entryTtl(Duration.ofHours(2)));
-        
-        // Cache cho JWT blacklist - TTL theo thời gian expire của token
-        cacheConfigurations.put("jwtBlacklist", 
-            defaultCacheConfiguration.entryTtl(Duration.ofHours(24)));
-        
-        // Cache cho doctors pending - TTL 10 phút
-        cacheConfigurations.put("pendingDoctors",
-            defaultCacheConfiguration.entryTtl(Duration.ofMinutes(10)));
-
-        // Cache cho doctor detail - TTL 30 phút
-        cacheConfigurations.put("doctorDetails",
-            defaultCacheConfiguration.entryTtl(Duration.ofMinutes(30)));
-
-        // Cache cho doctor professional info - TTL 30 phút
-        cacheConfigurations.put("doctorProfessionalInfo",
-            defaultCacheConfiguration.entryTtl(Duration.ofMinutes(30)));
-
-        // Cache cho ICD chapters (dữ liệu tĩnh) - TTL 24 giờ
-        cacheConfigurations.put("icdChapters",
-            defaultCacheConfiguration.entryTtl(Duration.ofHours(24)));
-
-        // Cache cho ICD search - TTL 6 giờ
-        cacheConfigurations.put("icdSearch",
-            defaultCacheConfiguration.entryTtl(Duration.ofHours(6)));
-
-        // Cache cho ICD codes by range - TTL 24 giờ
-        cacheConfigurations.put("icdCodes",
-            defaultCacheConfiguration.entryTtl(Duration.ofHours(24)));
-
-        // Cache cho ICD medications - TTL 24 giờ
-        cacheConfigurations.put("icdMedications",
-            defaultCacheConfiguration.entryTtl(Duration.ofHours(24)));
-
-        return RedisCacheManager.builder(connectionFactory)
+        CacheTtls.ttls().forEach((name, ttl) -> cacheConfigurations.put(name, defaultCacheConfiguration.entryTtl(ttl)));
+
+        // clear() duyệt key bằng SCAN theo lô thay vì KEYS; put/remove được ghi vào chỉ mục key
+        RedisCacheWriter cacheWriter = new IndexedRedisCacheWriter(
+                RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory,
+                        BatchStrategies.scan(environment.getProperty("cache.redis.scan-batch-size", Integer.class, 1000))),
+                redisCacheKeyIndex);
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(cacheWriter)
                 .cacheDefaults(defaultCacheConfiguration)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+
+        redisCacheManager.afterPropertiesSet();
+        CacheManager targetCacheManager = redisCacheManager;
+        if (environment.getProperty("cache.l1.enabled", Boolean.class, true)) {
+            // L1 trong JVM trước Redis, invalidation giữa các node qua pub/sub
+            StringRedisTemplate publisher = new StringRedisTemplate(connectionFactory);
+            Map<String, Long> maxEntries = Binder.get(environment)
+                    .bind("cache.l1.max-entries", Bindable.mapOf(String.class, Long.class))
+                    .orElse(Map.of());
+            targetCacheManager = new TwoTierCacheManager(redisCacheManager, publisher, CacheTtls.ttls(),
+                    CacheTtls.DEFAULT_TTL,
+                    Duration.ofSeconds(environment.getProperty("cache.l1.ttl-seconds", Long.class, 60L)),
+                    environment.getProperty("cache.l1.default-max-entries", Long.class, 1000L),
+                    maxEntries, meterRegistry.getIfAvailable());
+        }
+
+        // @Cacheable(sync = true): mỗi key chỉ một lần nạp trên toàn cluster (lock Redis ngắn)
+        SingleFlightCacheManager.Settings loadingSettings = SingleFlightCacheManager.Settings.from(environment);
+        CacheLoadLock loadLock = new CacheLoadLock(new StringRedisTemplate(connectionFactory), loadingSettings.lockTtl());
+        return new SingleFlightCacheManager(targetCacheManager, CacheTtls.ttls(), CacheTtls.DEFAULT_TTL,
+                loadLock, cacheTagIndex, hotKeyTracker, loadingSettings, meterRegistry.getIfAvailable());
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                           CacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        if (SingleFlightCacheManager.unwrap(cacheManager) instanceof TwoTierCacheManager twoTierCacheManager) {
+            container.addMessageListener(twoTierCacheManager,
+                    new ChannelTopic(TwoTierCacheManager.INVALIDATION_CHANNEL));
+        }
+        return container;
     }
 
     /**
@@ -125,4 +164,16 @@ public class RedisConfig {
         objectMapper.registerModule(new JavaTimeModule());
         return objectMapper;
     }
+
+    /**
+     * ObjectMapper Smile cho định dạng nhị phân: không default typing (kiểu nằm ở type id của
+     * CacheValueTypes), bỏ qua field lạ để node mới/cũ đọc được DTO của nhau khi thêm bớt field.
+     */
+    private ObjectMapper redisBinaryMapper() {
+        ObjectMapper objectMapper = new ObjectMapper(new SmileFactory());
+        objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.registerModule(new JavaTimeModule());
+        return objectMapper;
+    }
 }
@@ -137,6 +137,10 @@ public class SecurityConfig {
 	public BearerTokenResolver bearerTokenResolver() {
 		DefaultBearerTokenResolver delegate = new DefaultBearerTokenResolver();
 		return request -> {
+			// JwtAuthenticationFilter đã xác thực (hoặc từ chối) token này: không parse lại bằng resource server
+			if (request.getAttribute(JwtAuthenticationFilter.TOKEN_CHECKED_ATTRIBUTE) != null) {
+				return null;
+			}
 			String path = request.getServletPath();
 			if (path != null && (path.equals("/api/auth/login")
 					|| path.equals("/api/auth/refresh")
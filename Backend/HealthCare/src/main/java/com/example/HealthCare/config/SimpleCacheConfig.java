@@ -1,37 +1,85 @@
 package com.example.HealthCare.config;
 
-import java.util.Arrays;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
+import com.example.HealthCare.config.cache.CacheEntryWeigher;
+import com.example.HealthCare.config.cache.CacheTagIndex;
+import com.example.HealthCare.config.cache.CacheTtls;
+import com.example.HealthCare.config.cache.HotKeyTracker;
+import com.example.HealthCare.config.cache.SingleFlightCacheManager;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Cache trong JVM khi không dùng Redis.
+ *
+ * Mỗi cache là một Caffeine cache có giới hạn trọng số (cache.local.max-weight.&lt;cache&gt;, xem
+ * CacheEntryWeigher), hết hạn sau khi ghi theo cùng TTL với Redis (CacheTtls) và dùng cơ chế
+ * admission W-TinyLFU của Caffeine: key chỉ xuất hiện một lần (token lạ, chuỗi tìm kiếm ICD) không
+ * đẩy được entry đang hot ra ngoài. Thống kê hit/miss/eviction được bật để Actuator/Micrometer
+ * (cache.gets, cache.evictions, cache.size) và /api/cache/stats đọc được.
+ *
+ * @Cacheable(sync = true) đi qua SingleFlightCacheManager (xem SingleFlightCache).
+ */
 @Configuration
 @EnableCaching
 @ConditionalOnProperty(name = "spring.cache.type", havingValue = "simple", matchIfMissing = true)
 public class SimpleCacheConfig {
 
     @Bean
-    public CacheManager cacheManager() {
-        ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager();
-        cacheManager.setCacheNames(Arrays.asList(
-            "users",
-            "userDetails",
-            "roles",
-            "privileges",
-            "jwtBlacklist",
-            "pendingDoctors",
-            "doctorDetails",
-            "doctorProfessionalInfo",
-            "icdChapters",
-            "icdSearch",
-            "icdCodes",
-            "icdMedications"
-        ));
-        return cacheManager;
+    public CacheTagIndex cacheTagIndex() {
+        return new CacheTagIndex(null);
     }
-}
 
+    @Bean
+    public CacheManager cacheManager(Environment environment, CacheTagIndex cacheTagIndex,
+                                     HotKeyTracker hotKeyTracker, ObjectProvider<MeterRegistry> meterRegistry) {
+        long defaultMaxWeight = environment.getProperty("cache.local.default-max-weight", Long.class, 10_000L);
+        Map<String, Long> maxWeights = Binder.get(environment)
+                .bind("cache.local.max-weight", Bindable.mapOf(String.class, Long.class))
+                .orElse(Map.of());
+
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Chỉ các cache khai báo sẵn, không tạo cache mới theo tên lạ
+        cacheManager.setCacheNames(List.of());
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        CacheTtls.ttls().forEach((name, ttl) -> {
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> cache =
+                    localCache(ttl, maxWeights.getOrDefault(name, defaultMaxWeight));
+            cacheManager.registerCustomCache(name, cache);
+            // Actuator không tự gắn metrics cho cache đã bọc SingleFlightCache nên đăng ký trực tiếp
+            if (registry != null) {
+                CaffeineCacheMetrics.monitor(registry, cache, name, Tags.of("cache.manager", "cacheManager"));
+            }
+        });
+
+        // Coalesce miss theo key, stale-while-revalidate và refresh sớm; không có lock phân tán ở chế độ này
+        return new SingleFlightCacheManager(cacheManager, CacheTtls.ttls(), CacheTtls.DEFAULT_TTL, null,
+                cacheTagIndex, hotKeyTracker, SingleFlightCacheManager.Settings.from(environment), registry);
+    }
+
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> localCache(Duration ttl, long maxWeight) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher(new CacheEntryWeigher())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+}
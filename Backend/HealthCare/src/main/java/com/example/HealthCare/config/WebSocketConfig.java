@@ -1,11 +1,14 @@
 package com.example.HealthCare.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 import com.example.HealthCare.websocket.AuthChannelInterceptor;
 import com.example.HealthCare.websocket.WebSocketAuthInterceptor;
@@ -22,10 +25,37 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     private final AuthChannelInterceptor authChannelInterceptor;
     private final WebSocketAuthInterceptor webSocketAuthInterceptor;
 
+    // Client đọc chậm: vượt thời gian gửi hoặc bộ đệm gửi thì đóng phiên (client tự kết nối lại)
+    @Value("${websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.send-buffer-size-kb:512}")
+    private int sendBufferSizeKb;
+
+    // Heartbeat STOMP hai chiều: phiên không gửi gì trong 3 chu kỳ bị đóng (SessionDisconnectEvent),
+    // kể cả khi socket chết không báo - presence không giữ user "online" ảo
+    @Value("${websocket.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(1);
+        heartbeatScheduler.setThreadNamePrefix("Stomp-Heartbeat-");
+        heartbeatScheduler.setDaemon(true);
+        heartbeatScheduler.initialize();
+        config.enableSimpleBroker("/topic")
+                .setHeartbeatValue(new long[] {heartbeatMs, heartbeatMs})
+                .setTaskScheduler(heartbeatScheduler);
         config.setApplicationDestinationPrefixes("/app");
+        // Frame của cùng một phiên ra theo thứ tự gửi (số chưa đọc mới không bị số cũ ghi đè)
+        config.setPreservePublishOrder(true);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs);
+        registration.setSendBufferSizeLimit(sendBufferSizeKb * 1024);
     }
 
     @Override
@@ -0,0 +1,28 @@
+package com.example.HealthCare.config.cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.github.benmanes.caffeine.cache.Weigher;
+
+/**
+ * Trọng số gần đúng của một entry cache local: 1 cho mỗi đối tượng, cộng số phần tử nếu value
+ * là collection/map (icdCodes, pendingDoctors...), cộng độ dài key dạng chuỗi theo khối 64 ký tự
+ * (key dài như chuỗi tìm kiếm của icdSearch).
+ */
+public class CacheEntryWeigher implements Weigher<Object, Object> {
+
+    @Override
+    public int weigh(Object key, Object value) {
+        int weight = 1;
+        if (value instanceof Collection<?> collection) {
+            weight += collection.size();
+        } else if (value instanceof Map<?, ?> map) {
+            weight += map.size();
+        }
+        if (key instanceof CharSequence text) {
+            weight += text.length() / 64;
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Lock ngắn trên Redis để chỉ một node nạp một key cache tại một thời điểm (SET NX PX + token).
+ *
+ * Lock tự hết hạn sau lockTtl nên node chết giữa chừng không giữ key mãi; nhả lock bằng Lua script
+ * so token để không xóa nhầm lock của node khác khi lần nạp chạy lâu hơn lockTtl.
+ * Redis lỗi thì coi như lấy được lock: mất coalesce giữa các node nhưng request vẫn được phục vụ.
+ */
+@Slf4j
+public class CacheLoadLock {
+
+    private static final String KEY_PREFIX = "healthcare:cache-lock:";
+
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('get', KEYS[1]) == ARGV[1] then
+              return redis.call('del', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration lockTtl;
+
+    public CacheLoadLock(StringRedisTemplate redisTemplate, Duration lockTtl) {
+        this.redisTemplate = redisTemplate;
+        this.lockTtl = lockTtl;
+    }
+
+    /** Token của lock nếu lấy được, null nếu node khác đang nạp key này. */
+    String tryAcquire(String cacheName, String key) {
+        String token = UUID.randomUUID().toString();
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(lockKey(cacheName, key), token, lockTtl);
+            return Boolean.FALSE.equals(acquired) ? null : token;
+        } catch (Exception e) {
+            log.warn("Could not acquire cache load lock for {}::{}: {}", cacheName, key, e.getMessage());
+            return token;
+        }
+    }
+
+    void release(String cacheName, String key, String token) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey(cacheName, key)), token);
+        } catch (Exception e) {
+            // Lock tự hết hạn sau lockTtl
+            log.warn("Could not release cache load lock for {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    private static String lockKey(String cacheName, String key) {
+        return KEY_PREFIX + cacheName + "::" + key;
+    }
+}
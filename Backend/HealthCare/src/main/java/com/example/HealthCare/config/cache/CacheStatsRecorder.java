@@ -0,0 +1,204 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+/**
+ * Số liệu của một cache ở lớp ngoài cùng (SingleFlightCache), giống nhau cho Redis, hai tầng và Caffeine:
+ * hit/miss của mọi lần đọc, số lần nạp + thời gian nạp (loader của @Cacheable(sync = true)), số lần ghi
+ * và số lần evict/clear chủ động. Evict do hết hạn/vượt kích thước nằm ở số liệu của cache gốc
+ * (LocalCacheStatsResponse, CaffeineCacheMetrics).
+ *
+ * Ngoài số cộng dồn từ lúc khởi động còn có cửa sổ trượt: vòng windowMinutes ô, mỗi ô một phút, ô của
+ * phút cũ được đặt lại khi dùng lại, nên có thể so hit ratio N phút gần nhất trước và sau khi deploy.
+ *
+ * Có MeterRegistry thì đăng ký cache.requests (result = hit/miss), cache.writes, cache.evictions.explicit
+ * và timer cache.loader.duration (histogram + p50/p95/p99) với tag cache.
+ */
+public class CacheStatsRecorder {
+
+    private static final long MINUTE_MILLIS = 60_000;
+
+    private final String cacheName;
+    private final long startedAt = System.currentTimeMillis();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadErrors = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final Bucket[] buckets;
+    private final Timer loadTimer;
+
+    public CacheStatsRecorder(String cacheName, int windowMinutes, MeterRegistry meterRegistry) {
+        this.cacheName = cacheName;
+        this.buckets = new Bucket[Math.max(1, windowMinutes)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        if (meterRegistry == null) {
+            this.loadTimer = null;
+            return;
+        }
+        this.loadTimer = Timer.builder("cache.loader.duration")
+                .tags("cache", cacheName)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.requests", hits, LongAdder::sum)
+                .tags("cache", cacheName, "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.requests", misses, LongAdder::sum)
+                .tags("cache", cacheName, "result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.writes", puts, LongAdder::sum)
+                .tags("cache", cacheName).register(meterRegistry);
+        FunctionCounter.builder("cache.evictions.explicit", evictions, LongAdder::sum)
+                .tags("cache", cacheName).register(meterRegistry);
+    }
+
+    public String getCacheName() {
+        return cacheName;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public int getMaxWindowMinutes() {
+        return buckets.length;
+    }
+
+    void recordRead(boolean hit) {
+        if (hit) {
+            hits.increment();
+            bucket().hits.increment();
+        } else {
+            misses.increment();
+            bucket().misses.increment();
+        }
+    }
+
+    void recordLoad(long nanos, boolean success) {
+        Bucket bucket = bucket();
+        if (success) {
+            loads.increment();
+            bucket.loads.increment();
+        } else {
+            loadErrors.increment();
+            bucket.loadErrors.increment();
+        }
+        loadNanos.add(nanos);
+        bucket.loadNanos.add(nanos);
+        if (loadTimer != null) {
+            loadTimer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void recordPut() {
+        puts.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+        bucket().evictions.increment();
+    }
+
+    /** Số cộng dồn từ lúc khởi động. */
+    public Totals total() {
+        return new Totals(hits.sum(), misses.sum(), loads.sum(), loadErrors.sum(), loadNanos.sum(),
+                puts.sum(), evictions.sum());
+    }
+
+    /** Tổng minutes phút gần nhất (gồm phút hiện tại), tối đa getMaxWindowMinutes(); puts không theo cửa sổ. */
+    public Totals window(int minutes) {
+        long currentMinute = System.currentTimeMillis() / MINUTE_MILLIS;
+        long oldestMinute = currentMinute - Math.min(Math.max(1, minutes), buckets.length) + 1;
+        long windowHits = 0, windowMisses = 0, windowLoads = 0, windowErrors = 0, windowNanos = 0, windowEvictions = 0;
+        for (Bucket bucket : buckets) {
+            long minute = bucket.minute;
+            if (minute < oldestMinute || minute > currentMinute) {
+                continue;
+            }
+            windowHits += bucket.hits.sum();
+            windowMisses += bucket.misses.sum();
+            windowLoads += bucket.loads.sum();
+            windowErrors += bucket.loadErrors.sum();
+            windowNanos += bucket.loadNanos.sum();
+            windowEvictions += bucket.evictions.sum();
+        }
+        return new Totals(windowHits, windowMisses, windowLoads, windowErrors, windowNanos, 0, windowEvictions);
+    }
+
+    /** Phân vị thời gian nạp (ms) từ timer: p50, p95, p99; -1 nếu không có MeterRegistry. */
+    public double[] loadPercentilesMillis() {
+        double[] percentiles = {-1, -1, -1};
+        if (loadTimer == null) {
+            return percentiles;
+        }
+        HistogramSnapshot snapshot = loadTimer.takeSnapshot();
+        ValueAtPercentile[] values = snapshot.percentileValues();
+        for (int i = 0; i < values.length && i < percentiles.length; i++) {
+            percentiles[i] = values[i].value(TimeUnit.MILLISECONDS);
+        }
+        return percentiles;
+    }
+
+    private Bucket bucket() {
+        long minute = System.currentTimeMillis() / MINUTE_MILLIS;
+        Bucket bucket = buckets[(int) (minute % buckets.length)];
+        if (bucket.minute != minute) {
+            synchronized (bucket) {
+                if (bucket.minute != minute) {
+                    bucket.reset(minute);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    public record Totals(long hits, long misses, long loads, long loadErrors, long loadNanos,
+                         long puts, long evictions) {
+
+        public double hitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        public double averageLoadMillis() {
+            long count = loads + loadErrors;
+            return count == 0 ? 0 : loadNanos / 1_000_000.0 / count;
+        }
+    }
+
+    private static final class Bucket {
+        private volatile long minute = -1;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder loads = new LongAdder();
+        private final LongAdder loadErrors = new LongAdder();
+        private final LongAdder loadNanos = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+
+        // Đặt lại các bộ đếm trước rồi mới đổi minute, để luồng đọc không thấy số của phút cũ dưới phút mới
+        private void reset(long newMinute) {
+            hits.reset();
+            misses.reset();
+            loads.reset();
+            loadErrors.reset();
+            loadNanos.reset();
+            evictions.reset();
+            minute = newMinute;
+        }
+    }
+}
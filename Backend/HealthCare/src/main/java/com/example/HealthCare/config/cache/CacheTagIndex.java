@@ -0,0 +1,150 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chỉ mục ngược tag -> entry cache (xem CacheTags).
+ *
+ * Có Redis: mỗi tag là một set "healthcare:cache-tag:&lt;tag&gt;" chứa "&lt;cache&gt;::&lt;key&gt;", TTL của set được
+ * kéo dài theo entry sống lâu nhất nên set không hết hạn trước entry mà nó trỏ tới. Key được lưu dạng
+ * chuỗi, đúng với cách RedisCache/TwoTierCache chuyển key nên evict(chuỗi) trúng entry.
+ * Không có Redis: map trong JVM giữ nguyên object key (Caffeine so key bằng equals), member của entry
+ * đã hết hạn được dọn định kỳ (prune).
+ *
+ * Tag được ghi trước khi entry được ghi (TaggedCache) nên không có entry sống nào thiếu tag; member thừa
+ * (entry đã bị xóa/hết hạn) chỉ làm evict một key không tồn tại.
+ */
+@Slf4j
+public class CacheTagIndex {
+
+    public static final String TAG_PREFIX = "healthcare:cache-tag:";
+    private static final String MEMBER_SEPARATOR = "::";
+
+    // KEYS = tag sets, ARGV = member, ttl (giây): chỉ kéo dài TTL của set, không rút ngắn
+    private static final DefaultRedisScript<Long> RECORD_SCRIPT = new DefaultRedisScript<>("""
+            for _, key in ipairs(KEYS) do
+              redis.call('sadd', key, ARGV[1])
+              if redis.call('ttl', key) < tonumber(ARGV[2]) then
+                redis.call('expire', key, ARGV[2])
+              end
+            end
+            return #KEYS
+            """, Long.class);
+
+    // KEYS = tag sets -> mọi member, đồng thời xóa các set
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> TAKE_SCRIPT = new DefaultRedisScript<>("""
+            local members = {}
+            for _, key in ipairs(KEYS) do
+              for _, member in ipairs(redis.call('smembers', key)) do
+                members[#members + 1] = member
+              end
+              redis.call('del', key)
+            end
+            return members
+            """, List.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    // Fallback khi không có Redis: tag -> (entry -> thời điểm hết hạn)
+    private final Map<String, Map<LocalEntry, Long>> localTags = new ConcurrentHashMap<>();
+
+    public CacheTagIndex(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    void record(String cacheName, Object key, Collection<String> tags, Duration ttl) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        if (redisTemplate == null) {
+            LocalEntry entry = new LocalEntry(cacheName, key);
+            long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+            for (String tag : tags) {
+                localTags.compute(tag, (t, entries) -> {
+                    Map<LocalEntry, Long> tagged = entries != null ? entries : new ConcurrentHashMap<>();
+                    tagged.put(entry, expiresAt);
+                    return tagged;
+                });
+            }
+            return;
+        }
+
+        try {
+            redisTemplate.execute(RECORD_SCRIPT, tags.stream().map(CacheTagIndex::tagKey).toList(),
+                    cacheName + MEMBER_SEPARATOR + key, String.valueOf(Math.max(1, ttl.toSeconds())));
+        } catch (Exception e) {
+            // Không ghi được tag thì entry vẫn hết hạn theo TTL; log để thấy invalidation có thể trễ
+            log.warn("Failed to record cache tags for {}::{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    /** Lấy và xóa mọi entry gắn với các tag: cache -> các key cần evict. */
+    public Map<String, Set<Object>> take(Collection<String> tags) {
+        Map<String, Set<Object>> entries = new HashMap<>();
+        if (tags.isEmpty()) {
+            return entries;
+        }
+        if (redisTemplate == null) {
+            for (String tag : tags) {
+                Map<LocalEntry, Long> tagged = localTags.remove(tag);
+                if (tagged != null) {
+                    tagged.keySet().forEach(entry -> entries.computeIfAbsent(entry.cacheName(), c -> new HashSet<>()).add(entry.key()));
+                }
+            }
+            return entries;
+        }
+
+        List<?> members = redisTemplate.execute(TAKE_SCRIPT, tags.stream().map(CacheTagIndex::tagKey).toList());
+        if (members != null) {
+            for (Object member : members) {
+                String value = String.valueOf(member);
+                int separator = value.indexOf(MEMBER_SEPARATOR);
+                if (separator > 0) {
+                    entries.computeIfAbsent(value.substring(0, separator), c -> new HashSet<>())
+                            .add(value.substring(separator + MEMBER_SEPARATOR.length()));
+                }
+            }
+        }
+        return entries;
+    }
+
+    /** Bỏ member của entry đã hết hạn (chỉ chế độ local; set trên Redis tự hết hạn). */
+    @Scheduled(fixedDelayString = "${cache.index.prune-ms:600000}")
+    public void prune() {
+        if (redisTemplate != null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> emptyTags = new ArrayList<>();
+        localTags.forEach((tag, entries) -> {
+            entries.values().removeIf(expiresAt -> expiresAt < now);
+            if (entries.isEmpty()) {
+                emptyTags.add(tag);
+            }
+        });
+        // Tag có thể vừa được thêm member giữa chừng: chỉ xóa nếu vẫn rỗng
+        emptyTags.forEach(tag -> localTags.computeIfPresent(tag, (t, entries) -> entries.isEmpty() ? null : entries));
+    }
+
+    private static String tagKey(String tag) {
+        return TAG_PREFIX + tag;
+    }
+
+    private record LocalEntry(String cacheName, Object key) {
+    }
+}
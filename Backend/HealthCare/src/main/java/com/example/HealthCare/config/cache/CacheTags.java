@@ -0,0 +1,72 @@
+package com.example.HealthCare.config.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+import com.example.HealthCare.dto.response.UserResponse;
+
+/**
+ * Tag phụ thuộc của các entry cache: mỗi cache khai báo entry của nó phụ thuộc những entity nào
+ * (tính từ key và value lúc ghi), thao tác ghi chỉ cần invalidate tag của entity vừa đổi
+ * (TaggedCacheInvalidator) thay vì @CacheEvict(allEntries = true) cả cache.
+ *
+ * - user:&lt;id&gt;: dữ liệu lấy từ user_account của user đó (tên, email, trạng thái, role...).
+ * - users:pending-doctors: danh sách bác sĩ chờ duyệt, invalidate khi có thêm thành viên mới
+ *   (thành viên cũ rời danh sách đã được phủ bởi tag user:&lt;id&gt; của họ).
+ *
+ * Cache không có trong RULES không được gắn tag và vẫn evict theo key/clear như trước.
+ */
+public final class CacheTags {
+
+    public static final String PENDING_DOCTORS = "users:pending-doctors";
+
+    private static final Map<String, BiFunction<Object, Object, Collection<String>>> RULES = Map.of(
+            "userDetails", (key, value) -> List.of(user(key)),
+            "doctorDetails", (key, value) -> List.of(user(key)),
+            "doctorProfessionalInfo", (key, value) -> List.of(user(key)),
+            "pendingDoctors", (key, value) -> pendingDoctorTags(value),
+            "accountStatus", (key, value) -> List.of(user(key)));
+
+    private CacheTags() {
+    }
+
+    public static String user(UUID userId) {
+        return user((Object) userId);
+    }
+
+    static boolean isTagged(String cacheName) {
+        return RULES.containsKey(cacheName);
+    }
+
+    /** Các cache có gắn tag (dùng khi phải clear cả cache vì không đọc được chỉ mục tag). */
+    public static Set<String> taggedCacheNames() {
+        return RULES.keySet();
+    }
+
+    static Collection<String> tagsOf(String cacheName, Object key, Object value) {
+        BiFunction<Object, Object, Collection<String>> rule = RULES.get(cacheName);
+        return rule != null ? rule.apply(key, value) : List.of();
+    }
+
+    private static String user(Object userId) {
+        return "user:" + userId;
+    }
+
+    private static Collection<String> pendingDoctorTags(Object value) {
+        List<String> tags = new ArrayList<>();
+        tags.add(PENDING_DOCTORS);
+        if (value instanceof Collection<?> users) {
+            for (Object user : users) {
+                if (user instanceof UserResponse response && response.getId() != null) {
+                    tags.add(user(response.getId()));
+                }
+            }
+        }
+        return tags;
+    }
+}
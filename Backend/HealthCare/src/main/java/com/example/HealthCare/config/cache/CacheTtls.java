@@ -0,0 +1,60 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * TTL của từng cache, dùng chung cho Redis (RedisConfig) và cache local (SimpleCacheConfig)
+ * để hai chế độ hết hạn giống nhau. L1 của TwoTierCache không bao giờ giữ lâu hơn các giá trị này.
+ */
+public final class CacheTtls {
+
+    /** TTL mặc định cho cache không có trong bảng. */
+    public static final Duration DEFAULT_TTL = Duration.ofHours(1);
+
+    private CacheTtls() {
+    }
+
+    public static Map<String, Duration> ttls() {
+        Map<String, Duration> ttls = new LinkedHashMap<>();
+
+        // Cache cho users - TTL 30 phút
+        ttls.put("users", Duration.ofMinutes(30));
+
+        // Cache cho user details - TTL 15 phút
+        ttls.put("userDetails", Duration.ofMinutes(15));
+
+        // Cache cho roles - TTL 1 giờ (ít thay đổi)
+        ttls.put("roles", Duration.ofHours(1));
+
+        // Cache cho privileges - TTL 2 giờ (rất ít thay đổi)
+        ttls.put("privileges", Duration.ofHours(2));
+
+        // Trạng thái tài khoản khi xác thực JWT - TTL 10 phút (bị evict theo tag khi user đổi)
+        ttls.put("accountStatus", Duration.ofMinutes(10));
+
+        // Cache cho doctors pending - TTL 10 phút
+        ttls.put("pendingDoctors", Duration.ofMinutes(10));
+
+        // Cache cho doctor detail - TTL 30 phút
+        ttls.put("doctorDetails", Duration.ofMinutes(30));
+
+        // Cache cho doctor professional info - TTL 30 phút
+        ttls.put("doctorProfessionalInfo", Duration.ofMinutes(30));
+
+        // Cache cho ICD chapters (dữ liệu tĩnh) - TTL 24 giờ
+        ttls.put("icdChapters", Duration.ofHours(24));
+
+        // Cache cho ICD search - TTL 6 giờ
+        ttls.put("icdSearch", Duration.ofHours(6));
+
+        // Cache cho ICD codes by range - TTL 24 giờ
+        ttls.put("icdCodes", Duration.ofHours(24));
+
+        // Cache cho ICD medications - TTL 24 giờ
+        ttls.put("icdMedications", Duration.ofHours(24));
+
+        return ttls;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.HealthCare.config.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.HealthCare.dto.AccountStatusDto;
+import com.example.HealthCare.dto.DoctorDetailDto;
+import com.example.HealthCare.dto.IcdChapterDto;
+import com.example.HealthCare.dto.IcdDiseaseSearchItemDto;
+import com.example.HealthCare.dto.IcdMedicationItemDto;
+import com.example.HealthCare.dto.response.ProfessionalInfoResponse;
+import com.example.HealthCare.dto.response.UserResponse;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+/**
+ * Bảng type id cho CompactRedisSerializer: thay vì ghi tên class vào từng object (default typing),
+ * giá trị cache chỉ mang một id 2 byte trỏ tới kiểu đã đăng ký ở đây.
+ *
+ * Id đã dùng không được đổi hay tái sử dụng (dữ liệu cũ trên Redis vẫn mang id đó); kiểu mới thêm
+ * id mới ở cuối. Kiểu chưa đăng ký được ghi ở định dạng JSON cũ nên vẫn cache được bình thường.
+ */
+public final class CacheValueTypes {
+
+    /** List rỗng: không suy ra được kiểu phần tử nhưng đọc lại thì kiểu nào cũng như nhau. */
+    static final int EMPTY_LIST = 1;
+
+    private static final Map<Integer, JavaType> TYPES_BY_ID = new HashMap<>();
+    private static final Map<Class<?>, Integer> IDS_BY_CLASS = new HashMap<>();
+    private static final Map<Class<?>, Integer> IDS_BY_ELEMENT_CLASS = new HashMap<>();
+
+    static {
+        TypeFactory types = TypeFactory.defaultInstance();
+        TYPES_BY_ID.put(EMPTY_LIST, types.constructCollectionType(List.class, Object.class));
+
+        register(10, UserResponse.class);
+        registerList(11, UserResponse.class);
+        register(12, DoctorDetailDto.class);
+        register(13, ProfessionalInfoResponse.class);
+        registerList(14, IcdChapterDto.class);
+        registerList(15, IcdDiseaseSearchItemDto.class);
+        registerList(16, IcdMedicationItemDto.class);
+        register(17, AccountStatusDto.class);
+    }
+
+    private CacheValueTypes() {
+    }
+
+    /** Id của giá trị, hoặc null nếu kiểu chưa đăng ký (hoặc list lẫn nhiều kiểu phần tử). */
+    static Integer idOf(Object value) {
+        if (value instanceof List<?> list) {
+            if (list.isEmpty()) {
+                return EMPTY_LIST;
+            }
+            Class<?> elementClass = list.get(0) != null ? list.get(0).getClass() : null;
+            Integer id = IDS_BY_ELEMENT_CLASS.get(elementClass);
+            if (id == null) {
+                return null;
+            }
+            for (Object element : list) {
+                if (element == null || element.getClass() != elementClass) {
+                    return null;
+                }
+            }
+            return id;
+        }
+        return IDS_BY_CLASS.get(value.getClass());
+    }
+
+    static JavaType typeOf(int id) {
+        return TYPES_BY_ID.get(id);
+    }
+
+    private static void register(int id, Class<?> type) {
+        TYPES_BY_ID.put(id, TypeFactory.defaultInstance().constructType(type));
+        IDS_BY_CLASS.put(type, id);
+    }
+
+    private static void registerList(int id, Class<?> elementType) {
+        TYPES_BY_ID.put(id, TypeFactory.defaultInstance().constructCollectionType(List.class, elementType));
+        IDS_BY_ELEMENT_CLASS.put(elementType, id);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.HealthCare.config.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Serializer cho giá trị Redis: Smile (JSON nhị phân) + type id đăng ký trong CacheValueTypes,
+ * nén LZ4 khi payload lớn hơn ngưỡng.
+ *
+ * Định dạng: [MAGIC][VERSION][flags][type id: 2 byte][(độ dài gốc: 4 byte nếu nén)][payload].
+ * Byte đầu của JSON không bao giờ là MAGIC nên đọc được cả hai định dạng: dữ liệu JSON cũ (hoặc
+ * kiểu chưa đăng ký / giá trị đơn như String, Long) đi qua serializer JSON gốc. Nhờ vậy tham số
+ * Lua script và các key lock/counter dùng redisTemplate vẫn giữ nguyên dạng JSON như trước.
+ *
+ * Khi writeBinary = false serializer chỉ ghi JSON nhưng vẫn đọc được định dạng mới, dùng cho giai
+ * đoạn rolling deploy khi còn node cũ chưa hiểu định dạng nhị phân.
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+
+    static final byte MAGIC = (byte) 0xC5;
+    static final byte VERSION = 1;
+    private static final byte FLAG_LZ4 = 1;
+    private static final int HEADER_SIZE = 5;
+
+    private final RedisSerializer<Object> legacySerializer;
+    private final ObjectMapper binaryMapper;
+    private final boolean writeBinary;
+    private final int compressThreshold;
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    public CompactRedisSerializer(RedisSerializer<Object> legacySerializer, ObjectMapper binaryMapper,
+                                  boolean writeBinary, int compressThreshold) {
+        this.legacySerializer = legacySerializer;
+        this.binaryMapper = binaryMapper;
+        this.writeBinary = writeBinary;
+        this.compressThreshold = compressThreshold;
+    }
+
+    public RedisSerializer<Object> getLegacySerializer() {
+        return legacySerializer;
+    }
+
+    /** Bản luôn ghi nhị phân (benchmark ở test chạy được cả khi cache.redis.value-format=json). */
+    public CompactRedisSerializer binaryWriter() {
+        return writeBinary ? this : new CompactRedisSerializer(legacySerializer, binaryMapper, true, compressThreshold);
+    }
+
+    /** Giá trị này có được ghi ở định dạng nhị phân không (kiểu đã đăng ký). */
+    public boolean supportsBinary(Object value) {
+        return value != null && CacheValueTypes.idOf(value) != null;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        Integer typeId = writeBinary ? CacheValueTypes.idOf(value) : null;
+        if (typeId == null) {
+            return legacySerializer.serialize(value);
+        }
+
+        byte[] payload;
+        try {
+            payload = binaryMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not write binary cache value: " + e.getMessage(), e);
+        }
+
+        boolean compress = payload.length > compressThreshold;
+        if (!compress) {
+            return ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                    .put(MAGIC).put(VERSION).put((byte) 0).putShort(typeId.shortValue())
+                    .put(payload)
+                    .array();
+        }
+
+        byte[] compressed = new byte[compressor.maxCompressedLength(payload.length)];
+        int compressedLength = compressor.compress(payload, 0, payload.length, compressed, 0, compressed.length);
+        return ByteBuffer.allocate(HEADER_SIZE + 4 + compressedLength)
+                .put(MAGIC).put(VERSION).put(FLAG_LZ4).putShort(typeId.shortValue())
+                .putInt(payload.length)
+                .put(compressed, 0, compressedLength)
+                .array();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return legacySerializer.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_SIZE || bytes[1] > VERSION) {
+            throw new SerializationException("Unsupported binary cache value version: " + (bytes.length > 1 ? bytes[1] : -1));
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(2);
+        byte flags = buffer.get();
+        int typeId = buffer.getShort();
+        JavaType type = CacheValueTypes.typeOf(typeId);
+        if (type == null) {
+            throw new SerializationException("Unknown cache value type id: " + typeId);
+        }
+
+        try {
+            if ((flags & FLAG_LZ4) == 0) {
+                return binaryMapper.readValue(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE, type);
+            }
+            int originalLength = buffer.getInt();
+            byte[] payload = new byte[originalLength];
+            decompressor.decompress(bytes, buffer.position(), payload, 0, originalLength);
+            return binaryMapper.readValue(payload, type);
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Could not read binary cache value: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.HealthCare.config.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Đếm số lần đọc từng key của các cache được theo dõi (cache.warmup.caches) để biết key nào đáng nạp
+ * sẵn khi khởi động (CacheWarmupService).
+ *
+ * Mỗi cache giữ tối đa maxCandidates bộ đếm trong một Caffeine cache: chính sách W-TinyLFU của Caffeine
+ * giữ lại key được đọc nhiều và loại key chỉ xuất hiện vài lần, nên bộ nhớ có giới hạn mà vẫn xấp xỉ được
+ * top key. drain() trả về số đếm của cửa sổ vừa qua và đặt lại về 0.
+ *
+ * Key được ghi dạng String.valueOf(key), đủ để nạp lại (UUID, mã ICD, chuỗi tìm kiếm).
+ */
+public class HotKeyTracker {
+
+    private final Set<String> trackedCaches;
+    private final long maxCandidates;
+    private final Map<String, com.github.benmanes.caffeine.cache.Cache<String, LongAdder>> counters =
+            new ConcurrentHashMap<>();
+
+    public HotKeyTracker(Set<String> trackedCaches, long maxCandidates) {
+        this.trackedCaches = Set.copyOf(trackedCaches);
+        this.maxCandidates = maxCandidates;
+    }
+
+    public Set<String> getTrackedCaches() {
+        return trackedCaches;
+    }
+
+    void record(String cacheName, Object key) {
+        if (!trackedCaches.contains(cacheName)) {
+            return;
+        }
+        counters.computeIfAbsent(cacheName, name -> Caffeine.newBuilder().maximumSize(maxCandidates).build())
+                .get(String.valueOf(key), k -> new LongAdder())
+                .increment();
+    }
+
+    /** Số lần đọc từng key từ lần drain trước: cache -> (key -> số lần), chỉ gồm key có đọc. */
+    public Map<String, Map<String, Long>> drain() {
+        Map<String, Map<String, Long>> snapshot = new HashMap<>();
+        counters.forEach((cacheName, cache) -> {
+            Map<String, Long> hits = new HashMap<>();
+            cache.asMap().forEach((key, counter) -> {
+                long count = counter.sumThenReset();
+                if (count > 0) {
+                    hits.put(key, count);
+                }
+            });
+            if (!hits.isEmpty()) {
+                snapshot.put(cacheName, hits);
+            }
+        });
+        return snapshot;
+    }
+}
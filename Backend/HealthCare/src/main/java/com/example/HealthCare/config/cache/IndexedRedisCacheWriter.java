@@ -0,0 +1,95 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.data.redis.cache.CacheStatistics;
+import org.springframework.data.redis.cache.CacheStatisticsCollector;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+
+/**
+ * RedisCacheWriter ghi thêm vào RedisCacheKeyIndex mỗi lần put/remove/clean, để kích thước
+ * từng cache đọc được mà không cần SCAN. Mọi thao tác khác chuyển thẳng cho writer gốc.
+ *
+ * get(key, loader) dùng cài đặt mặc định của interface (get rồi put qua writer này) để entry
+ * nạp qua @Cacheable(sync = true) cũng được đưa vào chỉ mục.
+ */
+public class IndexedRedisCacheWriter implements RedisCacheWriter {
+
+    private final RedisCacheWriter delegate;
+    private final RedisCacheKeyIndex keyIndex;
+
+    public IndexedRedisCacheWriter(RedisCacheWriter delegate, RedisCacheKeyIndex keyIndex) {
+        this.delegate = delegate;
+        this.keyIndex = keyIndex;
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key) {
+        return delegate.get(name, key);
+    }
+
+    @Override
+    public byte[] get(String name, byte[] key, Duration ttl) {
+        return delegate.get(name, key, ttl);
+    }
+
+    @Override
+    public boolean supportsAsyncRetrieve() {
+        return delegate.supportsAsyncRetrieve();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> retrieve(String name, byte[] key, Duration ttl) {
+        return delegate.retrieve(name, key, ttl);
+    }
+
+    @Override
+    public void put(String name, byte[] key, byte[] value, Duration ttl) {
+        delegate.put(name, key, value, ttl);
+        keyIndex.recordPut(name, key, ttl);
+    }
+
+    @Override
+    public CompletableFuture<Void> store(String name, byte[] key, byte[] value, Duration ttl) {
+        return delegate.store(name, key, value, ttl)
+                .thenRun(() -> keyIndex.recordPut(name, key, ttl));
+    }
+
+    @Override
+    public byte[] putIfAbsent(String name, byte[] key, byte[] value, Duration ttl) {
+        byte[] existing = delegate.putIfAbsent(name, key, value, ttl);
+        if (existing == null) {
+            keyIndex.recordPut(name, key, ttl);
+        }
+        return existing;
+    }
+
+    @Override
+    public void remove(String name, byte[] key) {
+        delegate.remove(name, key);
+        keyIndex.recordRemove(name, List.of(RedisCacheKeyIndex.decode(key)));
+    }
+
+    @Override
+    public void clean(String name, byte[] pattern) {
+        delegate.clean(name, pattern);
+        keyIndex.recordClear(name);
+    }
+
+    @Override
+    public void clearStatistics(String name) {
+        delegate.clearStatistics(name);
+    }
+
+    @Override
+    public RedisCacheWriter withStatisticsCollector(CacheStatisticsCollector cacheStatisticsCollector) {
+        return new IndexedRedisCacheWriter(delegate.withStatisticsCollector(cacheStatisticsCollector), keyIndex);
+    }
+
+    @Override
+    public CacheStatistics getCacheStatistics(String cacheName) {
+        return delegate.getCacheStatistics(cacheName);
+    }
+}
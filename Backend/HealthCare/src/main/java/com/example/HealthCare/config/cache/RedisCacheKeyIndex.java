@@ -0,0 +1,98 @@
+package com.example.HealthCare.config.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+
+import org.springframework.scheduling.annotation.Scheduled;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chỉ mục key của từng cache trên Redis: một sorted set "healthcare:cache-index:&lt;cache&gt;" với
+ * member = key Redis của entry, score = thời điểm hết hạn (ms).
+ *
+ * Được cập nhật khi ghi/xóa qua IndexedRedisCacheWriter nên số entry còn sống là một ZCOUNT
+ * (O(log N)) thay vì SCAN cả keyspace. Member của entry đã hết hạn được dọn định kỳ (prune).
+ * Chỉ mục là best-effort: lỗi khi cập nhật chỉ được log, không làm hỏng thao tác cache.
+ */
+@Slf4j
+public class RedisCacheKeyIndex {
+
+    public static final String INDEX_PREFIX = "healthcare:cache-index:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisCacheKeyIndex(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    public void recordPut(String cacheName, byte[] key, Duration ttl) {
+        long expiresAt = ttl == null || ttl.isZero() || ttl.isNegative()
+                ? Long.MAX_VALUE
+                : System.currentTimeMillis() + ttl.toMillis();
+        try {
+            redisTemplate.opsForZSet().add(indexKey(cacheName), decode(key), expiresAt);
+        } catch (Exception e) {
+            log.debug("Failed to index cache key in {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    public void recordRemove(String cacheName, Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.opsForZSet().remove(indexKey(cacheName), keys.toArray());
+        } catch (Exception e) {
+            log.debug("Failed to unindex cache keys in {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    public void recordClear(String cacheName) {
+        try {
+            redisTemplate.unlink(indexKey(cacheName));
+        } catch (Exception e) {
+            log.debug("Failed to drop cache index of {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    /** Số entry chưa hết hạn, hoặc -1 nếu Redis lỗi. */
+    public long size(String cacheName) {
+        try {
+            Long count = redisTemplate.opsForZSet().count(indexKey(cacheName),
+                    System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            return count != null ? count : 0;
+        } catch (Exception e) {
+            log.error("Failed to get cache size for {}: {}", cacheName, e.getMessage());
+            return -1;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cache.index.prune-ms:600000}")
+    public void pruneAll() {
+        prune(CacheTtls.ttls().keySet());
+    }
+
+    /** Bỏ member của các entry đã hết hạn (Redis tự xóa entry, chỉ mục thì không). */
+    public void prune(Collection<String> cacheNames) {
+        long now = System.currentTimeMillis();
+        for (String cacheName : cacheNames) {
+            try {
+                redisTemplate.opsForZSet().removeRangeByScore(indexKey(cacheName), Double.NEGATIVE_INFINITY, now);
+            } catch (Exception e) {
+                log.debug("Failed to prune cache index of {}: {}", cacheName, e.getMessage());
+            }
+        }
+    }
+
+    static String decode(byte[] key) {
+        return new String(key, StandardCharsets.UTF_8);
+    }
+
+    private static String indexKey(String cacheName) {
+        return INDEX_PREFIX + cacheName;
+    }
+}
@@ -0,0 +1,377 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.cache.Cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Bọc một cache để nạp giá trị theo kiểu single-flight cho @Cacheable(sync = true) (get(key, loader)).
+ *
+ * - Coalesce: trong một JVM chỉ một thread chạy loader cho mỗi key, các thread khác chờ kết quả đó.
+ *   Khi có CacheLoadLock (Redis), thread nạp còn phải giữ lock của key; node không lấy được lock chờ
+ *   node kia ghi giá trị vào cache (tối đa lockWait) rồi mới tự nạp.
+ * - Stale-while-revalidate: giá trị nạp trên node này được nhớ thêm staleTtl sau khi hết TTL. Khi key
+ *   hết hạn, một thread nạp lại còn các thread đến cùng lúc nhận giá trị cũ thay vì xếp hàng chờ DB.
+ *   Miss xảy ra trước hạn TTL nghĩa là key vừa bị evict (dữ liệu đã đổi) nên không trả giá trị cũ.
+ * - Refresh sớm theo xác suất (XFetch): mỗi lần hit, key được nạp lại trước hạn với xác suất tăng dần
+ *   khi gần hết TTL, tỉ lệ với thời gian nạp lần trước và earlyRefreshBeta (0 = tắt).
+ *
+ * get(key)/put/evict đi thẳng xuống cache gốc; put/evict/clear bỏ luôn giá trị cũ đang nhớ của key.
+ * Giá trị cũ chỉ nằm trên node này nên cũng bị bỏ khi node khác invalidate (forgetLocal); staleTtl = 0
+ * tắt việc trả giá trị cũ (cache mà dữ liệu cũ là sai, ví dụ accountStatus) nhưng vẫn refresh sớm.
+ * Mọi lần đọc/nạp/ghi/evict được ghi vào CacheStatsRecorder của cache.
+ */
+public class SingleFlightCache implements Cache {
+
+    private static final long LOCK_POLL_MILLIS = 50;
+
+    private final Cache target;
+    private final long ttlMillis;
+    private final CacheLoadLock loadLock;
+    private final HotKeyTracker hotKeyTracker;
+    private final CacheStatsRecorder stats;
+    private final long lockWaitMillis;
+    private final double earlyRefreshBeta;
+    private final Duration staleTtl;
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    // Giá trị + thời điểm/thời gian nạp của các key nạp trên node này; null nếu tắt (maxTracked <= 0).
+    // Key là String.valueOf(key) như L1 của TwoTierCache, để evict bằng key dạng chuỗi (tag) cũng trúng
+    private final com.github.benmanes.caffeine.cache.Cache<String, Loaded> loaded;
+
+    // Tăng mỗi lần put/evict/clear: kết quả của lần nạp bắt đầu trước đó không được ghi vào cache
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
+    private final LongAdder earlyRefreshes = new LongAdder();
+    private final LongAdder lockWaits = new LongAdder();
+    private final LongAdder loadErrors = new LongAdder();
+
+    SingleFlightCache(Cache target, Duration ttl, CacheLoadLock loadLock, HotKeyTracker hotKeyTracker,
+                      CacheStatsRecorder stats, Duration lockWait, double earlyRefreshBeta, Duration staleTtl,
+                      long maxTracked) {
+        this.target = target;
+        this.ttlMillis = ttl.toMillis();
+        this.loadLock = loadLock;
+        this.hotKeyTracker = hotKeyTracker;
+        this.stats = stats;
+        this.lockWaitMillis = lockWait.toMillis();
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.staleTtl = staleTtl;
+        this.loaded = maxTracked > 0
+                ? Caffeine.newBuilder().maximumSize(maxTracked).expireAfterWrite(ttl.plus(staleTtl)).build()
+                : null;
+    }
+
+    public Cache getTarget() {
+        return target;
+    }
+
+    public CacheStatsRecorder getStats() {
+        return stats;
+    }
+
+    @Override
+    public String getName() {
+        return target.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return target.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        recordAccess(key);
+        ValueWrapper wrapper = target.get(key);
+        stats.recordRead(wrapper != null);
+        return wrapper;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        recordAccess(key);
+        T value = target.get(key, type);
+        stats.recordRead(value != null);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        recordAccess(key);
+        ValueWrapper wrapper = target.get(key);
+        stats.recordRead(wrapper != null);
+        if (wrapper != null) {
+            Object value = wrapper.get();
+            if (shouldRefreshEarly(key)) {
+                CompletableFuture<Object> refresh = new CompletableFuture<>();
+                if (inFlight.putIfAbsent(key, refresh) == null) {
+                    earlyRefreshes.increment();
+                    return (T) load(key, valueLoader, refresh, value);
+                }
+            }
+            return (T) value;
+        }
+
+        Loaded stale = expiredEntry(key);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            if (stale != null) {
+                staleServed.increment();
+                return (T) stale.value();
+            }
+            coalesced.increment();
+            return (T) await(running);
+        }
+
+        // Thread nạp trước có thể vừa xong giữa lần đọc đầu và putIfAbsent
+        wrapper = target.get(key);
+        if (wrapper != null) {
+            inFlight.remove(key, mine);
+            mine.complete(wrapper.get());
+            return (T) wrapper.get();
+        }
+        return (T) load(key, valueLoader, mine, null);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        forget(key);
+        stats.recordPut();
+        target.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = target.putIfAbsent(key, value);
+        if (existing == null) {
+            forget(key);
+            stats.recordPut();
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        forget(key);
+        stats.recordEviction();
+        target.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        forget(key);
+        boolean evicted = target.evictIfPresent(key);
+        if (evicted) {
+            stats.recordEviction();
+        }
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        forgetAll();
+        stats.recordEviction();
+        target.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        forgetAll();
+        stats.recordEviction();
+        return target.invalidate();
+    }
+
+    long getLoads() {
+        return loads.sum();
+    }
+
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    long getStaleServed() {
+        return staleServed.sum();
+    }
+
+    long getEarlyRefreshes() {
+        return earlyRefreshes.sum();
+    }
+
+    long getLockWaits() {
+        return lockWaits.sum();
+    }
+
+    long getLoadErrors() {
+        return loadErrors.sum();
+    }
+
+    long getInFlight() {
+        return inFlight.size();
+    }
+
+    Duration getStaleTtl() {
+        return staleTtl;
+    }
+
+    /**
+     * Chạy loader cho key (thread này đã giữ slot trong inFlight) rồi ghi kết quả vào cache.
+     * current != null là refresh sớm: node khác đang giữ lock thì bỏ qua và trả lại current.
+     */
+    private Object load(Object key, Callable<?> valueLoader, CompletableFuture<Object> future, Object current) {
+        long stamp = invalidations.get();
+        String lockKey = String.valueOf(key);
+        String lockToken = null;
+        try {
+            if (loadLock != null) {
+                lockToken = loadLock.tryAcquire(getName(), lockKey);
+                if (lockToken == null) {
+                    if (current != null) {
+                        future.complete(current);
+                        return current;
+                    }
+                    ValueWrapper wrapper = awaitOtherNode(key);
+                    if (wrapper != null) {
+                        future.complete(wrapper.get());
+                        return wrapper.get();
+                    }
+                }
+            }
+
+            long startTime = System.nanoTime();
+            Object value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                stats.recordLoad(System.nanoTime() - startTime, false);
+                throw e;
+            }
+            long loadNanos = System.nanoTime() - startTime;
+            long loadMillis = loadNanos / 1_000_000;
+            loads.increment();
+            stats.recordLoad(loadNanos, true);
+            if (value != null && invalidations.get() == stamp) {
+                target.put(key, value);
+                stats.recordPut();
+                if (loaded != null) {
+                    loaded.put(String.valueOf(key), new Loaded(value, System.currentTimeMillis(), loadMillis));
+                }
+            }
+            future.complete(value);
+            return value;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            loadErrors.increment();
+            ValueRetrievalException exception = new ValueRetrievalException(key, valueLoader, e);
+            future.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            inFlight.remove(key, future);
+            if (lockToken != null) {
+                loadLock.release(getName(), lockKey, lockToken);
+            }
+        }
+    }
+
+    /** Node khác đang nạp key: đọc lại cache theo chu kỳ tới khi có giá trị hoặc hết lockWait. */
+    private ValueWrapper awaitOtherNode(Object key) throws InterruptedException {
+        lockWaits.increment();
+        long deadline = System.currentTimeMillis() + lockWaitMillis;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(LOCK_POLL_MILLIS);
+            ValueWrapper wrapper = target.get(key);
+            if (wrapper != null) {
+                return wrapper;
+            }
+        }
+        return null;
+    }
+
+    private static Object await(CompletableFuture<Object> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void recordAccess(Object key) {
+        if (hotKeyTracker != null) {
+            hotKeyTracker.record(getName(), key);
+        }
+    }
+
+    private boolean shouldRefreshEarly(Object key) {
+        if (loaded == null || earlyRefreshBeta <= 0) {
+            return false;
+        }
+        Loaded entry = loaded.getIfPresent(String.valueOf(key));
+        if (entry == null) {
+            return false;
+        }
+        // XFetch: now - delta * beta * ln(rand) >= expiry, rand thuộc (0, 1]
+        double gap = -entry.loadMillis() * earlyRefreshBeta * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= entry.loadedAt() + ttlMillis;
+    }
+
+    /** Giá trị cũ của key nếu nó biến mất khỏi cache vì hết TTL (không phải vì bị evict). */
+    private Loaded expiredEntry(Object key) {
+        if (loaded == null || staleTtl.isZero()) {
+            return null;
+        }
+        Loaded entry = loaded.getIfPresent(String.valueOf(key));
+        if (entry == null || System.currentTimeMillis() < entry.loadedAt() + ttlMillis) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Bỏ giá trị cũ đang nhớ khi cache bị đổi ngoài Cache API của node này (invalidation từ node khác,
+     * xóa key Redis trực tiếp); localKey null = cả cache.
+     */
+    void forgetLocal(String localKey) {
+        if (localKey == null) {
+            forgetAll();
+        } else {
+            forget(localKey);
+        }
+    }
+
+    private void forget(Object key) {
+        invalidations.incrementAndGet();
+        if (loaded != null) {
+            loaded.invalidate(String.valueOf(key));
+        }
+    }
+
+    private void forgetAll() {
+        invalidations.incrementAndGet();
+        if (loaded != null) {
+            loaded.invalidateAll();
+        }
+    }
+
+    private record Loaded(Object value, long loadedAt, long loadMillis) {
+    }
+}
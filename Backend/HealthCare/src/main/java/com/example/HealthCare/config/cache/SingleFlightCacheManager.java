@@ -0,0 +1,180 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.env.Environment;
+
+import com.example.HealthCare.dto.response.CacheLoadingStatsResponse;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * CacheManager bọc CacheManager thật (TwoTierCacheManager/RedisCacheManager hoặc Caffeine), trả về
+ * SingleFlightCache cho từng cache. Chỉ ảnh hưởng @Cacheable(sync = true); các thao tác khác đi thẳng
+ * xuống cache gốc. Cache có khai báo trong CacheTags được bọc thêm TaggedCache (ghi tag khi ghi entry).
+ * Mỗi cache có một CacheStatsRecorder (hit/miss, thời gian nạp, cửa sổ trượt) đăng ký vào Micrometer.
+ * Mọi lần đọc được báo cho HotKeyTracker (nếu có) để chọn key nạp sẵn khi khởi động.
+ * Code cần kiểu cụ thể (CaffeineCache, TwoTierCacheManager) dùng unwrap.
+ */
+public class SingleFlightCacheManager implements CacheManager {
+
+    private final CacheManager target;
+    private final Map<String, Duration> ttls;
+    private final Duration defaultTtl;
+    private final CacheLoadLock loadLock;
+    private final CacheTagIndex tagIndex;
+    private final HotKeyTracker hotKeyTracker;
+    private final Settings settings;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, SingleFlightCache> caches = new ConcurrentHashMap<>();
+
+    public SingleFlightCacheManager(CacheManager target, Map<String, Duration> ttls, Duration defaultTtl,
+                                    CacheLoadLock loadLock, CacheTagIndex tagIndex, HotKeyTracker hotKeyTracker,
+                                    Settings settings, MeterRegistry meterRegistry) {
+        this.target = target;
+        this.ttls = Map.copyOf(ttls);
+        this.defaultTtl = defaultTtl;
+        this.loadLock = loadLock;
+        this.tagIndex = tagIndex;
+        this.hotKeyTracker = hotKeyTracker;
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        if (target instanceof TwoTierCacheManager twoTier) {
+            twoTier.setRemoteInvalidationListener(this::forgetLocal);
+        }
+    }
+
+    public CacheManager getTargetCacheManager() {
+        return target;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        SingleFlightCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache targetCache = target.getCache(name);
+        if (targetCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, key -> decorate(targetCache));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return target.getCacheNames();
+    }
+
+    /** Thống kê nạp của các cache đã được dùng trên node này. */
+    public List<CacheLoadingStatsResponse> getLoadingStats() {
+        List<CacheLoadingStatsResponse> stats = new ArrayList<>();
+        for (SingleFlightCache cache : caches.values()) {
+            stats.add(CacheLoadingStatsResponse.builder()
+                    .cacheName(cache.getName())
+                    .loads(cache.getLoads())
+                    .coalesced(cache.getCoalesced())
+                    .staleServed(cache.getStaleServed())
+                    .earlyRefreshes(cache.getEarlyRefreshes())
+                    .lockWaits(cache.getLockWaits())
+                    .loadErrors(cache.getLoadErrors())
+                    .inFlight(cache.getInFlight())
+                    .staleTtlSeconds(cache.getStaleTtl().toSeconds())
+                    .build());
+        }
+        return stats;
+    }
+
+    /** Bộ ghi số liệu của các cache đã được dùng trên node này. */
+    public List<CacheStatsRecorder> getStatsRecorders() {
+        return caches.values().stream().map(SingleFlightCache::getStats).toList();
+    }
+
+    /** Bỏ giá trị cũ mà node này đang nhớ cho key (localKey = String.valueOf(key), null = cả cache). */
+    public void forgetLocal(String cacheName, String localKey) {
+        SingleFlightCache cache = caches.get(cacheName);
+        if (cache != null) {
+            cache.forgetLocal(localKey);
+        }
+    }
+
+    /** CacheManager thật phía sau (bỏ lớp single-flight nếu có). */
+    public static CacheManager unwrap(CacheManager cacheManager) {
+        return cacheManager instanceof SingleFlightCacheManager singleFlight
+                ? singleFlight.getTargetCacheManager()
+                : cacheManager;
+    }
+
+    /** Cache thật phía sau (bỏ lớp single-flight và lớp gắn tag nếu có). */
+    public static Cache unwrap(Cache cache) {
+        if (cache instanceof SingleFlightCache singleFlight) {
+            cache = singleFlight.getTarget();
+        }
+        return cache instanceof TaggedCache tagged ? tagged.getTarget() : cache;
+    }
+
+    private SingleFlightCache decorate(Cache targetCache) {
+        String name = targetCache.getName();
+        Duration ttl = ttls.getOrDefault(name, defaultTtl);
+        if (tagIndex != null && CacheTags.isTagged(name)) {
+            targetCache = new TaggedCache(targetCache, tagIndex, ttl);
+        }
+        CacheStatsRecorder stats = new CacheStatsRecorder(name, settings.statsWindowMinutes(), meterRegistry);
+        Duration staleTtl = settings.noStaleCaches().contains(name) ? Duration.ZERO : settings.staleTtl();
+        SingleFlightCache cache = new SingleFlightCache(targetCache, ttl, loadLock, hotKeyTracker, stats,
+                settings.lockWait(), settings.earlyRefreshBeta(), staleTtl, settings.maxTrackedEntries());
+        if (meterRegistry != null) {
+            registerMeters(cache);
+        }
+        return cache;
+    }
+
+    private void registerMeters(SingleFlightCache cache) {
+        String name = cache.getName();
+        FunctionCounter.builder("cache.loads", cache, SingleFlightCache::getLoads)
+                .tags("cache", name, "result", "loaded").register(meterRegistry);
+        FunctionCounter.builder("cache.loads", cache, SingleFlightCache::getLoadErrors)
+                .tags("cache", name, "result", "error").register(meterRegistry);
+        FunctionCounter.builder("cache.loads.avoided", cache, SingleFlightCache::getCoalesced)
+                .tags("cache", name, "reason", "coalesced").register(meterRegistry);
+        FunctionCounter.builder("cache.loads.avoided", cache, SingleFlightCache::getStaleServed)
+                .tags("cache", name, "reason", "stale").register(meterRegistry);
+        FunctionCounter.builder("cache.loads.early_refresh", cache, SingleFlightCache::getEarlyRefreshes)
+                .tags("cache", name).register(meterRegistry);
+    }
+
+    /**
+     * Cấu hình nạp cache (cache.loading.*): lockWait = thời gian chờ node khác đang giữ lock, staleTtl =
+     * thời gian còn được trả giá trị đã hết hạn, maxTrackedEntries = số key nhớ giá trị cũ mỗi cache
+     * (0 = tắt stale-while-revalidate và refresh sớm), earlyRefreshBeta = hệ số XFetch (0 = tắt),
+     * noStaleCaches = các cache không bao giờ trả giá trị đã hết hạn.
+     * statsWindowMinutes (cache.stats.window-minutes) = độ dài tối đa cửa sổ trượt của CacheStatsRecorder.
+     */
+    public record Settings(Duration lockTtl, Duration lockWait, Duration staleTtl,
+                           long maxTrackedEntries, double earlyRefreshBeta, int statsWindowMinutes,
+                           Set<String> noStaleCaches) {
+
+        public static Settings from(Environment environment) {
+            return new Settings(
+                    Duration.ofMillis(environment.getProperty("cache.loading.lock-ttl-ms", Long.class, 5000L)),
+                    Duration.ofMillis(environment.getProperty("cache.loading.lock-wait-ms", Long.class, 2000L)),
+                    Duration.ofSeconds(environment.getProperty("cache.loading.stale-seconds", Long.class, 300L)),
+                    environment.getProperty("cache.loading.max-tracked-entries", Long.class, 1000L),
+                    environment.getProperty("cache.loading.early-refresh-beta", Double.class, 1.0),
+                    environment.getProperty("cache.stats.window-minutes", Integer.class, 60),
+                    Set.of(environment.getProperty("cache.loading.no-stale-caches", String[].class,
+                            new String[] {"accountStatus"})));
+        }
+    }
+}
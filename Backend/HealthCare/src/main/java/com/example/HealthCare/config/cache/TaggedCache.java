@@ -0,0 +1,105 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+import org.springframework.cache.Cache;
+
+/**
+ * Bọc cache có khai báo tag (CacheTags): mỗi lần ghi, tag của entry được ghi vào CacheTagIndex
+ * trước rồi mới ghi entry, để invalidation theo tag không bỏ sót entry vừa được ghi.
+ * Đọc/xóa đi thẳng xuống cache gốc.
+ */
+public class TaggedCache implements Cache {
+
+    private final Cache target;
+    private final CacheTagIndex tagIndex;
+    private final Duration ttl;
+
+    TaggedCache(Cache target, CacheTagIndex tagIndex, Duration ttl) {
+        this.target = target;
+        this.tagIndex = tagIndex;
+        this.ttl = ttl;
+    }
+
+    public Cache getTarget() {
+        return target;
+    }
+
+    @Override
+    public String getName() {
+        return target.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return target.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return target.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return target.get(key, type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = target.get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        tag(key, value);
+        target.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        tag(key, value);
+        return target.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        target.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        return target.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        target.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        return target.invalidate();
+    }
+
+    private void tag(Object key, Object value) {
+        if (value != null) {
+            tagIndex.record(getName(), key, CacheTags.tagsOf(getName(), key, value), ttl);
+        }
+    }
+}
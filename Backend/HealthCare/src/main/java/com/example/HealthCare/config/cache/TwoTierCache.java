@@ -0,0 +1,209 @@
+package com.example.HealthCare.config.cache;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Cache hai tầng: L1 Caffeine trong JVM (giới hạn số entry, TTL ngắn) đứng trước L2 Redis.
+ *
+ * Đọc: L1 -> L2 -> (loader). Ghi/xóa: L2 trước rồi L1, sau đó báo cho các node khác qua
+ * TwoTierCacheManager để họ bỏ entry L1 tương ứng. Pub/sub có thể mất message nên TTL của L1
+ * luôn nhỏ hơn hoặc bằng TTL của L2 và bị chặn trên bởi cache.l1.ttl-seconds.
+ *
+ * Key L1 là String.valueOf(key) để message invalidation giữa các node so khớp được.
+ */
+public class TwoTierCache implements Cache {
+
+    private final String name;
+    private final Cache redisCache;
+    private final TwoTierCacheManager manager;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final long maxEntries;
+    private final Duration localTtl;
+
+    // Tăng mỗi lần có invalidation: giá trị đọc từ L2 trước đó không được ghi vào L1 nữa
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l1Misses = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder l2Misses = new LongAdder();
+
+    TwoTierCache(String name, Cache redisCache, TwoTierCacheManager manager, long maxEntries, Duration localTtl) {
+        this.name = name;
+        this.redisCache = redisCache;
+        this.manager = manager;
+        this.maxEntries = maxEntries;
+        this.localTtl = localTtl;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(localTtl)
+                .build();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return redisCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            l1Hits.increment();
+            return new SimpleValueWrapper(value);
+        }
+        l1Misses.increment();
+
+        long stamp = invalidations.get();
+        ValueWrapper wrapper = redisCache.get(key);
+        if (wrapper == null || wrapper.get() == null) {
+            l2Misses.increment();
+            return wrapper;
+        }
+        l2Hits.increment();
+        putLocal(localKey, wrapper.get(), stamp);
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException(
+                    "Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            return (T) wrapper.get();
+        }
+        // Giá trị vừa nạp từ nguồn nên không cần báo node khác
+        long stamp = invalidations.get();
+        T value = redisCache.get(key, valueLoader);
+        putLocal(localKey(key), value, stamp);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        redisCache.put(key, value);
+        String localKey = localKey(key);
+        invalidateLocal(localKey);
+        putLocal(localKey, value, invalidations.get());
+        manager.publishEvict(name, localKey);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = redisCache.putIfAbsent(key, value);
+        if (existing == null) {
+            String localKey = localKey(key);
+            invalidateLocal(localKey);
+            putLocal(localKey, value, invalidations.get());
+            manager.publishEvict(name, localKey);
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        redisCache.evict(key);
+        String localKey = localKey(key);
+        invalidateLocal(localKey);
+        manager.publishEvict(name, localKey);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean evicted = redisCache.evictIfPresent(key);
+        String localKey = localKey(key);
+        invalidateLocal(localKey);
+        manager.publishEvict(name, localKey);
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        redisCache.clear();
+        clearLocal();
+        manager.publishClear(name);
+    }
+
+    @Override
+    public boolean invalidate() {
+        boolean invalidated = redisCache.invalidate();
+        clearLocal();
+        manager.publishClear(name);
+        return invalidated;
+    }
+
+    /** Chỉ bỏ entry L1 (message từ node khác). */
+    void invalidateLocal(String localKey) {
+        invalidations.incrementAndGet();
+        local.invalidate(localKey);
+    }
+
+    void clearLocal() {
+        invalidations.incrementAndGet();
+        local.invalidateAll();
+    }
+
+    long getL1Hits() {
+        return l1Hits.sum();
+    }
+
+    long getL1Misses() {
+        return l1Misses.sum();
+    }
+
+    long getL2Hits() {
+        return l2Hits.sum();
+    }
+
+    long getL2Misses() {
+        return l2Misses.sum();
+    }
+
+    long getL1Size() {
+        return local.estimatedSize();
+    }
+
+    long getMaxEntries() {
+        return maxEntries;
+    }
+
+    Duration getLocalTtl() {
+        return localTtl;
+    }
+
+    private void putLocal(String localKey, Object value, long stamp) {
+        if (value != null && invalidations.get() == stamp) {
+            local.put(localKey, value);
+        }
+    }
+
+    static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.HealthCare.config.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import com.example.HealthCare.dto.response.CacheTierStatsResponse;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * CacheManager bọc RedisCacheManager, thêm L1 trong JVM cho từng cache (xem TwoTierCache).
+ *
+ * TTL của L1 = min(TTL Redis của cache đó, cache.l1.ttl-seconds); số entry tối đa lấy từ
+ * cache.l1.max-entries.&lt;cache&gt; hoặc cache.l1.default-max-entries, giá trị &lt;= 0 tắt L1 cho cache đó.
+ *
+ * Thay đổi (put/evict/clear) được publish lên INVALIDATION_CHANNEL dạng "nodeId|cache|key"
+ * (key rỗng = clear cả cache); mỗi node nhận message của node khác, bỏ entry L1 tương ứng và báo
+ * remoteInvalidationListener (SingleFlightCacheManager bỏ giá trị cũ đang nhớ của key).
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager, MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "healthcare:cache:invalidation";
+
+    private final RedisCacheManager redisCacheManager;
+    private final StringRedisTemplate publisher;
+    private final Map<String, Duration> redisTtls;
+    private final Duration defaultRedisTtl;
+    private final Duration maxLocalTtl;
+    private final long defaultMaxEntries;
+    private final Map<String, Long> maxEntries;
+    private final MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+    // Được báo (cache, key hoặc null = cả cache) khi node khác invalidate, để lớp bọc bỏ dữ liệu nhớ riêng
+    private volatile BiConsumer<String, String> remoteInvalidationListener;
+
+    public TwoTierCacheManager(RedisCacheManager redisCacheManager, StringRedisTemplate publisher,
+                               Map<String, Duration> redisTtls, Duration defaultRedisTtl,
+                               Duration maxLocalTtl, long defaultMaxEntries, Map<String, Long> maxEntries,
+                               MeterRegistry meterRegistry) {
+        this.redisCacheManager = redisCacheManager;
+        this.publisher = publisher;
+        this.redisTtls = Map.copyOf(redisTtls);
+        this.defaultRedisTtl = defaultRedisTtl;
+        this.maxLocalTtl = maxLocalTtl;
+        this.defaultMaxEntries = defaultMaxEntries;
+        this.maxEntries = Map.copyOf(maxEntries);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache redisCache = redisCacheManager.getCache(name);
+        if (redisCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, key -> decorate(name, redisCache));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return redisCacheManager.getCacheNames();
+    }
+
+    /** Hit/miss từng tầng của các cache đã được dùng trên node này. */
+    public List<CacheTierStatsResponse> getTierStats() {
+        List<CacheTierStatsResponse> stats = new ArrayList<>();
+        for (Cache cache : caches.values()) {
+            if (cache instanceof TwoTierCache twoTier) {
+                long l1Hits = twoTier.getL1Hits();
+                long l2Hits = twoTier.getL2Hits();
+                long reads = l1Hits + twoTier.getL1Misses();
+                stats.add(CacheTierStatsResponse.builder()
+                        .cacheName(twoTier.getName())
+                        .l1Size(twoTier.getL1Size())
+                        .l1MaxEntries(twoTier.getMaxEntries())
+                        .l1TtlSeconds(twoTier.getLocalTtl().toSeconds())
+                        .l1Hits(l1Hits)
+                        .l1Misses(twoTier.getL1Misses())
+                        .l2Hits(l2Hits)
+                        .l2Misses(twoTier.getL2Misses())
+                        .l1HitRatio(reads > 0 ? (double) l1Hits / reads : 0)
+                        .overallHitRatio(reads > 0 ? (double) (l1Hits + l2Hits) / reads : 0)
+                        .build());
+            }
+        }
+        return stats;
+    }
+
+    /** Bỏ L1 của một cache trên mọi node (sau khi key Redis bị xóa trực tiếp, không qua Cache API). */
+    public void clearLocal(String cacheName) {
+        if (caches.get(cacheName) instanceof TwoTierCache cache) {
+            cache.clearLocal();
+        }
+        publishClear(cacheName);
+    }
+
+    public void setRemoteInvalidationListener(BiConsumer<String, String> remoteInvalidationListener) {
+        this.remoteInvalidationListener = remoteInvalidationListener;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        if (caches.get(parts[1]) instanceof TwoTierCache cache) {
+            if (parts[2].isEmpty()) {
+                cache.clearLocal();
+            } else {
+                cache.invalidateLocal(parts[2]);
+            }
+        }
+        BiConsumer<String, String> listener = remoteInvalidationListener;
+        if (listener != null) {
+            listener.accept(parts[1], parts[2].isEmpty() ? null : parts[2]);
+        }
+    }
+
+    void publishEvict(String cacheName, String localKey) {
+        publish(cacheName, localKey);
+    }
+
+    void publishClear(String cacheName) {
+        publish(cacheName, "");
+    }
+
+    private void publish(String cacheName, String localKey) {
+        try {
+            publisher.convertAndSend(INVALIDATION_CHANNEL, nodeId + "|" + cacheName + "|" + localKey);
+        } catch (Exception e) {
+            // Node khác sẽ tự hết hạn L1 sau tối đa cache.l1.ttl-seconds
+            log.warn("Failed to publish cache invalidation for {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    private Cache decorate(String name, Cache redisCache) {
+        long limit = maxEntries.getOrDefault(name, defaultMaxEntries);
+        if (limit <= 0) {
+            return redisCache;
+        }
+
+        Duration redisTtl = redisTtls.getOrDefault(name, defaultRedisTtl);
+        Duration localTtl = redisTtl.compareTo(maxLocalTtl) < 0 ? redisTtl : maxLocalTtl;
+        TwoTierCache cache = new TwoTierCache(name, redisCache, this, limit, localTtl);
+        if (meterRegistry != null) {
+            registerMeters(cache);
+        }
+        return cache;
+    }
+
+    private void registerMeters(TwoTierCache cache) {
+        String name = cache.getName();
+        FunctionCounter.builder("cache.tier.gets", cache, TwoTierCache::getL1Hits)
+                .tags("cache", name, "tier", "l1", "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.tier.gets", cache, TwoTierCache::getL1Misses)
+                .tags("cache", name, "tier", "l1", "result", "miss").register(meterRegistry);
+        FunctionCounter.builder("cache.tier.gets", cache, TwoTierCache::getL2Hits)
+                .tags("cache", name, "tier", "l2", "result", "hit").register(meterRegistry);
+        FunctionCounter.builder("cache.tier.gets", cache, TwoTierCache::getL2Misses)
+                .tags("cache", name, "tier", "l2", "result", "miss").register(meterRegistry);
+        Gauge.builder("cache.tier.size", cache, TwoTierCache::getL1Size)
+                .tags("cache", name, "tier", "l1").register(meterRegistry);
+    }
+}
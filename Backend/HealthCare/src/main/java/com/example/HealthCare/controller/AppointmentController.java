@@ -12,6 +12,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -23,10 +24,13 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.HealthCare.dto.request.CreateAppointmentRequest;
 import com.example.HealthCare.dto.request.CreateAppointmentFromBookingRequest;
+import com.example.HealthCare.dto.request.CreateSlotHoldRequest;
 import com.example.HealthCare.dto.request.RescheduleAppointmentRequest;
 import com.example.HealthCare.dto.response.AppointmentResponse;
+import com.example.HealthCare.dto.response.AvailableSlotsRangeResponse;
 import com.example.HealthCare.dto.response.AvailableSlotsResponse;
 import com.example.HealthCare.dto.response.ResponseSuccess;
+import com.example.HealthCare.dto.response.SlotHoldResponse;
 import com.example.HealthCare.model.UserAccount;
 import com.example.HealthCare.repository.UserAccountRepository;
 import com.example.HealthCare.service.AppointmentService;
@@ -214,12 +218,15 @@ public class AppointmentController {
                     .formatType(request.getFormatType())
                     .build();
             
-            // Create appointment with doctor ID as the appointment doctor
-            AppointmentResponse appointment = appointmentService.createAppointment(appointmentRequest, request.getDoctorId());
+            // Convert the slot hold taken before payment, or create the appointment directly
+            AppointmentResponse appointment = request.getHoldId() != null
+                    ? appointmentService.confirmHold(request.getHoldId(), patientId, request.getDoctorId(), appointmentRequest)
+                    : appointmentService.createAppointment(appointmentRequest, request.getDoctorId());
 
             // If payment information was provided in the booking request, persist a Payment record
             try {
-                if (request.getTotalAmount() != null) {
+                // Callback lặp lại cho hold đã xác nhận: payment đã được ghi lần trước
+                if (request.getTotalAmount() != null && !paymentRepository.existsByAppointmentId(appointment.getId())) {
                     UUID appointmentId = appointment.getId();
 
                     // Compute server-side appointment amount using doctor's schedule rules for the scheduled date
@@ -276,6 +283,62 @@ public class AppointmentController {
         }
     }
 
+    /**
+     * Hold a slot while the patient completes VNPay payment
+     * @param request - Doctor ID and slot times
+     * @return Hold ID and expiry; pass holdId to /book-from-payment after payment
+     */
+    @PostMapping("/holds")
+    @PreAuthorize("hasAuthority('VIEW_APPOINTMENTS')")
+    public ResponseEntity<?> holdSlot(@RequestBody CreateSlotHoldRequest request) {
+        try {
+            UUID patientId = getCurrentUserId();
+            SlotHoldResponse hold = appointmentService.holdSlot(request, patientId);
+            
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(new ResponseSuccess(HttpStatus.CREATED, "Slot held successfully", hold));
+        } catch (com.example.HealthCare.exception.BadRequestException e) {
+            log.error("Bad request when holding slot: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("success", false, "error", "slot_unavailable", "message", e.getMessage()));
+        } catch (com.example.HealthCare.exception.NotFoundException e) {
+            log.error("Not found when holding slot: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("success", false, "error", "not_found", "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error holding slot", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
+    /**
+     * Release a slot hold (payment abandoned)
+     * @param holdId - Hold ID
+     */
+    @DeleteMapping("/holds/{holdId}")
+    @PreAuthorize("hasAuthority('VIEW_APPOINTMENTS')")
+    public ResponseEntity<?> releaseHold(@PathVariable UUID holdId) {
+        try {
+            UUID patientId = getCurrentUserId();
+            appointmentService.releaseHold(holdId, patientId);
+            
+            return ResponseEntity.ok(Map.of("success", true, "message", "Slot hold released"));
+        } catch (com.example.HealthCare.exception.NotFoundException e) {
+            log.error("Slot hold not found: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("success", false, "error", "not_found", "message", e.getMessage()));
+        } catch (com.example.HealthCare.exception.BadRequestException e) {
+            log.error("Bad request when releasing slot hold: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("success", false, "error", "bad_request", "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error releasing slot hold", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
     /**
      * Get available time slots for a doctor on a specific date
      * @param doctorId - Doctor ID
@@ -299,6 +362,35 @@ public class AppointmentController {
         }
     }
 
+    /**
+     * Get available time slots for a doctor over several consecutive days
+     * @param doctorId - Doctor ID
+     * @param fromDate - First date in format yyyy-MM-dd
+     * @param days - Number of days (default 14, max 31)
+     * @param excludeAppointmentId - Optional appointment ID to exclude from conflicts (for rescheduling)
+     * @return Available slots grouped by date
+     */
+    @GetMapping("/available-slots/range")
+    @PreAuthorize("hasAuthority('VIEW_APPOINTMENTS')")
+    public ResponseEntity<?> getAvailableSlotsRange(
+            @RequestParam UUID doctorId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @RequestParam(defaultValue = "14") int days,
+            @RequestParam(required = false) UUID excludeAppointmentId) {
+        try {
+            AvailableSlotsRangeResponse response = appointmentService.getAvailableSlotsRange(doctorId, fromDate, days, excludeAppointmentId);
+            return ResponseEntity.ok(Map.of("success", true, "data", response));
+        } catch (com.example.HealthCare.exception.BadRequestException e) {
+            log.error("Bad request when getting available slots range: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("success", false, "error", "bad_request", "message", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error getting available slots range", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
     /**
      * Cancel an appointment (patient only)
      * @param id - Appointment ID
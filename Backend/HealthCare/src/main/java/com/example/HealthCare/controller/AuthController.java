@@ -4,16 +4,19 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
@@ -211,15 +214,26 @@ public class AuthController {
 
 	@PostMapping("/logout")
 	@ResponseStatus(HttpStatus.OK)
-	public ResponseSuccess logout(@RequestBody(required = false) RefreshTokenRequest request) {
+	public ResponseSuccess logout(@RequestBody(required = false) RefreshTokenRequest request,
+			@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
 		String refreshToken = null;
 		if (request != null) {
 			refreshToken = request.getRefreshToken();
 		}
-		authService.logout(refreshToken); // Changed to single parameter
+		String accessToken = authorization != null && authorization.startsWith("Bearer ")
+				? authorization.substring(7)
+				: null;
+		authService.logout(refreshToken, accessToken);
 		return new ResponseSuccess(HttpStatus.OK, "Logout successfully!");
 	}
 
+	@PostMapping("/logout-all")
+	@ResponseStatus(HttpStatus.OK)
+	public ResponseSuccess logoutAll(Authentication authentication) {
+		authService.logoutAll(authentication.getName());
+		return new ResponseSuccess(HttpStatus.OK, "Logged out from all devices successfully!");
+	}
+
 
 
 	@PostMapping("/admin/approve-doctor/{userId}")
@@ -8,14 +8,18 @@ import java.util.concurrent.CompletableFuture;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.example.HealthCare.dto.response.CacheKeyPageResponse;
 import com.example.HealthCare.dto.response.ResponseSuccess;
+import com.example.HealthCare.exception.BadRequestException;
 import com.example.HealthCare.service.CacheService;
 
 import lombok.RequiredArgsConstructor;
@@ -27,6 +31,8 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CacheController {
 
+    private static final int MAX_SCAN_COUNT = 1000;
+
     private final CacheService cacheService;
 
     @GetMapping("/names")
@@ -42,9 +48,11 @@ public class CacheController {
 
     @GetMapping("/stats")
     @Async("cacheTaskExecutor")
-    public CompletableFuture<ResponseEntity<ResponseSuccess>> getCacheStats() {
+    public CompletableFuture<ResponseEntity<ResponseSuccess>> getCacheStats(
+            @RequestParam(defaultValue = "15") int windowMinutes) {
         return CompletableFuture.supplyAsync(() -> {
             Map<String, Object> stats = new HashMap<>();
+            stats.put("caches", cacheService.getCacheStats(windowMinutes));
             
             Set<String> cacheNames = cacheService.getAllCacheNames();
             stats.put("cacheNames", cacheNames);
@@ -55,6 +63,9 @@ public class CacheController {
                 cacheSizes.put(name, cacheService.getCacheSize(name));
             });
             stats.put("cacheSizes", cacheSizes);
+            stats.put("tiers", cacheService.getCacheTierStats());
+            stats.put("local", cacheService.getLocalCacheStats());
+            stats.put("loading", cacheService.getCacheLoadingStats());
             
             return ResponseEntity.ok(
                 new ResponseSuccess(HttpStatus.OK, "Cache statistics retrieved successfully", stats)
@@ -62,6 +73,45 @@ public class CacheController {
         });
     }
 
+    @GetMapping("/tiers")
+    public ResponseEntity<ResponseSuccess> getCacheTierStats() {
+        return ResponseEntity.ok(
+            new ResponseSuccess(HttpStatus.OK, "Cache tier statistics retrieved successfully", cacheService.getCacheTierStats())
+        );
+    }
+
+    @GetMapping("/loading")
+    public ResponseEntity<ResponseSuccess> getCacheLoadingStats() {
+        return ResponseEntity.ok(
+            new ResponseSuccess(HttpStatus.OK, "Cache loading statistics retrieved successfully", cacheService.getCacheLoadingStats())
+        );
+    }
+
+    @GetMapping("/keys")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess> scanCacheKeys(
+            @RequestParam(required = false) String cacheName,
+            @RequestParam(defaultValue = "0") String cursor,
+            @RequestParam(defaultValue = "200") int count) {
+        CacheKeyPageResponse page = cacheService.scanCacheKeys(cacheName, cursor, Math.max(1, Math.min(count, MAX_SCAN_COUNT)));
+        return ResponseEntity.ok(
+            new ResponseSuccess(HttpStatus.OK, "Cache keys retrieved successfully", page)
+        );
+    }
+
+    @DeleteMapping("/keys")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ResponseSuccess> evictCacheByPattern(@RequestParam String pattern) {
+        // Chỉ cho xóa key cache (<cache>::<key>), không đụng tới lock/counter dùng chung prefix healthcare:
+        if (pattern.isBlank() || !pattern.contains("::")) {
+            throw new BadRequestException("Pattern must target cache keys (<cache>::<key>)");
+        }
+        long evicted = cacheService.evictCacheByPattern(pattern);
+        return ResponseEntity.ok(
+            new ResponseSuccess(HttpStatus.OK, "Evicted " + evicted + " cache keys", evicted)
+        );
+    }
+
     @DeleteMapping("/all")
     @Async("cacheTaskExecutor")
     public CompletableFuture<ResponseEntity<ResponseSuccess>> clearAllCaches() {
@@ -114,8 +164,8 @@ public class CacheController {
     @Async("cacheTaskExecutor")
     public CompletableFuture<ResponseEntity<ResponseSuccess>> warmUpCaches() {
         return CompletableFuture.supplyAsync(() -> {
-            cacheService.warmUpCaches();
-            return ResponseEntity.ok(new ResponseSuccess(HttpStatus.OK, "Cache warm-up completed successfully"));
+            Map<String, Object> summary = cacheService.warmUpCaches();
+            return ResponseEntity.ok(new ResponseSuccess(HttpStatus.OK, "Cache warm-up completed successfully", summary));
         });
     }
 
@@ -16,6 +16,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.example.HealthCare.dto.request.RefundRequest;
 import com.example.HealthCare.dto.response.CanceledAppointmentResponse;
 import com.example.HealthCare.dto.response.ResponseSuccess;
+import com.example.HealthCare.enums.AppointmentStatus;
 import com.example.HealthCare.service.CanceledAppointmentService;
 
 import jakarta.validation.Valid;
@@ -28,18 +29,31 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CanceledAppointmentController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final CanceledAppointmentService canceledAppointmentService;
 
     @GetMapping
     @PreAuthorize("hasAuthority('VIEW_APPOINTMENTS')")
     public ResponseEntity<ResponseSuccess> getCanceledAppointments(
             @RequestParam(required = false) String search,
+            @RequestParam(required = false) String status,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
+        AppointmentStatus statusFilter;
+        try {
+            statusFilter = status == null || status.isBlank() || "all".equalsIgnoreCase(status)
+                    ? null
+                    : AppointmentStatus.fromValue(status.toLowerCase());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest()
+                    .body(new ResponseSuccess(HttpStatus.BAD_REQUEST, ex.getMessage(), null));
+        }
+
         try {
-            Pageable pageable = PageRequest.of(page, size);
+            Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
             Page<CanceledAppointmentResponse> appointments = 
-                    canceledAppointmentService.getCanceledAppointments(search, pageable);
+                    canceledAppointmentService.getCanceledAppointments(search, statusFilter, pageable);
             
             return ResponseEntity.ok(new ResponseSuccess(
                     HttpStatus.OK,
@@ -18,7 +18,9 @@ import org.springframework.validation.annotation.Validated;
 
 import com.example.HealthCare.dto.request.GetChatMessagesRequest;
 import com.example.HealthCare.dto.request.SendChatMessageRequest;
+import com.example.HealthCare.dto.response.ChatConversationDto;
 import com.example.HealthCare.dto.response.ChatMessageGroupDto;
+import com.example.HealthCare.dto.response.ChatMessagePageDto;
 import com.example.HealthCare.dto.response.ChatPeerDto;
 import com.example.HealthCare.model.UserAccount;
 import com.example.HealthCare.repository.UserAccountRepository;
@@ -79,6 +81,70 @@ public class ChatMessagingController {
 		}
 	}
 
+	/** Lịch sử chat theo cursor: body có thể kèm before/after (message id) và limit. */
+	@PostMapping("/messages-page")
+	@PreAuthorize("hasRole('PATIENT') or hasRole('DOCTOR')")
+	public ResponseEntity<?> getMessagePage(@Valid @RequestBody GetChatMessagesRequest body) {
+		try {
+			UUID senderId = getCurrentUserId();
+			ChatMessagePageDto data = chatMessagingService.getMessagePage(senderId, body);
+			return ResponseEntity.ok(Map.of(
+					"success", true,
+					"message", "Fetched successfully",
+					"data", data));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+		} catch (Exception e) {
+			log.error("getMessagePage failed", e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(Map.of("success", false, "message", e.getMessage()));
+		}
+	}
+
+	/** Delta kể từ tin nhắn đã xem cuối (after = newestMessageId của lần trước). */
+	@PostMapping("/messages-since")
+	@PreAuthorize("hasRole('PATIENT') or hasRole('DOCTOR')")
+	public ResponseEntity<?> getMessagesSince(@Valid @RequestBody GetChatMessagesRequest body) {
+		if (body.getAfter() == null || body.getAfter().isBlank()) {
+			return ResponseEntity.badRequest().body(Map.of("success", false, "message", "after is required"));
+		}
+		body.setBefore(null);
+		return getMessagePage(body);
+	}
+
+	/** Inbox: các cuộc hội thoại kèm tin nhắn cuối và số tin chưa đọc. */
+	@GetMapping("/conversations")
+	@PreAuthorize("hasRole('PATIENT') or hasRole('DOCTOR')")
+	public ResponseEntity<?> listConversations() {
+		try {
+			UUID userId = getCurrentUserId();
+			List<ChatConversationDto> conversations = chatMessagingService.listConversations(userId);
+			return ResponseEntity.ok(Map.of("success", true, "message", "OK", "data", conversations));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+		} catch (Exception e) {
+			log.error("listConversations failed", e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(Map.of("success", false, "message", e.getMessage()));
+		}
+	}
+
+	@PostMapping("/conversations/read")
+	@PreAuthorize("hasRole('PATIENT') or hasRole('DOCTOR')")
+	public ResponseEntity<?> markConversationRead(@Valid @RequestBody GetChatMessagesRequest body) {
+		try {
+			UUID userId = getCurrentUserId();
+			chatMessagingService.markConversationRead(userId, body.getReceiverId());
+			return ResponseEntity.ok(Map.of("success", true, "message", "Marked as read"));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().body(Map.of("success", false, "message", e.getMessage()));
+		} catch (Exception e) {
+			log.error("markConversationRead failed", e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+					.body(Map.of("success", false, "message", e.getMessage()));
+		}
+	}
+
 	@GetMapping("/peers")
 	@PreAuthorize("hasRole('PATIENT') or hasRole('DOCTOR')")
 	public ResponseEntity<?> listPeers() {
@@ -18,6 +18,8 @@ import org.springframework.web.bind.annotation.RestController;
 
 import jakarta.validation.Valid;
 
+import org.springframework.data.domain.Page;
+
 import org.springframework.http.HttpStatus;
 
 import com.example.HealthCare.dto.DoctorDetailDto;
@@ -26,6 +28,7 @@ import com.example.HealthCare.dto.MedicalExaminationHistoryDetailDto;
 import com.example.HealthCare.dto.MedicalExaminationHistorySummaryDto;
 import com.example.HealthCare.dto.request.UpdatePersonalInfoRequest;
 import com.example.HealthCare.dto.request.UpdateProfessionalInfoRequest;
+import com.example.HealthCare.dto.response.PageViewResponse;
 import com.example.HealthCare.dto.response.PersonalInfoDetailResponse;
 import com.example.HealthCare.dto.response.ProfessionalInfoResponse;
 import com.example.HealthCare.dto.response.ResponseSuccess;
@@ -50,6 +53,7 @@ public class DoctorController {
     private final DoctorScheduleService doctorScheduleService;
     private final UserService userService;
     private final UserAccountRepository userAccountRepository;
+    private static final int MAX_PAGE_SIZE = 100;
 
     // GET /api/doctors?search=Le
     @GetMapping("/available")
@@ -63,6 +67,28 @@ public class DoctorController {
         return ResponseEntity.ok(doctors);
     }
 
+    // GET /api/doctors/search?search=noi&datetime=2025-12-02&page=1&size=10
+    @GetMapping("/search")
+    @PreAuthorize("hasAuthority('VIEW_DOCTORS')")
+    public ResponseEntity<ResponseSuccess.Payload> searchDoctors(
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) LocalDate datetime,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "10") int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        Page<DoctorSummaryDto> pageData = doctorService.searchDoctors(search, datetime, Math.max(page - 1, 0), pageSize);
+
+        PageViewResponse<DoctorSummaryDto> result = PageViewResponse.<DoctorSummaryDto>builder()
+                .content(pageData.getContent())
+                .page(pageData.getNumber() + 1)
+                .size(pageData.getSize())
+                .totalElements(pageData.getTotalElements())
+                .totalPages(pageData.getTotalPages())
+                .build();
+
+        return ResponseEntity.ok(new ResponseSuccess.Payload(HttpStatus.OK.value(), "Search doctors successfully", result));
+    }
+
     // GET /api/doctors/me/professional-info (must be before /{id} to avoid path conflict)
     @GetMapping("/me/professional-info")
     @PreAuthorize("hasAuthority('VIEW_DOCTORS')")
@@ -20,6 +20,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.HealthCare.dto.request.CreateNotificationRequest;
 import com.example.HealthCare.dto.request.UpdateNotificationRequest;
+import com.example.HealthCare.dto.response.NotificationDispatchStatusResponse;
 import com.example.HealthCare.dto.response.NotificationResponse;
 import com.example.HealthCare.model.UserAccount;
 import com.example.HealthCare.repository.UserAccountRepository;
@@ -138,6 +139,19 @@ public class NotificationController {
         }
     }
 
+    @GetMapping("/{id}/dispatch-status")
+    @PreAuthorize("hasAuthority('MANAGE_NOTIFICATIONS')")
+    public ResponseEntity<?> getDispatchStatus(@PathVariable UUID id) {
+        try {
+            NotificationDispatchStatusResponse status = notificationService.getDispatchStatus(id);
+            return ResponseEntity.ok(Map.of("success", true, "data", status));
+        } catch (Exception e) {
+            log.error("Error getting notification dispatch status", e);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("success", false, "message", e.getMessage()));
+        }
+    }
+
     @PostMapping
     @PreAuthorize("hasAuthority('MANAGE_NOTIFICATIONS')")
     public ResponseEntity<?> createNotification(@RequestBody CreateNotificationRequest request) {
@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.HealthCare.dto.response.ResponseSuccess;
 import com.example.HealthCare.service.PerformanceService;
+import com.example.HealthCare.websocket.StompClusterRelay;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,6 +25,7 @@ import lombok.extern.slf4j.Slf4j;
 public class PerformanceController {
 
     private final PerformanceService performanceService;
+    private final StompClusterRelay stompClusterRelay;
 
     @GetMapping("/stats")
     @Async("controllerTaskExecutor")
@@ -57,4 +59,12 @@ public class PerformanceController {
             );
         });
     }
+
+    @GetMapping("/websocket")
+    public ResponseEntity<ResponseSuccess> getWebSocketRelayStatus() {
+        return ResponseEntity.ok(
+            new ResponseSuccess(HttpStatus.OK, "WebSocket relay status retrieved successfully",
+                stompClusterRelay.getStatus())
+        );
+    }
 }
@@ -0,0 +1,25 @@
+package com.example.HealthCare.dto;
+
+import com.example.HealthCare.enums.AccountStatus;
+import com.example.HealthCare.enums.UserRole;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Trạng thái tài khoản tối thiểu để xác thực JWT mà không đọc DB (cache accountStatus, theo userId).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountStatusDto {
+
+    private String email;
+    private UserRole role;
+    private AccountStatus status;
+    private boolean deleted;
+    private long tokensValidAfter; // Epoch millis, 0 = chưa thu hồi theo user
+}
@@ -2,10 +2,14 @@ package com.example.HealthCare.dto;
 
 import java.util.List;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class DoctorDetailDto {
     
     private String id;
@@ -26,6 +30,8 @@ public class DoctorDetailDto {
 
     @Data
     @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
     public static class CertificateDTO {
         private String year;
         private String title;
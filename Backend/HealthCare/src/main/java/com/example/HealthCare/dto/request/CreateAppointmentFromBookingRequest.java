@@ -29,6 +29,9 @@ public class CreateAppointmentFromBookingRequest {
     private String currentMedication;
     private String formatType;
 
+    // Optional slot hold taken before redirecting to VNPay (see POST /appointments/holds)
+    private UUID holdId;
+
     // Optional payment fields (if provided, server will persist a Payment record)
     private java.math.BigDecimal totalAmount;
     private String method; // e.g., "vnpay"
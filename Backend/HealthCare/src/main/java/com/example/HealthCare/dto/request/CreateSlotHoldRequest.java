@@ -0,0 +1,27 @@
+package com.example.HealthCare.dto.request;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateSlotHoldRequest {
+    @NotNull(message = "Doctor ID is required")
+    private UUID doctorId;
+    
+    @NotNull(message = "Scheduled start time is required")
+    private OffsetDateTime scheduledStart;
+    
+    @NotNull(message = "Scheduled end time is required")
+    private OffsetDateTime scheduledEnd;
+    
+    private String formatType;
+}
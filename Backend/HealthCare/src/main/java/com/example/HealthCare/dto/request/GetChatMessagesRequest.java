@@ -11,4 +11,13 @@ public class GetChatMessagesRequest {
 
 	@NotBlank(message = "receiverId is required")
 	private String receiverId;
+
+	/** Cursor: chỉ lấy tin nhắn cũ hơn message id này (cuộn lên xem lịch sử). */
+	private String before;
+
+	/** Cursor: chỉ lấy tin nhắn mới hơn message id này (delta từ tin đã xem cuối). */
+	private String after;
+
+	/** Số tin nhắn tối đa mỗi trang; mặc định 50, tối đa 200. */
+	private Integer limit;
 }
@@ -0,0 +1,25 @@
+package com.example.HealthCare.dto.response;
+
+import java.time.LocalDate;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailableSlotsRangeResponse {
+    private List<DaySlots> days;
+    
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DaySlots {
+        private LocalDate date;
+        private List<AvailableSlotsResponse.TimeSlot> availableSlots;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.HealthCare.dto.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheKeyPageResponse {
+    private List<String> keys;
+    private String nextCursor; // Truyền lại ở request sau; "0" = đã duyệt hết
+    private boolean finished;
+}
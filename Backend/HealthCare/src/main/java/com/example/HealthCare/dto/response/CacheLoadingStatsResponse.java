@@ -0,0 +1,22 @@
+package com.example.HealthCare.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheLoadingStatsResponse {
+    private String cacheName;
+    private long loads; // Số lần loader thực sự chạy
+    private long coalesced; // Miss chờ kết quả của thread đang nạp thay vì tự nạp
+    private long staleServed; // Trả giá trị đã hết hạn trong lúc thread khác nạp lại
+    private long earlyRefreshes;
+    private long lockWaits; // Phải chờ node khác đang giữ lock nạp
+    private long loadErrors;
+    private long inFlight;
+    private long staleTtlSeconds;
+}
@@ -0,0 +1,34 @@
+package com.example.HealthCare.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsResponse {
+    private String cacheName;
+    private long size; // Số entry ước lượng (-1 nếu không biết)
+    private long since; // Epoch millis bắt đầu đếm (lúc cache được dùng lần đầu trên node này)
+    private long hits;
+    private long misses;
+    private double hitRatio;
+    private long loads;
+    private long loadErrors;
+    private double loadAvgMillis;
+    private double loadP50Millis;
+    private double loadP95Millis;
+    private double loadP99Millis;
+    private long puts;
+    private long evictions; // Evict/clear chủ động (không tính hết hạn)
+    private int windowMinutes;
+    private long windowHits;
+    private long windowMisses;
+    private double windowHitRatio;
+    private long windowLoads;
+    private double windowLoadAvgMillis;
+    private long windowEvictions;
+}
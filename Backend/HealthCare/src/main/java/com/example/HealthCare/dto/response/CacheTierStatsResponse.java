@@ -0,0 +1,23 @@
+package com.example.HealthCare.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheTierStatsResponse {
+    private String cacheName;
+    private long l1Size; // Số entry L1 hiện có (ước lượng)
+    private long l1MaxEntries;
+    private long l1TtlSeconds;
+    private long l1Hits;
+    private long l1Misses;
+    private long l2Hits;
+    private long l2Misses;
+    private double l1HitRatio;
+    private double overallHitRatio; // (L1 hit + L2 hit) / tổng số lần đọc
+}
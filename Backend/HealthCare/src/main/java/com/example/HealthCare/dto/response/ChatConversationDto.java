@@ -0,0 +1,25 @@
+package com.example.HealthCare.dto.response;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Một dòng trong inbox chat: người kia, tin nhắn cuối và số tin chưa đọc. */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatConversationDto {
+	private UUID threadId;
+	private ChatPeerDto peer;
+	private UUID lastMessageId;
+	private String lastMessagePreview;
+	private String lastMessageType;
+	private UUID lastMessageSenderId;
+	private OffsetDateTime lastMessageAt;
+	private long unreadCount;
+}
@@ -0,0 +1,23 @@
+package com.example.HealthCare.dto.response;
+
+import java.util.List;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessagePageDto {
+	private List<ChatMessageGroupDto> groups;
+	/** Còn tin nhắn ngoài trang này theo hướng đang đọc (cũ hơn với before/trang mới nhất, mới hơn với after). */
+	private boolean hasMore;
+	/** Dùng làm "before" để tải trang cũ hơn. */
+	private UUID oldestMessageId;
+	/** Dùng làm "after" cho lần lấy delta tiếp theo. */
+	private UUID newestMessageId;
+}
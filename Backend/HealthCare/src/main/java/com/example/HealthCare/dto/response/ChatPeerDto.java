@@ -1,5 +1,6 @@
 package com.example.HealthCare.dto.response;
 
+import java.time.OffsetDateTime;
 import java.util.UUID;
 
 import lombok.AllArgsConstructor;
@@ -19,4 +20,8 @@ public class ChatPeerDto {
 	private String avatarUrl;
 	/** Ví dụ ADMIN, DOCTOR — để client highlight (vd chat bệnh nhân ↔ admin). */
 	private String role;
+	/** Đang có kết nối realtime (PresenceService). */
+	private Boolean online;
+	/** Lần cuối online; null nếu đang online hoặc chưa từng kết nối. */
+	private OffsetDateTime lastSeenAt;
 }
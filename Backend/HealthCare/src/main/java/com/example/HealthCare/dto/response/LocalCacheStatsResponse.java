@@ -0,0 +1,23 @@
+package com.example.HealthCare.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocalCacheStatsResponse {
+    private String cacheName;
+    private long size; // Số entry (ước lượng)
+    private long weightedSize;
+    private long maxWeight;
+    private long ttlSeconds;
+    private long hits;
+    private long misses;
+    private double hitRatio;
+    private long evictions; // Bị loại do vượt maxWeight (không tính hết hạn)
+    private long evictionWeight;
+}
@@ -0,0 +1,26 @@
+package com.example.HealthCare.dto.response;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationDispatchStatusResponse {
+    private UUID notificationId;
+    private String status; // QUEUED, DISPATCHING, COMPLETED, FAILED
+    private int recipients; // Số notification_user đã tạo
+    private int onlineRecipients; // Số người nhận đang online (được push qua WebSocket)
+    private int pushed;
+    private int failed;
+    private OffsetDateTime queuedAt;
+    private OffsetDateTime startedAt;
+    private OffsetDateTime finishedAt;
+    private String error;
+}
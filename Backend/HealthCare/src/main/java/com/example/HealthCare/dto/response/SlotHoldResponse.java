@@ -0,0 +1,21 @@
+package com.example.HealthCare.dto.response;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SlotHoldResponse {
+    private UUID holdId; // ID của appointment đang ở trạng thái giữ chỗ
+    private UUID doctorId;
+    private OffsetDateTime scheduledStart;
+    private OffsetDateTime scheduledEnd;
+    private OffsetDateTime holdingUntil; // Hết hạn nếu chưa thanh toán trước thời điểm này
+}
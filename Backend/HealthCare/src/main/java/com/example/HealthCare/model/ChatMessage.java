@@ -19,6 +19,7 @@ import lombok.experimental.SuperBuilder;
 @Entity
 @Table(name = "chat_messages", indexes = {
 		@Index(name = "idx_chat_message_chat_id", columnList = "chat_id"),
+		@Index(name = "idx_chat_message_chat_created_id", columnList = "chat_id, created_at, id"),
 		@Index(name = "idx_chat_message_creator_id", columnList = "creator_id")
 })
 @Data
@@ -1,5 +1,6 @@
 package com.example.HealthCare.model;
 
+import java.time.OffsetDateTime;
 import java.util.UUID;
 
 import jakarta.persistence.Column;
@@ -32,4 +33,11 @@ public class ChatThread extends BaseEntity {
 
 	@Column(name = "last_message_id")
 	private UUID lastMessageId;
+
+	// Read cursor của từng người: tin nhắn của người kia tạo sau mốc này là chưa đọc
+	@Column(name = "first_user_last_read_at")
+	private OffsetDateTime firstUserLastReadAt;
+
+	@Column(name = "second_user_last_read_at")
+	private OffsetDateTime secondUserLastReadAt;
 }
@@ -58,6 +58,22 @@ public class DoctorPayroll extends BaseEntity {
     @Column(name = "settled_at")
     private OffsetDateTime settledAt;
 
+    // Snapshot của lần tính lương gần nhất (xem PayrollServiceImpl)
+    @Column(name = "completed_appointments")
+    @lombok.Builder.Default
+    private Integer completedAppointments = 0;
+
+    @Column(name = "refund_amount")
+    @lombok.Builder.Default
+    private BigDecimal refundAmount = BigDecimal.ZERO;
+
+    @Column(name = "computed_at")
+    private OffsetDateTime computedAt;
+
+    // Số lịch hẹn của kỳ lúc tính snapshot (V8 migration)
+    @Column(name = "source_appointments")
+    private Long sourceAppointments;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "doctor_id", insertable = false, updatable = false)
     private UserAccount doctor;
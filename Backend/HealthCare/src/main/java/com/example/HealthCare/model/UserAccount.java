@@ -85,6 +85,10 @@ public class UserAccount extends BaseEntity {
     @Column(name = "deleted_at")
     private OffsetDateTime deletedAt;
 
+    // Token cấp (iat) trước mốc này bị từ chối: đăng xuất mọi nơi, khóa/xóa tài khoản
+    @Column(name = "tokens_valid_after")
+    private OffsetDateTime tokensValidAfter;
+
     @OneToOne(mappedBy = "userAccount", fetch = FetchType.LAZY)
     private DoctorProfile doctorProfile;
 }
@@ -4,20 +4,26 @@ import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.HealthCare.enums.AppointmentStatus;
+import com.example.HealthCare.enums.PaymentStatus;
 import com.example.HealthCare.model.Appointment;
 import com.example.HealthCare.model.MedicalReportMedication;
 import com.example.HealthCare.model.UserAccount;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, UUID> {
-    Long countByCreatedAtBetween(OffsetDateTime fromDate, OffsetDateTime toDate);
-    Long countByStatusAndCreatedAtBetween(AppointmentStatus status, OffsetDateTime fromDate, OffsetDateTime toDate);
+    // Slot hold (holding_until != null) là dòng SCHEDULED chưa thanh toán: mọi query hiển thị / đếm lịch hẹn
+    // thật đều lọc holdingUntil IS NULL; chỉ kiểm tra trùng lịch và index slot trống mới tính cả hold
+    Long countByCreatedAtBetweenAndHoldingUntilIsNull(OffsetDateTime fromDate, OffsetDateTime toDate);
+    Long countByStatusAndCreatedAtBetweenAndHoldingUntilIsNull(AppointmentStatus status, OffsetDateTime fromDate, OffsetDateTime toDate);
     List<Appointment> findByStatus(AppointmentStatus status);
     
     // Find appointments by patient ID within date range
@@ -27,6 +33,7 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
            "WHERE a.patientId = :userId " +
            "AND a.scheduledStart >= :startDate " +
            "AND a.scheduledStart <= :endDate " +
+           "AND a.holdingUntil IS NULL " +
            "ORDER BY a.scheduledStart ASC")
     List<Appointment> findByPatientIdAndDateRange(
         @Param("userId") UUID userId,
@@ -41,6 +48,7 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
            "WHERE a.doctorId = :userId " +
            "AND a.scheduledStart >= :startDate " +
            "AND a.scheduledStart <= :endDate " +
+           "AND a.holdingUntil IS NULL " +
            "ORDER BY a.scheduledStart ASC")
     List<Appointment> findByDoctorIdAndDateRange(
         @Param("userId") UUID userId,
@@ -145,10 +153,120 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
         @Param("canceledStatus") AppointmentStatus canceledStatus
     );
 
+    // Non-canceled appointments of a doctor in a time window, without relations (availability index)
+    @Query("""
+        SELECT a FROM Appointment a
+        WHERE a.doctorId = :doctorId
+        AND a.status != :canceledStatus
+        AND a.scheduledStart >= :startDate
+        AND a.scheduledStart <= :endDate
+        ORDER BY a.scheduledStart ASC
+        """)
+    List<Appointment> findActiveByDoctorIdAndDateRange(
+        @Param("doctorId") UUID doctorId,
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate,
+        @Param("canceledStatus") AppointmentStatus canceledStatus
+    );
+
+    // Admin appointment list: status filter + ILIKE search on joined names/phone, paged in the database.
+    // status là enum appointment_status dưới DB nên luôn so sánh qua CAST(... AS text).
+    // :pattern là chuỗi LIKE đã escape (xem CanceledAppointmentServiceImpl), NULL = không tìm kiếm.
+    // ILIKE chỉ dùng trên các cột có index pg_trgm (V4); id và status so khớp chính xác khi từ khóa là
+    // UUID / giá trị status (:searchId, :searchStatus, NULL nếu không phải), không ILIKE trên biểu thức CAST.
+    @Query(value = """
+        SELECT a.* FROM appointment a
+        JOIN user_account d ON d.id = a.doctor_id
+        JOIN user_account p ON p.id = a.patient_id
+        WHERE a.holding_until IS NULL
+        AND (CAST(:status AS text) IS NULL OR CAST(a.status AS text) = CAST(:status AS text))
+        AND (CAST(:pattern AS text) IS NULL
+            OR d.full_name ILIKE CAST(:pattern AS text)
+            OR p.full_name ILIKE CAST(:pattern AS text)
+            OR p.phone_number ILIKE CAST(:pattern AS text)
+            OR a.reason ILIKE CAST(:pattern AS text)
+            OR a.id = CAST(:searchId AS uuid)
+            OR CAST(a.status AS text) = CAST(:searchStatus AS text))
+        ORDER BY a.scheduled_start DESC, a.id DESC
+        """,
+        countQuery = """
+        SELECT COUNT(*) FROM appointment a
+        JOIN user_account d ON d.id = a.doctor_id
+        JOIN user_account p ON p.id = a.patient_id
+        WHERE a.holding_until IS NULL
+        AND (CAST(:status AS text) IS NULL OR CAST(a.status AS text) = CAST(:status AS text))
+        AND (CAST(:pattern AS text) IS NULL
+            OR d.full_name ILIKE CAST(:pattern AS text)
+            OR p.full_name ILIKE CAST(:pattern AS text)
+            OR p.phone_number ILIKE CAST(:pattern AS text)
+            OR a.reason ILIKE CAST(:pattern AS text)
+            OR a.id = CAST(:searchId AS uuid)
+            OR CAST(a.status AS text) = CAST(:searchStatus AS text))
+        """,
+        nativeQuery = true)
+    Page<Appointment> searchForAdmin(
+        @Param("status") String status,
+        @Param("pattern") String pattern,
+        @Param("searchId") String searchId,
+        @Param("searchStatus") String searchStatus,
+        Pageable pageable
+    );
+
+    // Payroll: one row per doctor for a period
+    // [doctorId, appointments, completed appointments, paid revenue of completed, refunds of canceled]
+    @Query("""
+        SELECT a.doctorId,
+            COUNT(a),
+            SUM(CASE WHEN a.status = :completedStatus THEN 1 ELSE 0 END),
+            COALESCE(SUM(CASE WHEN a.status = :completedStatus AND p.status = :paidStatus THEN p.totalAmount ELSE 0 END), 0),
+            COALESCE(SUM(CASE WHEN a.status = :canceledStatus AND p.status = :refundedStatus THEN p.totalAmount ELSE 0 END), 0)
+        FROM Appointment a
+        LEFT JOIN Payment p ON p.appointmentId = a.id
+        WHERE a.scheduledStart >= :startDate
+        AND a.scheduledStart < :endDate
+        AND a.holdingUntil IS NULL
+        GROUP BY a.doctorId
+        """)
+    List<Object[]> aggregatePayrollByDoctor(
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate,
+        @Param("completedStatus") AppointmentStatus completedStatus,
+        @Param("canceledStatus") AppointmentStatus canceledStatus,
+        @Param("paidStatus") PaymentStatus paidStatus,
+        @Param("refundedStatus") PaymentStatus refundedStatus
+    );
+
+    // Payroll: latest appointment change in a period, used to detect stale payroll snapshots
+    @Query("""
+        SELECT MAX(a.updatedAt) FROM Appointment a
+        WHERE a.scheduledStart >= :startDate
+        AND a.scheduledStart < :endDate
+        """)
+    OffsetDateTime findLastUpdateByScheduledStartBetween(
+        @Param("startDate") OffsetDateTime startDate,
+        @Param("endDate") OffsetDateTime endDate
+    );
+
+    // Payroll: appointments in a period; catches deletes and reschedules out of the period that MAX(updated_at) misses
+    long countByScheduledStartGreaterThanEqualAndScheduledStartLessThan(OffsetDateTime startDate, OffsetDateTime endDate);
+
+    // Slot holds (holding_until) that expired before payment completed
+    @Query("SELECT DISTINCT a.doctorId FROM Appointment a WHERE a.holdingUntil < :cutoff AND a.status = :status")
+    List<UUID> findDoctorIdsWithExpiredHolds(@Param("cutoff") OffsetDateTime cutoff,
+                                             @Param("status") AppointmentStatus status,
+                                             Pageable pageable);
+
+    @Modifying
+    @Query("DELETE FROM Appointment a WHERE a.doctorId IN :doctorIds AND a.holdingUntil < :cutoff AND a.status = :status")
+    int deleteExpiredHolds(@Param("doctorIds") List<UUID> doctorIds,
+                           @Param("cutoff") OffsetDateTime cutoff,
+                           @Param("status") AppointmentStatus status);
+
     // UC-22: Count unique patients for a doctor in date range
     @Query("SELECT COUNT(DISTINCT a.patientId) FROM Appointment a " +
            "WHERE a.doctorId = :doctorId " +
-           "AND DATE(a.scheduledStart) = DATE(:date)")
+           "AND DATE(a.scheduledStart) = DATE(:date) " +
+           "AND a.holdingUntil IS NULL")
     Long countDistinctPatientsByDoctorIdAndDate(
         @Param("doctorId") UUID doctorId,
         @Param("date") OffsetDateTime date
@@ -158,7 +276,8 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
     @Query("SELECT COUNT(DISTINCT a.patientId) FROM Appointment a " +
            "WHERE a.doctorId = :doctorId " +
            "AND a.scheduledStart >= :startDate " +
-           "AND a.scheduledStart <= :endDate")
+           "AND a.scheduledStart <= :endDate " +
+           "AND a.holdingUntil IS NULL")
     Long countDistinctPatientsByDoctorIdAndDateRange(
         @Param("doctorId") UUID doctorId,
         @Param("startDate") OffsetDateTime startDate,
@@ -211,7 +330,7 @@ public interface AppointmentRepository extends JpaRepository<Appointment, UUID>
         @Param("endDate") OffsetDateTime endDate
     );
 
-    @Query("SELECT DISTINCT a.patientId FROM Appointment a WHERE a.doctorId = :doctorId AND a.patientId IS NOT NULL")
+    @Query("SELECT DISTINCT a.patientId FROM Appointment a WHERE a.doctorId = :doctorId AND a.patientId IS NOT NULL AND a.holdingUntil IS NULL")
     List<UUID> findDistinctPatientIdsByDoctorId(@Param("doctorId") UUID doctorId);
 
 }
@@ -1,9 +1,13 @@
 package com.example.HealthCare.repository;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.HealthCare.model.ChatMessage;
@@ -12,4 +16,19 @@ import com.example.HealthCare.model.ChatMessage;
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
 
 	List<ChatMessage> findByChatIdOrderByCreatedAtAsc(UUID chatId);
+
+	// Keyset paging trên index (chat_id, created_at, id)
+	List<ChatMessage> findByChatIdOrderByCreatedAtDescIdDesc(UUID chatId, Pageable pageable);
+
+	@Query("SELECT m FROM ChatMessage m WHERE m.chatId = :chatId " +
+			"AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+			"ORDER BY m.createdAt DESC, m.id DESC")
+	List<ChatMessage> findBefore(@Param("chatId") UUID chatId, @Param("createdAt") OffsetDateTime createdAt,
+			@Param("id") UUID id, Pageable pageable);
+
+	@Query("SELECT m FROM ChatMessage m WHERE m.chatId = :chatId " +
+			"AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) " +
+			"ORDER BY m.createdAt ASC, m.id ASC")
+	List<ChatMessage> findAfter(@Param("chatId") UUID chatId, @Param("createdAt") OffsetDateTime createdAt,
+			@Param("id") UUID id, Pageable pageable);
 }
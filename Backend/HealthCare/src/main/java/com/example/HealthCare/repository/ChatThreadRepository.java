@@ -1,5 +1,7 @@
 package com.example.HealthCare.repository;
 
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,4 +17,25 @@ public interface ChatThreadRepository extends JpaRepository<ChatThread, UUID> {
 
 	@Query("SELECT c FROM ChatThread c WHERE (c.firstUserId = :a AND c.secondUserId = :b) OR (c.firstUserId = :b AND c.secondUserId = :a)")
 	Optional<ChatThread> findBetweenUsers(@Param("a") UUID a, @Param("b") UUID b);
+
+	/**
+	 * Inbox của một user trong một query: [ChatThread, UserAccount peer, ChatMessage last (nullable), Long unread].
+	 * Unread = tin của người kia tạo sau read cursor của user (cursor NULL thì dùng :never).
+	 */
+	@Query("""
+			SELECT t, peer, m,
+				(SELECT COUNT(x) FROM ChatMessage x
+					WHERE x.chatId = t.id
+					AND x.creatorId <> :userId
+					AND x.createdAt > COALESCE(
+						CASE WHEN t.firstUserId = :userId THEN t.firstUserLastReadAt ELSE t.secondUserLastReadAt END,
+						:never))
+			FROM ChatThread t
+			JOIN UserAccount peer
+				ON peer.id = CASE WHEN t.firstUserId = :userId THEN t.secondUserId ELSE t.firstUserId END
+			LEFT JOIN ChatMessage m ON m.id = t.lastMessageId
+			WHERE (t.firstUserId = :userId OR t.secondUserId = :userId)
+			AND peer.isDeleted = false
+			""")
+	List<Object[]> findInbox(@Param("userId") UUID userId, @Param("never") OffsetDateTime never);
 }
@@ -1,9 +1,15 @@
 package com.example.HealthCare.repository;
 
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.HealthCare.model.DoctorPayroll;
@@ -11,5 +17,39 @@ import com.example.HealthCare.model.DoctorPayroll;
 @Repository
 public interface DoctorPayrollRepository extends JpaRepository<DoctorPayroll, UUID> {
     Optional<DoctorPayroll> findByDoctorIdAndPeriodYearAndPeriodMonth(UUID doctorId, Integer year, Integer month);
+    List<DoctorPayroll> findByPeriodYearAndPeriodMonth(Integer year, Integer month);
+
+    // Ghi snapshot của một bác sĩ; hai lần tính đồng thời cùng kỳ không vi phạm uq_doctor_payroll_doctor_period,
+    // kỳ đã settled giữ nguyên số liệu
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+        INSERT INTO doctor_payroll (id, doctor_id, period_year, period_month, completed_appointments,
+            gross_amount, refund_amount, platform_fee, net_amount, status, computed_at, source_appointments,
+            created_at, updated_at)
+        VALUES (:id, :doctorId, :year, :month, :completedAppointments, :grossAmount, :refundAmount,
+            :platformFee, :netAmount, 'unsettled', :computedAt, :sourceAppointments, now(), now())
+        ON CONFLICT (doctor_id, period_year, period_month) DO UPDATE SET
+            completed_appointments = EXCLUDED.completed_appointments,
+            gross_amount = EXCLUDED.gross_amount,
+            refund_amount = EXCLUDED.refund_amount,
+            platform_fee = EXCLUDED.platform_fee,
+            net_amount = EXCLUDED.net_amount,
+            computed_at = EXCLUDED.computed_at,
+            source_appointments = EXCLUDED.source_appointments,
+            updated_at = now()
+        WHERE CAST(doctor_payroll.status AS text) <> 'settled'
+        """,
+        nativeQuery = true)
+    int upsertSnapshot(@Param("id") UUID id,
+                       @Param("doctorId") UUID doctorId,
+                       @Param("year") int year,
+                       @Param("month") int month,
+                       @Param("completedAppointments") int completedAppointments,
+                       @Param("grossAmount") BigDecimal grossAmount,
+                       @Param("refundAmount") BigDecimal refundAmount,
+                       @Param("platformFee") BigDecimal platformFee,
+                       @Param("netAmount") BigDecimal netAmount,
+                       @Param("computedAt") OffsetDateTime computedAt,
+                       @Param("sourceAppointments") long sourceAppointments);
 }
 
@@ -1,5 +1,6 @@
 package com.example.HealthCare.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -13,6 +14,9 @@ import com.example.HealthCare.model.DoctorProfile;
 @Repository
 public interface DoctorProfileRepository extends JpaRepository<DoctorProfile, UUID> {
     Optional<DoctorProfile> findByUserId(UUID userId);
+
+    // Batch lookup dùng khi map danh sách lịch hẹn (một câu IN thay vì mỗi dòng một query)
+    List<DoctorProfile> findByUserIdIn(Collection<UUID> userIds);
     
     Optional<DoctorProfile> findByPracticeLicenseNo(String practiceLicenseNo);
     
@@ -31,5 +35,9 @@ public interface DoctorProfileRepository extends JpaRepository<DoctorProfile, UU
 
     // Lấy tất cả bác sĩ 
     List<DoctorProfile> findAll();
+
+    // Lấy tất cả bác sĩ kèm user account (build danh bạ bác sĩ trong bộ nhớ)
+    @Query("SELECT d FROM DoctorProfile d LEFT JOIN FETCH d.userAccount")
+    List<DoctorProfile> findAllWithUserAccount();
 }
 
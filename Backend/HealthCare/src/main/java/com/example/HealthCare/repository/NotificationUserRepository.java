@@ -1,10 +1,13 @@
 package com.example.HealthCare.repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -26,6 +29,16 @@ public interface NotificationUserRepository extends JpaRepository<NotificationUs
     @Query("SELECT COUNT(nu) FROM NotificationUser nu WHERE nu.user.id = :userId AND nu.isRead = false")
     Long countUnreadByUserId(@Param("userId") UUID userId);
     
+    // Mark one row read; returns 0 if it was already read (so the unread counter is not decremented twice)
+    @Modifying
+    @Query("UPDATE NotificationUser nu SET nu.isRead = true, nu.readAt = :readAt WHERE nu.id = :id AND nu.isRead = false")
+    int markReadById(@Param("id") UUID id, @Param("readAt") OffsetDateTime readAt);
+
+    // Mark every unread row of a user in one statement; returns the number of rows changed
+    @Modifying
+    @Query("UPDATE NotificationUser nu SET nu.isRead = true, nu.readAt = :readAt WHERE nu.user.id = :userId AND nu.isRead = false")
+    int markAllReadByUserId(@Param("userId") UUID userId, @Param("readAt") OffsetDateTime readAt);
+    
     // Find notification user by notification id and user id
     @Query("SELECT nu FROM NotificationUser nu WHERE nu.notification.id = :notificationId AND nu.user.id = :userId")
     Optional<NotificationUser> findByNotificationIdAndUserId(@Param("notificationId") UUID notificationId, @Param("userId") UUID userId);
@@ -34,7 +47,39 @@ public interface NotificationUserRepository extends JpaRepository<NotificationUs
     @Query("SELECT nu FROM NotificationUser nu JOIN FETCH nu.user WHERE nu.notification.id = :notificationId")
     List<NotificationUser> findByNotificationId(@Param("notificationId") UUID notificationId);
     
-    // Delete all notification users by notification id
-    void deleteByNotificationId(UUID notificationId);
+    // Delete all notification users by notification id (một câu DELETE, không load từng dòng)
+    @Modifying
+    @Query("DELETE FROM NotificationUser nu WHERE nu.notification.id = :notificationId")
+    void deleteByNotificationId(@Param("notificationId") UUID notificationId);
+
+    // Materialize recipients in one statement. role là enum user_role dưới DB nên so sánh qua text.
+    @Modifying
+    @Query(value = """
+            INSERT INTO notification_user (id, notification_id, user_id, is_read, created_at)
+            SELECT gen_random_uuid(), :notificationId, u.id, false, now()
+            FROM user_account u
+            WHERE u.is_deleted = false
+            AND (:allRoles = true OR CAST(u.role AS text) IN (:roles))
+            ON CONFLICT (notification_id, user_id) DO NOTHING
+            """, nativeQuery = true)
+    int insertRecipients(@Param("notificationId") UUID notificationId,
+                         @Param("allRoles") boolean allRoles,
+                         @Param("roles") Collection<String> roles);
+
+    // Recipients of a notification among the given users (fan-out dispatch, one chunk at a time)
+    @Query("SELECT nu FROM NotificationUser nu WHERE nu.notification.id = :notificationId AND nu.user.id IN :userIds")
+    List<NotificationUser> findByNotificationIdAndUserIdIn(@Param("notificationId") UUID notificationId,
+                                                           @Param("userIds") Collection<UUID> userIds);
+
+    // Recipients of a notification (unread counter updates after a broadcast or a recipient change)
+    @Query("SELECT nu.user.id FROM NotificationUser nu WHERE nu.notification.id = :notificationId")
+    List<UUID> findUserIdsByNotificationId(@Param("notificationId") UUID notificationId);
+
+    @Query("SELECT nu.user.id FROM NotificationUser nu WHERE nu.notification.id = :notificationId AND nu.isRead = false")
+    List<UUID> findUnreadUserIdsByNotificationId(@Param("notificationId") UUID notificationId);
+
+    // Unread counts for many users at once: [userId, count]
+    @Query("SELECT nu.user.id, COUNT(nu) FROM NotificationUser nu WHERE nu.user.id IN :userIds AND nu.isRead = false GROUP BY nu.user.id")
+    List<Object[]> countUnreadByUserIds(@Param("userIds") Collection<UUID> userIds);
 }
 
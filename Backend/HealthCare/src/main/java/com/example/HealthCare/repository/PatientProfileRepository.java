@@ -1,5 +1,7 @@
 package com.example.HealthCare.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -11,5 +13,8 @@ import com.example.HealthCare.model.PatientProfile;
 @Repository
 public interface PatientProfileRepository extends JpaRepository<PatientProfile, UUID> {
     Optional<PatientProfile> findByUserId(UUID userId);
+
+    // Batch lookup dùng khi map danh sách lịch hẹn (một câu IN thay vì mỗi dòng một query)
+    List<PatientProfile> findByUserIdIn(Collection<UUID> userIds);
 }
 
@@ -2,6 +2,8 @@ package com.example.HealthCare.repository;
 
 import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -14,7 +16,11 @@ import com.example.HealthCare.model.Payment;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, UUID> {
-    
+
+    List<Payment> findByAppointmentIdIn(Collection<UUID> appointmentIds);
+
+    boolean existsByAppointmentId(UUID appointmentId);
+
     @Query("SELECT COALESCE(SUM(p.totalAmount), 0) FROM Payment p " +
            "WHERE p.status = :status AND p.paymentTime BETWEEN :fromDate AND :toDate")
     BigDecimal sumTotalAmountByStatusAndPaymentTimeBetween(
@@ -48,5 +54,14 @@ public interface PaymentRepository extends JpaRepository<Payment, UUID> {
             @Param("startDate") OffsetDateTime startDate,
             @Param("endDate") OffsetDateTime endDate
     );
-}
 
+    // Payroll: latest payment change for appointments scheduled in a period
+    @Query("SELECT MAX(p.updatedAt) FROM Payment p " +
+           "JOIN p.appointment a " +
+           "WHERE a.scheduledStart >= :startDate " +
+           "AND a.scheduledStart < :endDate")
+    OffsetDateTime findLastUpdateByAppointmentPeriod(
+            @Param("startDate") OffsetDateTime startDate,
+            @Param("endDate") OffsetDateTime endDate
+    );
+}
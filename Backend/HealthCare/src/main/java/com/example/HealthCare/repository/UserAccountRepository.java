@@ -1,12 +1,15 @@
 package com.example.HealthCare.repository;
 
+import java.time.OffsetDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.example.HealthCare.enums.AccountStatus;
@@ -66,6 +69,11 @@ public interface UserAccountRepository extends JpaRepository<UserAccount, UUID>
     
     Long countByIsDeletedFalse();
     
+    // Thu hồi mọi token đã cấp cho user (TokenRevocationService.revokeAllForUser)
+    @Modifying
+    @Query("UPDATE UserAccount u SET u.tokensValidAfter = :at WHERE u.id = :id")
+    int updateTokensValidAfter(@Param("id") UUID id, @Param("at") OffsetDateTime at);
+    
     // Custom queries
     @Query("SELECT u FROM UserAccount u WHERE u.isDeleted = false AND " +
            "(LOWER(u.fullName) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
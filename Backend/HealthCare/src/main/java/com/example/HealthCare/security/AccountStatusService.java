@@ -0,0 +1,39 @@
+package com.example.HealthCare.security;
+
+import java.util.UUID;
+
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import com.example.HealthCare.dto.AccountStatusDto;
+import com.example.HealthCare.repository.UserAccountRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Trạng thái tài khoản cho JwtAuthenticationFilter. Entry gắn tag user:&lt;id&gt; (CacheTags) nên mọi thao tác
+ * đổi user (khóa, xóa, đổi email/role...) đã gọi TaggedCacheInvalidator sẽ bỏ entry sau khi commit,
+ * trên mọi node (TwoTierCache phát invalidation qua Redis).
+ */
+@Service
+@RequiredArgsConstructor
+public class AccountStatusService {
+
+	private final UserAccountRepository userAccountRepository;
+
+	/** null nếu không có user với id này. */
+	@Cacheable(value = "accountStatus", key = "#userId", sync = true)
+	public AccountStatusDto getAccountStatus(UUID userId) {
+		return userAccountRepository.findById(userId)
+				.map(userAccount -> AccountStatusDto.builder()
+						.email(userAccount.getEmail())
+						.role(userAccount.getRole())
+						.status(userAccount.getStatus())
+						.deleted(Boolean.TRUE.equals(userAccount.getIsDeleted()))
+						.tokensValidAfter(userAccount.getTokensValidAfter() != null
+								? userAccount.getTokensValidAfter().toInstant().toEpochMilli()
+								: 0)
+						.build())
+				.orElse(null);
+	}
+}
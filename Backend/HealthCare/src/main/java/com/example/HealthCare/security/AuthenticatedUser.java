@@ -0,0 +1,49 @@
+package com.example.HealthCare.security;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Principal dựng từ JWT đã xác thực (TokenAuthenticationService), dùng chung cho HTTP và phiên STOMP:
+ * username = email như trước, kèm userId để code realtime không phải tra DB theo email.
+ */
+public class AuthenticatedUser implements UserDetails {
+
+	private final UUID userId;
+	private final String email;
+	private final List<GrantedAuthority> authorities;
+
+	public AuthenticatedUser(UUID userId, String email, List<GrantedAuthority> authorities) {
+		this.userId = userId;
+		this.email = email;
+		this.authorities = List.copyOf(authorities);
+	}
+
+	public UUID getUserId() {
+		return userId;
+	}
+
+	@Override
+	public String getUsername() {
+		return email;
+	}
+
+	@Override
+	public String getPassword() {
+		return "";
+	}
+
+	@Override
+	public Collection<? extends GrantedAuthority> getAuthorities() {
+		return authorities;
+	}
+
+	@Override
+	public String toString() {
+		return email;
+	}
+}
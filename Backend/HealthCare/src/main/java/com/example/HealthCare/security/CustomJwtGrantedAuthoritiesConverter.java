@@ -3,6 +3,7 @@ package com.example.HealthCare.security;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.core.GrantedAuthority;
@@ -14,9 +15,14 @@ public class CustomJwtGrantedAuthoritiesConverter implements Converter<Jwt, Coll
 
     @Override
     public Collection<GrantedAuthority> convert(Jwt jwt) {
+        return fromClaims(jwt.getClaims());
+    }
+
+    /** ROLE_&lt;role&gt; cho mỗi phần tử claim "roles" và một authority cho mỗi phần tử claim "privileges". */
+    public static List<GrantedAuthority> fromClaims(Map<String, Object> claims) {
         List<GrantedAuthority> authorities = new ArrayList<>();
 
-        Object rolesObj = jwt.getClaims().get("roles");
+        Object rolesObj = claims.get("roles");
         if (rolesObj instanceof List<?> roles) {
             for (Object role : roles) {
                 if (role instanceof String roleName && !roleName.isBlank()) {
@@ -25,7 +31,7 @@ public class CustomJwtGrantedAuthoritiesConverter implements Converter<Jwt, Coll
             }
         }
 
-        Object privilegesObj = jwt.getClaims().get("privileges");
+        Object privilegesObj = claims.get("privileges");
         if (privilegesObj instanceof List<?> privileges) {
             for (Object p : privileges) {
                 if (p instanceof String priv && !priv.isBlank()) {
@@ -5,34 +5,32 @@ import java.io.IOException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.example.HealthCare.model.UserAccount;
-import com.example.HealthCare.repository.UserAccountRepository;
-
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
+/**
+ * Xác thực Bearer token qua TokenAuthenticationService (dùng chung với STOMP CONNECT): token đã xác thực
+ * được nhớ ngắn hạn trong bộ nhớ, trạng thái tài khoản và thu hồi kiểm tra qua cache - trường hợp thường
+ * không đọc DB. Principal là AuthenticatedUser (username = email, kèm userId).
+ *
+ * Request có Bearer token đã qua filter này được đánh dấu TOKEN_CHECKED_ATTRIBUTE để resource server
+ * (SecurityConfig.bearerTokenResolver) không parse lại và không chấp nhận token filter đã từ chối.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-	private final JwtUtil jwtUtil;
-	private final UserAccountRepository userAccountRepository;
-	private final UserDetailsService userDetailsService;
-	private final TokenBlacklistService tokenBlacklistService;
+	public static final String TOKEN_CHECKED_ATTRIBUTE = JwtAuthenticationFilter.class.getName() + ".TOKEN_CHECKED";
+
+	private final TokenAuthenticationService tokenAuthenticationService;
 
-	public JwtAuthenticationFilter(JwtUtil jwtUtil, UserAccountRepository userAccountRepository, 
-								  UserDetailsService userDetailsService, TokenBlacklistService tokenBlacklistService) {
-		this.jwtUtil = jwtUtil;
-		this.userAccountRepository = userAccountRepository;
-		this.userDetailsService = userDetailsService;
-		this.tokenBlacklistService = tokenBlacklistService;
+	public JwtAuthenticationFilter(TokenAuthenticationService tokenAuthenticationService) {
+		this.tokenAuthenticationService = tokenAuthenticationService;
 	}
 
 	@Override
@@ -43,19 +41,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 			filterChain.doFilter(request, response);
 			return;
 		}
+		request.setAttribute(TOKEN_CHECKED_ATTRIBUTE, Boolean.TRUE);
 		final String token = header.substring(7);
-		if (tokenBlacklistService.isBlacklisted(token)) {
-			filterChain.doFilter(request, response);
-			return;
-		}
 		try {
-			String email = jwtUtil.extractEmail(token);
-			if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-				UserAccount userAccount = userAccountRepository.findByEmailAndIsDeletedFalse(email).orElse(null);
-				if (userAccount != null && jwtUtil.isTokenValid(token, userAccount)) {
-					UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-					UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-							userDetails, null, userDetails.getAuthorities());
+			if (SecurityContextHolder.getContext().getAuthentication() == null) {
+				UsernamePasswordAuthenticationToken authentication = tokenAuthenticationService.authenticate(token);
+				if (authentication != null) {
 					authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 					SecurityContextHolder.getContext().setAuthentication(authentication);
 				}
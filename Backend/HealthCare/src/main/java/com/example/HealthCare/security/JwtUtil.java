@@ -3,6 +3,7 @@ package com.example.HealthCare.security;
 import java.security.Key;
 import java.util.Date;
 import java.util.List;
+import java.util.UUID;
 
 import javax.crypto.spec.SecretKeySpec;
 
@@ -11,7 +12,10 @@ import org.springframework.stereotype.Component;
 
 import com.example.HealthCare.model.UserAccount;
 
+import jakarta.annotation.PostConstruct;
+
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -28,9 +32,19 @@ public class JwtUtil {
 	@Value("${security.jwt.refresh-expiration-ms:604800000}")
 	private long refreshExpirationMs;
 
-	private Key getSigningKey() {
+	// Key và parser dựng một lần (parser của jjwt immutable, dùng chung giữa các thread)
+	private Key signingKey;
+	private JwtParser parser;
+
+	@PostConstruct
+	void init() {
 		byte[] keyBytes = Decoders.BASE64.decode(secret);
-		return new SecretKeySpec(keyBytes, SignatureAlgorithm.HS256.getJcaName());
+		signingKey = new SecretKeySpec(keyBytes, SignatureAlgorithm.HS256.getJcaName());
+		parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+	}
+
+	private Key getSigningKey() {
+		return signingKey;
 	}
 
 	public String generateToken(UserAccount userAccount) {
@@ -51,6 +65,7 @@ public class JwtUtil {
 			.claim("roles", roles)
 			.claim("privileges", privileges)
 			.claim("type", "access")
+			.setId(UUID.randomUUID().toString())
 			.setIssuedAt(now)
 			.setExpiration(expiry)
 			.signWith(getSigningKey())
@@ -105,6 +120,7 @@ public class JwtUtil {
 			.setSubject(userAccount.getEmail())
 			.claim("userId", userAccount.getId().toString())
 			.claim("type", "refresh")
+			.setId(UUID.randomUUID().toString())
 			.setIssuedAt(now)
 			.setExpiration(expiry)
 			.signWith(getSigningKey())
@@ -125,19 +141,31 @@ public class JwtUtil {
 	}
 
 	public boolean isTokenValid(String token, UserAccount userAccount) {
-		final String email = extractEmail(token);
-		return email.equals(userAccount.getEmail()) && !isTokenExpired(token);
+		Claims claims = getAllClaims(token);
+		return claims.getSubject().equals(userAccount.getEmail()) && !isExpired(claims);
 	}
 
 	public boolean isRefreshToken(String token) {
-		return "refresh".equals(getAllClaims(token).get("type", String.class));
+		return isRefreshToken(getAllClaims(token));
+	}
+
+	public boolean isRefreshToken(Claims claims) {
+		return "refresh".equals(claims.get("type", String.class));
+	}
+
+	/**
+	 * Parse và kiểm tra chữ ký + hạn của token đúng một lần; ném JwtException nếu không hợp lệ.
+	 * Dùng khi cần nhiều claim của cùng một token (subject, userId, roles...).
+	 */
+	public Claims parseClaims(String token) {
+		return getAllClaims(token);
 	}
 
-	private boolean isTokenExpired(String token) {
-		return getAllClaims(token).getExpiration().before(new Date());
+	private boolean isExpired(Claims claims) {
+		return claims.getExpiration().before(new Date());
 	}
 
 	private Claims getAllClaims(String token) {
-		return Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token).getBody();
+		return parser.parseClaimsJws(token).getBody();
 	}
 }
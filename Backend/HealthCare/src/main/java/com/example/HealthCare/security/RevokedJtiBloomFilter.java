@@ -0,0 +1,79 @@
+package com.example.HealthCare.security;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter của các jti đã thu hồi: mightContain = false thì chắc chắn chưa thu hồi (đường nhanh của
+ * mỗi request, chỉ đọc bộ nhớ); true thì phải hỏi lại nguồn chính xác (Redis/map local) vì có thể là
+ * dương tính giả. Kích thước cố định theo expectedEntries và falsePositiveRate; không xóa được phần tử
+ * nên TokenRevocationService dựng lại filter định kỳ từ các jti còn hạn.
+ *
+ * Thread-safe: bit được set bằng CAS trên AtomicLongArray.
+ */
+class RevokedJtiBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    RevokedJtiBloomFilter(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        // m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long bits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, bits);
+        this.words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * Math.log(2)));
+    }
+
+    void put(String jti) {
+        long hash1 = hash(jti, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(jti, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+        }
+    }
+
+    boolean mightContain(String jti) {
+        long hash1 = hash(jti, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(jti, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long getBitCount() {
+        return bitCount;
+    }
+
+    int getHashCount() {
+        return hashCount;
+    }
+
+    // FNV-1a 64 bit với seed khác nhau, trộn thêm bước cuối của SplitMix64 cho bit thấp phân tán đều
+    private static long hash(String value, long seed) {
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 30;
+        hash *= 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 27;
+        hash *= 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.HealthCare.security;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import com.example.HealthCare.dto.AccountStatusDto;
+import com.example.HealthCare.enums.AccountStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Xác thực access token cho cả HTTP (JwtAuthenticationFilter) và STOMP CONNECT (AuthChannelInterceptor).
+ *
+ * Token được parse + kiểm tra chữ ký một lần rồi nhớ trong bộ nhớ principal-cache-seconds (theo chính chuỗi
+ * token: muốn có jti cũng phải parse), nên reconnect liên tục của SockJS sau deploy không parse lại.
+ * Mỗi lần dùng, kể cả khi lấy từ cache, vẫn kiểm tra hạn token, thu hồi (Bloom filter của
+ * TokenRevocationService) và trạng thái tài khoản (cache accountStatus, evict theo tag) - các bước đều đọc
+ * bộ nhớ, không chạm DB trong trường hợp thường.
+ *
+ * Token bị từ chối khi: đã thu hồi (jti hoặc mốc tokensValidAfter của user), là refresh token, user không
+ * còn / đã xóa / bị khóa (INACTIVE), hoặc email trong token khác email hiện tại. Role đã đổi so với token
+ * thì authority lấy theo role hiện tại.
+ */
+@Service
+public class TokenAuthenticationService {
+
+	private final JwtUtil jwtUtil;
+	private final AccountStatusService accountStatusService;
+	private final TokenRevocationService tokenRevocationService;
+
+	@Value("${security.token.principal-cache-seconds:60}")
+	private long principalCacheSeconds;
+
+	@Value("${security.token.principal-cache-max-entries:10000}")
+	private long principalCacheMaxEntries;
+
+	private Cache<String, VerifiedToken> verifiedTokens;
+
+	public TokenAuthenticationService(JwtUtil jwtUtil, AccountStatusService accountStatusService,
+									  TokenRevocationService tokenRevocationService) {
+		this.jwtUtil = jwtUtil;
+		this.accountStatusService = accountStatusService;
+		this.tokenRevocationService = tokenRevocationService;
+	}
+
+	@PostConstruct
+	void init() {
+		verifiedTokens = Caffeine.newBuilder()
+				.maximumSize(principalCacheMaxEntries)
+				.expireAfterWrite(Duration.ofSeconds(principalCacheSeconds))
+				.build();
+	}
+
+	/** Authentication (principal AuthenticatedUser) của access token, hoặc null nếu token không dùng được. */
+	public UsernamePasswordAuthenticationToken authenticate(String token) {
+		if (token == null || token.isBlank()) {
+			return null;
+		}
+		VerifiedToken verified = verifiedTokens.getIfPresent(token);
+		if (verified == null) {
+			verified = verify(token);
+			if (verified == null) {
+				return null;
+			}
+			verifiedTokens.put(token, verified);
+		}
+		if (verified.expiresAt() <= System.currentTimeMillis()) {
+			verifiedTokens.invalidate(token);
+			return null;
+		}
+
+		AccountStatusDto account = accountStatusService.getAccountStatus(verified.user().getUserId());
+		if (account == null || account.isDeleted() || account.getStatus() == AccountStatus.INACTIVE
+				|| !verified.user().getUsername().equals(account.getEmail())
+				|| tokenRevocationService.isRevoked(verified.jti(), verified.issuedAt(), account.getTokensValidAfter())) {
+			return null;
+		}
+
+		AuthenticatedUser user = verified.user();
+		if (account.getRole() != null && !List.of(account.getRole().name()).equals(verified.roles())) {
+			user = new AuthenticatedUser(user.getUserId(), user.getUsername(),
+					CustomJwtGrantedAuthoritiesConverter.fromClaims(Map.of(
+							"roles", List.of(account.getRole().name()),
+							"privileges", jwtUtil.getPrivilegesByRolePublic(account.getRole()))));
+		}
+		return new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+	}
+
+	/** Parse + kiểm tra chữ ký/hạn; null nếu token sai, hết hạn, là refresh token hoặc thiếu claim. */
+	private VerifiedToken verify(String token) {
+		Claims claims;
+		try {
+			claims = jwtUtil.parseClaims(token);
+		} catch (Exception e) {
+			return null;
+		}
+		String email = claims.getSubject();
+		String userId = claims.get("userId", String.class);
+		if (email == null || userId == null || jwtUtil.isRefreshToken(claims) || claims.getExpiration() == null) {
+			return null;
+		}
+		UUID id;
+		try {
+			id = UUID.fromString(userId);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		List<GrantedAuthority> authorities = CustomJwtGrantedAuthoritiesConverter.fromClaims(claims);
+		Object roles = claims.get("roles");
+		return new VerifiedToken(
+				new AuthenticatedUser(id, email, authorities),
+				roles instanceof List<?> list ? list : List.of(),
+				TokenRevocationService.jtiOf(token, claims),
+				claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0,
+				claims.getExpiration().getTime());
+	}
+
+	private record VerifiedToken(AuthenticatedUser user, List<?> roles, String jti, long issuedAt, long expiresAt) {
+	}
+}
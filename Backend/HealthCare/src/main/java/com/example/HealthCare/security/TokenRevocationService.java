@@ -0,0 +1,288 @@
+package com.example.HealthCare.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.HealthCare.config.cache.CacheTags;
+import com.example.HealthCare.repository.UserAccountRepository;
+import com.example.HealthCare.service.TaggedCacheInvalidator;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Thu hồi token theo hai cách:
+ *
+ * - Từng token (logout): jti của token được ghi vào sorted set "healthcare:revoked-jtis" (score = hạn của
+ *   token, tự dọn khi hết hạn) và phát qua pub/sub; mỗi node giữ một RevokedJtiBloomFilter trong bộ nhớ.
+ *   Kiểm tra mỗi request chỉ đọc Bloom filter; chỉ khi filter báo "có thể" mới hỏi Redis (ZSCORE) để loại
+ *   dương tính giả. Không có Redis thì nguồn chính xác là map local (một node).
+ * - Cả user ("đăng xuất mọi nơi", khóa/xóa tài khoản): cột user_account.tokens_valid_after, token có iat
+ *   trước mốc này bị từ chối. Mốc nằm trong AccountStatusDto (cache accountStatus, evict theo tag user)
+ *   nên không tốn thêm truy vấn; thu hồi là một lệnh UPDATE.
+ *
+ * Token cũ chưa có claim jti dùng SHA-256 của token làm jti.
+ * Redis lỗi lúc logout: jti vẫn bị chặn trên node này và được xếp hàng, ghi lại vào Redis + phát pub/sub
+ * mỗi security.revocation.retry-ms tới khi thành công; trong khoảng đó node khác chưa biết token bị thu hồi.
+ * Bloom filter được dựng lại mỗi bloom.rebuild-ms từ các jti còn hạn để kích thước không tăng mãi.
+ */
+@Component
+@Slf4j
+public class TokenRevocationService implements MessageListener {
+
+	public static final String REVOCATION_CHANNEL = "healthcare:token-revocations";
+	private static final String REVOKED_KEY = "healthcare:revoked-jtis";
+
+	private final JwtUtil jwtUtil;
+	private final UserAccountRepository userAccountRepository;
+	private final TaggedCacheInvalidator taggedCacheInvalidator;
+
+	@Autowired(required = false)
+	private RedisTemplate<String, Object> redisTemplate;
+
+	@Autowired(required = false)
+	private RedisMessageListenerContainer listenerContainer;
+
+	@Value("${security.revocation.bloom.expected-revocations:100000}")
+	private long expectedRevocations;
+
+	@Value("${security.revocation.bloom.false-positive-rate:0.001}")
+	private double falsePositiveRate;
+
+	@Value("${security.jwt.refresh-expiration-ms:604800000}")
+	private long refreshExpirationMs;
+
+	private StringRedisTemplate revocationStore;
+
+	private volatile RevokedJtiBloomFilter bloomFilter;
+	// Filter đang được dựng lại: jti thu hồi trong lúc dựng được ghi vào cả hai.
+	// Ghi jti và đổi filter (bắt đầu dựng / publish) cùng giữ filterLock để không jti nào chỉ rơi vào filter cũ
+	private RevokedJtiBloomFilter rebuilding;
+	private final Object filterLock = new Object();
+
+	// Nguồn chính xác khi không có Redis: jti -> hạn token (epoch millis)
+	private final Map<String, Long> localRevoked = new ConcurrentHashMap<>();
+	// jti chưa ghi được vào Redis (Redis lỗi lúc thu hồi): jti -> hạn token, ghi lại bởi retryPendingRevocations
+	private final Map<String, Long> pendingRevocations = new ConcurrentHashMap<>();
+
+	public TokenRevocationService(JwtUtil jwtUtil, UserAccountRepository userAccountRepository,
+								  TaggedCacheInvalidator taggedCacheInvalidator) {
+		this.jwtUtil = jwtUtil;
+		this.userAccountRepository = userAccountRepository;
+		this.taggedCacheInvalidator = taggedCacheInvalidator;
+	}
+
+	@PostConstruct
+	void init() {
+		if (redisTemplate != null && redisTemplate.getConnectionFactory() != null) {
+			revocationStore = new StringRedisTemplate(redisTemplate.getConnectionFactory());
+			if (listenerContainer != null) {
+				listenerContainer.addMessageListener(this, new ChannelTopic(REVOCATION_CHANNEL));
+			}
+		}
+		rebuildBloomFilter();
+	}
+
+	/** Thu hồi một token (access hoặc refresh). Token đã hết hạn hoặc không hợp lệ thì bỏ qua. */
+	public void revoke(String token) {
+		if (token == null || token.isBlank()) {
+			return;
+		}
+		Claims claims;
+		try {
+			claims = jwtUtil.parseClaims(token);
+		} catch (ExpiredJwtException e) {
+			return;
+		}
+		String jti = jtiOf(token, claims);
+		long expiresAt = claims.getExpiration() != null
+				? claims.getExpiration().getTime()
+				: System.currentTimeMillis() + refreshExpirationMs;
+
+		// Ghi vào nguồn chính xác trước filter: lần dựng lại bắt đầu sau khi filter cũ nhận jti sẽ đọc được nó
+		if (revocationStore == null) {
+			localRevoked.put(jti, expiresAt);
+			addToBloomFilter(jti);
+			return;
+		}
+		try {
+			revocationStore.opsForZSet().add(REVOKED_KEY, jti, expiresAt);
+			addToBloomFilter(jti);
+			revocationStore.convertAndSend(REVOCATION_CHANNEL, jti);
+		} catch (Exception e) {
+			// Vẫn chặn trên node này; node khác chỉ biết sau khi retryPendingRevocations ghi được jti vào Redis
+			localRevoked.put(jti, expiresAt);
+			addToBloomFilter(jti);
+			pendingRevocations.put(jti, expiresAt);
+			log.error("Failed to publish token revocation, queued for retry: {}", e.getMessage());
+		}
+	}
+
+	/** Ghi lại vào Redis và phát cho node khác các jti thu hồi lúc Redis lỗi; dừng ở lỗi đầu tiên, lần sau thử tiếp. */
+	@Scheduled(fixedDelayString = "${security.revocation.retry-ms:5000}")
+	public void retryPendingRevocations() {
+		if (revocationStore == null || pendingRevocations.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		int written = 0;
+		for (Map.Entry<String, Long> entry : pendingRevocations.entrySet()) {
+			String jti = entry.getKey();
+			long expiresAt = entry.getValue();
+			if (expiresAt <= now) {
+				pendingRevocations.remove(jti, expiresAt);
+				continue;
+			}
+			try {
+				revocationStore.opsForZSet().add(REVOKED_KEY, jti, expiresAt);
+				revocationStore.convertAndSend(REVOCATION_CHANNEL, jti);
+			} catch (Exception e) {
+				log.warn("Redis still unavailable, {} token revocations pending: {}",
+						pendingRevocations.size(), e.getMessage());
+				return;
+			}
+			pendingRevocations.remove(jti, expiresAt);
+			written++;
+		}
+		if (written > 0) {
+			log.info("Wrote {} pending token revocations to Redis", written);
+		}
+	}
+
+	/**
+	 * Thu hồi mọi token đã cấp cho user tới thời điểm này (đăng xuất mọi nơi). Entry accountStatus của user
+	 * bị evict sau khi commit để mốc mới có hiệu lực ngay trên mọi node.
+	 */
+	@Transactional
+	public void revokeAllForUser(UUID userId) {
+		userAccountRepository.updateTokensValidAfter(userId, OffsetDateTime.now());
+		taggedCacheInvalidator.invalidateAfterCommit(CacheTags.user(userId));
+	}
+
+	/**
+	 * Token đã bị thu hồi chưa. tokensValidAfter: mốc của user (epoch millis, 0 = chưa có).
+	 * Mốc được làm tròn xuống theo giây vì iat của JWT tính bằng giây: token cấp ngay trong giây đăng xuất
+	 * mọi nơi (đăng nhập lại) không bị từ chối nhầm.
+	 */
+	public boolean isRevoked(String token, Claims claims, long tokensValidAfter) {
+		long issuedAt = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0;
+		return isRevoked(jtiOf(token, claims), issuedAt, tokensValidAfter);
+	}
+
+	/** Như isRevoked(token, claims, ...) khi đã có sẵn jti (jtiOf) và iat (epoch millis, 0 = không có). */
+	public boolean isRevoked(String jti, long issuedAt, long tokensValidAfter) {
+		if (tokensValidAfter > 0 && issuedAt > 0 && issuedAt < tokensValidAfter / 1000 * 1000) {
+			return true;
+		}
+		if (!bloomFilter.mightContain(jti)) {
+			return false;
+		}
+		return isRevokedExactly(jti);
+	}
+
+	@Override
+	public void onMessage(Message message, byte[] pattern) {
+		addToBloomFilter(new String(message.getBody(), StandardCharsets.UTF_8));
+	}
+
+	/** Dựng lại Bloom filter từ các jti còn hạn và dọn jti đã hết hạn. */
+	@Scheduled(fixedDelayString = "${security.revocation.bloom.rebuild-ms:3600000}",
+			initialDelayString = "${security.revocation.bloom.rebuild-ms:3600000}")
+	public void rebuildBloomFilter() {
+		long now = System.currentTimeMillis();
+		RevokedJtiBloomFilter fresh = new RevokedJtiBloomFilter(expectedRevocations, falsePositiveRate);
+		synchronized (filterLock) {
+			rebuilding = fresh;
+		}
+		boolean complete = false;
+		try {
+			localRevoked.values().removeIf(expiresAt -> expiresAt <= now);
+			localRevoked.keySet().forEach(fresh::put);
+			if (revocationStore != null) {
+				revocationStore.opsForZSet().removeRangeByScore(REVOKED_KEY, Double.NEGATIVE_INFINITY, now);
+				Set<String> live = revocationStore.opsForZSet().rangeByScore(REVOKED_KEY, now, Double.POSITIVE_INFINITY);
+				if (live != null) {
+					live.forEach(fresh::put);
+				}
+				if (live != null && live.size() > expectedRevocations) {
+					log.warn("{} live token revocations exceed security.revocation.bloom.expected-revocations={}",
+							live.size(), expectedRevocations);
+				}
+			}
+			complete = true;
+		} catch (Exception e) {
+			log.error("Failed to rebuild token revocation filter: {}", e.getMessage());
+		} finally {
+			synchronized (filterLock) {
+				if (complete || bloomFilter == null) {
+					bloomFilter = fresh;
+				}
+				rebuilding = null;
+			}
+		}
+	}
+
+	private void addToBloomFilter(String jti) {
+		synchronized (filterLock) {
+			if (bloomFilter != null) {
+				bloomFilter.put(jti);
+			}
+			if (rebuilding != null) {
+				rebuilding.put(jti);
+			}
+		}
+	}
+
+	private boolean isRevokedExactly(String jti) {
+		long now = System.currentTimeMillis();
+		Long localExpiry = localRevoked.get(jti);
+		if (localExpiry != null && localExpiry > now) {
+			return true;
+		}
+		if (revocationStore == null) {
+			return false;
+		}
+		try {
+			Double expiresAt = revocationStore.opsForZSet().score(REVOKED_KEY, jti);
+			return expiresAt != null && expiresAt > now;
+		} catch (Exception e) {
+			// Bloom filter đã báo có thể bị thu hồi: không xác minh được thì từ chối
+			log.error("Failed to check token revocation: {}", e.getMessage());
+			return true;
+		}
+	}
+
+	/** jti của token, hoặc SHA-256 của token nếu token cũ không có claim jti. */
+	public static String jtiOf(String token, Claims claims) {
+		if (claims.getId() != null) {
+			return claims.getId();
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
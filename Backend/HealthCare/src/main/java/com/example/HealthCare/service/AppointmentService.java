@@ -7,9 +7,12 @@ import java.util.UUID;
 import java.time.LocalDate;
 
 import com.example.HealthCare.dto.request.CreateAppointmentRequest;
+import com.example.HealthCare.dto.request.CreateSlotHoldRequest;
 import com.example.HealthCare.dto.request.RescheduleAppointmentRequest;
 import com.example.HealthCare.dto.response.AppointmentResponse;
+import com.example.HealthCare.dto.response.AvailableSlotsRangeResponse;
 import com.example.HealthCare.dto.response.AvailableSlotsResponse;
+import com.example.HealthCare.dto.response.SlotHoldResponse;
 
 public interface AppointmentService {
     /**
@@ -71,6 +74,17 @@ public interface AppointmentService {
      */
     AvailableSlotsResponse getAvailableSlots(UUID doctorId, LocalDate date, UUID excludeAppointmentId);
     
+    /**
+     * Get available time slots for a doctor over consecutive days (calendar view)
+     * @param doctorId - Doctor ID
+     * @param fromDate - First date of the range
+     * @param days - Number of days, including fromDate (1..31)
+     * @param excludeAppointmentId - Optional appointment ID to exclude from conflicts (for rescheduling)
+     * @return Available slots grouped by date
+     * @throws BadRequestException if days is out of range
+     */
+    AvailableSlotsRangeResponse getAvailableSlotsRange(UUID doctorId, LocalDate fromDate, int days, UUID excludeAppointmentId);
+    
     /**
      * Cancel an appointment (patient only)
      * @param appointmentId - Appointment ID
@@ -81,5 +95,33 @@ public interface AppointmentService {
      * @throws BadRequestException if validation fails (not patient owner, wrong status, less than 8 hours before)
      */
     AppointmentResponse cancelAppointment(UUID appointmentId, UUID patientId, String cancellationReason);
+    
+    /**
+     * Temporarily hold a slot while the patient goes through payment
+     * @param request - Doctor and slot to hold
+     * @param patientId - ID of the patient holding the slot
+     * @return Hold info including its expiry (holdingUntil)
+     * @throws BadRequestException if the slot is taken or currently being booked
+     */
+    SlotHoldResponse holdSlot(CreateSlotHoldRequest request, UUID patientId);
+    
+    /**
+     * Convert a slot hold into a real appointment (after successful payment)
+     * @param holdId - Hold ID returned by holdSlot
+     * @param patientId - ID of the patient (must own the hold)
+     * @param doctorId - Doctor of the held slot, used to book directly if the hold was already swept
+     * @param request - Booking details (reason, symptoms, ...)
+     * @return Booked appointment response
+     * @throws NotFoundException if the hold no longer exists and no doctor/slot was given
+     * @throws BadRequestException if the hold expired and the slot was taken meanwhile
+     */
+    AppointmentResponse confirmHold(UUID holdId, UUID patientId, UUID doctorId, CreateAppointmentRequest request);
+    
+    /**
+     * Release a slot hold before it expires (payment abandoned)
+     * @param holdId - Hold ID
+     * @param patientId - ID of the patient (must own the hold)
+     */
+    void releaseHold(UUID holdId, UUID patientId);
 }
 
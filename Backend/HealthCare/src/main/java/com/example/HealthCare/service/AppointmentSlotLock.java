@@ -0,0 +1,155 @@
+package com.example.HealthCare.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.example.HealthCare.exception.BadRequestException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Khóa đặt lịch theo bác sĩ/bệnh nhân, giữ tới khi transaction hiện tại kết thúc.
+ *
+ * Trong một JVM dùng striped ReentrantLock (mỗi bác sĩ rơi vào một stripe, các bác sĩ khác
+ * nhau không chặn nhau). Khi có Redis, thêm khóa SET NX PX để các node khác cũng phải xếp hàng;
+ * Redis lỗi thì chỉ còn khóa local và constraint ex_appointment_doctor_slot dưới DB (V3 migration)
+ * là chốt chặn cuối cùng.
+ *
+ * Khóa được nhả trong afterCompletion nên bao trọn cả commit: request thứ hai chỉ kiểm tra
+ * conflict sau khi lịch hẹn của request thứ nhất đã thực sự nằm trong DB.
+ */
+@Component
+@Slf4j
+public class AppointmentSlotLock {
+
+    private static final int STRIPES = 64;
+    private static final String LOCK_PREFIX = "healthcare:slot-lock:";
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${appointment.slot-lock.wait-ms:5000}")
+    private long waitMs;
+
+    public AppointmentSlotLock() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Khóa tất cả các user (bác sĩ, bệnh nhân) liên quan tới một lần đặt lịch.
+     * Phải được gọi bên trong transaction; khóa tự nhả khi transaction commit hoặc rollback.
+     */
+    public void lockForBooking(UUID... userIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Slot lock must be acquired inside a transaction");
+        }
+
+        // Lấy stripe theo thứ tự tăng dần để hai booking chéo nhau không deadlock
+        TreeSet<Integer> stripeIndexes = new TreeSet<>();
+        TreeSet<UUID> orderedIds = new TreeSet<>();
+        for (UUID userId : userIds) {
+            if (userId != null) {
+                stripeIndexes.add(Math.floorMod(userId.hashCode(), STRIPES));
+                orderedIds.add(userId);
+            }
+        }
+
+        List<ReentrantLock> acquiredLocks = new ArrayList<>();
+        List<String> acquiredKeys = new ArrayList<>();
+        String token = UUID.randomUUID().toString();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                release(acquiredLocks, acquiredKeys, token);
+            }
+        });
+
+        long deadline = System.currentTimeMillis() + waitMs;
+        try {
+            for (Integer index : stripeIndexes) {
+                ReentrantLock lock = stripes[index];
+                if (!lock.tryLock(remaining(deadline), TimeUnit.MILLISECONDS)) {
+                    throw busy();
+                }
+                acquiredLocks.add(lock);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw busy();
+        }
+
+        if (redisTemplate != null) {
+            for (UUID userId : orderedIds) {
+                String key = LOCK_PREFIX + userId;
+                if (!acquireRedis(key, token, deadline)) {
+                    throw busy();
+                }
+                acquiredKeys.add(key);
+            }
+        }
+    }
+
+    private boolean acquireRedis(String key, String token, long deadline) {
+        try {
+            while (true) {
+                Boolean acquired = redisTemplate.opsForValue()
+                        .setIfAbsent(key, token, Duration.ofMillis(waitMs * 2));
+                if (Boolean.TRUE.equals(acquired)) {
+                    return true;
+                }
+                if (remaining(deadline) == 0) {
+                    return false;
+                }
+                Thread.sleep(25);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            // Redis không sẵn sàng: dựa vào khóa local + constraint DB
+            log.warn("Redis slot lock unavailable for {}: {}", key, e.getMessage());
+            return true;
+        }
+    }
+
+    private void release(List<ReentrantLock> locks, List<String> keys, String token) {
+        for (String key : keys) {
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, List.of(key), token);
+            } catch (Exception e) {
+                log.warn("Failed to release Redis slot lock {}: {}", key, e.getMessage());
+            }
+        }
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    private long remaining(long deadline) {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    private BadRequestException busy() {
+        return new BadRequestException("Khung giờ này đang được đặt bởi người khác, vui lòng thử lại");
+    }
+}
@@ -14,7 +14,7 @@ import com.example.HealthCare.dto.response.PersonalInfoResponse;
  * Authentication Service - Refactored for UserAccount model
  * Changes:
  * - login now uses email instead of username
- * - logout simplified (single refreshToken parameter)
+ * - logout revokes the refresh token and the caller's access token; logoutAll revokes every token of the user
  * - changePassword uses email from ChangePasswordRequest
  * - Methods return void where Map<String, Object> was unnecessary
  */
@@ -22,7 +22,8 @@ public interface AuthService {
 	// Authentication
 	Map<String, Object> login(String email, String password);
 	Map<String, Object> refreshToken(String refreshToken);
-	void logout(String refreshToken);
+	void logout(String refreshToken, String accessToken);
+	void logoutAll(String email);
 	
 	// Password management
 	void changePassword(String email, ChangePasswordRequest request);
@@ -1,7 +1,15 @@
 package com.example.HealthCare.service;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.example.HealthCare.dto.response.CacheKeyPageResponse;
+import com.example.HealthCare.dto.response.CacheLoadingStatsResponse;
+import com.example.HealthCare.dto.response.CacheStatsResponse;
+import com.example.HealthCare.dto.response.CacheTierStatsResponse;
+import com.example.HealthCare.dto.response.LocalCacheStatsResponse;
+
 public interface CacheService {
     void evictAllCaches();
     void evictUserCaches();
@@ -9,8 +17,14 @@ public interface CacheService {
     void evictPrivilegeCaches();
     void evictUserCache(Long userId);
     void evictUserByUsername(String username);
-    void warmUpCaches();
+    Map<String, Object> warmUpCaches();
     Set<String> getAllCacheNames();
     void clearSpecificCache(String cacheName);
     long getCacheSize(String cacheName);
+    List<CacheTierStatsResponse> getCacheTierStats();
+    List<LocalCacheStatsResponse> getLocalCacheStats();
+    List<CacheLoadingStatsResponse> getCacheLoadingStats();
+    List<CacheStatsResponse> getCacheStats(int windowMinutes);
+    long evictCacheByPattern(String pattern);
+    CacheKeyPageResponse scanCacheKeys(String cacheName, String cursor, int count);
 }
@@ -0,0 +1,339 @@
+package com.example.HealthCare.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.HealthCare.config.cache.HotKeyTracker;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Nạp sẵn cache khi khởi động từ danh sách key đọc nhiều nhất đã lưu lại lúc chạy.
+ *
+ * Lúc chạy: HotKeyTracker đếm số lần đọc từng key; mỗi snapshot-ms số đếm được cộng vào điểm đã lưu
+ * (điểm cũ nhân decay trước, key nguội dần rơi khỏi danh sách) và chỉ giữ 2 * keys-per-cache key.
+ * Có Redis thì lưu ở sorted set "healthcare:cache-hotkeys:&lt;cache&gt;" dùng chung cho mọi node; không có
+ * Redis thì ghi file JSON (snapshot-file). Snapshot cũng được ghi khi tắt ứng dụng.
+ *
+ * Khi khởi động: keys-per-cache key điểm cao nhất của mỗi cache được nạp lại qua chính các method
+ * @Cacheable (xen kẽ giữa các cache theo thứ hạng), tối đa concurrency luồng cùng lúc để không chiếm
+ * hết pool kết nối DB, dừng sau timeout-seconds. Trong lúc đó isReady() = false, health indicator
+ * cacheWarmup báo OUT_OF_SERVICE trong nhóm readiness nên load balancer chưa chuyển traffic tới node.
+ *
+ * Chỉ cache có cách nạp lại trong replayers() mới được theo dõi.
+ */
+@Component
+@Slf4j
+public class CacheWarmupService {
+
+    private static final String KEY_PREFIX = "healthcare:cache-hotkeys:";
+
+    // KEYS[1] = sorted set; ARGV = decay, số key giữ lại, ttl (giây), rồi từng cặp key, số lần đọc
+    private static final DefaultRedisScript<Long> MERGE_SCRIPT = new DefaultRedisScript<>("""
+            local scored = redis.call('zrange', KEYS[1], 0, -1, 'WITHSCORES')
+            for i = 1, #scored, 2 do
+              redis.call('zadd', KEYS[1], tonumber(scored[i + 1]) * tonumber(ARGV[1]), scored[i])
+            end
+            for i = 4, #ARGV, 2 do
+              redis.call('zincrby', KEYS[1], ARGV[i + 1], ARGV[i])
+            end
+            redis.call('zremrangebyrank', KEYS[1], 0, -tonumber(ARGV[2]) - 1)
+            redis.call('expire', KEYS[1], ARGV[3])
+            return redis.call('zcard', KEYS[1])
+            """, Long.class);
+
+    private final HotKeyTracker hotKeyTracker;
+    private final DoctorService doctorService;
+    private final UserService userService;
+    private final IcdService icdService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    @Qualifier("cacheTaskExecutor")
+    private Executor cacheTaskExecutor;
+
+    // Key/score dạng chuỗi thô cho Lua, không qua value serializer (binary) của redisTemplate
+    private StringRedisTemplate hotKeyStore;
+
+    @Value("${cache.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.warmup.keys-per-cache:200}")
+    private int keysPerCache;
+
+    @Value("${cache.warmup.concurrency:3}")
+    private int concurrency;
+
+    @Value("${cache.warmup.timeout-seconds:60}")
+    private long timeoutSeconds;
+
+    @Value("${cache.warmup.decay:0.5}")
+    private double decay;
+
+    @Value("${cache.warmup.retention-days:7}")
+    private long retentionDays;
+
+    @Value("${cache.warmup.snapshot-file:${java.io.tmpdir}/healthcare-cache-hotkeys.json}")
+    private String snapshotFile;
+
+    private volatile boolean ready;
+    private final AtomicInteger lastLoaded = new AtomicInteger();
+    private final AtomicInteger lastFailed = new AtomicInteger();
+    private final AtomicLong lastDurationMillis = new AtomicLong(-1);
+
+    public CacheWarmupService(HotKeyTracker hotKeyTracker, DoctorService doctorService,
+                              UserService userService, IcdService icdService) {
+        this.hotKeyTracker = hotKeyTracker;
+        this.doctorService = doctorService;
+        this.userService = userService;
+        this.icdService = icdService;
+    }
+
+    @PostConstruct
+    void init() {
+        if (redisTemplate != null && redisTemplate.getConnectionFactory() != null) {
+            hotKeyStore = new StringRedisTemplate(redisTemplate.getConnectionFactory());
+        }
+    }
+
+    /** Cache đã được nạp sẵn xong (hoặc hết thời gian chờ / tắt warm-up). */
+    public boolean isReady() {
+        return ready || !enabled;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", isReady());
+        status.put("loaded", lastLoaded.get());
+        status.put("failed", lastFailed.get());
+        status.put("durationMs", lastDurationMillis.get());
+        return status;
+    }
+
+    /** Chạy warm-up ở background (khi ứng dụng vừa sẵn sàng); readiness mở khi xong. */
+    public void warmUpAsync() {
+        if (!enabled) {
+            return;
+        }
+        cacheTaskExecutor.execute(() -> {
+            try {
+                warmUp();
+            } catch (RuntimeException e) {
+                log.error("Cache warm-up failed: {}", e.getMessage(), e);
+            } finally {
+                ready = true;
+            }
+        });
+    }
+
+    /** Nạp lại các key đọc nhiều nhất đã lưu, trả về tóm tắt (số key nạp được/lỗi, thời gian). */
+    public Map<String, Object> warmUp() {
+        long startTime = System.currentTimeMillis();
+        Map<String, Consumer<String>> replayers = replayers();
+        Map<String, List<String>> hotKeys = loadHotKeys(replayers.keySet());
+
+        AtomicInteger loaded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "Cache-Warmup-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Xen kẽ theo thứ hạng: key nóng nhất của mọi cache được nạp trước
+            int maxRank = hotKeys.values().stream().mapToInt(List::size).max().orElse(0);
+            for (int rank = 0; rank < maxRank; rank++) {
+                for (Map.Entry<String, List<String>> entry : hotKeys.entrySet()) {
+                    if (rank >= entry.getValue().size()) {
+                        continue;
+                    }
+                    String cacheName = entry.getKey();
+                    String key = entry.getValue().get(rank);
+                    Consumer<String> replayer = replayers.get(cacheName);
+                    pool.execute(() -> {
+                        try {
+                            replayer.accept(key);
+                            loaded.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            // Entity có thể đã bị xóa từ lần snapshot trước
+                            failed.incrementAndGet();
+                            log.debug("Cache warm-up skipped {}::{}: {}", cacheName, key, e.getMessage());
+                        }
+                    });
+                }
+            }
+            pool.shutdown();
+            if (!pool.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                log.warn("Cache warm-up timed out after {}s, continuing with partially warm caches", timeoutSeconds);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        lastLoaded.set(loaded.get());
+        lastFailed.set(failed.get());
+        lastDurationMillis.set(duration);
+        log.info("Cache warm-up loaded {} keys ({} skipped) from {} caches in {} ms",
+                loaded.get(), failed.get(), hotKeys.size(), duration);
+        return getStatus();
+    }
+
+    /** Cộng số lần đọc của cửa sổ vừa qua vào danh sách key nóng đã lưu. */
+    @Scheduled(fixedDelayString = "${cache.warmup.snapshot-ms:300000}")
+    public void saveSnapshot() {
+        Map<String, Map<String, Long>> hits = hotKeyTracker.drain();
+        if (hits.isEmpty()) {
+            return;
+        }
+        int retained = keysPerCache * 2;
+        if (hotKeyStore != null) {
+            hits.forEach((cacheName, counts) -> {
+                List<String> args = new ArrayList<>();
+                args.add(String.valueOf(decay));
+                args.add(String.valueOf(retained));
+                args.add(String.valueOf(TimeUnit.DAYS.toSeconds(retentionDays)));
+                counts.forEach((key, count) -> {
+                    args.add(key);
+                    args.add(String.valueOf(count));
+                });
+                try {
+                    hotKeyStore.execute(MERGE_SCRIPT, List.of(KEY_PREFIX + cacheName), args.toArray());
+                } catch (Exception e) {
+                    log.warn("Could not save hot keys of {}: {}", cacheName, e.getMessage());
+                }
+            });
+            return;
+        }
+
+        synchronized (this) {
+            Map<String, Map<String, Double>> scores = readSnapshotFile();
+            hits.forEach((cacheName, counts) -> {
+                Map<String, Double> cacheScores = scores.computeIfAbsent(cacheName, name -> new HashMap<>());
+                cacheScores.replaceAll((key, score) -> score * decay);
+                counts.forEach((key, count) -> cacheScores.merge(key, (double) count, Double::sum));
+                scores.put(cacheName, top(cacheScores, retained));
+            });
+            try {
+                objectMapper.writeValue(new File(snapshotFile), scores);
+            } catch (IOException e) {
+                log.warn("Could not write cache hot-key snapshot {}: {}", snapshotFile, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void saveSnapshotOnShutdown() {
+        try {
+            saveSnapshot();
+        } catch (RuntimeException e) {
+            log.warn("Could not save cache hot-key snapshot on shutdown: {}", e.getMessage());
+        }
+    }
+
+    /** Cách nạp lại một key (dạng chuỗi) của từng cache: gọi method @Cacheable tương ứng. */
+    private Map<String, Consumer<String>> replayers() {
+        Map<String, Consumer<String>> replayers = new HashMap<>();
+        replayers.put("doctorDetails", key -> doctorService.getDoctorDetail(UUID.fromString(key)));
+        replayers.put("doctorProfessionalInfo", key -> doctorService.getProfessionalInfo(UUID.fromString(key)));
+        replayers.put("userDetails", key -> userService.getUserById(UUID.fromString(key)));
+        replayers.put("pendingDoctors", key -> userService.getPendingDoctorAccounts());
+        replayers.put("icdChapters", key -> icdService.getChapters());
+        replayers.put("icdSearch", icdService::search);
+        replayers.put("icdMedications", icdService::getMedicationsByIcdCode);
+        replayers.put("icdCodes", key -> {
+            int separator = key.indexOf(':');
+            if (separator > 0) {
+                icdService.getCodesByRange(key.substring(0, separator), key.substring(separator + 1));
+            }
+        });
+        replayers.keySet().retainAll(hotKeyTracker.getTrackedCaches());
+        return replayers;
+    }
+
+    private Map<String, List<String>> loadHotKeys(Set<String> cacheNames) {
+        Map<String, List<String>> hotKeys = new LinkedHashMap<>();
+        if (hotKeyStore != null) {
+            for (String cacheName : cacheNames) {
+                try {
+                    Set<String> top = hotKeyStore.opsForZSet().reverseRange(KEY_PREFIX + cacheName, 0, keysPerCache - 1);
+                    if (top != null && !top.isEmpty()) {
+                        hotKeys.put(cacheName, new ArrayList<>(top));
+                    }
+                } catch (Exception e) {
+                    log.warn("Could not read hot keys of {}: {}", cacheName, e.getMessage());
+                }
+            }
+            return hotKeys;
+        }
+
+        Map<String, Map<String, Double>> scores;
+        synchronized (this) {
+            scores = readSnapshotFile();
+        }
+        for (String cacheName : cacheNames) {
+            Map<String, Double> cacheScores = scores.get(cacheName);
+            if (cacheScores != null && !cacheScores.isEmpty()) {
+                hotKeys.put(cacheName, new ArrayList<>(top(cacheScores, keysPerCache).keySet()));
+            }
+        }
+        return hotKeys;
+    }
+
+    private Map<String, Map<String, Double>> readSnapshotFile() {
+        File file = new File(snapshotFile);
+        if (!file.isFile()) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(file, new TypeReference<HashMap<String, Map<String, Double>>>() {});
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cache hot-key snapshot {}: {}", snapshotFile, e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    /** limit key điểm cao nhất, theo thứ tự giảm dần. */
+    private static Map<String, Double> top(Map<String, Double> scores, int limit) {
+        Map<String, Double> top = new LinkedHashMap<>();
+        scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                .limit(limit)
+                .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+}
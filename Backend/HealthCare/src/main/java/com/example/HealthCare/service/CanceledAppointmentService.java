@@ -5,9 +5,10 @@ import org.springframework.data.domain.Pageable;
 
 import com.example.HealthCare.dto.request.RefundRequest;
 import com.example.HealthCare.dto.response.CanceledAppointmentResponse;
+import com.example.HealthCare.enums.AppointmentStatus;
 
 public interface CanceledAppointmentService {
-    Page<CanceledAppointmentResponse> getCanceledAppointments(String search, Pageable pageable);
+    Page<CanceledAppointmentResponse> getCanceledAppointments(String search, AppointmentStatus status, Pageable pageable);
     void processRefund(RefundRequest request);
 }
 
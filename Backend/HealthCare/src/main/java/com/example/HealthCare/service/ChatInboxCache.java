@@ -0,0 +1,141 @@
+package com.example.HealthCare.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.HealthCare.dto.response.ChatConversationDto;
+import com.example.HealthCare.model.ChatMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Cache inbox chat theo từng user.
+ *
+ * Inbox được nạp bằng một query (ChatThreadRepository.findInbox) rồi giữ trong bộ nhớ; sau đó
+ * sendMessage / markAsRead cập nhật trực tiếp dòng tương ứng (tin cuối, unread) thay vì query lại.
+ * Thread mới chưa có trong cache thì inbox của user đó bị bỏ để lần sau nạp lại. TTL chỉ để hội tụ
+ * với thay đổi từ node khác và thông tin peer (tên, tuổi).
+ *
+ * Mỗi user có một stamp (striped) tăng sau mỗi thay đổi: kết quả query chỉ được lưu nếu stamp
+ * không đổi trong lúc query, tránh ghi đè một tin nhắn vừa commit bằng snapshot cũ. Kiểm tra stamp và
+ * cập nhật inbox chạy trong compute của Caffeine nên nguyên tử theo từng user.
+ *
+ * TTL tính từ lúc nạp (Inbox.loadedAt), không dùng expireAfterWrite: cập nhật tại chỗ không được kéo dài hạn.
+ */
+@Component
+public class ChatInboxCache {
+
+	private static final int MAX_USERS = 10_000;
+	private static final int STAMP_STRIPES = 256;
+	private static final int PREVIEW_LENGTH = 100;
+	private static final Comparator<ChatConversationDto> LATEST_FIRST = Comparator.comparing(
+			ChatConversationDto::getLastMessageAt, Comparator.nullsLast(Comparator.reverseOrder()));
+
+	@Value("${chat.inbox.ttl-minutes:5}")
+	private long ttlMinutes;
+
+	private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+	private final Cache<UUID, Inbox> inboxes = Caffeine.newBuilder()
+			.maximumSize(MAX_USERS)
+			.build();
+
+	/** Inbox đã cache (mới nhất trước), hoặc null nếu chưa có / đã hết hạn. */
+	public List<ChatConversationDto> get(UUID userId) {
+		Inbox inbox = inboxes.getIfPresent(userId);
+		if (inbox == null || inbox.isExpired(ttlMinutes)) {
+			return null;
+		}
+		return inbox.snapshot();
+	}
+
+	public long stamp(UUID userId) {
+		return stamps.get(stripe(userId));
+	}
+
+	public void putIfUnchanged(UUID userId, long stamp, List<ChatConversationDto> conversations) {
+		Inbox inbox = new Inbox(conversations);
+		inboxes.asMap().compute(userId, (id, current) -> stamps.get(stripe(id)) == stamp ? inbox : current);
+	}
+
+	/** Gọi sau khi tin nhắn đã commit. */
+	public void onMessageSent(UUID threadId, ChatMessage message, UUID senderId, UUID receiverId) {
+		apply(senderId, threadId, conversation -> setLastMessage(conversation, message));
+		apply(receiverId, threadId, conversation -> {
+			setLastMessage(conversation, message);
+			conversation.setUnreadCount(conversation.getUnreadCount() + 1);
+		});
+	}
+
+	/** Gọi sau khi read cursor của user đã commit. */
+	public void onRead(UUID userId, UUID threadId) {
+		apply(userId, threadId, conversation -> conversation.setUnreadCount(0));
+	}
+
+	public static String preview(String content) {
+		if (content == null) {
+			return "";
+		}
+		return content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH) + "…";
+	}
+
+	private void apply(UUID userId, UUID threadId, Consumer<ChatConversationDto> update) {
+		// Tăng stamp trước: putIfUnchanged chạy sau đó sẽ bỏ snapshot, chạy trước thì inbox của nó được cập nhật
+		stamps.incrementAndGet(stripe(userId));
+		// Thread chưa có trong inbox đã cache (hội thoại mới): bỏ inbox để nạp lại lần sau
+		inboxes.asMap().computeIfPresent(userId, (id, inbox) -> inbox.update(threadId, update) ? inbox : null);
+	}
+
+	private static void setLastMessage(ChatConversationDto conversation, ChatMessage message) {
+		conversation.setLastMessageId(message.getId());
+		conversation.setLastMessagePreview(preview(message.getContent()));
+		conversation.setLastMessageType(message.getType().toJsonValue());
+		conversation.setLastMessageSenderId(message.getCreatorId());
+		conversation.setLastMessageAt(message.getCreatedAt());
+	}
+
+	private static int stripe(UUID userId) {
+		return Math.floorMod(userId.hashCode(), STAMP_STRIPES);
+	}
+
+	private static final class Inbox {
+		private final long loadedAt = System.currentTimeMillis();
+		private final Map<UUID, ChatConversationDto> byThread = new LinkedHashMap<>();
+
+		Inbox(List<ChatConversationDto> conversations) {
+			for (ChatConversationDto conversation : conversations) {
+				byThread.put(conversation.getThreadId(), conversation.toBuilder().build());
+			}
+		}
+
+		boolean isExpired(long ttlMinutes) {
+			return System.currentTimeMillis() - loadedAt > ttlMinutes * 60_000L;
+		}
+
+		synchronized boolean update(UUID threadId, Consumer<ChatConversationDto> update) {
+			ChatConversationDto conversation = byThread.get(threadId);
+			if (conversation == null) {
+				return false;
+			}
+			update.accept(conversation);
+			return true;
+		}
+
+		synchronized List<ChatConversationDto> snapshot() {
+			List<ChatConversationDto> copies = new ArrayList<>(byThread.size());
+			for (ChatConversationDto conversation : byThread.values()) {
+				copies.add(conversation.toBuilder().build());
+			}
+			copies.sort(LATEST_FIRST);
+			return copies;
+		}
+	}
+}
@@ -1,25 +1,31 @@
 package com.example.HealthCare.service;
 
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.time.Period;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.HealthCare.dto.request.GetChatMessagesRequest;
 import com.example.HealthCare.dto.request.SendChatMessageRequest;
+import com.example.HealthCare.dto.response.ChatConversationDto;
 import com.example.HealthCare.dto.response.ChatMessageGroupDto;
 import com.example.HealthCare.dto.response.ChatMessageItemDto;
+import com.example.HealthCare.dto.response.ChatMessagePageDto;
 import com.example.HealthCare.dto.response.ChatPeerDto;
 import com.example.HealthCare.dto.response.ChatUserBriefDto;
 import com.example.HealthCare.enums.AccountStatus;
@@ -33,6 +39,8 @@ import com.example.HealthCare.repository.ChatMessageRepository;
 import com.example.HealthCare.repository.ChatThreadRepository;
 import com.example.HealthCare.repository.PatientExamPackagePurchaseRepository;
 import com.example.HealthCare.repository.UserAccountRepository;
+import com.example.HealthCare.util.TransactionUtils;
+import com.example.HealthCare.websocket.PresenceService;
 
 import lombok.RequiredArgsConstructor;
 
@@ -41,12 +49,18 @@ import lombok.RequiredArgsConstructor;
 public class ChatMessagingService {
 
 	private static final DateTimeFormatter DATE_KEY = DateTimeFormatter.ISO_LOCAL_DATE;
+	private static final int DEFAULT_PAGE_SIZE = 50;
+	private static final int MAX_PAGE_SIZE = 200;
+	private static final OffsetDateTime NEVER_READ = OffsetDateTime.parse("1970-01-01T00:00:00Z");
 
 	private final ChatThreadRepository chatThreadRepository;
 	private final ChatMessageRepository chatMessageRepository;
 	private final UserAccountRepository userAccountRepository;
 	private final PatientExamPackagePurchaseRepository packagePurchaseRepository;
 	private final ChatRealtimeService chatRealtimeService;
+	private final ChatParticipantCache chatParticipantCache;
+	private final ChatInboxCache chatInboxCache;
+	private final PresenceService presenceService;
 
 	private static final String ACTIVE_STATUS = "active";
 
@@ -88,8 +102,14 @@ public class ChatMessagingService {
 		message = chatMessageRepository.save(message);
 
 		thread.setLastMessageId(message.getId());
+		// Người gửi đã đọc tới tin của chính mình
+		markReadUpTo(thread, currentUserId, message.getCreatedAt());
 		chatThreadRepository.save(thread);
 
+		UUID threadId = thread.getId();
+		ChatMessage sent = message;
+		TransactionUtils.runAfterCommit(() -> chatInboxCache.onMessageSent(threadId, sent, currentUserId, receiverId));
+
 		chatRealtimeService.broadcastChatMessage(
 				currentUserId,
 				receiverId,
@@ -112,22 +132,83 @@ public class ChatMessagingService {
 		if (messages.isEmpty()) {
 			return List.of();
 		}
+		return groupByDate(messages, chatParticipantCache.getParticipants(threadOpt.get()));
+	}
+
+	/**
+	 * Một trang lịch sử chat theo cursor (keyset trên created_at, id):
+	 * - không có cursor: trang mới nhất;
+	 * - before: các tin cũ hơn message đó (cuộn lên);
+	 * - after: các tin mới hơn message đó (delta kể từ tin đã xem cuối).
+	 * Tin nhắn trong trang luôn theo thứ tự thời gian tăng dần, group theo ngày như API cũ.
+	 */
+	@Transactional(readOnly = true)
+	public ChatMessagePageDto getMessagePage(UUID currentUserId, GetChatMessagesRequest request) {
+		UUID receiverId = UUID.fromString(request.getReceiverId().trim());
+		UUID before = parseCursor(request.getBefore());
+		UUID after = parseCursor(request.getAfter());
+		if (before != null && after != null) {
+			throw new IllegalArgumentException("Only one of before/after can be specified");
+		}
+		int limit = request.getLimit() == null ? DEFAULT_PAGE_SIZE
+				: Math.max(1, Math.min(request.getLimit(), MAX_PAGE_SIZE));
+
+		Optional<ChatThread> threadOpt = chatThreadRepository.findBetweenUsers(currentUserId, receiverId);
+		if (threadOpt.isEmpty()) {
+			return ChatMessagePageDto.builder().groups(List.of()).hasMore(false).build();
+		}
+		ChatThread thread = threadOpt.get();
+
+		// Lấy dư 1 bản ghi để biết còn trang tiếp theo hay không
+		PageRequest page = PageRequest.of(0, limit + 1);
+		List<ChatMessage> messages;
+		if (after != null) {
+			ChatMessage cursor = findCursor(thread, after);
+			messages = chatMessageRepository.findAfter(thread.getId(), cursor.getCreatedAt(), cursor.getId(), page);
+		} else if (before != null) {
+			ChatMessage cursor = findCursor(thread, before);
+			messages = chatMessageRepository.findBefore(thread.getId(), cursor.getCreatedAt(), cursor.getId(), page);
+		} else {
+			messages = chatMessageRepository.findByChatIdOrderByCreatedAtDescIdDesc(thread.getId(), page);
+		}
 
-		List<UUID> creatorIds = messages.stream().map(ChatMessage::getCreatorId).distinct().toList();
-		Map<UUID, UserAccount> creators = userAccountRepository.findAllById(creatorIds).stream()
-				.filter(u -> !Boolean.TRUE.equals(u.getIsDeleted()))
-				.collect(Collectors.toMap(UserAccount::getId, u -> u));
+		boolean hasMore = messages.size() > limit;
+		messages = new ArrayList<>(messages.subList(0, Math.min(limit, messages.size())));
+		if (after == null) {
+			Collections.reverse(messages);
+		}
+		if (messages.isEmpty()) {
+			return ChatMessagePageDto.builder().groups(List.of()).hasMore(false).build();
+		}
+
+		return ChatMessagePageDto.builder()
+				.groups(groupByDate(messages, chatParticipantCache.getParticipants(thread)))
+				.hasMore(hasMore)
+				.oldestMessageId(messages.get(0).getId())
+				.newestMessageId(messages.get(messages.size() - 1).getId())
+				.build();
+	}
 
+	private ChatMessage findCursor(ChatThread thread, UUID messageId) {
+		return chatMessageRepository.findById(messageId)
+				.filter(m -> m.getChatId().equals(thread.getId()))
+				.orElseThrow(() -> new IllegalArgumentException("Cursor message not found in this conversation"));
+	}
+
+	private UUID parseCursor(String value) {
+		return value == null || value.isBlank() ? null : UUID.fromString(value.trim());
+	}
+
+	/** Messages must already be in chronological order. */
+	private List<ChatMessageGroupDto> groupByDate(List<ChatMessage> messages, Map<UUID, ChatUserBriefDto> participants) {
 		Map<String, List<ChatMessageItemDto>> byDate = new LinkedHashMap<>();
 		for (ChatMessage m : messages) {
 			LocalDate day = m.getCreatedAt().toLocalDate();
 			String key = DATE_KEY.format(day);
-			UserAccount creator = creators.get(m.getCreatorId());
-			ChatUserBriefDto creatorDto = ChatUserBriefDto.builder()
-					.id(m.getCreatorId())
-					.fullName(creator != null ? creator.getFullName() : "Unknown")
-					.gender(creator != null && creator.getGender() != null ? creator.getGender().getValue() : "")
-					.build();
+			ChatUserBriefDto creatorDto = participants.get(m.getCreatorId());
+			if (creatorDto == null) {
+				creatorDto = ChatUserBriefDto.builder().id(m.getCreatorId()).fullName("Unknown").gender("").build();
+			}
 			ChatMessageItemDto item = ChatMessageItemDto.builder()
 					.id(m.getId())
 					.content(m.getContent())
@@ -144,19 +225,106 @@ public class ChatMessagingService {
 				.toList();
 	}
 
+	/**
+	 * Inbox: mọi cuộc hội thoại của user kèm tin nhắn cuối và số tin chưa đọc, mới nhất trước.
+	 * Nạp bằng một query rồi phục vụ từ ChatInboxCache (được cập nhật khi gửi / đọc tin).
+	 */
+	@Transactional(readOnly = true)
+	public List<ChatConversationDto> listConversations(UUID currentUserId) {
+		List<ChatConversationDto> cached = chatInboxCache.get(currentUserId);
+		if (cached != null) {
+			return cached;
+		}
+
+		long stamp = chatInboxCache.stamp(currentUserId);
+		List<ChatConversationDto> conversations = new ArrayList<>();
+		for (Object[] row : chatThreadRepository.findInbox(currentUserId, NEVER_READ)) {
+			ChatThread thread = (ChatThread) row[0];
+			ChatMessage last = (ChatMessage) row[2];
+			conversations.add(ChatConversationDto.builder()
+					.threadId(thread.getId())
+					.peer(toPeerDto((UserAccount) row[1]))
+					.lastMessageId(last != null ? last.getId() : null)
+					.lastMessagePreview(last != null ? ChatInboxCache.preview(last.getContent()) : null)
+					.lastMessageType(last != null ? last.getType().toJsonValue() : null)
+					.lastMessageSenderId(last != null ? last.getCreatorId() : null)
+					.lastMessageAt(last != null ? last.getCreatedAt() : null)
+					.unreadCount(((Number) row[3]).longValue())
+					.build());
+		}
+		conversations.sort(Comparator.comparing(ChatConversationDto::getLastMessageAt,
+				Comparator.nullsLast(Comparator.reverseOrder())));
+		chatInboxCache.putIfUnchanged(currentUserId, stamp, conversations);
+		return conversations;
+	}
+
+	/** Đánh dấu đã đọc toàn bộ cuộc hội thoại với receiverId (tới tin nhắn cuối hiện tại). */
+	@Transactional
+	public void markConversationRead(UUID currentUserId, String receiverIdRaw) {
+		UUID receiverId = UUID.fromString(receiverIdRaw.trim());
+		Optional<ChatThread> threadOpt = chatThreadRepository.findBetweenUsers(currentUserId, receiverId);
+		if (threadOpt.isEmpty() || threadOpt.get().getLastMessageId() == null) {
+			return;
+		}
+		ChatThread thread = threadOpt.get();
+		OffsetDateTime lastMessageAt = chatMessageRepository.findById(thread.getLastMessageId())
+				.map(ChatMessage::getCreatedAt)
+				.orElse(null);
+		if (lastMessageAt == null || !markReadUpTo(thread, currentUserId, lastMessageAt)) {
+			return;
+		}
+		chatThreadRepository.save(thread);
+
+		UUID threadId = thread.getId();
+		TransactionUtils.runAfterCommit(() -> chatInboxCache.onRead(currentUserId, threadId));
+	}
+
+	/** Dời read cursor của user về phía trước; trả về false nếu không có gì thay đổi. */
+	private boolean markReadUpTo(ChatThread thread, UUID userId, OffsetDateTime readAt) {
+		boolean first = userId.equals(thread.getFirstUserId());
+		OffsetDateTime current = first ? thread.getFirstUserLastReadAt() : thread.getSecondUserLastReadAt();
+		if (current != null && !current.isBefore(readAt)) {
+			return false;
+		}
+		if (first) {
+			thread.setFirstUserLastReadAt(readAt);
+		} else {
+			thread.setSecondUserLastReadAt(readAt);
+		}
+		return true;
+	}
+
 	@Transactional(readOnly = true)
 	public List<ChatPeerDto> listPeers(UUID currentUserId) {
 		UserAccount me = userAccountRepository.findByIdAndIsDeletedFalse(currentUserId)
 				.orElseThrow(() -> new IllegalArgumentException("User not found"));
 		UserRole role = me.getRole();
+		List<ChatPeerDto> peers;
 		if (role == UserRole.DOCTOR) {
-			return peersForDoctor(currentUserId);
+			peers = peersForDoctor(currentUserId);
+		} else if (role == UserRole.PATIENT) {
+			peers = peersForPatient(currentUserId);
+		} else {
+			// ADMIN (or unknown) → keep current behaviour of seeing all doctors for support
+			peers = peersDoctorsForAdmin();
+		}
+		return withPresence(peers);
+	}
+
+	/** Gắn online / lastSeenAt cho danh sách peer: một lượt tra presence cho cả danh sách. */
+	private List<ChatPeerDto> withPresence(List<ChatPeerDto> peers) {
+		if (peers.isEmpty()) {
+			return peers;
 		}
-		if (role == UserRole.PATIENT) {
-			return peersForPatient(currentUserId);
+		List<UUID> ids = peers.stream().map(ChatPeerDto::getId).toList();
+		Set<UUID> online = presenceService.getOnline(ids);
+		Map<UUID, OffsetDateTime> lastSeen = presenceService.getLastSeen(
+				ids.stream().filter(id -> !online.contains(id)).toList());
+		for (ChatPeerDto peer : peers) {
+			peer.setOnline(online.contains(peer.getId()));
+			peer.setLastSeenAt(lastSeen.get(peer.getId()));
 		}
-		// ADMIN (or unknown) → keep current behaviour of seeing all doctors for support
-		return peersDoctorsForAdmin();
+		return peers;
 	}
 
 	/** Bệnh nhân: admin (hỗ trợ) + các bác sĩ đang có gói active với bệnh nhân này. */
@@ -0,0 +1,70 @@
+package com.example.HealthCare.service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.HealthCare.dto.response.ChatUserBriefDto;
+import com.example.HealthCare.model.ChatThread;
+import com.example.HealthCare.model.UserAccount;
+import com.example.HealthCare.repository.UserAccountRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Cache thông tin người gửi theo từng cuộc hội thoại.
+ *
+ * Mỗi thread chỉ có hai người tham gia nên thay vì resolve creator của từng trang tin nhắn,
+ * hai ChatUserBriefDto được nạp một lần và giữ trong ttl-minutes (đổi tên/giới tính sẽ hiển thị
+ * sau tối đa khoảng đó). Số thread giữ trong bộ nhớ bị giới hạn bằng maximumSize của Caffeine.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatParticipantCache {
+
+	private static final int MAX_THREADS = 10_000;
+
+	private final UserAccountRepository userAccountRepository;
+
+	@Value("${chat.participants.ttl-minutes:10}")
+	private long ttlMinutes;
+
+	private Cache<UUID, Map<UUID, ChatUserBriefDto>> threads;
+
+	@PostConstruct
+	void init() {
+		threads = Caffeine.newBuilder()
+				.maximumSize(MAX_THREADS)
+				.expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+				.build();
+	}
+
+	public Map<UUID, ChatUserBriefDto> getParticipants(ChatThread thread) {
+		Map<UUID, ChatUserBriefDto> cached = threads.getIfPresent(thread.getId());
+		if (cached != null) {
+			return cached;
+		}
+
+		Map<UUID, ChatUserBriefDto> users = new HashMap<>();
+		for (UserAccount user : userAccountRepository.findAllById(List.of(thread.getFirstUserId(), thread.getSecondUserId()))) {
+			if (!Boolean.TRUE.equals(user.getIsDeleted())) {
+				users.put(user.getId(), ChatUserBriefDto.builder()
+						.id(user.getId())
+						.fullName(user.getFullName())
+						.gender(user.getGender() != null ? user.getGender().getValue() : "")
+						.build());
+			}
+		}
+		Map<UUID, ChatUserBriefDto> participants = Map.copyOf(users);
+		threads.put(thread.getId(), participants);
+		return participants;
+	}
+}
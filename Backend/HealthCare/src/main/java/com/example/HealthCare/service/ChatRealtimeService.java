@@ -4,9 +4,10 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import com.example.HealthCare.websocket.StompClusterRelay;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -15,7 +16,7 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class ChatRealtimeService {
 
-	private final SimpMessagingTemplate messagingTemplate;
+	private final StompClusterRelay clusterRelay;
 
 	/**
 	 * Same payload shape as ysalus Socket.IO {@code receive_message}.
@@ -29,8 +30,8 @@ public class ChatRealtimeService {
 		payload.put("type", type);
 
 		try {
-			messagingTemplate.convertAndSend("/topic/chat/" + receiverId, payload);
-			messagingTemplate.convertAndSend("/topic/chat/" + senderId, payload);
+			clusterRelay.sendToUser(receiverId, "/queue/chat", payload);
+			clusterRelay.sendToUser(senderId, "/queue/chat", payload);
 		} catch (Exception e) {
 			log.warn("Failed to broadcast chat message: {}", e.getMessage());
 		}
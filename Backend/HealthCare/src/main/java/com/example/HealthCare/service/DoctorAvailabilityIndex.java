@@ -0,0 +1,318 @@
+package com.example.HealthCare.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.HealthCare.dto.response.AvailableSlotsResponse;
+import com.example.HealthCare.enums.AppointmentStatus;
+import com.example.HealthCare.model.Appointment;
+import com.example.HealthCare.model.DoctorScheduleRule;
+import com.example.HealthCare.repository.AppointmentRepository;
+import com.example.HealthCare.repository.DoctorScheduleRuleRepository;
+import com.example.HealthCare.util.TransactionUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Index lịch rảnh của bác sĩ trong bộ nhớ.
+ *
+ * Mỗi bác sĩ giữ snapshot các DoctorScheduleRule (group theo weekday) và, theo từng ngày,
+ * danh sách lịch hẹn chưa hủy đã sắp xếp theo giờ bắt đầu. Truy vấn slot chỉ là một lần
+ * quét song song (slots x bookings đều đã sort) thay vì query DB mỗi lần.
+ *
+ * Index được cập nhật tăng dần từ AppointmentServiceImpl (create/reschedule/cancel/confirm)
+ * sau khi transaction commit. Các thay đổi ngoài luồng này (node khác, SQL tay) được hội tụ
+ * nhờ TTL của từng bác sĩ; việc đặt lịch vẫn luôn kiểm tra conflict dưới DB nên index cũ
+ * chỉ có thể hiển thị thừa một slot, không thể gây double-booking.
+ *
+ * Số bác sĩ trong index bị giới hạn (max-doctors, Caffeine). Một lần nạp chạy song song với thay đổi đã
+ * commit (evictDoctor, hoặc lịch hẹn của ngày đang nạp) có thể đọc dữ liệu trước thay đổi đó: bản nạp này
+ * bị bỏ thay vì được giữ lại trong index (so theo version / mốc invalidation).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DoctorAvailabilityIndex {
+
+    public static final ZoneOffset CLINIC_OFFSET = ZoneOffset.of("+07:00");
+    private static final DateTimeFormatter DISPLAY_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final DoctorScheduleRuleRepository doctorScheduleRuleRepository;
+    private final AppointmentRepository appointmentRepository;
+
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    @Value("${appointment.availability.ttl-minutes:5}")
+    private long ttlMinutes;
+
+    @Value("${appointment.availability.max-doctors:2000}")
+    private long maxDoctors;
+
+    private Cache<UUID, DoctorAvailability> doctors;
+    // doctorId -> mốc (theo invalidationSequence) của lần evictDoctor gần nhất
+    private Cache<UUID, Long> invalidatedAt;
+    private final AtomicLong invalidationSequence = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        doctors = Caffeine.newBuilder()
+                .maximumSize(maxDoctors)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+        invalidatedAt = Caffeine.newBuilder()
+                .maximumSize(maxDoctors)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    /**
+     * Lấy slot còn trống cho từng ngày trong [from, from + days).
+     * Các ngày chưa có trong index được nạp bằng một query duy nhất cho cả khoảng.
+     */
+    public Map<LocalDate, List<AvailableSlotsResponse.TimeSlot>> findAvailableSlots(
+            UUID doctorId, LocalDate from, int days, UUID excludeAppointmentId) {
+        LocalDate to = from.plusDays(days - 1L);
+        DoctorAvailability availability = getOrLoad(doctorId);
+        availability.ensureLoaded(from, to);
+
+        OffsetDateTime now = OffsetDateTime.now();
+        Map<LocalDate, List<AvailableSlotsResponse.TimeSlot>> result = new TreeMap<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            result.put(date, availability.slotsFor(date, now, excludeAppointmentId));
+        }
+        return result;
+    }
+
+    public void onAppointmentSaved(Appointment appointment) {
+        TransactionUtils.runAfterCommit(() -> {
+            DoctorAvailability availability = doctors.getIfPresent(appointment.getDoctorId());
+            if (availability == null) {
+                return;
+            }
+            if (appointment.getStatus() == AppointmentStatus.CANCELED) {
+                availability.remove(appointment.getId());
+            } else {
+                availability.upsert(appointment);
+            }
+        });
+    }
+
+    public void onAppointmentRemoved(UUID doctorId, UUID appointmentId) {
+        TransactionUtils.runAfterCommit(() -> {
+            DoctorAvailability availability = doctors.getIfPresent(doctorId);
+            if (availability != null) {
+                availability.remove(appointmentId);
+            }
+        });
+    }
+
+    /** Gọi khi lịch làm việc của bác sĩ thay đổi: rule và slot phải được tính lại từ đầu. */
+    public void evictDoctor(UUID doctorId) {
+        TransactionUtils.runAfterCommit(() -> {
+            // Ghi mốc trước khi gỡ: lần nạp nào đặt entry vào sau lần gỡ này vẫn thấy mốc và tự bỏ
+            invalidatedAt.put(doctorId, invalidationSequence.incrementAndGet());
+            doctors.invalidate(doctorId);
+        });
+    }
+
+    private DoctorAvailability getOrLoad(UUID doctorId) {
+        DoctorAvailability availability = doctors.getIfPresent(doctorId);
+        if (availability != null) {
+            return availability;
+        }
+        long stamp = invalidationSequence.get();
+        List<DoctorScheduleRule> rules = doctorScheduleRuleRepository.findByDoctorIdOrderByWeekdayAscStartTimeAsc(doctorId);
+        availability = new DoctorAvailability(doctorId, rules);
+        doctors.put(doctorId, availability);
+        Long invalidated = invalidatedAt.getIfPresent(doctorId);
+        if (invalidated != null && invalidated > stamp) {
+            // Lịch làm việc đổi trong lúc nạp: dùng cho request này, không giữ lại
+            doctors.asMap().remove(doctorId, availability);
+        }
+        log.debug("Loaded availability index for doctor {} ({} rules)", doctorId, rules.size());
+        return availability;
+    }
+
+    private record Booking(UUID id, OffsetDateTime start, OffsetDateTime end, OffsetDateTime holdingUntil) {
+
+        // Slot hold hết hạn không còn chiếm slot, dù job dọn dẹp chưa kịp xóa
+        boolean occupies(OffsetDateTime now) {
+            return holdingUntil == null || holdingUntil.isAfter(now);
+        }
+    }
+
+    private final class DoctorAvailability {
+        private final UUID doctorId;
+        // Tăng mỗi lần upsert/remove; lần nạp ngày nào thấy version đổi thì nạp lại
+        private long version;
+        private final Map<Short, List<DoctorScheduleRule>> rulesByWeekday = new HashMap<>();
+        // date -> bookings sorted by start; a date is present once it has been loaded
+        private final Map<LocalDate, List<Booking>> bookingsByDate = new HashMap<>();
+        private final Map<UUID, LocalDate> dateByAppointment = new HashMap<>();
+
+        DoctorAvailability(UUID doctorId, List<DoctorScheduleRule> rules) {
+            this.doctorId = doctorId;
+            for (DoctorScheduleRule rule : rules) {
+                rulesByWeekday.computeIfAbsent(rule.getWeekday(), k -> new ArrayList<>()).add(rule);
+            }
+        }
+
+        void ensureLoaded(LocalDate from, LocalDate to) {
+            for (int attempt = 1; attempt <= MAX_LOAD_ATTEMPTS; attempt++) {
+                if (tryLoad(from, to, attempt == MAX_LOAD_ATTEMPTS)) {
+                    return;
+                }
+            }
+            // Lịch hẹn đổi liên tục trong lúc nạp: đã dùng lần nạp cuối, lần sau nạp lại từ đầu
+            doctors.asMap().remove(doctorId, this);
+        }
+
+        /** @return false nếu lịch hẹn của bác sĩ thay đổi trong lúc query (kết quả có thể đã cũ) */
+        private boolean tryLoad(LocalDate from, LocalDate to, boolean lastAttempt) {
+            LocalDate firstMissing = null;
+            LocalDate lastMissing = null;
+            long loadVersion;
+            synchronized (this) {
+                loadVersion = version;
+                for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                    if (!bookingsByDate.containsKey(date) && hasRules(date)) {
+                        if (firstMissing == null) {
+                            firstMissing = date;
+                        }
+                        lastMissing = date;
+                    }
+                }
+            }
+            if (firstMissing == null) {
+                return true;
+            }
+
+            OffsetDateTime rangeStart = firstMissing.atStartOfDay().atOffset(CLINIC_OFFSET);
+            OffsetDateTime rangeEnd = lastMissing.atTime(LocalTime.MAX).atOffset(CLINIC_OFFSET);
+            List<Appointment> appointments = appointmentRepository.findActiveByDoctorIdAndDateRange(
+                    doctorId, rangeStart, rangeEnd, AppointmentStatus.CANCELED);
+
+            synchronized (this) {
+                if (version != loadVersion && !lastAttempt) {
+                    return false;
+                }
+                for (LocalDate date = firstMissing; !date.isAfter(lastMissing); date = date.plusDays(1)) {
+                    bookingsByDate.putIfAbsent(date, new ArrayList<>());
+                }
+                for (Appointment appointment : appointments) {
+                    if (!dateByAppointment.containsKey(appointment.getId())) {
+                        add(appointment);
+                    }
+                }
+                return version == loadVersion;
+            }
+        }
+
+        synchronized void upsert(Appointment appointment) {
+            remove(appointment.getId());
+            if (bookingsByDate.containsKey(localDate(appointment.getScheduledStart()))) {
+                add(appointment);
+            }
+        }
+
+        synchronized void remove(UUID appointmentId) {
+            version++;
+            LocalDate date = dateByAppointment.remove(appointmentId);
+            if (date != null) {
+                bookingsByDate.get(date).removeIf(b -> b.id().equals(appointmentId));
+            }
+        }
+
+        synchronized List<AvailableSlotsResponse.TimeSlot> slotsFor(LocalDate date, OffsetDateTime now, UUID excludeAppointmentId) {
+            List<DoctorScheduleRule> dayRules = rulesByWeekday.get(DoctorScheduleRule.getWeekdayFromDate(date));
+            if (dayRules == null || dayRules.isEmpty()) {
+                return List.of();
+            }
+
+            // Assuming all rules share the session duration of the first one (same as the schedule editor)
+            int sessionDuration = dayRules.get(0).getSessionMinutes();
+            List<Booking> bookings = bookingsByDate.getOrDefault(date, List.of());
+            List<AvailableSlotsResponse.TimeSlot> slots = new ArrayList<>();
+
+            int cursor = 0;
+            for (DoctorScheduleRule rule : dayRules) {
+                LocalTime ruleEnd = rule.getEndTime();
+                LocalTime currentSlotStart = rule.getStartTime();
+                while (currentSlotStart.isBefore(ruleEnd)) {
+                    LocalTime currentSlotEnd = currentSlotStart.plusMinutes(sessionDuration);
+                    if (currentSlotEnd.isAfter(ruleEnd) || currentSlotEnd.isBefore(currentSlotStart)) {
+                        break;
+                    }
+
+                    OffsetDateTime slotStart = date.atTime(currentSlotStart).atOffset(CLINIC_OFFSET);
+                    OffsetDateTime slotEnd = date.atTime(currentSlotEnd).atOffset(CLINIC_OFFSET);
+
+                    // Bookings ending before this slot can never overlap a later slot either
+                    while (cursor < bookings.size() && !bookings.get(cursor).end().isAfter(slotStart)) {
+                        cursor++;
+                    }
+
+                    if (!slotStart.isBefore(now) && isFree(bookings, cursor, slotStart, slotEnd, now, excludeAppointmentId)) {
+                        slots.add(AvailableSlotsResponse.TimeSlot.builder()
+                                .startTime(slotStart.toString())
+                                .endTime(slotEnd.toString())
+                                .displayTime(currentSlotStart.format(DISPLAY_FORMATTER))
+                                .build());
+                    }
+                    currentSlotStart = currentSlotEnd;
+                }
+            }
+            return slots;
+        }
+
+        private boolean isFree(List<Booking> bookings, int from, OffsetDateTime slotStart, OffsetDateTime slotEnd,
+                               OffsetDateTime now, UUID excludeAppointmentId) {
+            for (int i = from; i < bookings.size(); i++) {
+                Booking booking = bookings.get(i);
+                if (!booking.start().isBefore(slotEnd)) {
+                    return true;
+                }
+                if (booking.end().isAfter(slotStart) && booking.occupies(now) && !booking.id().equals(excludeAppointmentId)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasRules(LocalDate date) {
+            return rulesByWeekday.containsKey(DoctorScheduleRule.getWeekdayFromDate(date));
+        }
+
+        private void add(Appointment appointment) {
+            LocalDate date = localDate(appointment.getScheduledStart());
+            List<Booking> bookings = bookingsByDate.computeIfAbsent(date, k -> new ArrayList<>());
+            bookings.add(new Booking(appointment.getId(), appointment.getScheduledStart(), appointment.getScheduledEnd(),
+                    appointment.getHoldingUntil()));
+            bookings.sort(Comparator.comparing(Booking::start));
+            dateByAppointment.put(appointment.getId(), date);
+        }
+
+        private LocalDate localDate(OffsetDateTime dateTime) {
+            return dateTime.atZoneSameInstant(CLINIC_OFFSET).toLocalDate();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.HealthCare.service;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.HealthCare.model.DoctorProfile;
+import com.example.HealthCare.model.DoctorScheduleRule;
+import com.example.HealthCare.repository.DoctorProfileRepository;
+import com.example.HealthCare.repository.DoctorScheduleRuleRepository;
+import com.example.HealthCare.util.TransactionUtils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Danh bạ bác sĩ trong bộ nhớ cho màn hình tìm bác sĩ.
+ *
+ * Snapshot gồm profile, tên/chuyên khoa đã bỏ dấu tiếng Việt, giá khám và bitmask các thứ
+ * trong tuần có lịch làm việc. Snapshot được build lại bằng 2 query (profiles + rules) khi:
+ *  - có thay đổi liên quan tới bác sĩ (invalidate() gọi sau commit), hoặc
+ *  - định kỳ theo doctor.directory.refresh-ms để hội tụ với thay đổi từ node khác.
+ * Tìm kiếm, lọc theo ngày và phân trang đều chạy trên snapshot, không query DB theo từng bác sĩ.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DoctorDirectoryIndex {
+
+    private static final BigDecimal DEFAULT_COST = new BigDecimal("150000");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private final DoctorProfileRepository doctorProfileRepository;
+    private final DoctorScheduleRuleRepository doctorScheduleRuleRepository;
+
+    private volatile List<DoctorEntry> snapshot;
+    private volatile boolean stale = true;
+
+    public Page<DoctorEntry> search(String query, LocalDate date, int page, int size) {
+        List<String> tokens = tokenize(query);
+        short weekday = date != null ? DoctorScheduleRule.getWeekdayFromDate(date) : 0;
+
+        List<DoctorEntry> matches = currentSnapshot().stream()
+                .filter(entry -> entry.matches(tokens))
+                .filter(entry -> date == null || entry.worksOn(weekday))
+                .collect(Collectors.toList());
+
+        int from = (int) Math.min((long) page * size, matches.size());
+        int to = (int) Math.min((long) from + size, matches.size());
+        return new PageImpl<>(matches.subList(from, to), PageRequest.of(page, size), matches.size());
+    }
+
+    /** Đánh dấu snapshot cần build lại, sau khi transaction hiện tại commit. */
+    public void invalidate() {
+        TransactionUtils.runAfterCommit(() -> stale = true);
+    }
+
+    @Scheduled(fixedDelayString = "${doctor.directory.refresh-ms:300000}")
+    public void refresh() {
+        stale = true;
+    }
+
+    private List<DoctorEntry> currentSnapshot() {
+        List<DoctorEntry> current = snapshot;
+        if (current != null && !stale) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null || stale) {
+                stale = false;
+                try {
+                    snapshot = build();
+                } catch (RuntimeException e) {
+                    stale = true;
+                    throw e;
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    private List<DoctorEntry> build() {
+        long startTime = System.currentTimeMillis();
+        List<DoctorProfile> profiles = doctorProfileRepository.findAllWithUserAccount();
+
+        Map<UUID, List<DoctorScheduleRule>> rulesByDoctor = new HashMap<>();
+        for (DoctorScheduleRule rule : doctorScheduleRuleRepository.findAll()) {
+            rulesByDoctor.computeIfAbsent(rule.getDoctorId(), k -> new ArrayList<>()).add(rule);
+        }
+
+        List<DoctorEntry> entries = new ArrayList<>(profiles.size());
+        for (DoctorProfile profile : profiles) {
+            List<DoctorScheduleRule> rules = rulesByDoctor.computeIfAbsent(profile.getUserId(), k -> new ArrayList<>());
+            rules.sort(Comparator.comparing(DoctorScheduleRule::getWeekday).thenComparing(DoctorScheduleRule::getStartTime));
+            entries.add(new DoctorEntry(profile, rules));
+        }
+        // Thứ tự ổn định để phân trang không bị nhảy giữa các lần gọi
+        entries.sort(Comparator.comparing(DoctorEntry::getSortKey).thenComparing(DoctorEntry::getDoctorId));
+
+        log.info("Doctor directory rebuilt: {} doctors in {} ms", entries.size(), System.currentTimeMillis() - startTime);
+        return List.copyOf(entries);
+    }
+
+    private static List<String> tokenize(String query) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(fold(query).split("\\s+"))
+                .filter(token -> !token.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /** Bỏ dấu tiếng Việt và lowercase: "Nội Tổng Quát" -> "noi tong quat". */
+    static String fold(String value) {
+        if (value == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(value, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(normalized).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+
+    public static final class DoctorEntry {
+        private final DoctorProfile profile;
+        private final String fullName;
+        private final BigDecimal appointmentCost;
+        private final String searchText;
+        private final String sortKey;
+        private final int weekdayMask;
+        private final Map<Short, List<LocalTime>> startTimesByWeekday = new HashMap<>();
+
+        DoctorEntry(DoctorProfile profile, List<DoctorScheduleRule> rules) {
+            this.profile = profile;
+            this.fullName = profile.getUserAccount() != null ? profile.getUserAccount().getFullName() : null;
+            this.appointmentCost = rules.isEmpty() ? DEFAULT_COST : rules.get(0).getAppointmentCost();
+            this.searchText = fold(fullName) + " " + fold(profile.getSpecialties());
+            this.sortKey = fold(fullName);
+
+            int mask = 0;
+            for (DoctorScheduleRule rule : rules) {
+                mask |= 1 << rule.getWeekday();
+                startTimesByWeekday.computeIfAbsent(rule.getWeekday(), k -> new ArrayList<>()).add(rule.getStartTime());
+            }
+            this.weekdayMask = mask;
+        }
+
+        boolean matches(List<String> tokens) {
+            for (String token : tokens) {
+                if (!searchText.contains(token)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean worksOn(short weekday) {
+            return (weekdayMask & (1 << weekday)) != 0;
+        }
+
+        public UUID getDoctorId() {
+            return profile.getUserId();
+        }
+
+        public DoctorProfile getProfile() {
+            return profile;
+        }
+
+        public String getFullName() {
+            return fullName;
+        }
+
+        public BigDecimal getAppointmentCost() {
+            return appointmentCost;
+        }
+
+        public List<LocalTime> getStartTimes(LocalDate date) {
+            if (date == null) {
+                return List.of();
+            }
+            return startTimesByWeekday.getOrDefault(DoctorScheduleRule.getWeekdayFromDate(date), List.of());
+        }
+
+        String getSortKey() {
+            return sortKey;
+        }
+    }
+}
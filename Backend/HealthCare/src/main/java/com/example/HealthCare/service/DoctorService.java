@@ -4,12 +4,15 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Page;
+
 import com.example.HealthCare.dto.DoctorDetailDto;
 import com.example.HealthCare.dto.DoctorSummaryDto;
 import com.example.HealthCare.dto.response.ProfessionalInfoResponse;
 
 public interface DoctorService {
     List<DoctorSummaryDto> getAllDoctors(String searchQuery, LocalDate datetime);
+    Page<DoctorSummaryDto> searchDoctors(String searchQuery, LocalDate datetime, int page, int size);
     DoctorDetailDto getDoctorDetail(UUID doctorId);
     ProfessionalInfoResponse getProfessionalInfo(UUID doctorId);
     ProfessionalInfoResponse updateProfessionalInfo(UUID doctorId, com.example.HealthCare.dto.request.UpdateProfessionalInfoRequest request);
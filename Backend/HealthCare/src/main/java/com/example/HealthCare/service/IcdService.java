@@ -75,7 +75,7 @@ public class IcdService {
         return CHAPTERS;
     }
 
-    @Cacheable(value = "icdCodes", key = "#codeFrom + ':' + #codeTo")
+    @Cacheable(value = "icdCodes", key = "#codeFrom + ':' + #codeTo", sync = true)
     public List<IcdDiseaseSearchItemDto> getCodesByRange(String codeFrom, String codeTo) {
         if (codeFrom == null || codeTo == null || codeFrom.isBlank() || codeTo.isBlank()) {
             return List.of();
@@ -90,7 +90,7 @@ public class IcdService {
                 .collect(Collectors.toList());
     }
 
-    @Cacheable(value = "icdSearch", key = "#q")
+    @Cacheable(value = "icdSearch", key = "#q", sync = true)
     public List<IcdDiseaseSearchItemDto> search(String q) {
         if (q == null || q.isBlank()) {
             return List.of();
@@ -106,7 +106,7 @@ public class IcdService {
                 .collect(Collectors.toList());
     }
 
-    @Cacheable(value = "icdMedications", key = "#icdCode")
+    @Cacheable(value = "icdMedications", key = "#icdCode", sync = true)
     public List<IcdMedicationItemDto> getMedicationsByIcdCode(String icdCode) {
         if (icdCode == null || icdCode.isBlank()) {
             return List.of();
@@ -0,0 +1,201 @@
+package com.example.HealthCare.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.example.HealthCare.dto.response.NotificationDispatchStatusResponse;
+import com.example.HealthCare.dto.response.NotificationResponse;
+import com.example.HealthCare.model.NotificationUser;
+import com.example.HealthCare.repository.NotificationUserRepository;
+import com.example.HealthCare.util.TransactionUtils;
+import com.example.HealthCare.websocket.NotificationWebSocketService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đẩy thông báo broadcast qua WebSocket sau khi transaction tạo thông báo đã commit.
+ *
+ * Người nhận đã được ghi xuống notification_user bằng một câu INSERT ... SELECT; ở đây chỉ
+ * cộng counter chưa đọc của người nhận (NotificationUnreadCounter.incrementAll) rồi push cho những user
+ * đang online theo PresenceService (mọi node; người offline sẽ thấy khi mở app), theo từng chunk: một query
+ * lấy notification_user của chunk, số chưa đọc lấy từ counter (counter chưa nạp được nạp bằng một query
+ * GROUP BY cho cả chunk).
+ * Việc chạy trên notificationTaskExecutor nên request của admin không phải chờ.
+ *
+ * Trạng thái job được giữ trong bộ nhớ trong retention-minutes để admin theo dõi tiến độ.
+ */
+@Service
+@Slf4j
+public class NotificationFanoutService {
+
+    private final NotificationUserRepository notificationUserRepository;
+    private final NotificationWebSocketService webSocketService;
+    private final NotificationUnreadCounter unreadCounter;
+    private final Executor executor;
+
+    @Value("${notification.fanout.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${notification.fanout.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final Map<UUID, NotificationDispatchStatusResponse> jobs = new ConcurrentHashMap<>();
+
+    public NotificationFanoutService(NotificationUserRepository notificationUserRepository,
+                                     NotificationWebSocketService webSocketService,
+                                     NotificationUnreadCounter unreadCounter,
+                                     @Qualifier("notificationTaskExecutor") Executor executor) {
+        this.notificationUserRepository = notificationUserRepository;
+        this.webSocketService = webSocketService;
+        this.unreadCounter = unreadCounter;
+        this.executor = executor;
+    }
+
+    /**
+     * Đăng ký job và bắt đầu push sau khi transaction hiện tại commit (rollback thì không có job).
+     * @param counterSince NotificationUnreadCounter.currentTime() lấy trước khi ghi người nhận
+     */
+    public void dispatchAfterCommit(NotificationResponse notification, int recipients, long counterSince) {
+        TransactionUtils.runAfterCommit(() -> {
+            pruneFinishedJobs();
+            NotificationDispatchStatusResponse job = NotificationDispatchStatusResponse.builder()
+                    .notificationId(notification.getId())
+                    .status("QUEUED")
+                    .recipients(recipients)
+                    .queuedAt(OffsetDateTime.now())
+                    .build();
+            jobs.put(notification.getId(), job);
+            try {
+                executor.execute(() -> dispatch(notification, job, counterSince));
+            } catch (RuntimeException e) {
+                fail(job, e);
+            }
+        });
+    }
+
+    public Optional<NotificationDispatchStatusResponse> getStatus(UUID notificationId) {
+        NotificationDispatchStatusResponse job = jobs.get(notificationId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        synchronized (job) {
+            return Optional.of(NotificationDispatchStatusResponse.builder()
+                    .notificationId(job.getNotificationId())
+                    .status(job.getStatus())
+                    .recipients(job.getRecipients())
+                    .onlineRecipients(job.getOnlineRecipients())
+                    .pushed(job.getPushed())
+                    .failed(job.getFailed())
+                    .queuedAt(job.getQueuedAt())
+                    .startedAt(job.getStartedAt())
+                    .finishedAt(job.getFinishedAt())
+                    .error(job.getError())
+                    .build());
+        }
+    }
+
+    private void dispatch(NotificationResponse notification, NotificationDispatchStatusResponse job,
+                          long counterSince) {
+        long startTime = System.currentTimeMillis();
+        synchronized (job) {
+            job.setStatus("DISPATCHING");
+            job.setStartedAt(OffsetDateTime.now());
+        }
+
+        try {
+            unreadCounter.incrementAll(notificationUserRepository.findUserIdsByNotificationId(notification.getId()),
+                    counterSince);
+            List<UUID> activeUsers = new ArrayList<>(webSocketService.getOnlineUserIds());
+            for (int from = 0; from < activeUsers.size(); from += chunkSize) {
+                List<UUID> chunk = activeUsers.subList(from, Math.min(from + chunkSize, activeUsers.size()));
+                dispatchChunk(notification, chunk, job);
+            }
+            synchronized (job) {
+                job.setStatus("COMPLETED");
+                job.setFinishedAt(OffsetDateTime.now());
+            }
+            log.info("Notification {} dispatched: {} recipients, {} online, {} pushed in {} ms",
+                    notification.getId(), job.getRecipients(), job.getOnlineRecipients(), job.getPushed(),
+                    System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            fail(job, e);
+        }
+    }
+
+    private void dispatchChunk(NotificationResponse notification, List<UUID> userIds,
+                               NotificationDispatchStatusResponse job) {
+        List<NotificationUser> recipients = notificationUserRepository
+                .findByNotificationIdAndUserIdIn(notification.getId(), userIds);
+        if (recipients.isEmpty()) {
+            return;
+        }
+
+        List<UUID> recipientIds = recipients.stream().map(nu -> nu.getUser().getId()).toList();
+        Map<UUID, Long> unreadCounts = unreadCounter.getAll(recipientIds);
+
+        int pushed = 0;
+        int failed = 0;
+        for (NotificationUser recipient : recipients) {
+            UUID userId = recipient.getUser().getId();
+            try {
+                webSocketService.sendNotificationToUser(userId, forRecipient(notification, recipient));
+                webSocketService.sendUnreadCountToUser(userId, unreadCounts.getOrDefault(userId, 0L));
+                pushed++;
+            } catch (Exception e) {
+                log.error("Error broadcasting notification via WebSocket to user {}: {}", userId, e.getMessage());
+                failed++;
+            }
+        }
+
+        synchronized (job) {
+            job.setOnlineRecipients(job.getOnlineRecipients() + recipients.size());
+            job.setPushed(job.getPushed() + pushed);
+            job.setFailed(job.getFailed() + failed);
+        }
+    }
+
+    private NotificationResponse forRecipient(NotificationResponse notification, NotificationUser recipient) {
+        return NotificationResponse.builder()
+                .id(notification.getId())
+                .title(notification.getTitle())
+                .content(notification.getContent())
+                .type(notification.getType())
+                .targetRoles(notification.getTargetRoles())
+                .createdBy(notification.getCreatedBy())
+                .createdByName(notification.getCreatedByName())
+                .createdAt(notification.getCreatedAt())
+                .isRead(recipient.getIsRead())
+                .readAt(recipient.getReadAt())
+                .notificationUserId(recipient.getId())
+                .build();
+    }
+
+    private void fail(NotificationDispatchStatusResponse job, Exception e) {
+        log.error("Notification {} dispatch failed: {}", job.getNotificationId(), e.getMessage(), e);
+        synchronized (job) {
+            job.setStatus("FAILED");
+            job.setError(e.getMessage());
+            job.setFinishedAt(OffsetDateTime.now());
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(Duration.ofMinutes(retentionMinutes));
+        jobs.values().removeIf(job -> {
+            synchronized (job) {
+                return job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff);
+            }
+        });
+    }
+}
@@ -5,6 +5,7 @@ import java.util.UUID;
 
 import com.example.HealthCare.dto.request.CreateNotificationRequest;
 import com.example.HealthCare.dto.request.UpdateNotificationRequest;
+import com.example.HealthCare.dto.response.NotificationDispatchStatusResponse;
 import com.example.HealthCare.dto.response.NotificationResponse;
 
 public interface NotificationService {
@@ -15,6 +16,8 @@ public interface NotificationService {
     void deleteNotification(UUID notificationId);
     List<NotificationResponse> getAllNotifications();
     NotificationResponse getNotificationById(UUID notificationId);
+    // Tiến độ push WebSocket của một broadcast (job giữ trong bộ nhớ một thời gian sau khi xong)
+    NotificationDispatchStatusResponse getDispatchStatus(UUID notificationId);
     
     // User operations - read notifications
     List<NotificationResponse> getUserNotifications(UUID userId);
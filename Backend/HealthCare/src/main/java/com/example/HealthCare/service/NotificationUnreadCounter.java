@@ -0,0 +1,378 @@
+package com.example.HealthCare.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.HealthCare.repository.NotificationUserRepository;
+import com.example.HealthCare.util.TransactionUtils;
+import com.example.HealthCare.websocket.NotificationWebSocketService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Số thông báo chưa đọc của từng user, giữ sẵn thay vì COUNT notification_user mỗi lần.
+ *
+ * Counter được nạp lười bằng COUNT (hoặc một query GROUP BY cho cả chunk) rồi cập nhật theo sự kiện
+ * sau khi transaction commit: +1 khi có thông báo riêng, -n khi đọc (n = số dòng UPDATE thực sự đổi).
+ * Broadcast chỉ chạm tới counter của người nhận (incrementAll, chạy trong job fan-out): counter đã nạp
+ * xong trước khi broadcast bắt đầu ghi người nhận được +1; counter nạp trong lúc đó (COUNT có thể đã thấy
+ * hoặc chưa thấy thông báo) bị bỏ để nạp lại. Đổi role người nhận / xóa thông báo bỏ counter của những
+ * người nhận bị ảnh hưởng. Không có thao tác nào làm mọi user cùng COUNT lại một lúc; tăng key generation
+ * (chỉ khi sửa dữ liệu trực tiếp dưới DB) thì mọi counter nạp lại.
+ *
+ * Khi có Redis, counter là hash {g, c, v} cập nhật bằng Lua script nên mọi node dùng chung; không có
+ * Redis thì giữ trong ConcurrentHashMap với lock theo stripe. Mỗi thay đổi tăng version (v) của user,
+ * kết quả COUNT chỉ được ghi nếu version và generation không đổi trong lúc query.
+ *
+ * Counter hết hạn sau ttl-minutes và được đối chiếu lại với DB định kỳ (reconcile-ms) cho các user đang
+ * online, nên sai lệch (ví dụ Redis lỗi giữa chừng) không kéo dài quá khoảng đó.
+ */
+@Component
+@Slf4j
+public class NotificationUnreadCounter {
+
+    private static final int STRIPES = 256;
+    private static final int RECONCILE_CHUNK = 500;
+    private static final String KEY_PREFIX = "healthcare:notif-unread:";
+    private static final String GENERATION_KEY = KEY_PREFIX + "generation";
+
+    // KEYS[1] = generation, KEYS[2] = counter -> {hit, count, generation, version}
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            local gen = redis.call('get', KEYS[1]) or '0'
+            local v = redis.call('hmget', KEYS[2], 'g', 'c', 'v')
+            local hit, count = 0, 0
+            if v[1] == gen then hit, count = 1, tonumber(v[2]) end
+            return {hit, count, tonumber(gen), tonumber(v[3] or '0')}
+            """, List.class);
+
+    // ARGV = count, generation, version, ttl: chỉ ghi nếu generation/version vẫn như lúc đọc; t = lúc ghi (ms)
+    private static final DefaultRedisScript<Long> STORE_SCRIPT = new DefaultRedisScript<>("""
+            local gen = redis.call('get', KEYS[1]) or '0'
+            local v = redis.call('hget', KEYS[2], 'v') or '0'
+            if gen ~= ARGV[2] or v ~= ARGV[3] then return 0 end
+            local t = redis.call('time')
+            redis.call('hset', KEYS[2], 'g', gen, 'c', ARGV[1], 'v', v, 't', t[1] * 1000 + math.floor(t[2] / 1000))
+            redis.call('expire', KEYS[2], ARGV[4])
+            return 1
+            """, Long.class);
+
+    // ARGV = delta, ttl: counter chưa nạp thì chỉ tăng version để lần nạp đang chạy bị bỏ
+    private static final DefaultRedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>("""
+            local gen = redis.call('get', KEYS[1]) or '0'
+            redis.call('hincrby', KEYS[2], 'v', 1)
+            redis.call('expire', KEYS[2], ARGV[2])
+            if redis.call('hget', KEYS[2], 'g') ~= gen then return -1 end
+            local c = redis.call('hincrby', KEYS[2], 'c', ARGV[1])
+            if c < 0 then
+              redis.call('hset', KEYS[2], 'c', 0)
+              return 0
+            end
+            return c
+            """, Long.class);
+
+    // ARGV = since, ttl: +1 nếu counter đã nạp xong trước since, ngược lại bỏ counter (hdel g)
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>("""
+            local gen = redis.call('get', KEYS[1]) or '0'
+            redis.call('hincrby', KEYS[2], 'v', 1)
+            redis.call('expire', KEYS[2], ARGV[2])
+            local v = redis.call('hmget', KEYS[2], 'g', 't')
+            if v[1] ~= gen then return -1 end
+            if tonumber(v[2] or ARGV[1]) >= tonumber(ARGV[1]) then
+              redis.call('hdel', KEYS[2], 'g')
+              return -1
+            end
+            return redis.call('hincrby', KEYS[2], 'c', 1)
+            """, Long.class);
+
+    // Bỏ counter; lần nạp đang chạy cũng bị bỏ vì version đổi
+    private static final DefaultRedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('hincrby', KEYS[1], 'v', 1)
+            redis.call('hdel', KEYS[1], 'g')
+            redis.call('expire', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    private final NotificationUserRepository notificationUserRepository;
+    private final NotificationWebSocketService webSocketService;
+    private final Executor executor;
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${notification.unread.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    // Fallback khi không có Redis
+    private final Object[] locks = new Object[STRIPES];
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<UUID, LocalCounter> counters = new ConcurrentHashMap<>();
+
+    public NotificationUnreadCounter(NotificationUserRepository notificationUserRepository,
+                                     NotificationWebSocketService webSocketService,
+                                     @Qualifier("notificationTaskExecutor") Executor executor) {
+        this.notificationUserRepository = notificationUserRepository;
+        this.webSocketService = webSocketService;
+        this.executor = executor;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public long get(UUID userId) {
+        return getAll(List.of(userId)).getOrDefault(userId, 0L);
+    }
+
+    /** Số chưa đọc của nhiều user; user chưa có counter được nạp chung bằng một query GROUP BY. */
+    public Map<UUID, Long> getAll(Collection<UUID> userIds) {
+        Map<UUID, Long> counts = new HashMap<>();
+        Map<UUID, Stamp> misses = new HashMap<>();
+        for (UUID userId : new LinkedHashSet<>(userIds)) {
+            Stamp stamp = read(userId);
+            if (stamp != null && stamp.hit()) {
+                counts.put(userId, stamp.count());
+            } else {
+                misses.put(userId, stamp);
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<UUID, Long> loaded = countFromDb(misses.keySet());
+            misses.forEach((userId, stamp) -> {
+                long count = loaded.getOrDefault(userId, 0L);
+                counts.put(userId, count);
+                if (stamp != null) {
+                    store(userId, stamp, count);
+                }
+            });
+        }
+        return counts;
+    }
+
+    /** Cộng delta vào counter của user sau khi transaction hiện tại commit. */
+    public void addAfterCommit(UUID userId, long delta) {
+        if (delta != 0) {
+            TransactionUtils.runAfterCommit(() -> add(userId, delta));
+        }
+    }
+
+    /**
+     * Mốc thời gian (ms, cùng đồng hồ với lúc ghi counter) để truyền cho incrementAll.
+     * Phải lấy trước khi ghi notification_user của broadcast.
+     */
+    public long currentTime() {
+        if (redisTemplate == null) {
+            return System.currentTimeMillis();
+        }
+        try {
+            Long time = redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.serverCommands().time(TimeUnit.MILLISECONDS));
+            return time != null ? time : 0;
+        } catch (Exception e) {
+            // 0: không counter nào được +1, tất cả bị bỏ để nạp lại
+            log.warn("Could not read Redis time for unread counters: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * +1 cho counter của các người nhận một broadcast (gọi sau commit). since = currentTime() lấy trước khi
+     * ghi người nhận: counter nạp sau mốc này có thể đã đếm thông báo nên bị bỏ thay vì cộng.
+     */
+    public void incrementAll(Collection<UUID> userIds, long since) {
+        for (UUID userId : userIds) {
+            if (redisTemplate == null) {
+                int stripe = stripe(userId);
+                synchronized (locks[stripe]) {
+                    versions.incrementAndGet(stripe);
+                    counters.computeIfPresent(userId, (key, counter) ->
+                            counter.generation() == generation.get() && counter.loadedAt() < since
+                                    ? counter.plus(1)
+                                    : null);
+                }
+                continue;
+            }
+            try {
+                redisTemplate.execute(INCREMENT_SCRIPT, List.of(GENERATION_KEY, key(userId)), since, ttlMinutes * 60);
+            } catch (Exception e) {
+                log.warn("Could not update unread counter of {}: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    /** Bỏ counter của các user sau khi commit (chạy nền trên notificationTaskExecutor). */
+    public void invalidateAfterCommit(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return;
+        }
+        List<UUID> targets = List.copyOf(userIds);
+        TransactionUtils.runAfterCommit(() -> executor.execute(() -> targets.forEach(this::invalidate)));
+    }
+
+    /** Đối chiếu counter của các user đang online với DB; user khác tự nạp lại khi hết TTL. */
+    @Scheduled(fixedDelayString = "${notification.unread.reconcile-ms:300000}")
+    public void reconcile() {
+        if (redisTemplate == null) {
+            long now = System.currentTimeMillis();
+            counters.values().removeIf(counter -> counter.isExpired(now, ttlMinutes));
+        }
+
+        List<UUID> activeUsers = new ArrayList<>(webSocketService.getActiveUserIds());
+        int corrected = 0;
+        for (int from = 0; from < activeUsers.size(); from += RECONCILE_CHUNK) {
+            List<UUID> chunk = activeUsers.subList(from, Math.min(from + RECONCILE_CHUNK, activeUsers.size()));
+            Map<UUID, Stamp> stamps = new HashMap<>();
+            for (UUID userId : chunk) {
+                stamps.put(userId, read(userId));
+            }
+            Map<UUID, Long> loaded = countFromDb(chunk);
+            for (UUID userId : chunk) {
+                Stamp stamp = stamps.get(userId);
+                long count = loaded.getOrDefault(userId, 0L);
+                if (stamp == null || (stamp.hit() && stamp.count() == count)) {
+                    continue;
+                }
+                if (stamp.hit()) {
+                    corrected++;
+                }
+                store(userId, stamp, count);
+            }
+        }
+        if (corrected > 0) {
+            log.warn("Unread notification counters corrected for {} users", corrected);
+        }
+    }
+
+    private Map<UUID, Long> countFromDb(Collection<UUID> userIds) {
+        Map<UUID, Long> counts = new HashMap<>();
+        for (Object[] row : notificationUserRepository.countUnreadByUserIds(userIds)) {
+            counts.put((UUID) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    /** Trạng thái hiện tại của counter, hoặc null nếu Redis lỗi (khi đó chỉ đọc DB, không ghi). */
+    private Stamp read(UUID userId) {
+        if (redisTemplate == null) {
+            long currentGeneration = generation.get();
+            long version = versions.get(stripe(userId));
+            LocalCounter counter = counters.get(userId);
+            if (counter != null && counter.generation() == currentGeneration
+                    && !counter.isExpired(System.currentTimeMillis(), ttlMinutes)) {
+                return new Stamp(true, counter.count(), currentGeneration, version);
+            }
+            return new Stamp(false, 0, currentGeneration, version);
+        }
+
+        try {
+            List<?> result = redisTemplate.execute(READ_SCRIPT, List.of(GENERATION_KEY, key(userId)));
+            if (result == null || result.size() < 4) {
+                return null;
+            }
+            return new Stamp(((Number) result.get(0)).longValue() == 1,
+                    ((Number) result.get(1)).longValue(),
+                    ((Number) result.get(2)).longValue(),
+                    ((Number) result.get(3)).longValue());
+        } catch (Exception e) {
+            log.warn("Redis unavailable for unread counter of {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(UUID userId, Stamp stamp, long count) {
+        if (redisTemplate == null) {
+            int stripe = stripe(userId);
+            synchronized (locks[stripe]) {
+                if (generation.get() == stamp.generation() && versions.get(stripe) == stamp.version()) {
+                    counters.put(userId, new LocalCounter(stamp.generation(), count, System.currentTimeMillis()));
+                }
+            }
+            return;
+        }
+
+        try {
+            redisTemplate.execute(STORE_SCRIPT, List.of(GENERATION_KEY, key(userId)),
+                    count, stamp.generation(), stamp.version(), ttlMinutes * 60);
+        } catch (Exception e) {
+            log.warn("Could not store unread counter of {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void add(UUID userId, long delta) {
+        if (redisTemplate == null) {
+            int stripe = stripe(userId);
+            synchronized (locks[stripe]) {
+                versions.incrementAndGet(stripe);
+                counters.computeIfPresent(userId, (key, counter) -> counter.generation() == generation.get()
+                        ? counter.plus(delta)
+                        : null);
+            }
+            return;
+        }
+
+        try {
+            redisTemplate.execute(ADD_SCRIPT, List.of(GENERATION_KEY, key(userId)), delta, ttlMinutes * 60);
+        } catch (Exception e) {
+            log.warn("Could not update unread counter of {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void invalidate(UUID userId) {
+        if (redisTemplate == null) {
+            int stripe = stripe(userId);
+            synchronized (locks[stripe]) {
+                versions.incrementAndGet(stripe);
+                counters.remove(userId);
+            }
+            return;
+        }
+
+        try {
+            redisTemplate.execute(INVALIDATE_SCRIPT, List.of(key(userId)), ttlMinutes * 60);
+        } catch (Exception e) {
+            log.warn("Could not invalidate unread counter of {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private static String key(UUID userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private static int stripe(UUID userId) {
+        return Math.floorMod(userId.hashCode(), STRIPES);
+    }
+
+    /** hit = counter còn hiệu lực (count); generation/version lúc đọc dùng để ghi kết quả COUNT. */
+    private record Stamp(boolean hit, long count, long generation, long version) {
+    }
+
+    private record LocalCounter(long generation, long count, long loadedAt) {
+
+        LocalCounter plus(long delta) {
+            return new LocalCounter(generation, Math.max(0, count + delta), loadedAt);
+        }
+
+        boolean isExpired(long now, long ttlMinutes) {
+            return now - loadedAt > ttlMinutes * 60_000L;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.HealthCare.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import com.example.HealthCare.config.cache.CacheTagIndex;
+import com.example.HealthCare.config.cache.CacheTags;
+import com.example.HealthCare.enums.AccountStatus;
+import com.example.HealthCare.enums.UserRole;
+import com.example.HealthCare.model.UserAccount;
+import com.example.HealthCare.util.TransactionUtils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Evict các entry cache phụ thuộc vào entity vừa đổi, theo tag đã ghi lúc entry được cache (CacheTags),
+ * thay cho @CacheEvict(allEntries = true): đổi mật khẩu của một user chỉ bỏ các entry của user đó.
+ *
+ * Gọi sau khi ghi DB; invalidateAfterCommit chờ transaction commit để lần nạp lại không đọc dữ liệu cũ.
+ * Không đọc được chỉ mục tag (Redis lỗi) thì clear các cache có tag, như hành vi cũ.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TaggedCacheInvalidator {
+
+    private final CacheManager cacheManager;
+    private final CacheTagIndex cacheTagIndex;
+
+    public void invalidateAfterCommit(String... tags) {
+        List<String> tagList = List.of(tags);
+        TransactionUtils.runAfterCommit(() -> invalidate(tagList));
+    }
+
+    /**
+     * Bỏ các entry phụ thuộc vào user sau khi commit; nếu user giờ là bác sĩ chờ duyệt thì bỏ cả danh sách
+     * chờ duyệt (thành viên mới, chưa có tag user trong entry cũ).
+     */
+    public void invalidateUserAfterCommit(UserAccount userAccount) {
+        if (userAccount.getRole() == UserRole.DOCTOR && userAccount.getStatus() == AccountStatus.PENDING) {
+            invalidateAfterCommit(CacheTags.user(userAccount.getId()), CacheTags.PENDING_DOCTORS);
+        } else {
+            invalidateAfterCommit(CacheTags.user(userAccount.getId()));
+        }
+    }
+
+    /** Evict mọi entry gắn với các tag, trả về số entry đã evict. */
+    public int invalidate(Collection<String> tags) {
+        Map<String, Set<Object>> entries;
+        try {
+            entries = cacheTagIndex.take(tags);
+        } catch (Exception e) {
+            log.warn("Could not read cache tag index for {}, clearing tagged caches: {}", tags, e.getMessage());
+            CacheTags.taggedCacheNames().forEach(this::clear);
+            return -1;
+        }
+
+        int evicted = 0;
+        for (Map.Entry<String, Set<Object>> entry : entries.entrySet()) {
+            Cache cache = cacheManager.getCache(entry.getKey());
+            if (cache == null) {
+                continue;
+            }
+            for (Object key : entry.getValue()) {
+                cache.evict(key);
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+}
@@ -1,37 +1,48 @@
 package com.example.HealthCare.service.impl;
 
 import java.time.LocalDate;
-import java.time.LocalTime;
 import java.time.OffsetDateTime;
-import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.HealthCare.dto.request.CreateAppointmentRequest;
+import com.example.HealthCare.dto.request.CreateSlotHoldRequest;
 import com.example.HealthCare.dto.request.RescheduleAppointmentRequest;
 import com.example.HealthCare.dto.response.AppointmentResponse;
+import com.example.HealthCare.dto.response.AvailableSlotsRangeResponse;
 import com.example.HealthCare.dto.response.AvailableSlotsResponse;
+import com.example.HealthCare.dto.response.SlotHoldResponse;
 import com.example.HealthCare.enums.AppointmentStatus;
 import com.example.HealthCare.exception.BadRequestException;
 import com.example.HealthCare.exception.NotFoundException;
 import com.example.HealthCare.model.Appointment;
-import com.example.HealthCare.model.DoctorScheduleRule;
 import com.example.HealthCare.model.UserAccount;
 import com.example.HealthCare.model.DoctorProfile;
+import com.example.HealthCare.model.PatientProfile;
 import com.example.HealthCare.model.AppointmentStatusHistory;
 import com.example.HealthCare.repository.AppointmentRepository;
 import com.example.HealthCare.repository.AppointmentStatusHistoryRepository;
 import com.example.HealthCare.repository.DoctorProfileRepository;
-import com.example.HealthCare.repository.DoctorScheduleRuleRepository;
 import com.example.HealthCare.repository.PatientProfileRepository;
+import com.example.HealthCare.repository.PaymentRepository;
 import com.example.HealthCare.repository.UserAccountRepository;
 import com.example.HealthCare.service.AppointmentService;
+import com.example.HealthCare.service.AppointmentSlotLock;
+import com.example.HealthCare.service.DoctorAvailabilityIndex;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -46,7 +57,18 @@ public class AppointmentServiceImpl implements AppointmentService {
     private final UserAccountRepository userAccountRepository;
     private final DoctorProfileRepository doctorProfileRepository;
     private final PatientProfileRepository patientProfileRepository;
-    private final DoctorScheduleRuleRepository doctorScheduleRuleRepository;
+    private final PaymentRepository paymentRepository;
+    private final DoctorAvailabilityIndex availabilityIndex;
+    private final AppointmentSlotLock slotLock;
+    
+    @Value("${appointment.hold.minutes:15}")
+    private long holdMinutes;
+    
+    @Value("${appointment.hold.grace-minutes:30}")
+    private long holdGraceMinutes;
+    
+    private static final int MAX_SLOT_RANGE_DAYS = 31;
+    private static final int HOLD_SWEEP_DOCTORS = 50;
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
@@ -64,12 +86,51 @@ public class AppointmentServiceImpl implements AppointmentService {
             return List.of();
         }
         
+        return mapToResponses(appointments);
+    }
+
+    private AppointmentResponse mapToResponse(Appointment appointment) {
+        return mapToResponses(List.of(appointment)).get(0);
+    }
+
+    /**
+     * Map danh sách lịch hẹn sang response.
+     * Patient/Doctor profile được nạp một lần bằng câu IN cho toàn bộ danh sách,
+     * nên số query không phụ thuộc vào số lượng lịch hẹn.
+     */
+    private List<AppointmentResponse> mapToResponses(List<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return List.of();
+        }
+
+        Set<UUID> patientIds = new HashSet<>();
+        Set<UUID> doctorIds = new HashSet<>();
+        for (Appointment appointment : appointments) {
+            if (appointment.getPatient() != null && appointment.getPatientId() != null) {
+                patientIds.add(appointment.getPatientId());
+            }
+            if (appointment.getDoctor() != null && appointment.getDoctorId() != null) {
+                doctorIds.add(appointment.getDoctorId());
+            }
+        }
+
+        Map<UUID, PatientProfile> patientProfiles = patientIds.isEmpty()
+                ? Map.of()
+                : patientProfileRepository.findByUserIdIn(patientIds).stream()
+                        .collect(Collectors.toMap(PatientProfile::getUserId, Function.identity()));
+        Map<UUID, DoctorProfile> doctorProfiles = doctorIds.isEmpty()
+                ? Map.of()
+                : doctorProfileRepository.findByUserIdIn(doctorIds).stream()
+                        .collect(Collectors.toMap(DoctorProfile::getUserId, Function.identity()));
+
         return appointments.stream()
-                .map(this::mapToResponse)
+                .map(appointment -> mapToResponse(appointment, patientProfiles, doctorProfiles))
                 .collect(Collectors.toList());
     }
 
-    private AppointmentResponse mapToResponse(Appointment appointment) {
+    private AppointmentResponse mapToResponse(Appointment appointment,
+                                              Map<UUID, PatientProfile> patientProfiles,
+                                              Map<UUID, DoctorProfile> doctorProfiles) {
         // Get patient info
         String patientName = null;
         String patientFullName = null;
@@ -85,11 +146,9 @@ public class AppointmentServiceImpl implements AppointmentService {
             patientPhoneNumber = appointment.getPatient().getPhoneNumber();
             
             // Get patient profile for address
-            if (appointment.getPatientId() != null) {
-                var patientProfileOpt = patientProfileRepository.findByUserId(appointment.getPatientId());
-                if (patientProfileOpt.isPresent()) {
-                    patientAddress = patientProfileOpt.get().getAddress();
-                }
+            PatientProfile patientProfile = patientProfiles.get(appointment.getPatientId());
+            if (patientProfile != null) {
+                patientAddress = patientProfile.getAddress();
             }
         }
         
@@ -101,6 +160,7 @@ public class AppointmentServiceImpl implements AppointmentService {
         String doctorPhoneNumber = null;
         String doctorWorkplace = null;
         String doctorSpecialties = null;
+        String doctorClinicAddress = null;
         
         if (appointment.getDoctor() != null) {
             doctorName = appointment.getDoctor().getFullName();
@@ -111,16 +171,14 @@ public class AppointmentServiceImpl implements AppointmentService {
             doctorPhoneNumber = appointment.getDoctor().getPhoneNumber();
             
             // Get doctor profile info
-            if (appointment.getDoctorId() != null) {
-                var doctorProfileOpt = doctorProfileRepository.findByUserId(appointment.getDoctorId());
-                if (doctorProfileOpt.isPresent()) {
-                    var profile = doctorProfileOpt.get();
-                    doctorTitle = profile.getTitle();
-                    doctorWorkplace = profile.getWorkplaceName() != null 
-                            ? profile.getWorkplaceName() 
-                            : profile.getFacilityName();
-                    doctorSpecialties = profile.getSpecialties();
-                }
+            DoctorProfile profile = doctorProfiles.get(appointment.getDoctorId());
+            if (profile != null) {
+                doctorTitle = profile.getTitle();
+                doctorWorkplace = profile.getWorkplaceName() != null 
+                        ? profile.getWorkplaceName() 
+                        : profile.getFacilityName();
+                doctorSpecialties = profile.getSpecialties();
+                doctorClinicAddress = profile.getClinicAddress();
             }
         }
         
@@ -149,9 +207,7 @@ public class AppointmentServiceImpl implements AppointmentService {
                 .doctorPhoneNumber(doctorPhoneNumber)
                 .doctorWorkplace(doctorWorkplace)
                 .doctorSpecialties(doctorSpecialties)
-                .doctorClinicAddress(appointment.getDoctor() != null && appointment.getDoctorId() != null ? 
-                    doctorProfileRepository.findByUserId(appointment.getDoctorId())
-                        .map(DoctorProfile::getClinicAddress).orElse(null) : null)
+                .doctorClinicAddress(doctorClinicAddress)
                 .build();
     }
 
@@ -177,43 +233,10 @@ public class AppointmentServiceImpl implements AppointmentService {
         userAccountRepository.findByIdAndIsDeletedFalse(doctorId)
                 .orElseThrow(() -> new NotFoundException("Doctor not found"));
         
-        // Check for conflicts with patient's existing appointments
-        List<Appointment> patientConflicts = appointmentRepository.findConflictingAppointmentsForPatient(
-                request.getPatientId(),
-                request.getScheduledStart(),
-                request.getScheduledEnd(),
-                AppointmentStatus.CANCELED
-        );
-        
-        // Check for conflicts with doctor's existing appointments
-        List<Appointment> doctorConflicts = appointmentRepository.findConflictingAppointmentsForDoctor(
-                doctorId,
-                request.getScheduledStart(),
-                request.getScheduledEnd(),
-                AppointmentStatus.CANCELED
-        );
-        
-        // Build conflict message if any conflicts found
-        List<String> conflictMessages = new ArrayList<>();
-        
-        if (!patientConflicts.isEmpty()) {
-            for (Appointment conflict : patientConflicts) {
-                String conflictTime = conflict.getScheduledStart().format(DATE_TIME_FORMATTER);
-                conflictMessages.add(String.format("Bệnh nhân đã có lịch hẹn vào %s", conflictTime));
-            }
-        }
-        
-        if (!doctorConflicts.isEmpty()) {
-            for (Appointment conflict : doctorConflicts) {
-                String conflictTime = conflict.getScheduledStart().format(DATE_TIME_FORMATTER);
-                conflictMessages.add(String.format("Bác sĩ đã có lịch hẹn vào %s", conflictTime));
-            }
-        }
-        
-        if (!conflictMessages.isEmpty()) {
-            String errorMessage = String.join("; ", conflictMessages);
-            throw new BadRequestException(errorMessage);
-        }
+        // Serialize bookings touching this doctor/patient until commit, then check conflicts
+        slotLock.lockForBooking(doctorId, request.getPatientId());
+        assertSlotAvailable(request.getPatientId(), doctorId,
+                request.getScheduledStart(), request.getScheduledEnd(), null);
         
         // Auto-generate title if not provided
         // Format: "{Online|At Clinic} - Tên Bệnh nhân - Ngày khám"
@@ -248,7 +271,8 @@ public class AppointmentServiceImpl implements AppointmentService {
                 .createdBy(doctorId)
                 .build();
         
-        appointment = appointmentRepository.save(appointment);
+        appointment = saveBooking(appointment);
+        availabilityIndex.onAppointmentSaved(appointment);
         log.info("Appointment created successfully with ID: {}", appointment.getId());
         
         // Reload with relations for response
@@ -328,6 +352,7 @@ public class AppointmentServiceImpl implements AppointmentService {
         appointment.setUpdatedAt(now);
         
         appointment = appointmentRepository.save(appointment);
+        availabilityIndex.onAppointmentSaved(appointment);
         log.info("Appointment {} confirmed successfully. Status changed to IN_PROCESS", appointmentId);
         
         // Save status history
@@ -403,51 +428,10 @@ public class AppointmentServiceImpl implements AppointmentService {
             throw new BadRequestException("New scheduled start time must be in the future");
         }
         
-        // Check for conflicts with patient's existing appointments (excluding current appointment)
-        List<Appointment> patientConflicts = appointmentRepository.findConflictingAppointmentsForPatient(
-                appointment.getPatientId(),
-                request.getScheduledStart(),
-                request.getScheduledEnd(),
-                AppointmentStatus.CANCELED
-        );
-        // Remove current appointment from conflicts
-        patientConflicts = patientConflicts.stream()
-                .filter(a -> !a.getId().equals(appointmentId))
-                .collect(Collectors.toList());
-        
-        // Check for conflicts with doctor's existing appointments (excluding current appointment)
-        List<Appointment> doctorConflicts = appointmentRepository.findConflictingAppointmentsForDoctor(
-                appointment.getDoctorId(),
-                request.getScheduledStart(),
-                request.getScheduledEnd(),
-                AppointmentStatus.CANCELED
-        );
-        // Remove current appointment from conflicts
-        doctorConflicts = doctorConflicts.stream()
-                .filter(a -> !a.getId().equals(appointmentId))
-                .collect(Collectors.toList());
-        
-        // Build conflict message if any conflicts found
-        List<String> conflictMessages = new ArrayList<>();
-        
-        if (!patientConflicts.isEmpty()) {
-            for (Appointment conflict : patientConflicts) {
-                String conflictTime = conflict.getScheduledStart().format(DATE_TIME_FORMATTER);
-                conflictMessages.add(String.format("Bệnh nhân đã có lịch hẹn vào %s", conflictTime));
-            }
-        }
-        
-        if (!doctorConflicts.isEmpty()) {
-            for (Appointment conflict : doctorConflicts) {
-                String conflictTime = conflict.getScheduledStart().format(DATE_TIME_FORMATTER);
-                conflictMessages.add(String.format("Bác sĩ đã có lịch hẹn vào %s", conflictTime));
-            }
-        }
-        
-        if (!conflictMessages.isEmpty()) {
-            String errorMessage = String.join("; ", conflictMessages);
-            throw new BadRequestException(errorMessage);
-        }
+        // Check for conflicts (excluding current appointment)
+        slotLock.lockForBooking(appointment.getDoctorId(), appointment.getPatientId());
+        assertSlotAvailable(appointment.getPatientId(), appointment.getDoctorId(),
+                request.getScheduledStart(), request.getScheduledEnd(), appointmentId);
         
         // Update appointment times
         OffsetDateTime oldScheduledStart = appointment.getScheduledStart();
@@ -465,7 +449,8 @@ public class AppointmentServiceImpl implements AppointmentService {
         String newTitle = String.format("%s - %s", patientName, newAppointmentDate);
         appointment.setTitle(newTitle);
         
-        appointment = appointmentRepository.save(appointment);
+        appointment = saveBooking(appointment);
+        availabilityIndex.onAppointmentSaved(appointment);
         log.info("Appointment {} rescheduled successfully from {} to {}", 
             appointmentId, 
             oldScheduledStart.format(DATE_TIME_FORMATTER),
@@ -485,80 +470,9 @@ public class AppointmentServiceImpl implements AppointmentService {
     public AvailableSlotsResponse getAvailableSlots(UUID doctorId, LocalDate date, UUID excludeAppointmentId) {
         log.info("Getting available slots for doctor {} on date {}", doctorId, date);
         
-        // Get weekday for the date (1=Monday, 7=Sunday)
-        short weekday = DoctorScheduleRule.getWeekdayFromDate(date);
-        
-        // Get schedule rules for this weekday
-        List<DoctorScheduleRule> allRules = doctorScheduleRuleRepository.findByDoctorIdOrderByWeekdayAscStartTimeAsc(doctorId);
-        List<DoctorScheduleRule> dayRules = allRules.stream()
-                .filter(rule -> rule.getWeekday() == weekday)
-                .collect(Collectors.toList());
-        
-        if (dayRules.isEmpty()) {
-            log.info("No schedule rules found for doctor {} on weekday {}", doctorId, weekday);
-            return AvailableSlotsResponse.builder()
-                    .availableSlots(List.of())
-                    .build();
-        }
-        
-        // Get session duration from first rule (assuming all rules have same session duration)
-        int sessionDuration = dayRules.get(0).getSessionMinutes();
-        
-        // Get existing appointments for this doctor on this date (excluding canceled and excluded appointment)
-        OffsetDateTime dayStart = date.atStartOfDay().atOffset(ZoneOffset.of("+07:00"));
-        OffsetDateTime dayEnd = date.atTime(23, 59, 59).atOffset(ZoneOffset.of("+07:00"));
-        
-        List<Appointment> existingAppointments = appointmentRepository.findByDoctorIdAndDateRange(doctorId, dayStart, dayEnd);
-        existingAppointments = existingAppointments.stream()
-                .filter(a -> a.getStatus() != AppointmentStatus.CANCELED)
-                .filter(a -> excludeAppointmentId == null || !a.getId().equals(excludeAppointmentId))
-                .collect(Collectors.toList());
-        
-        // Generate all possible slots from schedule rules
-        List<AvailableSlotsResponse.TimeSlot> allSlots = new ArrayList<>();
-        OffsetDateTime now = OffsetDateTime.now();
-        
-        for (DoctorScheduleRule rule : dayRules) {
-            LocalTime ruleStart = rule.getStartTime();
-            LocalTime ruleEnd = rule.getEndTime();
-            
-            // Generate slots within this rule's time range
-            LocalTime currentSlotStart = ruleStart;
-            while (currentSlotStart.isBefore(ruleEnd)) {
-                LocalTime currentSlotEnd = currentSlotStart.plusMinutes(sessionDuration);
-                if (currentSlotEnd.isAfter(ruleEnd)) {
-                    break; // Slot would exceed rule end time
-                }
-                
-                // Convert to OffsetDateTime for the specific date
-                OffsetDateTime slotStart = date.atTime(currentSlotStart).atOffset(ZoneOffset.of("+07:00"));
-                OffsetDateTime slotEnd = date.atTime(currentSlotEnd).atOffset(ZoneOffset.of("+07:00"));
-                
-                // Only include slots from now onwards
-                if (slotStart.isAfter(now) || slotStart.isEqual(now)) {
-                    // Check if this slot conflicts with existing appointments
-                    boolean isAvailable = true;
-                    for (Appointment existing : existingAppointments) {
-                        // Check if slots overlap
-                        if (slotStart.isBefore(existing.getScheduledEnd()) && slotEnd.isAfter(existing.getScheduledStart())) {
-                            isAvailable = false;
-                            break;
-                        }
-                    }
-                    
-                    if (isAvailable) {
-                        allSlots.add(AvailableSlotsResponse.TimeSlot.builder()
-                                .startTime(slotStart.toString())
-                                .endTime(slotEnd.toString())
-                                .displayTime(currentSlotStart.format(DateTimeFormatter.ofPattern("HH:mm")))
-                                .build());
-                    }
-                }
-                
-                // Move to next slot
-                currentSlotStart = currentSlotStart.plusMinutes(sessionDuration);
-            }
-        }
+        List<AvailableSlotsResponse.TimeSlot> allSlots = availabilityIndex
+                .findAvailableSlots(doctorId, date, 1, excludeAppointmentId)
+                .get(date);
         
         log.info("Found {} available slots for doctor {} on date {}", allSlots.size(), doctorId, date);
         
@@ -567,6 +481,28 @@ public class AppointmentServiceImpl implements AppointmentService {
                 .build();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public AvailableSlotsRangeResponse getAvailableSlotsRange(UUID doctorId, LocalDate fromDate, int days, UUID excludeAppointmentId) {
+        if (days < 1 || days > MAX_SLOT_RANGE_DAYS) {
+            throw new BadRequestException(String.format("Days must be between 1 and %d", MAX_SLOT_RANGE_DAYS));
+        }
+        log.info("Getting available slots for doctor {} from {} for {} days", doctorId, fromDate, days);
+        
+        List<AvailableSlotsRangeResponse.DaySlots> daySlots = availabilityIndex
+                .findAvailableSlots(doctorId, fromDate, days, excludeAppointmentId)
+                .entrySet().stream()
+                .map(entry -> AvailableSlotsRangeResponse.DaySlots.builder()
+                        .date(entry.getKey())
+                        .availableSlots(entry.getValue())
+                        .build())
+                .collect(Collectors.toList());
+        
+        return AvailableSlotsRangeResponse.builder()
+                .days(daySlots)
+                .build();
+    }
+
     @Override
     @Transactional
     public AppointmentResponse cancelAppointment(UUID appointmentId, UUID patientId, String cancellationReason) {
@@ -618,6 +554,7 @@ public class AppointmentServiceImpl implements AppointmentService {
         appointment.setUpdatedAt(now);
         
         appointment = appointmentRepository.save(appointment);
+        availabilityIndex.onAppointmentSaved(appointment);
         log.info("Appointment {} canceled successfully by patient {}", appointmentId, patientId);
         
         // Save status history
@@ -640,6 +577,240 @@ public class AppointmentServiceImpl implements AppointmentService {
         return mapToResponse(updatedAppointment);
     }
 
+    @Override
+    @Transactional
+    public SlotHoldResponse holdSlot(CreateSlotHoldRequest request, UUID patientId) {
+        log.info("Holding slot for doctor {} by patient {}", request.getDoctorId(), patientId);
+        
+        if (request.getScheduledStart() == null || request.getScheduledEnd() == null) {
+            throw new BadRequestException("Scheduled start and end times are required");
+        }
+        
+        if (!request.getScheduledStart().isBefore(request.getScheduledEnd())) {
+            throw new BadRequestException("Scheduled start time must be before end time");
+        }
+        
+        OffsetDateTime now = OffsetDateTime.now();
+        if (request.getScheduledStart().isBefore(now)) {
+            throw new BadRequestException("Scheduled start time must be in the future");
+        }
+        
+        UserAccount patient = userAccountRepository.findByIdAndIsDeletedFalse(patientId)
+                .orElseThrow(() -> new NotFoundException("Patient not found"));
+        userAccountRepository.findByIdAndIsDeletedFalse(request.getDoctorId())
+                .orElseThrow(() -> new NotFoundException("Doctor not found"));
+        
+        slotLock.lockForBooking(request.getDoctorId(), patientId);
+        assertSlotAvailable(patientId, request.getDoctorId(),
+                request.getScheduledStart(), request.getScheduledEnd(), null);
+        
+        String appointmentDate = request.getScheduledStart().toLocalDateTime().format(DATE_FORMATTER);
+        String title = String.format("%s - %s - %s",
+                resolveFormatLabel(request.getFormatType()), patient.getFullName(), appointmentDate);
+        
+        Appointment hold = Appointment.builder()
+                .patientId(patientId)
+                .doctorId(request.getDoctorId())
+                .status(AppointmentStatus.SCHEDULED)
+                .scheduledStart(request.getScheduledStart())
+                .scheduledEnd(request.getScheduledEnd())
+                .startedAt(request.getScheduledStart())
+                .endedAt(request.getScheduledEnd())
+                .title(title)
+                .consent(false)
+                .cancellationBy("")
+                .createdBy(patientId)
+                .holdingUntil(now.plusMinutes(holdMinutes))
+                .build();
+        
+        hold = saveBooking(hold);
+        availabilityIndex.onAppointmentSaved(hold);
+        log.info("Slot hold {} created, expires at {}", hold.getId(), hold.getHoldingUntil());
+        
+        return SlotHoldResponse.builder()
+                .holdId(hold.getId())
+                .doctorId(hold.getDoctorId())
+                .scheduledStart(hold.getScheduledStart())
+                .scheduledEnd(hold.getScheduledEnd())
+                .holdingUntil(hold.getHoldingUntil())
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public AppointmentResponse confirmHold(UUID holdId, UUID patientId, UUID doctorId, CreateAppointmentRequest request) {
+        log.info("Converting slot hold {} into appointment for patient {}", holdId, patientId);
+        
+        Appointment hold = appointmentRepository.findByIdWithRelations(holdId);
+        if (hold == null) {
+            // Hold đã bị dọn (quá hạn + grace, hoặc nhường cho người khác): bệnh nhân đã thanh toán,
+            // vẫn đặt được nếu slot còn trống - createAppointment kiểm tra conflict dưới khóa
+            if (doctorId == null || request.getScheduledStart() == null || request.getScheduledEnd() == null) {
+                throw new NotFoundException("Slot hold not found or already expired");
+            }
+            log.info("Slot hold {} no longer exists, booking the slot directly", holdId);
+            request.setPatientId(patientId);
+            return createAppointment(request, doctorId);
+        }
+        
+        if (!hold.getPatientId().equals(patientId)) {
+            throw new BadRequestException("Only the patient who owns this hold can confirm it");
+        }
+        
+        // Payment callback retried: the hold has already been converted and its payment recorded.
+        // Một lịch hẹn thường (chưa từng là hold / chưa có payment) không được nhận làm holdId
+        if (hold.getHoldingUntil() == null) {
+            if (!paymentRepository.existsByAppointmentId(holdId)) {
+                throw new BadRequestException("Appointment is not a slot hold");
+            }
+            return mapToResponse(hold);
+        }
+        
+        if (request.getScheduledStart() != null && !request.getScheduledStart().isEqual(hold.getScheduledStart())) {
+            throw new BadRequestException("Scheduled time does not match the held slot");
+        }
+        
+        OffsetDateTime now = OffsetDateTime.now();
+        slotLock.lockForBooking(hold.getDoctorId(), patientId);
+        if (hold.getHoldingUntil().isBefore(now)) {
+            // Hold hết hạn trong lúc thanh toán: chỉ giữ lại nếu chưa ai lấy slot
+            assertSlotAvailable(patientId, hold.getDoctorId(), hold.getScheduledStart(), hold.getScheduledEnd(), holdId);
+        }
+        
+        String title = request.getTitle();
+        if (title != null && !title.trim().isEmpty()) {
+            hold.setTitle(title);
+        } else if (request.getFormatType() != null) {
+            String patientName = hold.getPatient() != null ? hold.getPatient().getFullName() : "Patient";
+            String appointmentDate = hold.getScheduledStart().toLocalDateTime().format(DATE_FORMATTER);
+            hold.setTitle(String.format("%s - %s - %s", resolveFormatLabel(request.getFormatType()), patientName, appointmentDate));
+        }
+        hold.setReason(request.getReason());
+        hold.setSymptomsOns(request.getSymptomsOns());
+        hold.setSymptomsSever(request.getSymptomsSever());
+        hold.setCurrentMedication(request.getCurrentMedication());
+        hold.setNotes(request.getNotes());
+        hold.setHoldingUntil(null);
+        hold.setUpdatedBy(patientId);
+        hold.setUpdatedAt(now);
+        
+        hold = appointmentRepository.save(hold);
+        availabilityIndex.onAppointmentSaved(hold);
+        log.info("Slot hold {} converted into appointment", holdId);
+        
+        return mapToResponse(hold);
+    }
+
+    @Override
+    @Transactional
+    public void releaseHold(UUID holdId, UUID patientId) {
+        Appointment hold = appointmentRepository.findById(holdId)
+                .orElseThrow(() -> new NotFoundException("Slot hold not found or already expired"));
+        
+        if (!hold.getPatientId().equals(patientId)) {
+            throw new BadRequestException("Only the patient who owns this hold can release it");
+        }
+        
+        if (hold.getHoldingUntil() == null) {
+            throw new BadRequestException("Appointment is already booked; use cancel instead");
+        }
+        
+        appointmentRepository.delete(hold);
+        availabilityIndex.onAppointmentRemoved(hold.getDoctorId(), holdId);
+        log.info("Slot hold {} released by patient {}", holdId, patientId);
+    }
+
+    /**
+     * Xóa các slot hold đã hết hạn quá grace-minutes mà bệnh nhân không thanh toán.
+     * Trong thời gian grace, hold hết hạn không còn chiếm slot (index và assertSlotAvailable bỏ qua) nhưng
+     * vẫn còn trong DB để callback VNPay tới muộn vẫn xác nhận được. Lấy cùng khóa bác sĩ với confirmHold:
+     * hold đang được chuyển thành lịch hẹn thì chờ transaction đó commit (holding_until = null, không bị xóa).
+     */
+    @Scheduled(fixedDelayString = "${appointment.hold.sweep-interval-ms:60000}")
+    @Transactional
+    public void releaseExpiredHolds() {
+        OffsetDateTime cutoff = OffsetDateTime.now().minusMinutes(holdGraceMinutes);
+        List<UUID> doctorIds = appointmentRepository.findDoctorIdsWithExpiredHolds(
+                cutoff, AppointmentStatus.SCHEDULED, PageRequest.of(0, HOLD_SWEEP_DOCTORS));
+        if (doctorIds.isEmpty()) {
+            return;
+        }
+        slotLock.lockForBooking(doctorIds.toArray(UUID[]::new));
+        int released = appointmentRepository.deleteExpiredHolds(doctorIds, cutoff, AppointmentStatus.SCHEDULED);
+        if (released > 0) {
+            log.info("Released {} expired slot holds", released);
+        }
+    }
+
+    /**
+     * Kiểm tra trùng lịch cho bác sĩ và bệnh nhân. Phải gọi sau slotLock.lockForBooking.
+     * Slot hold đã hết hạn nằm trong khoảng thời gian bị xóa luôn để nhường slot.
+     */
+    private void assertSlotAvailable(UUID patientId, UUID doctorId, OffsetDateTime start, OffsetDateTime end,
+                                     UUID excludeAppointmentId) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<Appointment> expiredHolds = new ArrayList<>();
+        List<String> conflictMessages = new ArrayList<>();
+        
+        List<Appointment> patientConflicts = appointmentRepository.findConflictingAppointmentsForPatient(
+                patientId, start, end, AppointmentStatus.CANCELED);
+        for (Appointment conflict : patientConflicts) {
+            if (conflict.getId().equals(excludeAppointmentId)) {
+                continue;
+            }
+            if (isExpiredHold(conflict, now)) {
+                expiredHolds.add(conflict);
+            } else {
+                String conflictTime = conflict.getScheduledStart().format(DATE_TIME_FORMATTER);
+                conflictMessages.add(String.format("Bệnh nhân đã có lịch hẹn vào %s", conflictTime));
+            }
+        }
+        
+        List<Appointment> doctorConflicts = appointmentRepository.findConflictingAppointmentsForDoctor(
+                doctorId, start, end, AppointmentStatus.CANCELED);
+        for (Appointment conflict : doctorConflicts) {
+            if (conflict.getId().equals(excludeAppointmentId)) {
+                continue;
+            }
+            if (isExpiredHold(conflict, now)) {
+                if (expiredHolds.stream().noneMatch(h -> h.getId().equals(conflict.getId()))) {
+                    expiredHolds.add(conflict);
+                }
+            } else {
+                String conflictTime = conflict.getScheduledStart().format(DATE_TIME_FORMATTER);
+                conflictMessages.add(String.format("Bác sĩ đã có lịch hẹn vào %s", conflictTime));
+            }
+        }
+        
+        if (!conflictMessages.isEmpty()) {
+            String errorMessage = String.join("; ", conflictMessages);
+            throw new BadRequestException(errorMessage);
+        }
+        
+        if (!expiredHolds.isEmpty()) {
+            appointmentRepository.deleteAll(expiredHolds);
+            appointmentRepository.flush();
+            expiredHolds.forEach(h -> availabilityIndex.onAppointmentRemoved(h.getDoctorId(), h.getId()));
+        }
+    }
+
+    private boolean isExpiredHold(Appointment appointment, OffsetDateTime now) {
+        return appointment.getHoldingUntil() != null && appointment.getHoldingUntil().isBefore(now);
+    }
+
+    /**
+     * Flush ngay để constraint ex_appointment_doctor_slot (nếu đã chạy V3 migration) báo lỗi trong
+     * method thay vì lúc commit.
+     */
+    private Appointment saveBooking(Appointment appointment) {
+        try {
+            return appointmentRepository.saveAndFlush(appointment);
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Slot constraint rejected booking for doctor {}: {}", appointment.getDoctorId(), e.getMessage());
+            throw new BadRequestException("Bác sĩ đã có lịch hẹn trong khung giờ này");
+        }
+    }
+
     private String resolveFormatLabel(String formatType) {
         if (formatType == null || formatType.isBlank()) {
             return "Online";
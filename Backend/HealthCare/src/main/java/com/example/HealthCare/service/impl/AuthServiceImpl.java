@@ -6,8 +6,6 @@ import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
 
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -40,10 +38,13 @@ import com.example.HealthCare.repository.OtpTokenRepository;
 import com.example.HealthCare.repository.PatientProfileRepository;
 import com.example.HealthCare.repository.UserAccountRepository;
 import com.example.HealthCare.security.JwtUtil;
-import com.example.HealthCare.security.TokenBlacklistService;
+import com.example.HealthCare.security.TokenRevocationService;
 import com.example.HealthCare.service.AuthService;
+import com.example.HealthCare.service.DoctorDirectoryIndex;
 import com.example.HealthCare.service.EmailService;
+import com.example.HealthCare.service.TaggedCacheInvalidator;
 
+import io.jsonwebtoken.Claims;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
@@ -55,30 +56,35 @@ public class AuthServiceImpl implements AuthService {
 	private final UserAccountRepository userAccountRepository;
 	private final OtpTokenRepository otpTokenRepository;
 	private final PasswordEncoder passwordEncoder;
-	private final TokenBlacklistService tokenBlacklistService;
+	private final TokenRevocationService tokenRevocationService;
 	private final EmailService emailService;
 	private final DoctorProfileRepository doctorProfileRepository;
 	private final DoctorExperienceRepository doctorExperienceRepository;
 	private final ApprovalRequestRepository approvalRequestRepository;
 	private final PatientProfileRepository patientProfileRepository;
+	private final DoctorDirectoryIndex doctorDirectoryIndex;
+	private final TaggedCacheInvalidator taggedCacheInvalidator;
 
 	public AuthServiceImpl(AuthenticationManager authenticationManager, JwtUtil jwtUtil,
 						  UserAccountRepository userAccountRepository, OtpTokenRepository otpTokenRepository,
-						  PasswordEncoder passwordEncoder, TokenBlacklistService tokenBlacklistService,
+						  PasswordEncoder passwordEncoder, TokenRevocationService tokenRevocationService,
 						  EmailService emailService, DoctorProfileRepository doctorProfileRepository,
 						  DoctorExperienceRepository doctorExperienceRepository, ApprovalRequestRepository approvalRequestRepository,
-						  PatientProfileRepository patientProfileRepository) {
+						  PatientProfileRepository patientProfileRepository, DoctorDirectoryIndex doctorDirectoryIndex,
+						  TaggedCacheInvalidator taggedCacheInvalidator) {
 		this.authenticationManager = authenticationManager;
 		this.jwtUtil = jwtUtil;
 		this.userAccountRepository = userAccountRepository;
 		this.otpTokenRepository = otpTokenRepository;
 		this.passwordEncoder = passwordEncoder;
-		this.tokenBlacklistService = tokenBlacklistService;
+		this.tokenRevocationService = tokenRevocationService;
 		this.emailService = emailService;
 		this.doctorProfileRepository = doctorProfileRepository;
 		this.doctorExperienceRepository = doctorExperienceRepository;
 		this.approvalRequestRepository = approvalRequestRepository;
 		this.patientProfileRepository = patientProfileRepository;
+		this.doctorDirectoryIndex = doctorDirectoryIndex;
+		this.taggedCacheInvalidator = taggedCacheInvalidator;
 	}
 
 	@Override
@@ -143,15 +149,18 @@ public class AuthServiceImpl implements AuthService {
 
 	@Override
 	public Map<String, Object> refreshToken(String refreshToken) {
-		String email = jwtUtil.extractEmail(refreshToken);
-		UserAccount userAccount = userAccountRepository.findByEmailAndIsDeletedFalse(email)
+		Claims claims = jwtUtil.parseClaims(refreshToken);
+		UserAccount userAccount = userAccountRepository.findByEmailAndIsDeletedFalse(claims.getSubject())
 				.orElseThrow(() -> new BadRequestException("User not found"));
 
-		if (!jwtUtil.isRefreshToken(refreshToken)) {
+		if (!jwtUtil.isRefreshToken(claims)) {
 			throw new BadRequestException("Invalid refresh token");
 		}
 
-		if (!jwtUtil.isTokenValid(refreshToken, userAccount)) {
+		long tokensValidAfter = userAccount.getTokensValidAfter() != null
+				? userAccount.getTokensValidAfter().toInstant().toEpochMilli()
+				: 0;
+		if (tokenRevocationService.isRevoked(refreshToken, claims, tokensValidAfter)) {
 			throw new BadRequestException("Invalid refresh token");
 		}
 
@@ -166,10 +175,12 @@ public class AuthServiceImpl implements AuthService {
 	}
 
 	@Override
-	public void logout(String refreshToken) {
+	public void logout(String refreshToken, String accessToken) {
 		try {
-			String email = jwtUtil.extractEmail(refreshToken);
-			tokenBlacklistService.blacklist(refreshToken);
+			if (refreshToken != null) {
+				tokenRevocationService.revoke(refreshToken);
+			}
+			tokenRevocationService.revoke(accessToken);
 		} catch (Exception e) {
 			log.error("Error during logout: {}", e.getMessage());
 			throw new BadRequestException("Invalid token");
@@ -177,10 +188,13 @@ public class AuthServiceImpl implements AuthService {
 	}
 
 	@Override
-	@Caching(evict = {
-			@CacheEvict(value = "userDetails", key = "#email"),
-			@CacheEvict(value = "users", allEntries = true)
-	})
+	public void logoutAll(String email) {
+		UserAccount userAccount = userAccountRepository.findByEmailAndIsDeletedFalse(email)
+				.orElseThrow(() -> new BadRequestException("User not found"));
+		tokenRevocationService.revokeAllForUser(userAccount.getId());
+	}
+
+	@Override
 	public void changePassword(String email, ChangePasswordRequest request) {
 		UserAccount userAccount = userAccountRepository.findByEmailAndIsDeletedFalse(email)
 				.orElseThrow(() -> new BadRequestException("User not found"));
@@ -191,13 +205,10 @@ public class AuthServiceImpl implements AuthService {
 
 		userAccount.setPasswordHash(passwordEncoder.encode(request.getNewPassword()));
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	@Override
-	@Caching(evict = {
-			@CacheEvict(value = "userDetails", key = "#email"),
-			@CacheEvict(value = "users", allEntries = true)
-	})
 	public void changePasswordOnFirstLogin(String email, FirstLoginPasswordChangeRequest request) {
 		UserAccount userAccount = userAccountRepository.findByEmailAndIsDeletedFalse(email)
 				.orElseThrow(() -> new BadRequestException("User not found"));
@@ -217,6 +228,7 @@ public class AuthServiceImpl implements AuthService {
 		// Set first_login_required to false after successful password change
 		userAccount.setFirstLoginRequired(false);
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	@Override
@@ -244,7 +256,6 @@ public class AuthServiceImpl implements AuthService {
 	}
 
 	@Override
-	@CacheEvict(value = "userDetails", key = "#email")
 	public void resetPassword(String email, String otp, String newPassword) {
 		UserAccount userAccount = userAccountRepository.findByEmailAndIsDeletedFalse(email)
 				.orElseThrow(() -> new BadRequestException("User not found"));
@@ -281,6 +292,7 @@ public class AuthServiceImpl implements AuthService {
 		// Update password
 		userAccount.setPasswordHash(passwordEncoder.encode(newPassword));
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	@Override
@@ -406,6 +418,7 @@ public class AuthServiceImpl implements AuthService {
 				.build();
 
 		userAccount = userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 
 		// Create PatientProfile if role is PATIENT
 		if (role == UserRole.PATIENT) {
@@ -453,6 +466,7 @@ public class AuthServiceImpl implements AuthService {
 				.build();
 
 		userAccount = userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 
 		// Create response
 		PersonalInfoResponse response = new PersonalInfoResponse();
@@ -568,6 +582,7 @@ public class AuthServiceImpl implements AuthService {
 				.build();
 
 		doctorProfileRepository.save(doctorProfile);
+		doctorDirectoryIndex.invalidate();
 
 		// Create work experience if provided
 		if (request.getWorkFromYear() != null && request.getWorkToYear() != null 
@@ -595,13 +610,11 @@ public class AuthServiceImpl implements AuthService {
 				.submittedAt(OffsetDateTime.now())
 				.build();
 		approvalRequestRepository.save(approvalRequest);
+		// approvalRequestStatus trong danh sách bác sĩ chờ duyệt đổi theo
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	@Override
-	@Caching(evict = {
-		@CacheEvict(value = "pendingDoctors", allEntries = true),
-		@CacheEvict(value = "users", allEntries = true)
-	})
 	public void approveDoctorAccount(UUID userId) {
 		UserAccount userAccount = userAccountRepository.findById(userId)
 				.orElseThrow(() -> new BadRequestException("User not found"));
@@ -629,11 +642,12 @@ public class AuthServiceImpl implements AuthService {
 			userAccount.setUpdatedBy(currentAdmin);
 		}
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
+		doctorDirectoryIndex.invalidate();
 		emailService.sendApprovalEmail(userAccount.getEmail(), userAccount.getFullName(), randomPassword);
 	}
 
 	@Override
-	@CacheEvict(value = "pendingDoctors", allEntries = true)
 	public void rejectDoctorAccount(UUID userId, String reason) {
 		UserAccount userAccount = userAccountRepository.findById(userId)
 				.orElseThrow(() -> new BadRequestException("User not found"));
@@ -644,6 +658,7 @@ public class AuthServiceImpl implements AuthService {
 
 		userAccount.setStatus(AccountStatus.INACTIVE);
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 		emailService.sendRejectionEmail(userAccount.getEmail(), reason);
 	}
 
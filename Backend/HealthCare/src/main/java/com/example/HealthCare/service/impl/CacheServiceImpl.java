@@ -1,19 +1,50 @@
 package com.example.HealthCare.service.impl;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import com.example.HealthCare.enums.RoleType;
-import com.example.HealthCare.repository.RoleRepository;
+import com.example.HealthCare.config.cache.CacheStatsRecorder;
+import com.example.HealthCare.config.cache.RedisCacheKeyIndex;
+import com.example.HealthCare.config.cache.SingleFlightCacheManager;
+import com.example.HealthCare.config.cache.TwoTierCacheManager;
+import com.example.HealthCare.dto.response.CacheKeyPageResponse;
+import com.example.HealthCare.dto.response.CacheLoadingStatsResponse;
+import com.example.HealthCare.dto.response.CacheStatsResponse;
+import com.example.HealthCare.dto.response.CacheTierStatsResponse;
+import com.example.HealthCare.dto.response.LocalCacheStatsResponse;
 import com.example.HealthCare.service.CacheService;
-import com.example.HealthCare.service.RoleService;
-import com.example.HealthCare.service.UserService;
+import com.example.HealthCare.service.CacheWarmupService;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 
+import io.lettuce.core.KeyScanCursor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.lettuce.core.ScanArgs;
+import io.lettuce.core.ScanCursor;
+import io.lettuce.core.api.async.RedisKeyAsyncCommands;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
@@ -22,19 +53,38 @@ public class CacheServiceImpl implements CacheService {
 
     private final CacheManager cacheManager;
     
+    private static final int SCAN_BATCH = 500;
+    private static final long SCAN_TIMEOUT_SECONDS = 5;
+    // RedisCache mặc định đặt key dạng "<cache>::<key>"
+    private static final String CACHE_KEY_SEPARATOR = "::";
+
     @Autowired(required = false)
     private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired(required = false)
+    private RedisCacheKeyIndex redisCacheKeyIndex;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
     
-    private final UserService userService;
-    private final RoleService roleService;
-    private final RoleRepository roleRepository;
+    private final CacheWarmupService cacheWarmupService;
     
-    public CacheServiceImpl(CacheManager cacheManager, UserService userService, 
-                           RoleService roleService, RoleRepository roleRepository) {
+    public CacheServiceImpl(CacheManager cacheManager, CacheWarmupService cacheWarmupService) {
         this.cacheManager = cacheManager;
-        this.userService = userService;
-        this.roleService = roleService;
-        this.roleRepository = roleRepository;
+        this.cacheWarmupService = cacheWarmupService;
+    }
+
+    // Số entry ước lượng của mọi cache (Caffeine: estimatedSize, Redis: chỉ mục key), đọc khi scrape
+    @PostConstruct
+    void registerSizeGauges() {
+        if (meterRegistry == null) {
+            return;
+        }
+        for (String cacheName : cacheManager.getCacheNames()) {
+            Gauge.builder("cache.entries", this, service -> service.getCacheSize(cacheName))
+                    .tags("cache", cacheName)
+                    .register(meterRegistry);
+        }
     }
 
     @Override
@@ -83,32 +133,8 @@ public class CacheServiceImpl implements CacheService {
     }
 
     @Override
-    public void warmUpCaches() {
-        try {
-            roleRepository.findAll().forEach(role -> {
-                try {
-                    roleService.getRoleById(role.getId());
-                } catch (Exception e) {
-                    log.error("Failed to warm up role cache for ID {}: {}", role.getId(), e.getMessage());
-                }
-            });
-
-            for (RoleType roleType : RoleType.values()) {
-                try {
-                    roleService.getPrivilegesByRole(roleType.name());
-                } catch (Exception e) {
-                    log.error("Failed to warm up privileges cache for role {}: {}", roleType, e.getMessage());
-                }
-            }
-
-            try {
-                userService.getPendingDoctorAccounts();
-            } catch (Exception e) {
-                log.error("Failed to warm up pending doctors cache: {}", e.getMessage());
-            }
-        } catch (Exception e) {
-            log.error("Error during cache warm-up: {}", e.getMessage(), e);
-        }
+    public Map<String, Object> warmUpCaches() {
+        return cacheWarmupService.warmUp();
     }
 
     @Override
@@ -126,48 +152,231 @@ public class CacheServiceImpl implements CacheService {
 
     @Override
     public long getCacheSize(String cacheName) {
-        if (redisTemplate == null) {
-            return -1;
+        if (SingleFlightCacheManager.unwrap(cacheManager.getCache(cacheName)) instanceof CaffeineCache caffeineCache) {
+            return caffeineCache.getNativeCache().estimatedSize();
         }
-        
-        try {
-            Set<String> keys = redisTemplate.keys("healthcare:" + cacheName + ":*");
-            return keys != null ? keys.size() : 0;
-        } catch (Exception e) {
-            log.error("Failed to get cache size for {}: {}", cacheName, e.getMessage());
+        // Redis: đọc từ chỉ mục key (ZCOUNT), không quét keyspace
+        if (redisCacheKeyIndex == null) {
             return -1;
         }
+        return redisCacheKeyIndex.size(cacheName);
+    }
+
+    @Override
+    public List<CacheTierStatsResponse> getCacheTierStats() {
+        if (SingleFlightCacheManager.unwrap(cacheManager) instanceof TwoTierCacheManager twoTierCacheManager) {
+            return twoTierCacheManager.getTierStats();
+        }
+        return List.of();
+    }
+
+    @Override
+    public List<CacheLoadingStatsResponse> getCacheLoadingStats() {
+        if (cacheManager instanceof SingleFlightCacheManager singleFlightCacheManager) {
+            return singleFlightCacheManager.getLoadingStats();
+        }
+        return List.of();
+    }
+
+    @Override
+    public List<CacheStatsResponse> getCacheStats(int windowMinutes) {
+        if (!(cacheManager instanceof SingleFlightCacheManager singleFlightCacheManager)) {
+            return List.of();
+        }
+        // getCache tạo lớp bọc (và bộ đếm) cho cache chưa được dùng, để danh sách luôn đủ
+        cacheManager.getCacheNames().forEach(cacheManager::getCache);
+        List<CacheStatsResponse> stats = new ArrayList<>();
+        for (CacheStatsRecorder recorder : singleFlightCacheManager.getStatsRecorders()) {
+            int minutes = Math.min(Math.max(1, windowMinutes), recorder.getMaxWindowMinutes());
+            CacheStatsRecorder.Totals total = recorder.total();
+            CacheStatsRecorder.Totals window = recorder.window(minutes);
+            double[] percentiles = recorder.loadPercentilesMillis();
+            stats.add(CacheStatsResponse.builder()
+                    .cacheName(recorder.getCacheName())
+                    .size(getCacheSize(recorder.getCacheName()))
+                    .since(recorder.getStartedAt())
+                    .hits(total.hits())
+                    .misses(total.misses())
+                    .hitRatio(total.hitRatio())
+                    .loads(total.loads())
+                    .loadErrors(total.loadErrors())
+                    .loadAvgMillis(total.averageLoadMillis())
+                    .loadP50Millis(percentiles[0])
+                    .loadP95Millis(percentiles[1])
+                    .loadP99Millis(percentiles[2])
+                    .puts(total.puts())
+                    .evictions(total.evictions())
+                    .windowMinutes(minutes)
+                    .windowHits(window.hits())
+                    .windowMisses(window.misses())
+                    .windowHitRatio(window.hitRatio())
+                    .windowLoads(window.loads())
+                    .windowLoadAvgMillis(window.averageLoadMillis())
+                    .windowEvictions(window.evictions())
+                    .build());
+        }
+        stats.sort(Comparator.comparing(CacheStatsResponse::getCacheName));
+        return stats;
+    }
+
+    @Override
+    public List<LocalCacheStatsResponse> getLocalCacheStats() {
+        List<LocalCacheStatsResponse> stats = new ArrayList<>();
+        for (String cacheName : cacheManager.getCacheNames()) {
+            if (!(SingleFlightCacheManager.unwrap(cacheManager.getCache(cacheName)) instanceof CaffeineCache caffeineCache)) {
+                continue;
+            }
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = caffeineCache.getNativeCache();
+            CacheStats cacheStats = nativeCache.stats();
+            Policy.Eviction<Object, Object> eviction = nativeCache.policy().eviction().orElse(null);
+            long ttlSeconds = nativeCache.policy().expireAfterWrite()
+                    .map(expiration -> expiration.getExpiresAfter(TimeUnit.SECONDS))
+                    .orElse(-1L);
+            stats.add(LocalCacheStatsResponse.builder()
+                    .cacheName(cacheName)
+                    .size(nativeCache.estimatedSize())
+                    .weightedSize(eviction != null ? eviction.weightedSize().orElse(-1) : -1)
+                    .maxWeight(eviction != null ? eviction.getMaximum() : -1)
+                    .ttlSeconds(ttlSeconds)
+                    .hits(cacheStats.hitCount())
+                    .misses(cacheStats.missCount())
+                    .hitRatio(cacheStats.hitRate())
+                    .evictions(cacheStats.evictionCount())
+                    .evictionWeight(cacheStats.evictionWeight())
+                    .build());
+        }
+        return stats;
     }
 
-    public void evictCacheByPattern(String pattern) {
+    /**
+     * Xóa các key khớp pattern: duyệt bằng SCAN theo lô SCAN_BATCH, mỗi lô một pipeline UNLINK
+     * (xóa ở background thread của Redis) kèm cập nhật chỉ mục key. Trả về số key đã xóa.
+     */
+    @Override
+    public long evictCacheByPattern(String pattern) {
         if (redisTemplate == null) {
-            return;
+            return 0;
         }
-        
-        try {
-            Set<String> keys = redisTemplate.keys(pattern);
-            if (keys != null && !keys.isEmpty()) {
-                redisTemplate.delete(keys);
+
+        long evicted = 0;
+        Set<String> touchedCaches = new HashSet<>();
+        ScanOptions options = ScanOptions.scanOptions().match(pattern).count(SCAN_BATCH).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            List<String> batch = new ArrayList<>(SCAN_BATCH);
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == SCAN_BATCH) {
+                    evicted += unlink(batch, touchedCaches);
+                    batch.clear();
+                }
             }
+            evicted += unlink(batch, touchedCaches);
         } catch (Exception e) {
             log.error("Failed to evict caches by pattern {}: {}", pattern, e.getMessage());
         }
+
+        // Redis đã xóa nhưng L1 và giá trị cũ (stale) các node vẫn còn: bỏ cả hai cho các cache bị ảnh hưởng
+        if (cacheManager instanceof SingleFlightCacheManager singleFlightCacheManager) {
+            touchedCaches.forEach(cacheName -> singleFlightCacheManager.forgetLocal(cacheName, null));
+        }
+        if (SingleFlightCacheManager.unwrap(cacheManager) instanceof TwoTierCacheManager twoTierCacheManager) {
+            touchedCaches.forEach(twoTierCacheManager::clearLocal);
+        }
+        return evicted;
     }
 
-    public Set<String> getAllCacheKeys() {
+    /**
+     * Một trang key cache (cacheName::key) bắt đầu từ cursor của SCAN; không chặn Redis như KEYS.
+     * Một trang có thể ít hơn count hoặc rỗng trong khi chưa duyệt hết, client dừng khi finished = true.
+     *
+     * Khác evictCacheByPattern (duyệt hết trong một lần gọi nên dùng RedisTemplate.scan), ở đây cursor đi qua
+     * nhiều request HTTP: Cursor của Spring Data Redis luôn bắt đầu từ 0 và không nhận cursor do client gửi
+     * lại, nên phải gọi SCAN của Lettuce trực tiếp để tiếp tục đúng vị trí. Connection không phải Lettuce
+     * thì trả trang rỗng (finished).
+     */
+    @Override
+    public CacheKeyPageResponse scanCacheKeys(String cacheName, String cursor, int count) {
         if (redisTemplate == null) {
-            return Set.of();
+            return CacheKeyPageResponse.builder().keys(List.of()).nextCursor("0").finished(true).build();
         }
-        
+
+        String pattern = (cacheName != null && !cacheName.isBlank() ? cacheName : "*") + CACHE_KEY_SEPARATOR + "*";
+        ScanArgs args = ScanArgs.Builder.matches(pattern).limit(count);
+        ScanCursor start = cursor == null || cursor.isBlank() ? ScanCursor.INITIAL : ScanCursor.of(cursor);
         try {
-            Set<String> keys = redisTemplate.keys("healthcare:*");
-            return keys != null ? keys : Set.of();
+            KeyScanCursor<byte[]> page = redisTemplate.execute((RedisCallback<KeyScanCursor<byte[]>>) connection -> {
+                if (!(connection.getNativeConnection() instanceof RedisKeyAsyncCommands<?, ?> nativeCommands)) {
+                    return null;
+                }
+                @SuppressWarnings("unchecked")
+                RedisKeyAsyncCommands<byte[], byte[]> commands = (RedisKeyAsyncCommands<byte[], byte[]>) nativeCommands;
+                try {
+                    return commands.scan(start, args).get(SCAN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while scanning cache keys", e);
+                } catch (ExecutionException | TimeoutException e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            });
+            if (page == null) {
+                log.warn("Cache key paging requires a Lettuce connection");
+                return CacheKeyPageResponse.builder().keys(List.of()).nextCursor("0").finished(true).build();
+            }
+            List<String> keys = page.getKeys().stream()
+                    .map(key -> new String(key, StandardCharsets.UTF_8))
+                    .toList();
+            return CacheKeyPageResponse.builder()
+                    .keys(keys)
+                    .nextCursor(page.getCursor())
+                    .finished(page.isFinished())
+                    .build();
         } catch (Exception e) {
-            log.error("Failed to get all cache keys: {}", e.getMessage());
-            return Set.of();
+            log.error("Failed to scan cache keys: {}", e.getMessage());
+            return CacheKeyPageResponse.builder().keys(List.of()).nextCursor("0").finished(true).build();
         }
     }
 
+    private long unlink(List<String> keys, Set<String> touchedCaches) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        Map<String, List<String>> keysByCache = new HashMap<>();
+        for (String key : keys) {
+            int separator = key.indexOf(CACHE_KEY_SEPARATOR);
+            if (separator > 0) {
+                keysByCache.computeIfAbsent(key.substring(0, separator), name -> new ArrayList<>()).add(key);
+            }
+        }
+        touchedCaches.addAll(keysByCache.keySet());
+
+        byte[][] rawKeys = keys.stream().map(key -> key.getBytes(StandardCharsets.UTF_8)).toArray(byte[][]::new);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.keyCommands().unlink(rawKeys);
+            return null;
+        });
+        if (redisCacheKeyIndex != null) {
+            keysByCache.forEach(redisCacheKeyIndex::recordRemove);
+        }
+        return keys.size();
+    }
+
+    @Value("${cache.stats.log-ms:900000}")
+    private long statsLogMillis;
+
+    /** Ghi log hit ratio trong khoảng log-ms vừa qua cho từng cache có truy cập, để đối chiếu khi không xem được metrics. */
+    @Scheduled(fixedDelayString = "${cache.stats.log-ms:900000}", initialDelayString = "${cache.stats.log-ms:900000}")
     public void printCacheStats() {
+        int windowMinutes = (int) Math.max(1, TimeUnit.MILLISECONDS.toMinutes(statsLogMillis));
+        for (CacheStatsResponse stats : getCacheStats(windowMinutes)) {
+            if (stats.getWindowHits() + stats.getWindowMisses() == 0) {
+                continue;
+            }
+            log.info("Cache {}: last {}m hitRatio={} hits={} misses={} loads={} avgLoad={}ms evictions={} size={}",
+                    stats.getCacheName(), stats.getWindowMinutes(),
+                    String.format("%.3f", stats.getWindowHitRatio()), stats.getWindowHits(), stats.getWindowMisses(),
+                    stats.getWindowLoads(), String.format("%.1f", stats.getWindowLoadAvgMillis()),
+                    stats.getWindowEvictions(), stats.getSize());
+        }
     }
 }
@@ -1,12 +1,17 @@
 package com.example.HealthCare.service.impl;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,8 +23,10 @@ import com.example.HealthCare.enums.PaymentStatus;
 import com.example.HealthCare.exception.ResourceNotFoundException;
 import com.example.HealthCare.model.Appointment;
 import com.example.HealthCare.model.Payment;
+import com.example.HealthCare.model.UserAccount;
 import com.example.HealthCare.repository.AppointmentRepository;
 import com.example.HealthCare.repository.PaymentRepository;
+import com.example.HealthCare.repository.UserAccountRepository;
 import com.example.HealthCare.service.CanceledAppointmentService;
 import com.example.HealthCare.service.EmailService;
 
@@ -33,45 +40,38 @@ public class CanceledAppointmentServiceImpl implements CanceledAppointmentServic
 
     private final AppointmentRepository appointmentRepository;
     private final PaymentRepository paymentRepository;
+    private final UserAccountRepository userAccountRepository;
     private final EmailService emailService;
 
     @Override
     @Transactional(readOnly = true)
-    public Page<CanceledAppointmentResponse> getCanceledAppointments(String search, Pageable pageable) {
-        List<Appointment> allAppointments = appointmentRepository.findAll();
-        List<Appointment> filteredAppointments = new ArrayList<>(allAppointments);
-
-        if (search != null && !search.trim().isEmpty()) {
-            String searchLower = search.toLowerCase().trim();
-            filteredAppointments = filteredAppointments.stream()
-                    .filter(apt -> {
-                        String doctorName = apt.getDoctor() != null ? apt.getDoctor().getFullName().toLowerCase() : "";
-                        String patientName = apt.getPatient() != null ? apt.getPatient().getFullName().toLowerCase() : "";
-                        String patientPhone = apt.getPatient() != null ? apt.getPatient().getPhoneNumber().toLowerCase() : "";
-                        String reason = apt.getReason() != null ? apt.getReason().toLowerCase() : "";
-                        String status = apt.getStatus() != null ? apt.getStatus().getValue().toLowerCase() : "";
-                        return doctorName.contains(searchLower) || patientName.contains(searchLower) || 
-                               patientPhone.contains(searchLower) || reason.contains(searchLower) ||
-                               status.contains(searchLower) || apt.getId().toString().toLowerCase().contains(searchLower);
-                    })
-                    .collect(Collectors.toList());
+    public Page<CanceledAppointmentResponse> getCanceledAppointments(String search, AppointmentStatus status, Pageable pageable) {
+        String term = search != null && !search.trim().isEmpty() ? search.trim() : null;
+        String pattern = term != null ? "%" + escapeLike(term) + "%" : null;
+        Page<Appointment> appointments = appointmentRepository.searchForAdmin(
+                status != null ? status.getValue() : null, pattern,
+                term != null ? parseUuid(term) : null,
+                term != null ? parseStatus(term) : null,
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize()));
+
+        // Một query cho user và một query cho payment của cả trang, thay vì lazy-load theo từng dòng
+        Set<UUID> userIds = new HashSet<>();
+        List<UUID> appointmentIds = new ArrayList<>();
+        for (Appointment appointment : appointments.getContent()) {
+            userIds.add(appointment.getDoctorId());
+            userIds.add(appointment.getPatientId());
+            appointmentIds.add(appointment.getId());
         }
-
-        filteredAppointments.sort((a1, a2) -> {
-            if (a1.getScheduledStart() == null) return 1;
-            if (a2.getScheduledStart() == null) return -1;
-            return a2.getScheduledStart().compareTo(a1.getScheduledStart());
-        });
-
-        List<CanceledAppointmentResponse> responses = filteredAppointments.stream()
-                .map(this::mapToResponse)
-                .collect(Collectors.toList());
-
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), responses.size());
-        List<CanceledAppointmentResponse> pageContent = start > responses.size() ? List.of() : responses.subList(start, end);
-
-        return new PageImpl<>(pageContent, pageable, responses.size());
+        Map<UUID, UserAccount> users = userAccountRepository.findAllById(userIds).stream()
+                .collect(Collectors.toMap(UserAccount::getId, Function.identity()));
+        Map<UUID, Payment> payments = appointmentIds.isEmpty() ? Map.of()
+                : paymentRepository.findByAppointmentIdIn(appointmentIds).stream()
+                        .collect(Collectors.toMap(Payment::getAppointmentId, Function.identity(), (a, b) -> a));
+
+        return appointments.map(appointment -> mapToResponse(appointment,
+                users.get(appointment.getDoctorId()),
+                users.get(appointment.getPatientId()),
+                payments.get(appointment.getId())));
     }
 
     @Override
@@ -105,24 +105,22 @@ public class CanceledAppointmentServiceImpl implements CanceledAppointmentServic
         }
     }
 
-    private CanceledAppointmentResponse mapToResponse(Appointment appointment) {
-        // Find payment for this appointment
-        Optional<Payment> paymentOpt = paymentRepository.findAll().stream()
-                .filter(p -> p.getAppointment() != null && p.getAppointment().getId().equals(appointment.getId()))
-                .findFirst();
+    private CanceledAppointmentResponse mapToResponse(Appointment appointment, UserAccount doctor,
+                                                      UserAccount patient, Payment payment) {
+        Optional<Payment> paymentOpt = Optional.ofNullable(payment);
 
         return CanceledAppointmentResponse.builder()
                 .appointmentId(appointment.getId())
                 .scheduledStart(appointment.getScheduledStart())
                 .scheduledEnd(appointment.getScheduledEnd())
-                .doctorName(appointment.getDoctor() != null 
-                        ? appointment.getDoctor().getFullName() 
+                .doctorName(doctor != null 
+                        ? doctor.getFullName() 
                         : "N/A")
-                .patientName(appointment.getPatient() != null 
-                        ? appointment.getPatient().getFullName() 
+                .patientName(patient != null 
+                        ? patient.getFullName() 
                         : "N/A")
-                .patientPhone(appointment.getPatient() != null 
-                        ? appointment.getPatient().getPhoneNumber() 
+                .patientPhone(patient != null 
+                        ? patient.getPhoneNumber() 
                         : "N/A")
                 .cancellationReason(appointment.getCancellationReason() != null 
                         ? appointment.getCancellationReason() 
@@ -139,5 +137,28 @@ public class CanceledAppointmentServiceImpl implements CanceledAppointmentServic
                 .paymentId(paymentOpt.map(Payment::getId).orElse(null))
                 .build();
     }
-}
 
+    // Tìm kiếm theo chuỗi người dùng nhập, không để %, _ và \ trở thành wildcard của LIKE
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /** Từ khóa là một appointment id đầy đủ thì so khớp id chính xác, không thì null. */
+    private static String parseUuid(String term) {
+        try {
+            return UUID.fromString(term).toString();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Từ khóa là một status ("canceled", "IN_PROCESS", ...) thì trả về giá trị dưới DB, không thì null. */
+    private static String parseStatus(String term) {
+        for (AppointmentStatus value : AppointmentStatus.values()) {
+            if (value.name().equalsIgnoreCase(term) || value.getValue().equalsIgnoreCase(term)) {
+                return value.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -40,12 +40,12 @@ public class DashboardServiceImpl implements DashboardService {
 
         Long totalUsers = userAccountRepository.countByIsDeletedFalse();
         Long pendingDoctors = approvalRequestRepository.countByStatus(RequestStatus.PENDING);
-        Long totalAppointments = appointmentRepository.countByCreatedAtBetween(fromDate, toDate);
-        Long completedAppointments = appointmentRepository.countByStatusAndCreatedAtBetween(
+        Long totalAppointments = appointmentRepository.countByCreatedAtBetweenAndHoldingUntilIsNull(fromDate, toDate);
+        Long completedAppointments = appointmentRepository.countByStatusAndCreatedAtBetweenAndHoldingUntilIsNull(
                 AppointmentStatus.COMPLETED, fromDate, toDate);
-        Long canceledAppointments = appointmentRepository.countByStatusAndCreatedAtBetween(
+        Long canceledAppointments = appointmentRepository.countByStatusAndCreatedAtBetweenAndHoldingUntilIsNull(
                 AppointmentStatus.CANCELED, fromDate, toDate);
-        Long scheduledAppointments = appointmentRepository.countByStatusAndCreatedAtBetween(
+        Long scheduledAppointments = appointmentRepository.countByStatusAndCreatedAtBetweenAndHoldingUntilIsNull(
                 AppointmentStatus.SCHEDULED, fromDate, toDate);
         BigDecimal revenue = paymentRepository.sumTotalAmountByStatusAndPaymentTimeBetween(
                 PaymentStatus.PAID, fromDate, toDate);
@@ -18,6 +18,8 @@ import com.example.HealthCare.dto.response.WorkScheduleResponse;
 import com.example.HealthCare.exception.BadRequestException;
 import com.example.HealthCare.model.DoctorScheduleRule;
 import com.example.HealthCare.repository.DoctorScheduleRuleRepository;
+import com.example.HealthCare.service.DoctorAvailabilityIndex;
+import com.example.HealthCare.service.DoctorDirectoryIndex;
 import com.example.HealthCare.service.DoctorScheduleService;
 
 import lombok.RequiredArgsConstructor;
@@ -29,6 +31,8 @@ import lombok.extern.slf4j.Slf4j;
 public class DoctorScheduleServiceImpl implements DoctorScheduleService {
 
     private final DoctorScheduleRuleRepository scheduleRuleRepository;
+    private final DoctorAvailabilityIndex availabilityIndex;
+    private final DoctorDirectoryIndex doctorDirectoryIndex;
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
     private static final List<Integer> VALID_SESSION_DURATIONS = List.of(10, 15, 20, 30, 60);
 
@@ -167,6 +171,8 @@ public class DoctorScheduleServiceImpl implements DoctorScheduleService {
         if (!newRules.isEmpty()) {
             scheduleRuleRepository.saveAll(newRules);
         }
+        availabilityIndex.evictDoctor(doctorId);
+        doctorDirectoryIndex.invalidate();
         
         log.info("Work schedule updated successfully for doctor: {}. Created {} rules.", doctorId, newRules.size());
         
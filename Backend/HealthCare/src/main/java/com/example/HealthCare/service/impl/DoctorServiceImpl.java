@@ -10,13 +10,14 @@ import com.example.HealthCare.model.DoctorScheduleRule;
 import com.example.HealthCare.repository.DoctorExperienceRepository;
 import com.example.HealthCare.repository.DoctorProfileRepository;
 import com.example.HealthCare.repository.DoctorScheduleRuleRepository;
+import com.example.HealthCare.service.DoctorDirectoryIndex;
 import com.example.HealthCare.service.DoctorService;
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.Caching;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Page;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,6 +37,8 @@ public class DoctorServiceImpl implements DoctorService {
         private final DoctorProfileRepository doctorProfileRepository;
         private final DoctorExperienceRepository doctorExperienceRepository;
         private final DoctorScheduleRuleRepository doctorScheduleRuleRepository;
+        private final DoctorDirectoryIndex doctorDirectoryIndex;
+        private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
 
 
         private String formatPrice(BigDecimal price) {
@@ -43,71 +46,47 @@ public class DoctorServiceImpl implements DoctorService {
         NumberFormat formatter = NumberFormat.getInstance(new Locale("vi", "VN"));
         return formatter.format(price) + "đ / visit";
         }
-        private List<String> generateAvailableTimes(UUID doctorId, LocalDate date) {
-            if (date == null) {
-                return List.of();
-            }
-
-            List<DoctorScheduleRule> rules = doctorScheduleRuleRepository
-                .findByDoctorIdOrderByWeekdayAscStartTimeAsc(doctorId);
-
-            List<DoctorScheduleRule> matchingRules = DoctorScheduleRule.getAvailableRulesForDate(rules, date);
-            if (matchingRules.isEmpty()) {
-                return List.of();
-            }
-            return matchingRules.stream()
-                .map(rule -> rule.getStartTime().format(DateTimeFormatter.ofPattern("HH:mm")))
-                .sorted()
-                .toList(); 
-        }
-        
         @Override
-        public List getAllDoctors(String searchQuery, LocalDate datetime) {
-                List<DoctorProfile> doctors;
-                // LocalDate testDate = LocalDate.of(2025, 12, 2); // 15-2-2025
-
-                if (searchQuery == null || searchQuery.trim().isEmpty()) {
-                doctors = doctorProfileRepository.findAll();
-                } else {
-                doctors = doctorProfileRepository.searchByNameOrSpecialty(searchQuery.trim());
-                }
-
-                List<DoctorSummaryDto> mapped = doctors.stream()
-                    .map(doc -> {
-                        String fullName = doc.getUserAccount() != null ? doc.getUserAccount().getFullName() : "Unknown Doctor";
-                        BigDecimal cost = doctorScheduleRuleRepository.findFirstByDoctorId(doc.getUserId()) // lấy giá từ doctorScheduleRule
-                                                                    .map(DoctorScheduleRule::getAppointmentCost)
-                                                                    .orElse(new BigDecimal("150000"));       
-                        return DoctorSummaryDto.builder()
-                                .id(doc.getUserId().toString())
-                                .name(doc.getTitle() + " " + fullName)
-                                .specialty(formatArrayFieldDisplay(doc.getSpecialties()))
-                                .rating(4.5)
-                                .reviews(100)
-                                .title(doc.getTitle())
-                                .clinic(doc.getWorkplaceName())
-                            .cost(formatPrice(cost))
-                            .appointmentCost(cost)
-                                .availableTimes(generateAvailableTimes(doc.getUserId(), datetime))
-                                .experience(doc.getGraduationYear() != null ?
-                                        (java.time.Year.now().getValue() - doc.getGraduationYear()) + " years" : "N/A")
-                                .consultations("30 visits")
-                                .build();
-                    })
-                    .collect(Collectors.toList());
+        public List<DoctorSummaryDto> getAllDoctors(String searchQuery, LocalDate datetime) {
+                // Served from the in-memory directory; when a date is given only doctors working that weekday are returned
+                return doctorDirectoryIndex.search(searchQuery, datetime, 0, Integer.MAX_VALUE)
+                        .map(entry -> toSummary(entry, datetime))
+                        .getContent();
+        }
 
-                // If datetime was provided, only return doctors who have available times on that date.
-                if (datetime != null) {
-                    return mapped.stream()
-                        .filter(dto -> dto.getAvailableTimes() != null && !dto.getAvailableTimes().isEmpty())
-                        .collect(Collectors.toList());
-                }
+        @Override
+        public Page<DoctorSummaryDto> searchDoctors(String searchQuery, LocalDate datetime, int page, int size) {
+                return doctorDirectoryIndex.search(searchQuery, datetime, page, size)
+                        .map(entry -> toSummary(entry, datetime));
+        }
 
-                return mapped;
+        private DoctorSummaryDto toSummary(DoctorDirectoryIndex.DoctorEntry entry, LocalDate datetime) {
+                DoctorProfile doc = entry.getProfile();
+                String fullName = entry.getFullName() != null ? entry.getFullName() : "Unknown Doctor";
+                BigDecimal cost = entry.getAppointmentCost();
+                List<String> availableTimes = entry.getStartTimes(datetime).stream()
+                        .map(time -> time.format(TIME_FORMATTER))
+                        .sorted()
+                        .toList();
+                return DoctorSummaryDto.builder()
+                        .id(doc.getUserId().toString())
+                        .name(doc.getTitle() + " " + fullName)
+                        .specialty(formatArrayFieldDisplay(doc.getSpecialties()))
+                        .rating(4.5)
+                        .reviews(100)
+                        .title(doc.getTitle())
+                        .clinic(doc.getWorkplaceName())
+                        .cost(formatPrice(cost))
+                        .appointmentCost(cost)
+                        .availableTimes(availableTimes)
+                        .experience(doc.getGraduationYear() != null ?
+                                (java.time.Year.now().getValue() - doc.getGraduationYear()) + " years" : "N/A")
+                        .consultations("30 visits")
+                        .build();
         }
 
         @Override
-        @Cacheable(value = "doctorDetails", key = "#doctorId")
+        @Cacheable(value = "doctorDetails", key = "#doctorId", sync = true)
         public DoctorDetailDto getDoctorDetail(UUID doctorId) {
         return doctorProfileRepository.findByUserId(doctorId)
                 .map(doc -> {
@@ -187,7 +166,7 @@ public class DoctorServiceImpl implements DoctorService {
         }
 
         @Override
-        @Cacheable(value = "doctorProfessionalInfo", key = "#doctorId")
+        @Cacheable(value = "doctorProfessionalInfo", key = "#doctorId", sync = true)
         public ProfessionalInfoResponse getProfessionalInfo(UUID doctorId) {
             DoctorProfile profile = doctorProfileRepository.findByUserId(doctorId)
                     .orElseThrow(() -> new RuntimeException("Doctor profile not found"));
@@ -364,6 +343,7 @@ public class DoctorServiceImpl implements DoctorService {
 
             // Save updated profile
             profile = doctorProfileRepository.save(profile);
+            doctorDirectoryIndex.invalidate();
 
             // Update work experiences if provided
             if (request.getWorkExperiences() != null) {
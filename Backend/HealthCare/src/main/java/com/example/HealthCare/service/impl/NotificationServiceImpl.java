@@ -1,7 +1,6 @@
 package com.example.HealthCare.service.impl;
 
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -14,6 +13,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import com.example.HealthCare.dto.request.CreateNotificationRequest;
 import com.example.HealthCare.dto.request.UpdateNotificationRequest;
+import com.example.HealthCare.dto.response.NotificationDispatchStatusResponse;
 import com.example.HealthCare.dto.response.NotificationResponse;
 import com.example.HealthCare.enums.UserRole;
 import com.example.HealthCare.exception.NotFoundException;
@@ -23,7 +23,10 @@ import com.example.HealthCare.model.UserAccount;
 import com.example.HealthCare.repository.NotificationRepository;
 import com.example.HealthCare.repository.NotificationUserRepository;
 import com.example.HealthCare.repository.UserAccountRepository;
+import com.example.HealthCare.service.NotificationFanoutService;
 import com.example.HealthCare.service.NotificationService;
+import com.example.HealthCare.service.NotificationUnreadCounter;
+import com.example.HealthCare.util.TransactionUtils;
 import com.example.HealthCare.websocket.NotificationWebSocketService;
 
 import lombok.RequiredArgsConstructor;
@@ -38,6 +41,8 @@ public class NotificationServiceImpl implements NotificationService {
     private final NotificationUserRepository notificationUserRepository;
     private final UserAccountRepository userAccountRepository;
     private final NotificationWebSocketService webSocketService;
+    private final NotificationFanoutService notificationFanoutService;
+    private final NotificationUnreadCounter unreadCounter;
 
     @Override
     @Transactional
@@ -50,33 +55,22 @@ public class NotificationServiceImpl implements NotificationService {
                 .createdBy(adminId)
                 .build();
         
-        notification = notificationRepository.save(notification);
-        List<UserAccount> targetUsers = getTargetUsers(request.getTargetRoles());
-        
-        List<NotificationUser> notificationUsers = new ArrayList<>();
-        for (UserAccount user : targetUsers) {
-            NotificationUser notificationUser = NotificationUser.builder()
-                    .notification(notification)
-                    .user(user)
-                    .isRead(false)
-                    .build();
-            notificationUser = notificationUserRepository.save(notificationUser);
-            notificationUsers.add(notificationUser);
-        }
-        
-        for (NotificationUser notificationUser : notificationUsers) {
-            try {
-                NotificationResponse userResponse = mapToResponseWithUserData(notificationUser);
-                webSocketService.sendNotificationToUser(notificationUser.getUser().getId(), userResponse);
-                Long unreadCount = notificationUserRepository.countUnreadByUserId(notificationUser.getUser().getId());
-                webSocketService.sendUnreadCountToUser(notificationUser.getUser().getId(), unreadCount);
-            } catch (Exception e) {
-                log.error("Error broadcasting notification via WebSocket to user {}: {}", 
-                    notificationUser.getUser().getId(), e.getMessage());
-            }
-        }
-        
-        return mapToResponse(notification);
+        // Flush trước để INSERT ... SELECT người nhận thấy được dòng notification (FK)
+        notification = notificationRepository.saveAndFlush(notification);
+        // Mốc lấy trước khi ghi người nhận: job fan-out +1 cho counter của người nhận đã nạp trước mốc này
+        long counterSince = unreadCounter.currentTime();
+        int recipients = insertRecipients(notification.getId(), request.getTargetRoles());
+
+        NotificationResponse response = mapToResponse(notification);
+        notificationFanoutService.dispatchAfterCommit(response, recipients, counterSince);
+        return response;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public NotificationDispatchStatusResponse getDispatchStatus(UUID notificationId) {
+        return notificationFanoutService.getStatus(notificationId)
+                .orElseThrow(() -> new NotFoundException("No dispatch job found for this notification"));
     }
 
     @Override
@@ -99,14 +93,17 @@ public class NotificationServiceImpl implements NotificationService {
                 .isRead(false)
                 .build();
         notificationUser = notificationUserRepository.save(notificationUser);
-        try {
-            NotificationResponse userResponse = mapToResponseWithUserData(notificationUser);
-            webSocketService.sendNotificationToUser(recipientUserId, userResponse);
-            Long unreadCount = notificationUserRepository.countUnreadByUserId(recipientUserId);
-            webSocketService.sendUnreadCountToUser(recipientUserId, unreadCount);
-        } catch (Exception e) {
-            log.error("Error broadcasting single-user notification to {}: {}", recipientUserId, e.getMessage());
-        }
+        unreadCounter.addAfterCommit(recipientUserId, 1);
+
+        NotificationResponse userResponse = mapToResponseWithUserData(notificationUser);
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                webSocketService.sendNotificationToUser(recipientUserId, userResponse);
+                webSocketService.sendUnreadCountToUser(recipientUserId, unreadCounter.get(recipientUserId));
+            } catch (Exception e) {
+                log.error("Error broadcasting single-user notification to {}: {}", recipientUserId, e.getMessage());
+            }
+        });
     }
 
     @Override
@@ -122,19 +119,13 @@ public class NotificationServiceImpl implements NotificationService {
         boolean rolesChanged = hasRolesChanged(notification.getTargetRoles(), request.getTargetRoles());
         
         if (rolesChanged) {
+            // Chỉ counter của người nhận cũ còn chưa đọc và người nhận mới bị ảnh hưởng
+            Set<UUID> affected = new HashSet<>(notificationUserRepository.findUnreadUserIdsByNotificationId(notificationId));
             notificationUserRepository.deleteByNotificationId(notificationId);
             notification.setTargetRoles(request.getTargetRoles());
-            
-            List<UserAccount> targetUsers = getTargetUsers(request.getTargetRoles());
-            for (UserAccount user : targetUsers) {
-                NotificationUser notificationUser = NotificationUser.builder()
-                        .notification(notification)
-                        .user(user)
-                        .isRead(false)
-                        .build();
-                notificationUserRepository.save(notificationUser);
-            }
-            
+            insertRecipients(notificationId, request.getTargetRoles());
+            affected.addAll(notificationUserRepository.findUserIdsByNotificationId(notificationId));
+            unreadCounter.invalidateAfterCommit(affected);
         }
         
         notification = notificationRepository.save(notification);
@@ -144,8 +135,10 @@ public class NotificationServiceImpl implements NotificationService {
     @Override
     @Transactional
     public void deleteNotification(UUID notificationId) {
+        List<UUID> unreadRecipients = notificationUserRepository.findUnreadUserIdsByNotificationId(notificationId);
         notificationUserRepository.deleteByNotificationId(notificationId);
         notificationRepository.deleteById(notificationId);
+        unreadCounter.invalidateAfterCommit(unreadRecipients);
     }
 
     @Override
@@ -190,8 +183,7 @@ public class NotificationServiceImpl implements NotificationService {
     @Override
     @Transactional(readOnly = true)
     public Long getUnreadCount(UUID userId) {
-        
-        return notificationUserRepository.countUnreadByUserId(userId);
+        return unreadCounter.get(userId);
     }
 
     @Override
@@ -204,42 +196,43 @@ public class NotificationServiceImpl implements NotificationService {
             throw new RuntimeException("Unauthorized: This notification does not belong to the user");
         }
         
-        notificationUser.setIsRead(true);
-        notificationUser.setReadAt(OffsetDateTime.now());
-        notificationUserRepository.save(notificationUser);
-        
-        try {
-            Long unreadCount = notificationUserRepository.countUnreadByUserId(userId);
-            webSocketService.sendUnreadCountToUser(userId, unreadCount);
-        } catch (Exception e) {
-            log.error("Error sending updated unread count via WebSocket: {}", e.getMessage());
+        // Conditional UPDATE: hai request đánh dấu cùng một dòng chỉ trừ counter một lần.
+        // Không sửa entity đang managed (sẽ sinh thêm một UPDATE lúc flush); chỉ phản ánh vào response.
+        OffsetDateTime readAt = OffsetDateTime.now();
+        int changed = notificationUserRepository.markReadById(notificationUserId, readAt);
+        NotificationResponse response = mapToResponseWithUserData(notificationUser);
+        if (changed > 0) {
+            response.setIsRead(true);
+            response.setReadAt(readAt);
+            unreadCounter.addAfterCommit(userId, -changed);
         }
+        sendUnreadCountAfterCommit(userId);
         
-        return mapToResponseWithUserData(notificationUser);
+        return response;
     }
 
     @Override
     @Transactional
     public void markAllAsRead(UUID userId) {
-        List<NotificationUser> unreadNotifications = notificationUserRepository.findUnreadByUserId(userId);
-        
-        for (NotificationUser notificationUser : unreadNotifications) {
-            notificationUser.setIsRead(true);
-            notificationUser.setReadAt(OffsetDateTime.now());
-            notificationUserRepository.save(notificationUser);
-        }
-        
-        try {
-            Long unreadCount = notificationUserRepository.countUnreadByUserId(userId);
-            webSocketService.sendUnreadCountToUser(userId, unreadCount);
-        } catch (Exception e) {
-            log.error("Error sending updated unread count via WebSocket: {}", e.getMessage());
-        }
+        int changed = notificationUserRepository.markAllReadByUserId(userId, OffsetDateTime.now());
+        unreadCounter.addAfterCommit(userId, -changed);
+        sendUnreadCountAfterCommit(userId);
     }
 
     // Helper methods
     
-    private List<UserAccount> getTargetUsers(List<String> targetRoles) {
+    private void sendUnreadCountAfterCommit(UUID userId) {
+        TransactionUtils.runAfterCommit(() -> {
+            try {
+                webSocketService.sendUnreadCountToUser(userId, unreadCounter.get(userId));
+            } catch (Exception e) {
+                log.error("Error sending updated unread count via WebSocket: {}", e.getMessage());
+            }
+        });
+    }
+    
+    /** Ghi notification_user cho mọi người nhận bằng một câu INSERT ... SELECT; trả về số dòng đã tạo. */
+    private int insertRecipients(UUID notificationId, List<String> targetRoles) {
         // Check if null, empty, or has all 3 roles (DOCTOR, PATIENT, ADMIN) = send to all users
         // When "Send to all users" is selected in UI, targetRoles = ["DOCTOR", "PATIENT", "ADMIN"]
         boolean hasAllRoles = targetRoles != null && 
@@ -249,25 +242,21 @@ public class NotificationServiceImpl implements NotificationService {
                               targetRoles.contains("ADMIN");
         
         if (targetRoles == null || targetRoles.isEmpty() || hasAllRoles) {
-            return userAccountRepository.findAll().stream()
-                    .filter(user -> !user.getIsDeleted())
-                    .collect(Collectors.toList());
+            // roles không được dùng khi allRoles = true, nhưng IN () rỗng không hợp lệ
+            return notificationUserRepository.insertRecipients(notificationId, true, List.of(""));
         }
         
-        Set<UserAccount> targetUsersSet = new HashSet<>();
-        
+        Set<String> roleValues = new HashSet<>();
         for (String roleStr : targetRoles) {
             try {
-                UserRole role = UserRole.valueOf(roleStr);
-                List<UserAccount> usersWithRole = userAccountRepository.findAllByRoleAndIsDeletedFalse(role);
-                targetUsersSet.addAll(usersWithRole);
+                roleValues.add(UserRole.valueOf(roleStr).getValue());
             } catch (IllegalArgumentException e) {
                 log.error("Invalid role: {}", roleStr);
                 throw new RuntimeException("Invalid target role: " + roleStr);
             }
         }
         
-        return new ArrayList<>(targetUsersSet);
+        return notificationUserRepository.insertRecipients(notificationId, false, roleValues);
     }
     
     private boolean hasRolesChanged(List<String> oldRoles, List<String> newRoles) {
@@ -3,12 +3,14 @@ package com.example.HealthCare.service.impl;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,22 +21,31 @@ import com.example.HealthCare.dto.response.DoctorPayrollResponse;
 import com.example.HealthCare.enums.AppointmentStatus;
 import com.example.HealthCare.enums.PaymentStatus;
 import com.example.HealthCare.enums.PayrollStatus;
-import com.example.HealthCare.model.Appointment;
 import com.example.HealthCare.model.DoctorPayroll;
 import com.example.HealthCare.model.DoctorProfile;
-import com.example.HealthCare.model.Payment;
 import com.example.HealthCare.model.UserAccount;
 import com.example.HealthCare.repository.AppointmentRepository;
 import com.example.HealthCare.repository.DoctorPayrollRepository;
 import com.example.HealthCare.repository.DoctorProfileRepository;
 import com.example.HealthCare.repository.PaymentRepository;
 import com.example.HealthCare.repository.UserAccountRepository;
+import com.example.HealthCare.service.DoctorAvailabilityIndex;
 import com.example.HealthCare.service.EmailService;
 import com.example.HealthCare.service.PayrollService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Lương bác sĩ theo tháng.
+ *
+ * Số liệu của cả kỳ được tính bằng một query GROUP BY doctor_id (appointment LEFT JOIN payment).
+ * Kỳ đang mở (chưa qua hết tháng) được tính mỗi lần xem, không ghi gì xuống DB. Kỳ đã đóng được lưu
+ * thành snapshot trong doctor_payroll (upsert ON CONFLICT, hai lần xem đồng thời không đụng unique index);
+ * lần xem sau chỉ tính lại khi số lịch hẹn của kỳ khác source_appointments (xóa / dời lịch ra khỏi kỳ),
+ * có appointment hoặc payment của kỳ thay đổi sau computed_at (MAX(updated_at)), hoặc có bác sĩ mới chưa có
+ * snapshot. Chốt lương luôn ghi snapshot. Kỳ đã SETTLED thì giữ nguyên số liệu lúc thanh toán.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -51,79 +62,40 @@ public class PayrollServiceImpl implements PayrollService {
     private static final BigDecimal DOCTOR_SALARY_PERCENTAGE = new BigDecimal("0.85");
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional
     public List<DoctorPayrollResponse> getDoctorPayrolls(PayrollFilterRequest request) {
-        LocalDate currentDate = LocalDate.now();
-        List<DoctorProfile> doctorProfiles = doctorProfileRepository.findAll();
+        YearMonth period = YearMonth.of(request.getYear(), request.getMonth());
+        List<DoctorProfile> doctorProfiles = doctorProfileRepository.findAllWithUserAccount();
+        Map<UUID, DoctorPayroll> snapshots = isClosed(period)
+                ? ensureSnapshots(period, doctorProfiles)
+                : computeOpenPeriod(period, doctorProfiles);
+
+        // Check if can settle (current date >= end of selected month)
+        boolean canSettle = !LocalDate.now().isBefore(period.atEndOfMonth());
+        String searchLower = request.getSearch() != null && !request.getSearch().trim().isEmpty()
+                ? request.getSearch().toLowerCase().trim()
+                : null;
 
         List<DoctorPayrollResponse> payrolls = new ArrayList<>();
-
         for (DoctorProfile profile : doctorProfiles) {
             UserAccount doctor = profile.getUserAccount();
-            if (doctor == null) {
+            if (doctor == null || (searchLower != null && !matchesSearch(doctor, searchLower))) {
                 continue;
             }
 
-            // Get appointments for this doctor in the specified period
-            List<Appointment> appointments = getCompletedAppointmentsForPeriod(
-                    profile.getUserId(), request.getYear(), request.getMonth());
-
-            // Calculate stats
-            int completedAppointments = appointments.size();
-            
-            // Get total revenue from payments (only PAID payments)
-            BigDecimal totalRevenue = calculateTotalRevenue(appointments);
-            
-            // Get total refunds (from cancelled appointments in the same period)
-            BigDecimal refunds = calculateTotalRefunds(profile.getUserId(), request.getYear(), request.getMonth());
-
-            // Calculate platform fee (15%)
-            BigDecimal platformFee = totalRevenue.multiply(PLATFORM_FEE_PERCENTAGE)
-                    .setScale(0, RoundingMode.HALF_UP);
-
-            // Calculate doctor salary (85%)
-            BigDecimal doctorSalary = totalRevenue.multiply(DOCTOR_SALARY_PERCENTAGE)
-                    .setScale(0, RoundingMode.HALF_UP);
-
-            // Check if payroll already exists
-            Optional<DoctorPayroll> existingPayroll = doctorPayrollRepository.findByDoctorIdAndPeriodYearAndPeriodMonth(
-                    profile.getUserId(), request.getYear(), request.getMonth());
-
-            String paymentStatus = existingPayroll.isPresent() 
-                    ? existingPayroll.get().getStatus().getValue() 
-                    : "UNSETTLED";
-
-            UUID payrollId = existingPayroll.map(DoctorPayroll::getId).orElse(null);
-
-            // Check if can settle (current date >= end of selected month)
-            LocalDate endOfMonth = YearMonth.of(request.getYear(), request.getMonth()).atEndOfMonth();
-            boolean canSettle = !currentDate.isBefore(endOfMonth);
-
-            // Apply search filter
-            if (request.getSearch() != null && !request.getSearch().trim().isEmpty()) {
-                String searchLower = request.getSearch().toLowerCase().trim();
-                String doctorName = doctor.getFullName().toLowerCase();
-                String email = doctor.getEmail().toLowerCase();
-                String phone = doctor.getPhoneNumber() != null ? doctor.getPhoneNumber().toLowerCase() : "";
-
-                if (!doctorName.contains(searchLower) && !email.contains(searchLower) 
-                        && !phone.contains(searchLower)) {
-                    continue;
-                }
-            }
-
+            DoctorPayroll payroll = snapshots.get(profile.getUserId());
             payrolls.add(DoctorPayrollResponse.builder()
                     .doctorId(profile.getUserId())
                     .doctorName(doctor.getFullName())
                     .email(doctor.getEmail())
                     .phoneNumber(doctor.getPhoneNumber())
-                    .completedAppointments(completedAppointments)
-                    .totalRevenue(totalRevenue)
-                    .refunds(refunds)
-                    .platformFee(platformFee)
-                    .doctorSalary(doctorSalary)
-                    .paymentStatus(paymentStatus)
-                    .payrollId(payrollId)
+                    .completedAppointments(payroll.getCompletedAppointments())
+                    .totalRevenue(payroll.getGrossAmount())
+                    .refunds(payroll.getRefundAmount())
+                    .platformFee(payroll.getPlatformFee())
+                    .doctorSalary(payroll.getNetAmount())
+                    .paymentStatus(payroll.getStatus().getValue())
+                    .payrollId(payroll.getId())
                     .canSettle(canSettle)
                     .build());
         }
@@ -137,6 +109,10 @@ public class PayrollServiceImpl implements PayrollService {
         UserAccount doctor = userAccountRepository.findById(request.getDoctorId())
                 .orElseThrow(() -> new RuntimeException("Doctor not found"));
 
+        // Đảm bảo snapshot của kỳ đã có và khớp dữ liệu hiện tại trước khi chốt
+        ensureSnapshots(YearMonth.of(request.getYear(), request.getMonth()),
+                doctorProfileRepository.findAllWithUserAccount());
+
         Optional<DoctorPayroll> existingPayrollOpt = doctorPayrollRepository.findByDoctorIdAndPeriodYearAndPeriodMonth(
                 request.getDoctorId(), request.getYear(), request.getMonth());
 
@@ -145,14 +121,15 @@ public class PayrollServiceImpl implements PayrollService {
         }
 
         DoctorPayroll existingPayroll = existingPayrollOpt.get();
-        
+
         if (existingPayroll.getStatus() == PayrollStatus.SETTLED) {
             throw new IllegalStateException("Payroll already settled for this period");
         }
 
         existingPayroll.setStatus(PayrollStatus.SETTLED);
+        existingPayroll.setSettledAt(OffsetDateTime.now());
         doctorPayrollRepository.save(existingPayroll);
-        
+
         if (doctor.getEmail() != null) {
             emailService.sendPayrollSettlementEmail(
                 doctor.getEmail(),
@@ -167,75 +144,158 @@ public class PayrollServiceImpl implements PayrollService {
         }
     }
 
-    private List<Appointment> getCompletedAppointmentsForPeriod(UUID doctorId, Integer year, Integer month) {
-        // Get all appointments for this doctor
-        List<Appointment> allAppointments = appointmentRepository.findAll();
-        
-        return allAppointments.stream()
-                .filter(apt -> apt.getDoctorId().equals(doctorId))
-                .filter(apt -> apt.getStatus() == AppointmentStatus.COMPLETED)
-                .filter(apt -> {
-                    if (apt.getScheduledStart() == null) {
-                        return false;
-                    }
-                    LocalDate scheduledDate = apt.getScheduledStart().toLocalDate();
-                    return scheduledDate.getYear() == year && scheduledDate.getMonthValue() == month;
-                })
-                .collect(Collectors.toList());
-    }
+    /**
+     * Trả về snapshot lương của kỳ cho mọi bác sĩ, tính lại (và lưu) khi snapshot cũ không còn đúng.
+     */
+    private Map<UUID, DoctorPayroll> ensureSnapshots(YearMonth period, List<DoctorProfile> doctorProfiles) {
+        Map<UUID, DoctorPayroll> snapshots = new HashMap<>();
+        for (DoctorPayroll payroll : doctorPayrollRepository.findByPeriodYearAndPeriodMonth(
+                period.getYear(), period.getMonthValue())) {
+            snapshots.put(payroll.getDoctorId(), payroll);
+        }
 
-    private BigDecimal calculateTotalRevenue(List<Appointment> appointments) {
-        BigDecimal total = BigDecimal.ZERO;
+        // Lấy mốc và số lịch hẹn trước khi query: thay đổi xảy ra trong lúc tính sẽ làm snapshot stale ở lần sau
+        long appointmentCount = countAppointments(period);
+        OffsetDateTime lastChange = lastChange(period);
+        boolean fresh = doctorProfiles.stream().allMatch(profile -> {
+            DoctorPayroll payroll = snapshots.get(profile.getUserId());
+            return payroll != null && (payroll.getStatus() == PayrollStatus.SETTLED
+                    || (payroll.getComputedAt() != null
+                            && Long.valueOf(appointmentCount).equals(payroll.getSourceAppointments())
+                            && (lastChange == null || !payroll.getComputedAt().isBefore(lastChange))));
+        });
+        if (fresh) {
+            return snapshots;
+        }
 
-        for (Appointment appointment : appointments) {
-            // Find payment for this appointment
-            List<Payment> allPayments = paymentRepository.findAll();
-            Optional<Payment> paymentOpt = allPayments.stream()
-                    .filter(p -> p.getAppointment() != null 
-                            && p.getAppointment().getId().equals(appointment.getId())
-                            && p.getStatus() == PaymentStatus.PAID)
-                    .findFirst();
+        OffsetDateTime computedAt = OffsetDateTime.now();
+        long startTime = System.currentTimeMillis();
+        Map<UUID, PayrollTotals> totals = aggregate(period);
 
-            if (paymentOpt.isPresent()) {
-                total = total.add(paymentOpt.get().getTotalAmount());
+        int changed = 0;
+        for (DoctorProfile profile : doctorProfiles) {
+            DoctorPayroll existing = snapshots.get(profile.getUserId());
+            if (existing != null && existing.getStatus() == PayrollStatus.SETTLED) {
+                continue;
             }
+            DoctorPayroll payroll = newPayroll(profile.getUserId(), period,
+                    totals.getOrDefault(profile.getUserId(), PayrollTotals.EMPTY));
+            doctorPayrollRepository.upsertSnapshot(UUID.randomUUID(), payroll.getDoctorId(),
+                    period.getYear(), period.getMonthValue(), payroll.getCompletedAppointments(),
+                    payroll.getGrossAmount(), payroll.getRefundAmount(), payroll.getPlatformFee(),
+                    payroll.getNetAmount(), computedAt, appointmentCount);
+            changed++;
         }
 
-        return total;
+        log.info("Payroll {} recomputed for {} doctors in {} ms", period, changed,
+                System.currentTimeMillis() - startTime);
+
+        Map<UUID, DoctorPayroll> saved = new HashMap<>();
+        for (DoctorPayroll payroll : doctorPayrollRepository.findByPeriodYearAndPeriodMonth(
+                period.getYear(), period.getMonthValue())) {
+            saved.put(payroll.getDoctorId(), payroll);
+        }
+        return saved;
     }
 
-    private BigDecimal calculateTotalRefunds(UUID doctorId, Integer year, Integer month) {
-        BigDecimal total = BigDecimal.ZERO;
-        
-        // Get all canceled appointments for this doctor in the specified period
-        List<Appointment> allAppointments = appointmentRepository.findAll();
-        List<Appointment> canceledAppointments = allAppointments.stream()
-                .filter(apt -> apt.getDoctorId().equals(doctorId))
-                .filter(apt -> apt.getStatus() == AppointmentStatus.CANCELED)
-                .filter(apt -> {
-                    if (apt.getScheduledStart() == null) {
-                        return false;
-                    }
-                    LocalDate scheduledDate = apt.getScheduledStart().toLocalDate();
-                    return scheduledDate.getYear() == year && scheduledDate.getMonthValue() == month;
-                })
-                .collect(Collectors.toList());
-
-        for (Appointment appointment : canceledAppointments) {
-            // Find payment for this appointment with REFUNDED status
-            List<Payment> allPayments = paymentRepository.findAll();
-            Optional<Payment> paymentOpt = allPayments.stream()
-                    .filter(p -> p.getAppointment() != null 
-                            && p.getAppointment().getId().equals(appointment.getId())
-                            && p.getStatus() == PaymentStatus.REFUNDED)
-                    .findFirst();
-
-            if (paymentOpt.isPresent()) {
-                total = total.add(paymentOpt.get().getTotalAmount());
+    /**
+     * Lương của kỳ chưa đóng: tính trực tiếp, không lưu snapshot (số liệu còn thay đổi tới hết tháng).
+     * Bác sĩ đã được chốt trong kỳ vẫn trả về bản đã chốt.
+     */
+    private Map<UUID, DoctorPayroll> computeOpenPeriod(YearMonth period, List<DoctorProfile> doctorProfiles) {
+        Map<UUID, DoctorPayroll> existing = new HashMap<>();
+        for (DoctorPayroll payroll : doctorPayrollRepository.findByPeriodYearAndPeriodMonth(
+                period.getYear(), period.getMonthValue())) {
+            existing.put(payroll.getDoctorId(), payroll);
+        }
+
+        Map<UUID, PayrollTotals> totals = aggregate(period);
+        Map<UUID, DoctorPayroll> payrolls = new HashMap<>();
+        for (DoctorProfile profile : doctorProfiles) {
+            DoctorPayroll snapshot = existing.get(profile.getUserId());
+            if (snapshot != null && snapshot.getStatus() == PayrollStatus.SETTLED) {
+                payrolls.put(profile.getUserId(), snapshot);
+                continue;
             }
+            DoctorPayroll payroll = newPayroll(profile.getUserId(), period,
+                    totals.getOrDefault(profile.getUserId(), PayrollTotals.EMPTY));
+            // Đối tượng tạm, không persist; giữ id của bản ghi cũ (nếu có) cho client
+            payroll.setId(snapshot != null ? snapshot.getId() : null);
+            payrolls.put(profile.getUserId(), payroll);
+        }
+        return payrolls;
+    }
+
+    private DoctorPayroll newPayroll(UUID doctorId, YearMonth period, PayrollTotals totals) {
+        return DoctorPayroll.builder()
+                .doctorId(doctorId)
+                .periodYear(period.getYear())
+                .periodMonth(period.getMonthValue())
+                .completedAppointments(totals.completedAppointments())
+                .grossAmount(totals.revenue())
+                .refundAmount(totals.refunds())
+                .platformFee(totals.revenue().multiply(PLATFORM_FEE_PERCENTAGE).setScale(0, RoundingMode.HALF_UP))
+                .netAmount(totals.revenue().multiply(DOCTOR_SALARY_PERCENTAGE).setScale(0, RoundingMode.HALF_UP))
+                .build();
+    }
+
+    private long countAppointments(YearMonth period) {
+        return appointmentRepository.countByScheduledStartGreaterThanEqualAndScheduledStartLessThan(
+                periodStart(period), periodStart(period.plusMonths(1)));
+    }
+
+    /** Kỳ đã qua hết tháng (theo giờ phòng khám). */
+    private static boolean isClosed(YearMonth period) {
+        return !LocalDate.now(DoctorAvailabilityIndex.CLINIC_OFFSET).isBefore(period.plusMonths(1).atDay(1));
+    }
+
+    private Map<UUID, PayrollTotals> aggregate(YearMonth period) {
+        List<Object[]> rows = appointmentRepository.aggregatePayrollByDoctor(
+                periodStart(period), periodStart(period.plusMonths(1)),
+                AppointmentStatus.COMPLETED, AppointmentStatus.CANCELED,
+                PaymentStatus.PAID, PaymentStatus.REFUNDED);
+
+        Map<UUID, PayrollTotals> totals = new HashMap<>();
+        for (Object[] row : rows) {
+            totals.put((UUID) row[0], new PayrollTotals(
+                    ((Number) row[1]).longValue(),
+                    ((Number) row[2]).intValue(),
+                    toBigDecimal(row[3]),
+                    toBigDecimal(row[4])));
+        }
+        return totals;
+    }
+
+    private OffsetDateTime lastChange(YearMonth period) {
+        OffsetDateTime start = periodStart(period);
+        OffsetDateTime end = periodStart(period.plusMonths(1));
+        OffsetDateTime appointmentChange = appointmentRepository.findLastUpdateByScheduledStartBetween(start, end);
+        OffsetDateTime paymentChange = paymentRepository.findLastUpdateByAppointmentPeriod(start, end);
+        if (appointmentChange == null) {
+            return paymentChange;
         }
+        return paymentChange != null && paymentChange.isAfter(appointmentChange) ? paymentChange : appointmentChange;
+    }
 
-        return total;
+    private static OffsetDateTime periodStart(YearMonth period) {
+        return period.atDay(1).atStartOfDay().atOffset(DoctorAvailabilityIndex.CLINIC_OFFSET);
+    }
+
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value == null) {
+            return BigDecimal.ZERO;
+        }
+        return value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+    }
+
+    private static boolean matchesSearch(UserAccount doctor, String searchLower) {
+        String doctorName = doctor.getFullName().toLowerCase();
+        String email = doctor.getEmail().toLowerCase();
+        String phone = doctor.getPhoneNumber() != null ? doctor.getPhoneNumber().toLowerCase() : "";
+        return doctorName.contains(searchLower) || email.contains(searchLower) || phone.contains(searchLower);
     }
-}
 
+    private record PayrollTotals(long appointments, int completedAppointments, BigDecimal revenue, BigDecimal refunds) {
+        static final PayrollTotals EMPTY = new PayrollTotals(0, 0, BigDecimal.ZERO, BigDecimal.ZERO);
+    }
+}
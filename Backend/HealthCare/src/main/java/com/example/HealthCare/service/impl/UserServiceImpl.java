@@ -3,9 +3,7 @@ package com.example.HealthCare.service.impl;
 import java.util.List;
 import java.util.UUID;
 
-import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
@@ -35,6 +33,8 @@ import com.example.HealthCare.repository.ApprovalRequestRepository;
 import com.example.HealthCare.repository.DoctorProfileRepository;
 import com.example.HealthCare.repository.PatientProfileRepository;
 import com.example.HealthCare.repository.UserAccountRepository;
+import com.example.HealthCare.service.DoctorDirectoryIndex;
+import com.example.HealthCare.service.TaggedCacheInvalidator;
 import com.example.HealthCare.service.UserService;
 
 import lombok.RequiredArgsConstructor;
@@ -50,9 +50,10 @@ public class UserServiceImpl implements UserService {
 	private final DoctorProfileRepository doctorProfileRepository;
 	private final PatientProfileRepository patientProfileRepository;
 	private final PasswordEncoder passwordEncoder;
+	private final DoctorDirectoryIndex doctorDirectoryIndex;
+	private final TaggedCacheInvalidator taggedCacheInvalidator;
 
 	@Override
-	@CacheEvict(value = {"users", "pendingDoctors"}, allEntries = true)
 	public void createUser(CreateUserRequest req) {
 		// Validate email uniqueness
 		if (userAccountRepository.existsByEmail(req.getEmail())) {
@@ -97,15 +98,12 @@ public class UserServiceImpl implements UserService {
 				.build();
 
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	@Override
-	@Caching(evict = {
-		@CacheEvict(value = "users", allEntries = true),
-		@CacheEvict(value = "userDetails", key = "#req.id"),
-		@CacheEvict(value = "pendingDoctors", allEntries = true)
-	})
 	public void updateUser(UpdateUserRequest req) {
+		doctorDirectoryIndex.invalidate();
 		UserAccount userAccount = userAccountRepository.findByIdAndIsDeletedFalse(req.getId())
 				.orElseThrow(() -> new NotFoundException("User not found with id: " + req.getId()));
 
@@ -140,6 +138,7 @@ public class UserServiceImpl implements UserService {
 		}
 
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	@Override
@@ -151,18 +150,17 @@ public class UserServiceImpl implements UserService {
 
 	@Override
 	@Transactional
-	@Caching(evict = {
-		@CacheEvict(value = "users", allEntries = true),
-		@CacheEvict(value = "userDetails", key = "#id"),
-		@CacheEvict(value = "pendingDoctors", allEntries = true)
-	})
 	public void deleteUser(UUID id) {
+		doctorDirectoryIndex.invalidate();
 		UserAccount userAccount = userAccountRepository.findByIdAndIsDeletedFalse(id)
 				.orElseThrow(() -> new NotFoundException("User not found with id: " + id));
 		
 		userAccount.setIsDeleted(true);
 		userAccount.setDeletedAt(java.time.OffsetDateTime.now());
+		// Token cũ không dùng lại được kể cả khi khôi phục tài khoản
+		userAccount.setTokensValidAfter(userAccount.getDeletedAt());
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	@Override
@@ -173,7 +171,7 @@ public class UserServiceImpl implements UserService {
 	}
 
 	@Override
-	@Cacheable(value = "userDetails", key = "#id")
+	@Cacheable(value = "userDetails", key = "#id", sync = true)
 	public UserResponse getUserById(UUID id) {
 		UserAccount userAccount = userAccountRepository.findByIdAndIsDeletedFalse(id)
 				.orElseThrow(() -> new NotFoundException("User not found with id: " + id));
@@ -182,18 +180,15 @@ public class UserServiceImpl implements UserService {
 
 	@Override
 	@Transactional
-	@CacheEvict(value = {"users", "pendingDoctors"}, allEntries = true)
 	public void deleteUsers(List<UUID> ids) {
+		doctorDirectoryIndex.invalidate();
 		ids.forEach(this::deleteUser);
 	}
 
 	@Override
-	@Caching(evict = {
-		@CacheEvict(value = "users", allEntries = true),
-		@CacheEvict(value = "userDetails", key = "#id"),
-		@CacheEvict(value = "pendingDoctors", allEntries = true)
-	})
+	@Transactional
 	public void restoreUser(UUID id) {
+		doctorDirectoryIndex.invalidate();
 		UserAccount userAccount = userAccountRepository.findById(id)
 				.orElseThrow(() -> new NotFoundException("User not found with id: " + id));
 		
@@ -204,16 +199,18 @@ public class UserServiceImpl implements UserService {
 		userAccount.setIsDeleted(false);
 		userAccount.setDeletedAt(null);
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	@Override
-	@CacheEvict(value = {"users", "pendingDoctors"}, allEntries = true)
+	@Transactional
 	public void restoreUsers(List<UUID> ids) {
+		doctorDirectoryIndex.invalidate();
 		ids.forEach(this::restoreUser);
 	}
 
 	@Override
-	@Cacheable(value = "pendingDoctors")
+	@Cacheable(value = "pendingDoctors", sync = true)
 	public List<UserResponse> getPendingDoctorAccounts() {
 		List<UserAccount> pendingDoctors = userAccountRepository
 				.findAllByRoleAndStatusAndIsDeletedFalse(UserRole.DOCTOR, AccountStatus.PENDING);
@@ -224,12 +221,9 @@ public class UserServiceImpl implements UserService {
 	}
 
 	@Override
-	@Caching(evict = {
-		@CacheEvict(value = "users", allEntries = true),
-		@CacheEvict(value = "userDetails", key = "#userId"),
-		@CacheEvict(value = "pendingDoctors", allEntries = true)
-	})
+	@Transactional
 	public void toggleAccountStatus(UUID userId, boolean activate) {
+		doctorDirectoryIndex.invalidate();
 		UserAccount userAccount = userAccountRepository.findByIdAndIsDeletedFalse(userId)
 				.orElseThrow(() -> new NotFoundException("User not found with id: " + userId));
 		
@@ -243,6 +237,8 @@ public class UserServiceImpl implements UserService {
 			userAccount.setStatus(AccountStatus.ACTIVE);
 		} else {
 			userAccount.setStatus(AccountStatus.INACTIVE);
+			// Thu hồi mọi token đang có: kích hoạt lại cũng phải đăng nhập lại
+			userAccount.setTokensValidAfter(java.time.OffsetDateTime.now());
 		}
 		
 		if (currentUser != null) {
@@ -250,6 +246,7 @@ public class UserServiceImpl implements UserService {
 		}
 		
 		userAccountRepository.save(userAccount);
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 	}
 
 	// Helper methods
@@ -352,6 +349,7 @@ public class UserServiceImpl implements UserService {
 	@Override
 	@Transactional
 	public PersonalInfoDetailResponse updatePersonalInfo(UUID userId, UpdatePersonalInfoRequest request) {
+		doctorDirectoryIndex.invalidate();
 		log.info("Updating personal info for user: {}", userId);
 		
 		UserAccount userAccount = userAccountRepository.findByIdAndIsDeletedFalse(userId)
@@ -380,6 +378,8 @@ public class UserServiceImpl implements UserService {
 		}
 		
 		userAccount = userAccountRepository.save(userAccount);
+		// Email đổi thì token cũ phải bị từ chối ngay: bỏ accountStatus (và các entry khác) của user
+		taggedCacheInvalidator.invalidateUserAfterCommit(userAccount);
 		
 		// Update doctor profile if exists (for address)
 		// Note: For doctor, we still need to handle address parsing if needed
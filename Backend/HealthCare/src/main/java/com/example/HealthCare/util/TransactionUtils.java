@@ -0,0 +1,27 @@
+package com.example.HealthCare.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public final class TransactionUtils {
+
+    private TransactionUtils() {
+    }
+
+    /**
+     * Chạy action sau khi transaction hiện tại commit thành công (hoặc ngay lập tức nếu không có transaction).
+     * Dùng cho các index/cache trong bộ nhớ để không đọc lại dữ liệu chưa commit.
+     */
+    public static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
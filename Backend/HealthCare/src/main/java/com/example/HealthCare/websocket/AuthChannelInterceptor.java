@@ -1,5 +1,6 @@
 package com.example.HealthCare.websocket;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.springframework.context.annotation.Lazy;
@@ -9,26 +10,40 @@ import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.stereotype.Component;
 
-import com.example.HealthCare.model.UserAccount;
-import com.example.HealthCare.repository.UserAccountRepository;
-import com.example.HealthCare.security.JwtUtil;
+import com.example.HealthCare.security.AuthenticatedUser;
+import com.example.HealthCare.security.TokenAuthenticationService;
 
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Xác thực phiên STOMP một lần lúc CONNECT bằng cùng TokenAuthenticationService với HTTP (token đã xác
+ * thực được nhớ ngắn hạn, không tra DB). Authentication được gắn vào phiên (accessor.setUser) nên các frame
+ * sau dùng principal của phiên, không xác thực lại.
+ *
+ * SUBSCRIBE "/user/queue/..." được ghi vào UserSessionRegistry cho user của phiên và không chuyển cho
+ * broker (UserDestinationRouter giao thẳng); phiên chưa xác thực bị từ chối. Topic theo user cũ
+ * ("/topic/chat/{id}", "/topic/notifications/{id}") chỉ được subscribe đúng id của mình.
+ */
 @Component
 @Slf4j
 public class AuthChannelInterceptor implements ChannelInterceptor {
 
-    private final JwtUtil jwtUtil;
-    private final UserAccountRepository userAccountRepository;
+    private static final String USER_DESTINATION_PREFIX = UserDestinationRouter.USER_PREFIX + "/";
+    private static final List<String> PER_USER_TOPIC_PREFIXES = List.of("/topic/chat/", "/topic/notifications/");
+
+    private final TokenAuthenticationService tokenAuthenticationService;
+    private final UserSessionRegistry sessionRegistry;
     private final NotificationWebSocketService notificationWebSocketService;
 
-    public AuthChannelInterceptor(JwtUtil jwtUtil, UserAccountRepository userAccountRepository, 
+    public AuthChannelInterceptor(TokenAuthenticationService tokenAuthenticationService,
+                                   UserSessionRegistry sessionRegistry,
                                    @Lazy NotificationWebSocketService notificationWebSocketService) {
-        this.jwtUtil = jwtUtil;
-        this.userAccountRepository = userAccountRepository;
+        this.tokenAuthenticationService = tokenAuthenticationService;
+        this.sessionRegistry = sessionRegistry;
         this.notificationWebSocketService = notificationWebSocketService;
     }
 
@@ -48,26 +63,41 @@ public class AuthChannelInterceptor implements ChannelInterceptor {
                 
                 if (token != null && !token.isEmpty()) {
                     try {
-                        String email = jwtUtil.extractEmail(token);
-                        if (email != null) {
-                            UserAccount user = userAccountRepository.findByEmailAndIsDeletedFalse(email).orElse(null);
-                            if (user != null && jwtUtil.isTokenValid(token, user)) {
-                                UUID userId = user.getId();
-                                
-                                accessor.getSessionAttributes().put("userId", userId);
-                                accessor.getSessionAttributes().put("email", email);
-                                notificationWebSocketService.addUserSession(userId);
-                            }
+                        UsernamePasswordAuthenticationToken authentication = tokenAuthenticationService.authenticate(token);
+                        if (authentication != null) {
+                            AuthenticatedUser user = (AuthenticatedUser) authentication.getPrincipal();
+                            UUID userId = user.getUserId();
+
+                            accessor.setUser(authentication);
+                            accessor.getSessionAttributes().put("userId", userId);
+                            accessor.getSessionAttributes().put("email", user.getUsername());
+                            notificationWebSocketService.addUserSession(userId, accessor.getSessionId());
                         }
                     } catch (Exception e) {
                         log.error("Error during WebSocket authentication: {}", e.getMessage());
                     }
                 }
+            } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+                String destination = accessor.getDestination();
+                UUID userId = sessionRegistry.getUserId(accessor.getSessionId());
+                if (destination != null && destination.startsWith(USER_DESTINATION_PREFIX)) {
+                    if (userId == null) {
+                        throw new AccessDeniedException("Unauthenticated WebSocket session");
+                    }
+                    sessionRegistry.subscribe(accessor.getSessionId(),
+                            destination.substring(UserDestinationRouter.USER_PREFIX.length()), accessor.getSubscriptionId());
+                    return null;
+                }
+                if (destination != null && !isOwnTopic(destination, userId)) {
+                    throw new AccessDeniedException("Cannot subscribe to " + destination);
+                }
+            } else if (StompCommand.UNSUBSCRIBE.equals(accessor.getCommand())) {
+                sessionRegistry.unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
             } else if (StompCommand.DISCONNECT.equals(accessor.getCommand())) {
                 Object userIdObj = accessor.getSessionAttributes().get("userId");
                 if (userIdObj instanceof UUID) {
                     UUID userId = (UUID) userIdObj;
-                    notificationWebSocketService.removeUserSession(userId);
+                    notificationWebSocketService.removeUserSession(userId, accessor.getSessionId());
                 }
             }
         }
@@ -75,6 +105,16 @@ public class AuthChannelInterceptor implements ChannelInterceptor {
         return message;
     }
 
+    // Topic theo user: chỉ user đó được subscribe; topic khác không giới hạn
+    private boolean isOwnTopic(String destination, UUID userId) {
+        for (String prefix : PER_USER_TOPIC_PREFIXES) {
+            if (destination.startsWith(prefix)) {
+                return userId != null && destination.substring(prefix.length()).split("/", 2)[0].equals(userId.toString());
+            }
+        }
+        return true;
+    }
+
     @Override
     public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
     }
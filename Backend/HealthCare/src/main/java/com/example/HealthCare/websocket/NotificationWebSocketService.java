@@ -1,10 +1,8 @@
 package com.example.HealthCare.websocket;
 
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import com.example.HealthCare.dto.response.NotificationResponse;
@@ -17,13 +15,14 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class NotificationWebSocketService {
 
-    private final SimpMessagingTemplate messagingTemplate;
-    private final ConcurrentMap<UUID, Integer> userSessionCount = new ConcurrentHashMap<>();
+    private final StompClusterRelay clusterRelay;
+    private final UserSessionRegistry sessionRegistry;
+    private final PresenceService presenceService;
 
     public void sendNotificationToUser(UUID userId, NotificationResponse notification) {
         try {
-            String userDestination = "/topic/notifications/" + userId;
-            messagingTemplate.convertAndSend(userDestination, notification);
+            String userDestination = "/queue/notifications";
+            clusterRelay.sendToUser(userId, userDestination, notification);
         } catch (Exception e) {
             log.error("Error sending WebSocket notification to user {}: {}", userId, e.getMessage());
         }
@@ -31,29 +30,36 @@ public class NotificationWebSocketService {
 
     public void sendUnreadCountToUser(UUID userId, Long unreadCount) {
         try {
-            String userDestination = "/topic/notifications/" + userId + "/count";
-            messagingTemplate.convertAndSend(userDestination, unreadCount);
+            String userDestination = "/queue/notifications/count";
+            clusterRelay.sendToUser(userId, userDestination, unreadCount);
         } catch (Exception e) {
             log.error("Error sending unread count to user {}: {}", userId, e.getMessage());
         }
     }
 
-    public void addUserSession(UUID userId) {
-        userSessionCount.compute(userId, (key, count) -> count == null ? 1 : count + 1);
+    public void addUserSession(UUID userId, String sessionId) {
+        if (sessionRegistry.register(userId, sessionId)) {
+            clusterRelay.userConnected(userId);
+        }
     }
 
-    public void removeUserSession(UUID userId) {
-        userSessionCount.computeIfPresent(userId, (key, count) -> {
-            int newCount = count - 1;
-            if (newCount <= 0) {
-                return null;
-            }
-            return newCount;
-        });
+    public void removeUserSession(UUID userId, String sessionId) {
+        if (sessionRegistry.unregister(userId, sessionId)) {
+            clusterRelay.userDisconnected(userId);
+        }
     }
 
     public boolean hasActiveSession(UUID userId) {
-        return userSessionCount.containsKey(userId) && userSessionCount.get(userId) > 0;
+        return sessionRegistry.hasSessions(userId);
     }
-}
 
+    /** User đang online trên mọi node - cho fan-out broadcast. */
+    public Set<UUID> getOnlineUserIds() {
+        return presenceService.getOnlineUserIds();
+    }
+
+    /** Snapshot các user đang có ít nhất một kết nối WebSocket trên node này. */
+    public Set<UUID> getActiveUserIds() {
+        return sessionRegistry.getUserIds();
+    }
+}
@@ -0,0 +1,308 @@
+package com.example.HealthCare.websocket;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Trạng thái online / lần cuối online của user, dùng chung cho mọi node.
+ *
+ * Nguồn của từng node là UserSessionRegistry (phiên STOMP đã xác thực; phiên chết không có DISCONNECT được
+ * simple broker đóng khi mất heartbeat, xem WebSocketConfig). Khi có Redis, mỗi node ghi user của mình vào
+ * sorted set "healthcare:{presence}:node:&lt;nodeId&gt;" (score = hạn, làm mới mỗi heartbeat-ms) và tự đăng ký
+ * trong "healthcare:{presence}:nodes"; user online nếu có trong tập của một node còn sống. Node chết thì
+ * hết hạn sau ttl-seconds, không để lại user "online" mãi. Lần cuối online nằm ở hash
+ * "healthcare:{presence}:last-seen" (cập nhật mỗi heartbeat và khi phiên cuối đóng).
+ * Không có Redis thì chỉ dùng registry và map local của node này.
+ *
+ * Mọi key có chung hash tag {presence} (cùng slot khi chạy Redis Cluster) và Lua script chỉ dùng key truyền
+ * qua KEYS: danh sách node còn sống được đọc trước rồi truyền key của từng node vào script.
+ *
+ * Phiên cuối đóng thì user bị gỡ khỏi tập của node bằng một script: chỉ gỡ nếu hạn đang ghi được đặt trước
+ * lúc node thấy user hết phiên, nên lần kết nối lại chen vào giữa (ZADD với hạn mới hơn) không bị xóa mất.
+ *
+ * Dùng cho danh sách peer của chat (online/lastSeenAt) và fan-out thông báo broadcast.
+ */
+@Service
+@Slf4j
+public class PresenceService {
+
+    private static final String NODES_KEY = "healthcare:{presence}:nodes";
+    private static final String NODE_KEY_PREFIX = "healthcare:{presence}:node:";
+    private static final String LAST_SEEN_KEY = "healthcare:{presence}:last-seen";
+
+    // KEYS = tập user của các node còn sống, ARGV = now, userId... -> 1/0 theo thứ tự userId
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> ONLINE_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local out = {}
+            for i = 2, #ARGV do
+              local online = 0
+              for _, key in ipairs(KEYS) do
+                local score = redis.call('zscore', key, ARGV[i])
+                if score and tonumber(score) > now then online = 1 break end
+              end
+              out[#out + 1] = online
+            end
+            return out
+            """, List.class);
+
+    // KEYS = tập user của các node còn sống, ARGV = now -> mọi userId còn hạn (có thể trùng)
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> ALL_ONLINE_SCRIPT = new DefaultRedisScript<>("""
+            local out = {}
+            for _, key in ipairs(KEYS) do
+              for _, user in ipairs(redis.call('zrangebyscore', key, '(' .. ARGV[1], '+inf')) do
+                out[#out + 1] = user
+              end
+            end
+            return out
+            """, List.class);
+
+    // KEYS[1] = tập user của node, KEYS[2] = last-seen; ARGV = userId, now, ttl (ms).
+    // Hạn >= now + ttl nghĩa là user vừa kết nối lại sau lúc này: giữ nguyên, trả 0
+    private static final DefaultRedisScript<Long> DISCONNECT_SCRIPT = new DefaultRedisScript<>("""
+            local score = redis.call('zscore', KEYS[1], ARGV[1])
+            if score and tonumber(score) >= tonumber(ARGV[2]) + tonumber(ARGV[3]) then return 0 end
+            redis.call('zrem', KEYS[1], ARGV[1])
+            redis.call('hset', KEYS[2], ARGV[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    private final UserSessionRegistry sessionRegistry;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final String nodeKey = NODE_KEY_PREFIX + nodeId;
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${websocket.presence.ttl-seconds:90}")
+    private long ttlSeconds;
+
+    private StringRedisTemplate presenceStore;
+
+    // Lần cuối online khi không có Redis (và user đã rời node này)
+    private final Map<UUID, Long> localLastSeen = new ConcurrentHashMap<>();
+
+    public PresenceService(UserSessionRegistry sessionRegistry) {
+        this.sessionRegistry = sessionRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        if (redisTemplate != null && redisTemplate.getConnectionFactory() != null) {
+            presenceStore = new StringRedisTemplate(redisTemplate.getConnectionFactory());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (presenceStore == null) {
+            return;
+        }
+        try {
+            Set<UUID> users = sessionRegistry.getUserIds();
+            if (!users.isEmpty()) {
+                writeLastSeen(users, System.currentTimeMillis());
+            }
+            presenceStore.opsForZSet().remove(NODES_KEY, nodeId);
+            presenceStore.delete(nodeKey);
+        } catch (Exception e) {
+            log.warn("Failed to clear presence of node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    /** Phiên đầu tiên (hoặc thêm) của user trên node này đã CONNECTED. */
+    public void sessionConnected(UUID userId) {
+        if (presenceStore == null) {
+            return;
+        }
+        try {
+            long expiresAt = System.currentTimeMillis() + ttlSeconds * 1000;
+            presenceStore.opsForZSet().add(NODES_KEY, nodeId, expiresAt);
+            presenceStore.opsForZSet().add(nodeKey, userId.toString(), expiresAt);
+        } catch (Exception e) {
+            log.warn("Failed to publish presence of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /** Một phiên của user đã đóng; user rời node này nếu không còn phiên nào. */
+    public void sessionDisconnected(UUID userId) {
+        // Lấy giờ trước khi kiểm tra: phiên mới đăng ký sau lần kiểm tra luôn ghi hạn >= now + ttl
+        long now = System.currentTimeMillis();
+        if (sessionRegistry.hasSessions(userId)) {
+            return;
+        }
+        if (presenceStore == null) {
+            localLastSeen.put(userId, now);
+            return;
+        }
+        try {
+            presenceStore.execute(DISCONNECT_SCRIPT, List.of(nodeKey, LAST_SEEN_KEY),
+                    userId.toString(), Long.toString(now), Long.toString(ttlSeconds * 1000));
+        } catch (Exception e) {
+            log.warn("Failed to clear presence of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /** Làm mới hạn của node và mọi user đang có phiên trên node này. */
+    @Scheduled(fixedDelayString = "${websocket.presence.heartbeat-ms:30000}")
+    public void heartbeat() {
+        if (presenceStore == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlSeconds * 1000;
+        Set<UUID> users = sessionRegistry.getUserIds();
+        try {
+            presenceStore.opsForZSet().add(NODES_KEY, nodeId, expiresAt);
+            presenceStore.opsForZSet().removeRangeByScore(NODES_KEY, Double.NEGATIVE_INFINITY, now - ttlSeconds * 1000);
+            if (!users.isEmpty()) {
+                Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                for (UUID userId : users) {
+                    tuples.add(ZSetOperations.TypedTuple.of(userId.toString(), (double) expiresAt));
+                }
+                presenceStore.opsForZSet().add(nodeKey, tuples);
+                writeLastSeen(users, now);
+            }
+            // User đã rời node mà lệnh xóa bị lỗi thì hết hạn tại đây
+            presenceStore.opsForZSet().removeRangeByScore(nodeKey, Double.NEGATIVE_INFINITY, now);
+            presenceStore.expire(nodeKey, Duration.ofSeconds(ttlSeconds * 2));
+        } catch (Exception e) {
+            log.warn("Presence heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    /** Các user trong userIds đang online trên bất kỳ node nào. */
+    public Set<UUID> getOnline(Collection<UUID> userIds) {
+        Set<UUID> online = new HashSet<>();
+        List<String> remote = new ArrayList<>();
+        for (UUID userId : userIds) {
+            if (sessionRegistry.hasSessions(userId)) {
+                online.add(userId);
+            } else if (presenceStore != null) {
+                remote.add(userId.toString());
+            }
+        }
+        if (remote.isEmpty()) {
+            return online;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<String> nodeKeys = liveNodeKeys(now);
+            if (nodeKeys.isEmpty()) {
+                return online;
+            }
+            List<String> args = new ArrayList<>(remote.size() + 1);
+            args.add(Long.toString(now));
+            args.addAll(remote);
+            List<?> flags = presenceStore.execute(ONLINE_SCRIPT, nodeKeys, args.toArray());
+            for (int i = 0; flags != null && i < flags.size() && i < remote.size(); i++) {
+                if (flags.get(i) instanceof Number flag && flag.longValue() == 1) {
+                    online.add(UUID.fromString(remote.get(i)));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read presence: {}", e.getMessage());
+        }
+        return online;
+    }
+
+    /** Mọi user đang online (cho fan-out broadcast); không có Redis thì là user của node này. */
+    public Set<UUID> getOnlineUserIds() {
+        Set<UUID> online = new HashSet<>(sessionRegistry.getUserIds());
+        if (presenceStore == null) {
+            return online;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<String> nodeKeys = liveNodeKeys(now);
+            List<?> users = nodeKeys.isEmpty() ? null
+                    : presenceStore.execute(ALL_ONLINE_SCRIPT, nodeKeys, Long.toString(now));
+            if (users != null) {
+                for (Object user : users) {
+                    online.add(UUID.fromString(user.toString()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to list online users: {}", e.getMessage());
+        }
+        return online;
+    }
+
+    /** Lần cuối online của các user (chỉ user đã từng kết nối); user đang online không cần tra. */
+    public Map<UUID, OffsetDateTime> getLastSeen(Collection<UUID> userIds) {
+        Map<UUID, OffsetDateTime> lastSeen = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return lastSeen;
+        }
+        if (presenceStore == null) {
+            for (UUID userId : userIds) {
+                Long seenAt = localLastSeen.get(userId);
+                if (seenAt != null) {
+                    lastSeen.put(userId, toDateTime(seenAt));
+                }
+            }
+            return lastSeen;
+        }
+        List<Object> fields = new ArrayList<>(userIds.size());
+        userIds.forEach(userId -> fields.add(userId.toString()));
+        try {
+            List<Object> values = presenceStore.opsForHash().multiGet(LAST_SEEN_KEY, fields);
+            int i = 0;
+            for (UUID userId : userIds) {
+                Object value = values.get(i++);
+                if (value != null) {
+                    lastSeen.put(userId, toDateTime(Long.parseLong(value.toString())));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read last seen: {}", e.getMessage());
+        }
+        return lastSeen;
+    }
+
+    /** Key tập user của các node còn hạn trong NODES_KEY. */
+    private List<String> liveNodeKeys(long now) {
+        Set<String> nodes = presenceStore.opsForZSet().rangeByScore(NODES_KEY, now, Double.POSITIVE_INFINITY);
+        List<String> keys = new ArrayList<>();
+        if (nodes != null) {
+            nodes.forEach(node -> keys.add(NODE_KEY_PREFIX + node));
+        }
+        return keys;
+    }
+
+    private void writeLastSeen(Collection<UUID> users, long now) {
+        Map<String, String> values = new HashMap<>();
+        String seenAt = Long.toString(now);
+        users.forEach(userId -> values.put(userId.toString(), seenAt));
+        presenceStore.opsForHash().putAll(LAST_SEEN_KEY, values);
+    }
+
+    private static OffsetDateTime toDateTime(long epochMillis) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneOffset.UTC);
+    }
+}
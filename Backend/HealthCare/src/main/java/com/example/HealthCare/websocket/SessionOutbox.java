@@ -0,0 +1,75 @@
+package com.example.HealthCare.websocket;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hàng đợi ra của một phiên STOMP cho các destination được gộp (UserDestinationRouter):
+ * - latest: chỉ giữ giá trị mới nhất theo destination (số chưa đọc), giá trị cũ bị thay thế không gửi;
+ * - batches: message tích lại theo destination (chat) để gửi một frame cho cả lô.
+ * Được flush sau một cửa sổ ngắn; mọi truy cập đồng bộ trên chính outbox.
+ */
+class SessionOutbox {
+
+    private final Map<String, Object> latest = new LinkedHashMap<>();
+    private final Map<String, List<Object>> batches = new LinkedHashMap<>();
+    private int pending;
+    private boolean scheduled;
+
+    /** @return true nếu thay thế một giá trị chưa gửi */
+    synchronized boolean putLatest(String destination, Object payload) {
+        boolean replaced = latest.put(destination, payload) != null;
+        if (!replaced) {
+            pending++;
+        }
+        return replaced;
+    }
+
+    /**
+     * Thêm vào lô của destination; lô đã đủ maxPending thì bỏ message cũ nhất.
+     * @return true nếu phải bỏ một message
+     */
+    synchronized boolean append(String destination, Object payload, int maxPending) {
+        List<Object> batch = batches.computeIfAbsent(destination, key -> new ArrayList<>());
+        batch.add(payload);
+        if (batch.size() > maxPending) {
+            batch.remove(0);
+            return true;
+        }
+        pending++;
+        return false;
+    }
+
+    synchronized int batchSize(String destination) {
+        List<Object> batch = batches.get(destination);
+        return batch != null ? batch.size() : 0;
+    }
+
+    /** Đánh dấu đã lên lịch flush; false nếu đã có lịch. */
+    synchronized boolean markScheduled() {
+        if (scheduled) {
+            return false;
+        }
+        scheduled = true;
+        return true;
+    }
+
+    /** Lấy toàn bộ nội dung chờ gửi và xóa outbox. */
+    synchronized Drained drain() {
+        Drained drained = new Drained(new LinkedHashMap<>(latest), new LinkedHashMap<>(batches), pending);
+        latest.clear();
+        batches.clear();
+        pending = 0;
+        scheduled = false;
+        return drained;
+    }
+
+    synchronized int getPending() {
+        return pending;
+    }
+
+    record Drained(Map<String, Object> latest, Map<String, List<Object>> batches, int pending) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.HealthCare.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đường ra của mọi push STOMP tới một user (thông báo, số chưa đọc, chat).
+ *
+ * websocket.cluster.mode=local (mặc định): giao thẳng cho phiên của user trên node này (UserDestinationRouter).
+ * websocket.cluster.mode=redis: chạy nhiều node sau load balancer. Mỗi node SUBSCRIBE kênh
+ * "healthcare:ws:user:&lt;userId&gt;" khi user có session đầu tiên trên node và UNSUBSCRIBE khi session cuối
+ * đóng, nên Redis chỉ chuyển message tới node đang giữ session của user đó (lọc theo node, node khác không
+ * nhận/parse gì). Message được publish dạng JSON {o: node gửi, d: destination, t: thời điểm gửi, p: payload};
+ * node gửi tự giao cho session local ngay và bỏ qua bản quay về từ Redis.
+ *
+ * Message pub/sub được xử lý trên một luồng riêng theo đúng thứ tự nhận, để số chưa đọc/chat của một user
+ * không bị đảo thứ tự. Message tới lúc node chưa kịp SUBSCRIBE (vài ms sau CONNECT) hoặc khi Redis rớt
+ * thì mất, như khi client chưa subscribe; client nạp lại danh sách khi kết nối lại.
+ */
+@Component
+@Slf4j
+public class StompClusterRelay implements MessageListener {
+
+    static final String USER_CHANNEL_PREFIX = "healthcare:ws:user:";
+
+    private final UserDestinationRouter userDestinationRouter;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${websocket.cluster.mode:local}")
+    private String mode;
+
+    private StringRedisTemplate bus;
+    private RedisMessageListenerContainer container;
+    private ExecutorService dispatcher;
+
+    // Các user có ít nhất một session trên node này (đang SUBSCRIBE kênh của user khi ở chế độ redis)
+    private final Set<UUID> localUsers = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder undelivered = new LongAdder();
+    private final LongAdder deliveredLocally = new LongAdder();
+    private final LongAdder forwarded = new LongAdder();
+    private final LongAdder publishErrors = new LongAdder();
+
+    public StompClusterRelay(UserDestinationRouter userDestinationRouter, ObjectMapper objectMapper,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+        this.userDestinationRouter = userDestinationRouter;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    @PostConstruct
+    void init() {
+        if (meterRegistry != null) {
+            registerCounter("published", published);
+            registerCounter("undelivered", undelivered);
+            registerCounter("local", deliveredLocally);
+            registerCounter("forwarded", forwarded);
+            registerCounter("error", publishErrors);
+        }
+        if (!"redis".equalsIgnoreCase(mode)) {
+            return;
+        }
+        if (redisTemplate == null || redisTemplate.getConnectionFactory() == null) {
+            log.warn("websocket.cluster.mode=redis but Redis is not configured; STOMP pushes stay on this node");
+            return;
+        }
+        bus = new StringRedisTemplate(redisTemplate.getConnectionFactory());
+        dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Stomp-Relay-1");
+            thread.setDaemon(true);
+            return thread;
+        });
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisTemplate.getConnectionFactory());
+        container.setTaskExecutor(dispatcher);
+        container.afterPropertiesSet();
+        container.start();
+        log.info("STOMP cluster relay enabled (node {})", nodeId);
+    }
+
+    @PreDestroy
+    void shutdown() throws Exception {
+        if (container != null) {
+            container.destroy();
+        }
+        if (dispatcher != null) {
+            dispatcher.shutdownNow();
+        }
+    }
+
+    public boolean isClusterMode() {
+        return container != null;
+    }
+
+    /** Gửi payload tới destination của user, trên node nào đang giữ session của user. */
+    public void sendToUser(UUID userId, String destination, Object payload) {
+        if (!isClusterMode()) {
+            userDestinationRouter.send(userId, destination, payload);
+            return;
+        }
+        if (userDestinationRouter.send(userId, destination, payload) > 0) {
+            deliveredLocally.increment();
+        }
+        try {
+            ObjectNode envelope = objectMapper.createObjectNode();
+            envelope.put("o", nodeId);
+            envelope.put("d", destination);
+            envelope.put("t", System.currentTimeMillis());
+            envelope.set("p", objectMapper.valueToTree(payload));
+            Long receivers = bus.convertAndSend(USER_CHANNEL_PREFIX + userId, objectMapper.writeValueAsString(envelope));
+            published.increment();
+            if (receivers == null || receivers == 0) {
+                undelivered.increment();
+            }
+        } catch (Exception e) {
+            publishErrors.increment();
+            log.error("Failed to relay STOMP message to user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /** Session đầu tiên của user trên node này. */
+    public void userConnected(UUID userId) {
+        if (localUsers.add(userId) && isClusterMode()) {
+            container.addMessageListener(this, new ChannelTopic(USER_CHANNEL_PREFIX + userId));
+        }
+    }
+
+    /** Session cuối cùng của user trên node này đã đóng. */
+    public void userDisconnected(UUID userId) {
+        if (localUsers.remove(userId) && isClusterMode()) {
+            container.removeMessageListener(this, new ChannelTopic(USER_CHANNEL_PREFIX + userId));
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        try {
+            JsonNode envelope = objectMapper.readTree(message.getBody());
+            if (!nodeId.equals(envelope.path("o").asText())) {
+                UUID userId = UUID.fromString(channel.substring(USER_CHANNEL_PREFIX.length()));
+                userDestinationRouter.send(userId, envelope.path("d").asText(), envelope.path("p"));
+                forwarded.increment();
+            }
+        } catch (Exception e) {
+            log.error("Failed to handle relayed STOMP message on {}: {}", channel, e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("mode", isClusterMode() ? "redis" : "local");
+        status.put("nodeId", nodeId);
+        status.put("localUsers", localUsers.size());
+        status.put("published", published.sum());
+        status.put("undelivered", undelivered.sum());
+        status.put("deliveredLocally", deliveredLocally.sum());
+        status.put("forwarded", forwarded.sum());
+        status.put("publishErrors", publishErrors.sum());
+        status.put("outbound", userDestinationRouter.getStats());
+        return status;
+    }
+
+    private void registerCounter(String result, LongAdder counter) {
+        FunctionCounter.builder("websocket.relay.messages", counter, LongAdder::sum)
+                .tags("result", result).register(meterRegistry);
+    }
+}
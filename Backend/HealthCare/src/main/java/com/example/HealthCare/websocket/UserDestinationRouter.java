@@ -0,0 +1,265 @@
+package com.example.HealthCare.websocket;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giao message tới "/user/queue/..." của một user: tra UserSessionRegistry theo userId (O(1)), chuyển
+ * payload thành JSON rồi ghi frame MESSAGE thẳng vào clientOutboundChannel cho từng subscription của
+ * user - không đi qua simple broker nên không phải so với subscription của mọi user khác.
+ * User không có phiên trên node này thì bỏ ngay, trước khi serialize.
+ *
+ * Gộp frame theo destination (websocket.outbound.*), qua SessionOutbox của từng phiên:
+ * - coalesce-destinations (số chưa đọc): trong cửa sổ flush-ms chỉ gửi giá trị cuối, giá trị bị thay thế
+ *   không serialize;
+ * - batch-destinations (chat): message trong cửa sổ gửi chung một frame mảng JSON có header x-batch:true
+ *   (client tách ra từng message), gửi sớm khi lô đủ max-batch; lô vượt max-pending thì bỏ message cũ nhất
+ *   (client chậm / bị spam), client nạp lại lịch sử khi mở hội thoại;
+ * - destination khác gửi ngay.
+ * Client không đọc kịp ở tầng transport do send-time-limit / send-buffer-size của WebSocketConfig xử lý.
+ *
+ * Client subscribe "/user/queue/chat", "/user/queue/notifications", "/user/queue/notifications/count";
+ * AuthChannelInterceptor giữ các SUBSCRIBE này lại (không chuyển cho broker) và ghi vào registry.
+ */
+@Component
+@Slf4j
+public class UserDestinationRouter {
+
+    public static final String USER_PREFIX = "/user";
+    static final String BATCH_HEADER = "x-batch";
+
+    private final UserSessionRegistry sessionRegistry;
+    private final MessageChannel clientOutboundChannel;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${websocket.outbound.flush-ms:50}")
+    private long flushMs;
+
+    @Value("${websocket.outbound.max-batch:50}")
+    private int maxBatch;
+
+    @Value("${websocket.outbound.max-pending:500}")
+    private int maxPending;
+
+    @Value("${websocket.outbound.coalesce-destinations:/queue/notifications/count}")
+    private List<String> coalesceDestinationList;
+
+    @Value("${websocket.outbound.batch-destinations:/queue/chat}")
+    private List<String> batchDestinationList;
+
+    private Set<String> coalesceDestinations;
+    private Set<String> batchDestinations;
+    private ScheduledExecutorService flusher;
+
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batched = new LongAdder();
+    private final LongAdder droppedOffline = new LongAdder();
+    private final LongAdder droppedBackpressure = new LongAdder();
+    private final AtomicLong pending = new AtomicLong();
+
+    public UserDestinationRouter(UserSessionRegistry sessionRegistry,
+                                 @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+                                 SimpMessagingTemplate messagingTemplate,
+                                 ObjectProvider<MeterRegistry> meterRegistry) {
+        this.sessionRegistry = sessionRegistry;
+        // Giữ thứ tự frame theo phiên như simple broker khi bật preservePublishOrder (WebSocketConfig)
+        this.clientOutboundChannel = new OrderedMessageChannelDecorator(clientOutboundChannel,
+                LogFactory.getLog(UserDestinationRouter.class));
+        this.messagingTemplate = messagingTemplate;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    @PostConstruct
+    void init() {
+        coalesceDestinations = new HashSet<>(coalesceDestinationList);
+        batchDestinations = new HashSet<>(batchDestinationList);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Stomp-Outbound-1");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (meterRegistry != null) {
+            registerCounter("sent", framesSent);
+            registerCounter("coalesced", coalesced);
+            registerCounter("batched", batched);
+            registerCounter("offline", droppedOffline);
+            registerCounter("dropped", droppedBackpressure);
+            Gauge.builder("websocket.outbound.pending", pending, AtomicLong::get).register(meterRegistry);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Gửi payload tới destination (ví dụ "/queue/chat") của user trên node này.
+     * @return số phiên nhận (đã gửi hoặc đưa vào outbox); 0 nếu user offline / chưa subscribe trên node này
+     */
+    public int send(UUID userId, String destination, Object payload) {
+        Collection<UserSessionRegistry.UserSession> sessions = sessionRegistry.getSessions(userId);
+        if (sessions.isEmpty()) {
+            droppedOffline.increment();
+            return 0;
+        }
+        if (coalesceDestinations.contains(destination) || batchDestinations.contains(destination)) {
+            int queued = 0;
+            for (UserSessionRegistry.UserSession session : sessions) {
+                if (session.getSubscriptions().containsValue(destination)) {
+                    enqueue(session, destination, payload);
+                    queued++;
+                }
+            }
+            if (queued == 0) {
+                droppedOffline.increment();
+            }
+            return queued;
+        }
+        Message<?> converted = null;
+        int received = 0;
+        for (UserSessionRegistry.UserSession session : sessions) {
+            if (!session.getSubscriptions().containsValue(destination)) {
+                continue;
+            }
+            if (converted == null) {
+                converted = toMessage(payload);
+            }
+            write(session, destination, converted, false);
+            received++;
+        }
+        if (received == 0) {
+            droppedOffline.increment();
+        }
+        return received;
+    }
+
+    /** Payload -> message JSON bằng converter của broker (cùng định dạng như convertAndSend). */
+    Message<?> toMessage(Object payload) {
+        Message<?> message = messagingTemplate.getMessageConverter().toMessage(payload, null);
+        if (message == null) {
+            throw new IllegalArgumentException("No converter for payload " + payload.getClass().getName());
+        }
+        return message;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessionRegistry.getSessionCount());
+        stats.put("framesSent", framesSent.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("batched", batched.sum());
+        stats.put("framesSaved", coalesced.sum() + batched.sum());
+        stats.put("droppedOffline", droppedOffline.sum());
+        stats.put("droppedBackpressure", droppedBackpressure.sum());
+        stats.put("pending", pending.get());
+        return stats;
+    }
+
+    private void enqueue(UserSessionRegistry.UserSession session, String destination, Object payload) {
+        SessionOutbox outbox = session.getOutbox();
+        boolean flushNow = false;
+        if (coalesceDestinations.contains(destination)) {
+            if (outbox.putLatest(destination, payload)) {
+                coalesced.increment();
+            } else {
+                pending.incrementAndGet();
+            }
+        } else if (outbox.append(destination, payload, maxPending)) {
+            droppedBackpressure.increment();
+        } else {
+            pending.incrementAndGet();
+            flushNow = outbox.batchSize(destination) >= maxBatch;
+        }
+        if (flushNow) {
+            flusher.execute(() -> flush(session));
+        } else if (outbox.markScheduled()) {
+            flusher.schedule(() -> flush(session), flushMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush(UserSessionRegistry.UserSession session) {
+        SessionOutbox.Drained drained = session.getOutbox().drain();
+        pending.addAndGet(-drained.pending());
+        if (sessionRegistry.getUserId(session.getSessionId()) == null) {
+            return; // phiên đã đóng trong lúc chờ flush
+        }
+        try {
+            drained.batches().forEach((destination, messages) -> {
+                if (messages.size() == 1) {
+                    write(session, destination, toMessage(messages.get(0)), false);
+                } else if (!messages.isEmpty()) {
+                    batched.add(messages.size() - 1);
+                    write(session, destination, toMessage(messages), true);
+                }
+            });
+            drained.latest().forEach((destination, payload) -> write(session, destination, toMessage(payload), false));
+        } catch (Exception e) {
+            log.error("Failed to flush WebSocket frames for session {}: {}", session.getSessionId(), e.getMessage());
+        }
+    }
+
+    private void write(UserSessionRegistry.UserSession session, String destination, Message<?> converted, boolean batch) {
+        for (Map.Entry<String, String> subscription : session.getSubscriptions().entrySet()) {
+            if (destination.equals(subscription.getValue())) {
+                clientOutboundChannel.send(frame(converted, session.getSessionId(), subscription.getKey(), destination, batch));
+                framesSent.increment();
+            }
+        }
+    }
+
+    private Message<?> frame(Message<?> converted, String sessionId, String subscriptionId, String destination,
+                             boolean batch) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(USER_PREFIX + destination);
+        Object contentType = converted.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        if (contentType != null) {
+            accessor.setHeader(MessageHeaders.CONTENT_TYPE, contentType);
+        }
+        if (batch) {
+            accessor.setNativeHeader(BATCH_HEADER, "true");
+        }
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(converted.getPayload(), accessor.getMessageHeaders());
+    }
+
+    private void registerCounter(String result, LongAdder counter) {
+        FunctionCounter.builder("websocket.outbound.frames", counter, LongAdder::sum)
+                .tags("result", result).register(meterRegistry);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.HealthCare.websocket;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * userId -> các phiên STOMP đã xác thực của user trên node này, kèm các subscription "/user/queue/..." của
+ * từng phiên. Điền bởi AuthChannelInterceptor (CONNECT, SUBSCRIBE, UNSUBSCRIBE, DISCONNECT) và
+ * WebSocketEventListener (phiên rớt không có DISCONNECT frame); UserDestinationRouter tra ở đây để giao
+ * thẳng tới phiên đích, không qua simple broker.
+ *
+ * Theo session id để DISCONNECT frame + SessionDisconnectEvent không gỡ hai lần.
+ */
+@Component
+public class UserSessionRegistry {
+
+    private final ConcurrentMap<UUID, ConcurrentMap<String, UserSession>> userSessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, UserSession> sessions = new ConcurrentHashMap<>();
+
+    /** Ghi nhận phiên; true nếu đây là phiên đầu tiên của user trên node này. */
+    public boolean register(UUID userId, String sessionId) {
+        UserSession session = new UserSession(userId, sessionId);
+        sessions.put(sessionId, session);
+        boolean[] first = {false};
+        userSessions.compute(userId, (key, existing) -> {
+            if (existing == null) {
+                existing = new ConcurrentHashMap<>();
+                first[0] = true;
+            }
+            existing.put(sessionId, session);
+            return existing;
+        });
+        return first[0];
+    }
+
+    /** Gỡ phiên; true nếu user không còn phiên nào trên node này. */
+    public boolean unregister(UUID userId, String sessionId) {
+        sessions.remove(sessionId);
+        boolean[] last = {false};
+        userSessions.computeIfPresent(userId, (key, existing) -> {
+            if (existing.remove(sessionId) == null) {
+                return existing;
+            }
+            last[0] = existing.isEmpty();
+            return last[0] ? null : existing;
+        });
+        return last[0];
+    }
+
+    /** userId của phiên đã xác thực, null nếu phiên chưa CONNECT thành công. */
+    public UUID getUserId(String sessionId) {
+        UserSession session = sessions.get(sessionId);
+        return session != null ? session.userId : null;
+    }
+
+    /** destination: phần sau "/user", ví dụ "/queue/chat". */
+    public void subscribe(String sessionId, String destination, String subscriptionId) {
+        UserSession session = sessions.get(sessionId);
+        if (session != null && subscriptionId != null) {
+            session.subscriptions.put(subscriptionId, destination);
+        }
+    }
+
+    public void unsubscribe(String sessionId, String subscriptionId) {
+        UserSession session = sessions.get(sessionId);
+        if (session != null && subscriptionId != null) {
+            session.subscriptions.remove(subscriptionId);
+        }
+    }
+
+    /** Các phiên của user trên node này (rỗng nếu user offline). */
+    public Collection<UserSession> getSessions(UUID userId) {
+        Map<String, UserSession> byId = userSessions.get(userId);
+        return byId != null ? byId.values() : List.of();
+    }
+
+    public boolean hasSessions(UUID userId) {
+        return userSessions.containsKey(userId);
+    }
+
+    public Set<UUID> getUserIds() {
+        return Set.copyOf(userSessions.keySet());
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public static final class UserSession {
+        private final UUID userId;
+        private final String sessionId;
+        // subscription id -> destination (không có tiền tố "/user")
+        private final ConcurrentMap<String, String> subscriptions = new ConcurrentHashMap<>();
+        private final SessionOutbox outbox = new SessionOutbox();
+
+        private UserSession(UUID userId, String sessionId) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        Map<String, String> getSubscriptions() {
+            return subscriptions;
+        }
+
+        SessionOutbox getOutbox() {
+            return outbox;
+        }
+    }
+}
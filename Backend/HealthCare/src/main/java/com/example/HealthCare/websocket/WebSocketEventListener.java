@@ -1,19 +1,49 @@
 package com.example.HealthCare.websocket;
 
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
+/**
+ * Vòng đời phiên STOMP cho presence: phiên được ghi vào UserSessionRegistry lúc CONNECT
+ * (AuthChannelInterceptor), CONNECTED thì báo online, đóng phiên (kể cả do mất heartbeat) thì gỡ.
+ */
 @Component
 public class WebSocketEventListener {
 
+    private final NotificationWebSocketService notificationWebSocketService;
+    private final UserSessionRegistry sessionRegistry;
+    private final PresenceService presenceService;
+
+    public WebSocketEventListener(@Lazy NotificationWebSocketService notificationWebSocketService,
+                                  UserSessionRegistry sessionRegistry, PresenceService presenceService) {
+        this.notificationWebSocketService = notificationWebSocketService;
+        this.sessionRegistry = sessionRegistry;
+        this.presenceService = presenceService;
+    }
+
     @EventListener
     public void handleSessionConnected(SessionConnectedEvent event) {
+        UUID userId = sessionRegistry.getUserId(StompHeaderAccessor.wrap(event.getMessage()).getSessionId());
+        if (userId != null) {
+            presenceService.sessionConnected(userId);
+        }
     }
 
+    // Đóng tab / rớt mạng không gửi DISCONNECT frame, chỉ có event này
     @EventListener
     public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Map<String, Object> attributes = StompHeaderAccessor.wrap(event.getMessage()).getSessionAttributes();
+        Object userIdObj = attributes != null ? attributes.get("userId") : null;
+        if (userIdObj instanceof UUID userId) {
+            notificationWebSocketService.removeUserSession(userId, event.getSessionId());
+            presenceService.sessionDisconnected(userId);
+        }
     }
 }
-
@@ -0,0 +1,116 @@
+package com.example.HealthCare.config.cache;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * So sánh serializer JSON cũ với định dạng nhị phân trên chính các giá trị đang nằm trong Redis:
+ * lấy tối đa benchmark.samples key mỗi cache, đo kích thước và thời gian ser/deser trung bình.
+ * Chỉ chạy khi bật: mvn test -Dtest=CompactRedisSerializerBenchmarkTest -Dbenchmark=true
+ *   [-Dbenchmark.samples=20] [-Dbenchmark.iterations=200]
+ */
+@SpringBootTest(properties = "spring.cache.type=redis")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class CompactRedisSerializerBenchmarkTest {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private CompactRedisSerializer redisValueSerializer;
+
+    @Test
+    void compareJsonAndBinary() {
+        int samplesPerCache = Integer.getInteger("benchmark.samples", 20);
+        int iterations = Integer.getInteger("benchmark.iterations", 200);
+        RedisSerializer<Object> json = redisValueSerializer.getLegacySerializer();
+        CompactRedisSerializer binary = redisValueSerializer.binaryWriter();
+
+        for (String cacheName : cacheManager.getCacheNames()) {
+            List<Object> samples = sampleValues(cacheName, samplesPerCache);
+            if (samples.isEmpty()) {
+                continue;
+            }
+
+            long jsonBytes = 0;
+            long binaryBytes = 0;
+            long jsonWriteNanos = 0;
+            long binaryWriteNanos = 0;
+            long jsonReadNanos = 0;
+            long binaryReadNanos = 0;
+            for (Object sample : samples) {
+                byte[] jsonValue = json.serialize(sample);
+                byte[] binaryValue = binary.serialize(sample);
+                assertNotNull(binary.deserialize(binaryValue));
+                jsonBytes += jsonValue.length;
+                binaryBytes += binaryValue.length;
+
+                long startTime = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    json.serialize(sample);
+                }
+                jsonWriteNanos += System.nanoTime() - startTime;
+
+                startTime = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    binary.serialize(sample);
+                }
+                binaryWriteNanos += System.nanoTime() - startTime;
+
+                startTime = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    json.deserialize(jsonValue);
+                }
+                jsonReadNanos += System.nanoTime() - startTime;
+
+                startTime = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    binary.deserialize(binaryValue);
+                }
+                binaryReadNanos += System.nanoTime() - startTime;
+            }
+
+            double operations = (double) samples.size() * iterations;
+            System.out.printf("%s: samples=%d binary=%b bytes json=%d binary=%d (%.2f) "
+                            + "serialize json=%.2fus binary=%.2fus deserialize json=%.2fus binary=%.2fus%n",
+                    cacheName, samples.size(), binary.supportsBinary(samples.get(0)),
+                    jsonBytes, binaryBytes, jsonBytes > 0 ? (double) binaryBytes / jsonBytes : 0,
+                    jsonWriteNanos / operations / 1000, binaryWriteNanos / operations / 1000,
+                    jsonReadNanos / operations / 1000, binaryReadNanos / operations / 1000);
+        }
+    }
+
+    private List<Object> sampleValues(String cacheName, int limit) {
+        List<Object> samples = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(cacheName + "::*").count(limit).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext() && samples.size() < limit) {
+                byte[] key = cursor.next().getBytes(StandardCharsets.UTF_8);
+                byte[] raw = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                        connection.stringCommands().get(key));
+                Object value = raw != null ? redisValueSerializer.deserialize(raw) : null;
+                if (value != null) {
+                    samples.add(value);
+                }
+            }
+        }
+        return samples;
+    }
+}
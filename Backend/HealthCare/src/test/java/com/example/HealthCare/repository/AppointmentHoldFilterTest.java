@@ -0,0 +1,119 @@
+package com.example.HealthCare.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.HealthCare.enums.AccountStatus;
+import com.example.HealthCare.enums.AppointmentStatus;
+import com.example.HealthCare.enums.Gender;
+import com.example.HealthCare.enums.UserRole;
+import com.example.HealthCare.model.Appointment;
+import com.example.HealthCare.model.UserAccount;
+
+/**
+ * Slot hold (SCHEDULED + holding_until) không được xuất hiện trong các query hiển thị / đếm lịch hẹn:
+ * lịch của bệnh nhân/bác sĩ, KPI dashboard admin và thống kê bệnh nhân của bác sĩ.
+ * Cần PostgreSQL thật (SPRING_DATASOURCE_URL); mỗi test rollback khi kết thúc.
+ */
+@SpringBootTest
+@Transactional
+@EnabledIfEnvironmentVariable(named = "SPRING_DATASOURCE_URL", matches = ".+")
+class AppointmentHoldFilterTest {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private UserAccountRepository userAccountRepository;
+
+    private UserAccount doctor;
+    private UserAccount bookedPatient;
+    private UserAccount holdingPatient;
+    private Appointment booked;
+    private Appointment hold;
+    private OffsetDateTime from;
+    private OffsetDateTime to;
+
+    @BeforeEach
+    void setUp() {
+        doctor = saveUser(UserRole.DOCTOR);
+        bookedPatient = saveUser(UserRole.PATIENT);
+        holdingPatient = saveUser(UserRole.PATIENT);
+
+        OffsetDateTime start = OffsetDateTime.now().plusDays(1).withNano(0);
+        from = start.minusHours(1);
+        to = start.plusHours(3);
+        booked = saveAppointment(bookedPatient, start, null);
+        hold = saveAppointment(holdingPatient, start.plusHours(1), OffsetDateTime.now().plusMinutes(10));
+    }
+
+    @Test
+    void scheduleListsSkipActiveHold() {
+        assertTrue(appointmentRepository.findByPatientIdAndDateRange(holdingPatient.getId(), from, to).isEmpty());
+
+        List<UUID> doctorSchedule = appointmentRepository.findByDoctorIdAndDateRange(doctor.getId(), from, to)
+                .stream().map(Appointment::getId).toList();
+        assertEquals(List.of(booked.getId()), doctorSchedule);
+    }
+
+    @Test
+    void doctorStatisticsSkipActiveHold() {
+        assertEquals(1L, appointmentRepository.countDistinctPatientsByDoctorIdAndDateRange(doctor.getId(), from, to));
+        assertEquals(1L, appointmentRepository.countDistinctPatientsByDoctorIdAndDate(doctor.getId(), booked.getScheduledStart()));
+        assertEquals(List.of(bookedPatient.getId()), appointmentRepository.findDistinctPatientIdsByDoctorId(doctor.getId()));
+    }
+
+    @Test
+    void dashboardCountsSkipActiveHold() {
+        OffsetDateTime createdFrom = booked.getCreatedAt().minusMinutes(1);
+        OffsetDateTime createdTo = hold.getCreatedAt().plusMinutes(1);
+        Long total = appointmentRepository.countByCreatedAtBetweenAndHoldingUntilIsNull(createdFrom, createdTo);
+        Long scheduled = appointmentRepository.countByStatusAndCreatedAtBetweenAndHoldingUntilIsNull(
+                AppointmentStatus.SCHEDULED, createdFrom, createdTo);
+
+        // Dữ liệu sẵn có trong DB cũng được đếm: so sánh với số đếm khi hold đã bị xóa
+        appointmentRepository.delete(hold);
+        appointmentRepository.flush();
+        assertEquals(total, appointmentRepository.countByCreatedAtBetweenAndHoldingUntilIsNull(createdFrom, createdTo));
+        assertEquals(scheduled, appointmentRepository.countByStatusAndCreatedAtBetweenAndHoldingUntilIsNull(
+                AppointmentStatus.SCHEDULED, createdFrom, createdTo));
+    }
+
+    private UserAccount saveUser(UserRole role) {
+        String suffix = UUID.randomUUID().toString();
+        return userAccountRepository.saveAndFlush(UserAccount.builder()
+                .role(role)
+                .status(AccountStatus.ACTIVE)
+                .fullName("Hold Filter " + role)
+                .email(suffix + "@example.com")
+                .phoneNumber("09" + suffix.substring(0, 8).replaceAll("[^0-9]", "0"))
+                .dateOfBirth(LocalDate.of(1990, 1, 1))
+                .gender(Gender.MALE)
+                .isDeleted(false)
+                .build());
+    }
+
+    private Appointment saveAppointment(UserAccount patient, OffsetDateTime start, OffsetDateTime holdingUntil) {
+        return appointmentRepository.saveAndFlush(Appointment.builder()
+                .patientId(patient.getId())
+                .doctorId(doctor.getId())
+                .status(AppointmentStatus.SCHEDULED)
+                .scheduledStart(start)
+                .scheduledEnd(start.plusMinutes(30))
+                .consent(true)
+                .holdingUntil(holdingUntil)
+                .build());
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.HealthCare.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.HealthCare.dto.AccountStatusDto;
+import com.example.HealthCare.dto.request.UpdatePersonalInfoRequest;
+import com.example.HealthCare.enums.AccountStatus;
+import com.example.HealthCare.enums.Gender;
+import com.example.HealthCare.enums.UserRole;
+import com.example.HealthCare.model.UserAccount;
+import com.example.HealthCare.repository.ApprovalRequestRepository;
+import com.example.HealthCare.repository.DoctorProfileRepository;
+import com.example.HealthCare.repository.PatientProfileRepository;
+import com.example.HealthCare.repository.UserAccountRepository;
+import com.example.HealthCare.service.DoctorDirectoryIndex;
+import com.example.HealthCare.service.TaggedCacheInvalidator;
+import com.example.HealthCare.service.impl.UserServiceImpl;
+
+/**
+ * Cache xác thực (token đã parse + accountStatus) sau khi user đổi email qua updatePersonalInfo:
+ * token cũ (email cũ) phải bị từ chối ngay dù đã nằm trong cache, token mới dùng được.
+ * Cache accountStatus được giả lập bằng một map mà TaggedCacheInvalidator bỏ entry của user.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TokenAuthenticationServiceTest {
+
+    private static final String SECRET = "aGVhbHRoY2FyZS10ZXN0LXNpZ25pbmcta2V5LTAxMjM0NTY3ODk=";
+
+    @Mock
+    private AccountStatusService accountStatusService;
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+    @Mock
+    private UserAccountRepository userAccountRepository;
+    @Mock
+    private ApprovalRequestRepository approvalRequestRepository;
+    @Mock
+    private DoctorProfileRepository doctorProfileRepository;
+    @Mock
+    private PatientProfileRepository patientProfileRepository;
+    @Mock
+    private PasswordEncoder passwordEncoder;
+    @Mock
+    private DoctorDirectoryIndex doctorDirectoryIndex;
+    @Mock
+    private TaggedCacheInvalidator taggedCacheInvalidator;
+
+    private final Map<UUID, AccountStatusDto> accountStatusCache = new ConcurrentHashMap<>();
+
+    private JwtUtil jwtUtil;
+    private TokenAuthenticationService tokenAuthenticationService;
+    private UserServiceImpl userService;
+    private UserAccount user;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expirationMs", 3_600_000L);
+        jwtUtil.init();
+
+        tokenAuthenticationService = new TokenAuthenticationService(jwtUtil, accountStatusService, tokenRevocationService);
+        ReflectionTestUtils.setField(tokenAuthenticationService, "principalCacheSeconds", 60L);
+        ReflectionTestUtils.setField(tokenAuthenticationService, "principalCacheMaxEntries", 100L);
+        tokenAuthenticationService.init();
+
+        userService = new UserServiceImpl(userAccountRepository, approvalRequestRepository, doctorProfileRepository,
+                patientProfileRepository, passwordEncoder, doctorDirectoryIndex, taggedCacheInvalidator);
+
+        user = UserAccount.builder()
+                .role(UserRole.PATIENT)
+                .status(AccountStatus.ACTIVE)
+                .fullName("Nguyen Van A")
+                .email("old@example.com")
+                .phoneNumber("0901234567")
+                .dateOfBirth(LocalDate.of(1990, 1, 1))
+                .gender(Gender.MALE)
+                .isDeleted(false)
+                .build();
+        user.setId(UUID.randomUUID());
+
+        when(userAccountRepository.findByIdAndIsDeletedFalse(user.getId())).thenReturn(Optional.of(user));
+        when(userAccountRepository.save(any(UserAccount.class))).then(AdditionalAnswers.returnsFirstArg());
+        when(tokenRevocationService.isRevoked(anyString(), anyLong(), anyLong())).thenReturn(false);
+        // @Cacheable("accountStatus"): nạp từ "DB" khi chưa có entry
+        when(accountStatusService.getAccountStatus(eq(user.getId()))).thenAnswer(invocation ->
+                accountStatusCache.computeIfAbsent(user.getId(), id -> AccountStatusDto.builder()
+                        .email(user.getEmail())
+                        .role(user.getRole())
+                        .status(user.getStatus())
+                        .deleted(Boolean.TRUE.equals(user.getIsDeleted()))
+                        .build()));
+        // Evict theo tag user:<id> (không có transaction trong test nên chạy ngay)
+        doAnswer(invocation -> {
+            UserAccount changed = invocation.getArgument(0);
+            accountStatusCache.remove(changed.getId());
+            return null;
+        }).when(taggedCacheInvalidator).invalidateUserAfterCommit(any(UserAccount.class));
+    }
+
+    @Test
+    void emailChangeRejectsOldTokenAndAcceptsNewToken() {
+        String oldToken = jwtUtil.generateToken(user);
+        // Token cũ đã được xác thực một lần: nằm trong cache token và cache accountStatus
+        assertNotNull(tokenAuthenticationService.authenticate(oldToken));
+
+        userService.updatePersonalInfo(user.getId(), personalInfo("new@example.com"));
+        String newToken = jwtUtil.generateToken(user);
+
+        assertNull(tokenAuthenticationService.authenticate(oldToken));
+        UsernamePasswordAuthenticationToken authentication = tokenAuthenticationService.authenticate(newToken);
+        assertNotNull(authentication);
+        assertEquals("new@example.com", ((AuthenticatedUser) authentication.getPrincipal()).getUsername());
+    }
+
+    @Test
+    void unchangedEmailKeepsTokenValid() {
+        String token = jwtUtil.generateToken(user);
+        assertNotNull(tokenAuthenticationService.authenticate(token));
+
+        userService.updatePersonalInfo(user.getId(), personalInfo("old@example.com"));
+
+        assertNotNull(tokenAuthenticationService.authenticate(token));
+    }
+
+    private UpdatePersonalInfoRequest personalInfo(String email) {
+        UpdatePersonalInfoRequest request = new UpdatePersonalInfoRequest();
+        request.setFullName(user.getFullName());
+        request.setEmail(email);
+        request.setPhoneNumber(user.getPhoneNumber());
+        request.setDateOfBirth(user.getDateOfBirth());
+        request.setGender(user.getGender());
+        return request;
+    }
+}
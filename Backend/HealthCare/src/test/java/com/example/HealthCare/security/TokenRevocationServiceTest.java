@@ -0,0 +1,209 @@
+package com.example.HealthCare.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.HealthCare.enums.AccountStatus;
+import com.example.HealthCare.enums.Gender;
+import com.example.HealthCare.enums.UserRole;
+import com.example.HealthCare.model.UserAccount;
+import com.example.HealthCare.repository.UserAccountRepository;
+import com.example.HealthCare.service.TaggedCacheInvalidator;
+
+/**
+ * Thu hồi token chạy song song với việc dựng lại Bloom filter: mọi token đã revoke xong phải bị từ chối,
+ * kể cả token được revoke đúng lúc filter mới được dựng / publish.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TokenRevocationServiceTest {
+
+    private static final String SECRET = "aGVhbHRoY2FyZS10ZXN0LXNpZ25pbmcta2V5LTAxMjM0NTY3ODk=";
+    private static final int REVOKERS = 4;
+    private static final int TOKENS_PER_REVOKER = 500;
+
+    @Mock
+    private UserAccountRepository userAccountRepository;
+    @Mock
+    private TaggedCacheInvalidator taggedCacheInvalidator;
+    @Mock
+    private StringRedisTemplate revocationStore;
+    @Mock
+    private ZSetOperations<String, String> revokedJtis;
+
+    private JwtUtil jwtUtil;
+    private TokenRevocationService tokenRevocationService;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "expirationMs", 3_600_000L);
+        jwtUtil.init();
+
+        tokenRevocationService = new TokenRevocationService(jwtUtil, userAccountRepository, taggedCacheInvalidator);
+        ReflectionTestUtils.setField(tokenRevocationService, "expectedRevocations", 10_000L);
+        ReflectionTestUtils.setField(tokenRevocationService, "falsePositiveRate", 0.001);
+        ReflectionTestUtils.setField(tokenRevocationService, "refreshExpirationMs", 604_800_000L);
+        tokenRevocationService.init();
+
+        executor = Executors.newFixedThreadPool(REVOKERS + 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void rebuildBetweenFilterPutAndRedisWriteKeepsToken() throws Exception {
+        // ZSET "healthcare:revoked-jtis" giả lập bằng map; ZADD đầu tiên chờ tới khi một lần dựng lại chạy xong
+        Map<String, Double> zset = new ConcurrentHashMap<>();
+        CountDownLatch zaddStarted = new CountDownLatch(1);
+        CountDownLatch rebuilt = new CountDownLatch(1);
+        when(revocationStore.opsForZSet()).thenReturn(revokedJtis);
+        when(revokedJtis.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation -> {
+            zaddStarted.countDown();
+            assertTrue(rebuilt.await(10, TimeUnit.SECONDS));
+            return zset.put(invocation.getArgument(1), invocation.getArgument(2)) == null;
+        });
+        when(revokedJtis.rangeByScore(anyString(), anyDouble(), eq(Double.POSITIVE_INFINITY)))
+                .thenAnswer(invocation -> Set.copyOf(zset.keySet()));
+        when(revokedJtis.score(anyString(), anyString()))
+                .thenAnswer(invocation -> zset.get((String) invocation.getArgument(1)));
+        ReflectionTestUtils.setField(tokenRevocationService, "revocationStore", revocationStore);
+
+        String token = jwtUtil.generateToken(user());
+        Future<?> revoker = executor.submit(() -> tokenRevocationService.revoke(token));
+        assertTrue(zaddStarted.await(10, TimeUnit.SECONDS));
+        tokenRevocationService.rebuildBloomFilter();
+        rebuilt.countDown();
+        revoker.get(10, TimeUnit.SECONDS);
+
+        assertTrue(tokenRevocationService.isRevoked(token, jwtUtil.parseClaims(token), 0));
+    }
+
+    @Test
+    void revocationDuringRedisOutageIsWrittenOnRecovery() {
+        Map<String, Double> zset = new ConcurrentHashMap<>();
+        AtomicBoolean redisDown = new AtomicBoolean(true);
+        when(revocationStore.opsForZSet()).thenReturn(revokedJtis);
+        when(revokedJtis.add(anyString(), anyString(), anyDouble())).thenAnswer(invocation -> {
+            if (redisDown.get()) {
+                throw new RedisConnectionFailureException("Redis is down");
+            }
+            return zset.put(invocation.getArgument(1), invocation.getArgument(2)) == null;
+        });
+        ReflectionTestUtils.setField(tokenRevocationService, "revocationStore", revocationStore);
+
+        String token = jwtUtil.generateToken(user());
+        String jti = jwtUtil.parseClaims(token).getId();
+        tokenRevocationService.revoke(token);
+        // Node này vẫn chặn token; chưa node nào khác được báo
+        assertTrue(tokenRevocationService.isRevoked(token, jwtUtil.parseClaims(token), 0));
+        tokenRevocationService.retryPendingRevocations();
+        verify(revocationStore, never()).convertAndSend(anyString(), anyString());
+
+        redisDown.set(false);
+        tokenRevocationService.retryPendingRevocations();
+        assertTrue(zset.containsKey(jti));
+        verify(revocationStore).convertAndSend(TokenRevocationService.REVOCATION_CHANNEL, jti);
+
+        // Đã ghi xong: lần thử sau không phát lại
+        tokenRevocationService.retryPendingRevocations();
+        verify(revocationStore).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    void revokeDuringRebuildIsNeverLost() throws Exception {
+        List<List<String>> tokens = new ArrayList<>();
+        for (int i = 0; i < REVOKERS; i++) {
+            List<String> batch = new ArrayList<>();
+            for (int j = 0; j < TOKENS_PER_REVOKER; j++) {
+                batch.add(jwtUtil.generateToken(user()));
+            }
+            tokens.add(batch);
+        }
+
+        AtomicBoolean revoking = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<Integer> rebuilder = executor.submit(() -> {
+            start.await();
+            int rebuilds = 0;
+            while (revoking.get()) {
+                tokenRevocationService.rebuildBloomFilter();
+                rebuilds++;
+            }
+            return rebuilds;
+        });
+        List<Future<?>> revokers = new ArrayList<>();
+        for (List<String> batch : tokens) {
+            revokers.add(executor.submit(() -> {
+                start.await();
+                batch.forEach(tokenRevocationService::revoke);
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> revoker : revokers) {
+            revoker.get(30, TimeUnit.SECONDS);
+        }
+        revoking.set(false);
+        assertTrue(rebuilder.get(30, TimeUnit.SECONDS) > 0);
+
+        long missed = tokens.stream().flatMap(List::stream)
+                .filter(token -> !tokenRevocationService.isRevoked(token, jwtUtil.parseClaims(token), 0))
+                .count();
+        assertEquals(0, missed, "Revoked tokens accepted after a concurrent rebuild");
+    }
+
+    private UserAccount user() {
+        UserAccount user = UserAccount.builder()
+                .role(UserRole.PATIENT)
+                .status(AccountStatus.ACTIVE)
+                .fullName("Nguyen Van A")
+                .email("patient@example.com")
+                .phoneNumber("0901234567")
+                .dateOfBirth(LocalDate.of(1990, 1, 1))
+                .gender(Gender.MALE)
+                .isDeleted(false)
+                .build();
+        user.setId(UUID.randomUUID());
+        return user;
+    }
+}
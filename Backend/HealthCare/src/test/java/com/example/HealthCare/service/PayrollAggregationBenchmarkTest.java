@@ -0,0 +1,313 @@
+package com.example.HealthCare.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.HealthCare.dto.request.PayrollFilterRequest;
+import com.example.HealthCare.dto.response.DoctorPayrollResponse;
+import com.example.HealthCare.enums.AccountStatus;
+import com.example.HealthCare.enums.AppointmentStatus;
+import com.example.HealthCare.enums.Gender;
+import com.example.HealthCare.enums.PaymentMethod;
+import com.example.HealthCare.enums.PaymentStatus;
+import com.example.HealthCare.enums.UserRole;
+import com.example.HealthCare.model.Appointment;
+import com.example.HealthCare.model.DoctorProfile;
+import com.example.HealthCare.model.Payment;
+import com.example.HealthCare.model.UserAccount;
+import com.example.HealthCare.repository.AppointmentRepository;
+import com.example.HealthCare.repository.DoctorPayrollRepository;
+import com.example.HealthCare.repository.DoctorProfileRepository;
+import com.example.HealthCare.repository.PaymentRepository;
+import com.example.HealthCare.repository.UserAccountRepository;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Đo tính lương theo kỳ trên DB thật với nhiều cỡ dữ liệu. Mỗi cỡ (bác sĩ x lịch hẹn mỗi bác sĩ) được seed
+ * vào một kỳ đã đóng trong một transaction riêng, đo xong thì rollback:
+ * - query GROUP BY aggregatePayrollByDoctor,
+ * - getDoctorPayrolls khi chưa có snapshot (miss), khi snapshot còn khớp fingerprint (hit) và sau khi
+ *   một lịch hẹn của kỳ thay đổi (miss do MAX(updated_at)),
+ * - vòng lặp cũ theo từng bác sĩ (findAll appointment/payment) để so sánh; chỉ chạy khi bảng appointment
+ *   không vượt benchmark.legacy-max-appointments vì chi phí tăng theo bác sĩ x lịch hẹn x payment.
+ * Mỗi dòng in số bác sĩ và số lịch hẹn của kỳ cạnh thời gian đo.
+ * Chỉ chạy khi bật: mvn test -Dtest=PayrollAggregationBenchmarkTest -Dbenchmark=true
+ *   [-Dbenchmark.datasets=20x25,50x100,100x400] [-Dbenchmark.patients=50] [-Dbenchmark.iterations=5]
+ *   [-Dbenchmark.period=2001-01] [-Dbenchmark.legacy-max-appointments=2000]
+ */
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PayrollAggregationBenchmarkTest {
+
+    @Autowired
+    private PayrollService payrollService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private DoctorProfileRepository doctorProfileRepository;
+
+    @Autowired
+    private DoctorPayrollRepository doctorPayrollRepository;
+
+    @Autowired
+    private UserAccountRepository userAccountRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void payrollAcrossDatasetSizes() {
+        YearMonth period = YearMonth.parse(System.getProperty("benchmark.period", "2001-01"));
+        int iterations = Integer.getInteger("benchmark.iterations", 5);
+        int patients = Integer.getInteger("benchmark.patients", 50);
+        long legacyMaxAppointments = Long.getLong("benchmark.legacy-max-appointments", 2000L);
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (String dataset : System.getProperty("benchmark.datasets", "20x25,50x100,100x400").split(",")) {
+            String[] size = dataset.trim().split("x");
+            int doctors = Integer.parseInt(size[0]);
+            int appointmentsPerDoctor = Integer.parseInt(size[1]);
+
+            transaction.executeWithoutResult(status -> {
+                List<UUID> seededDoctors = seed(period, doctors, appointmentsPerDoctor, patients);
+                entityManager.flush();
+                entityManager.clear();
+                run(period, seededDoctors, iterations, legacyMaxAppointments);
+                status.setRollbackOnly();
+            });
+        }
+    }
+
+    private void run(YearMonth period, List<UUID> seededDoctors, int iterations, long legacyMaxAppointments) {
+        OffsetDateTime start = periodStart(period);
+        OffsetDateTime end = periodStart(period.plusMonths(1));
+        PayrollFilterRequest request = PayrollFilterRequest.builder()
+                .year(period.getYear()).month(period.getMonthValue()).build();
+        // Giống ensureSnapshots: mọi hồ sơ bác sĩ, số lịch hẹn của kỳ (source_appointments)
+        long doctors = doctorProfileRepository.count();
+        long appointments = appointmentRepository.countByScheduledStartGreaterThanEqualAndScheduledStartLessThan(start, end);
+        String label = String.format("payroll %s doctors=%d appointments=%d", period, doctors, appointments);
+
+        report(label, "aggregate query", iterations, () -> appointmentRepository.aggregatePayrollByDoctor(start, end,
+                AppointmentStatus.COMPLETED, AppointmentStatus.CANCELED, PaymentStatus.PAID, PaymentStatus.REFUNDED));
+
+        List<DoctorPayrollResponse> computed = time(label, "snapshot miss (new)", () ->
+                payrollService.getDoctorPayrolls(request));
+        report(label, "snapshot hit", iterations, () -> payrollService.getDoctorPayrolls(request));
+
+        UUID touchedId = appointmentRepository.findByDoctorIdAndDateRange(seededDoctors.get(0), start, end)
+                .get(0).getId();
+        // Sửa một lịch hẹn trước mỗi lần đo (không tính vào thời gian): updated_at mới hơn computed_at
+        report(label, "snapshot miss (changed)", iterations, () -> {
+            Appointment touched = appointmentRepository.findById(touchedId).orElseThrow();
+            touched.setNotes("benchmark " + System.nanoTime());
+            appointmentRepository.saveAndFlush(touched);
+        }, () -> payrollService.getDoctorPayrolls(request));
+
+        long appointmentRows = appointmentRepository.count();
+        if (appointmentRows > legacyMaxAppointments) {
+            System.out.printf("%s %-24s skipped (%d appointment rows > benchmark.legacy-max-appointments=%d)%n",
+                    label, "legacy per-doctor loop", appointmentRows, legacyMaxAppointments);
+            return;
+        }
+        Map<UUID, Integer> legacy = time(label, "legacy per-doctor loop", () -> legacyPerDoctorLoop(period));
+        for (DoctorPayrollResponse payroll : computed) {
+            if (seededDoctors.contains(payroll.getDoctorId())) {
+                assertEquals(legacy.get(payroll.getDoctorId()), payroll.getCompletedAppointments(),
+                        "Completed appointments differ from the per-doctor loop");
+            }
+        }
+    }
+
+    /**
+     * Cách tính trước khi có query GROUP BY: với mỗi bác sĩ đọc toàn bộ appointment, với mỗi lịch hẹn đọc
+     * toàn bộ payment, cộng thêm một lần tìm bản ghi doctor_payroll. Trả về số ca hoàn thành theo bác sĩ.
+     */
+    private Map<UUID, Integer> legacyPerDoctorLoop(YearMonth period) {
+        Map<UUID, Integer> completedByDoctor = new HashMap<>();
+        for (DoctorProfile profile : doctorProfileRepository.findAll()) {
+            UUID doctorId = profile.getUserId();
+            List<Appointment> completed = appointmentRepository.findAll().stream()
+                    .filter(apt -> apt.getDoctorId().equals(doctorId))
+                    .filter(apt -> apt.getStatus() == AppointmentStatus.COMPLETED)
+                    .filter(apt -> YearMonth.from(apt.getScheduledStart()).equals(period))
+                    .toList();
+            BigDecimal revenue = BigDecimal.ZERO;
+            for (Appointment appointment : completed) {
+                revenue = revenue.add(paymentRepository.findAll().stream()
+                        .filter(p -> p.getAppointment() != null
+                                && p.getAppointment().getId().equals(appointment.getId())
+                                && p.getStatus() == PaymentStatus.PAID)
+                        .map(Payment::getTotalAmount)
+                        .findFirst()
+                        .orElse(BigDecimal.ZERO));
+            }
+            List<Appointment> canceled = appointmentRepository.findAll().stream()
+                    .filter(apt -> apt.getDoctorId().equals(doctorId))
+                    .filter(apt -> apt.getStatus() == AppointmentStatus.CANCELED)
+                    .filter(apt -> YearMonth.from(apt.getScheduledStart()).equals(period))
+                    .toList();
+            BigDecimal refunds = BigDecimal.ZERO;
+            for (Appointment appointment : canceled) {
+                refunds = refunds.add(paymentRepository.findAll().stream()
+                        .filter(p -> p.getAppointment() != null
+                                && p.getAppointment().getId().equals(appointment.getId())
+                                && p.getStatus() == PaymentStatus.REFUNDED)
+                        .map(Payment::getTotalAmount)
+                        .findFirst()
+                        .orElse(BigDecimal.ZERO));
+            }
+            doctorPayrollRepository.findByDoctorIdAndPeriodYearAndPeriodMonth(
+                    doctorId, period.getYear(), period.getMonthValue());
+            completedByDoctor.put(doctorId, completed.size());
+        }
+        return completedByDoctor;
+    }
+
+    /**
+     * Seed bác sĩ (kèm hồ sơ), bệnh nhân và lịch hẹn rải trong kỳ: 70% COMPLETED (payment PAID),
+     * 10% CANCELED (payment REFUNDED), còn lại SCHEDULED không có payment.
+     */
+    private List<UUID> seed(YearMonth period, int doctors, int appointmentsPerDoctor, int patients) {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        List<UUID> patientIds = new ArrayList<>();
+        for (int i = 0; i < patients; i++) {
+            patientIds.add(userAccountRepository.save(user(UserRole.PATIENT, run + "-p" + i)).getId());
+        }
+
+        List<UUID> doctorIds = new ArrayList<>();
+        BigDecimal fee = new BigDecimal("150000");
+        for (int d = 0; d < doctors; d++) {
+            UUID doctorId = userAccountRepository.save(user(UserRole.DOCTOR, run + "-d" + d)).getId();
+            doctorProfileRepository.save(doctorProfile(doctorId, run + "-" + d));
+            doctorIds.add(doctorId);
+
+            List<Appointment> appointments = new ArrayList<>();
+            for (int a = 0; a < appointmentsPerDoctor; a++) {
+                // Giữa tháng theo giờ phòng khám, không có lịch sát ranh giới kỳ
+                OffsetDateTime scheduledStart = periodStart(period)
+                        .plusDays(1 + a % (period.lengthOfMonth() - 2))
+                        .plusHours(8 + (a / (period.lengthOfMonth() - 2)) % 10)
+                        .plusMinutes(30L * (a % 2));
+                appointments.add(Appointment.builder()
+                        .patientId(patientIds.get((d + a) % patientIds.size()))
+                        .doctorId(doctorId)
+                        .status(a % 10 < 7 ? AppointmentStatus.COMPLETED
+                                : a % 10 == 7 ? AppointmentStatus.CANCELED : AppointmentStatus.SCHEDULED)
+                        .scheduledStart(scheduledStart)
+                        .scheduledEnd(scheduledStart.plusMinutes(30))
+                        .consent(true)
+                        .build());
+            }
+
+            List<Payment> payments = new ArrayList<>();
+            for (Appointment appointment : appointmentRepository.saveAll(appointments)) {
+                if (appointment.getStatus() == AppointmentStatus.SCHEDULED) {
+                    continue;
+                }
+                boolean refunded = appointment.getStatus() == AppointmentStatus.CANCELED;
+                payments.add(Payment.builder()
+                        .appointmentId(appointment.getId())
+                        .amount(fee)
+                        .appointmentCost(fee)
+                        .totalAmount(fee)
+                        .method(PaymentMethod.VNPAY)
+                        .status(refunded ? PaymentStatus.REFUNDED : PaymentStatus.PAID)
+                        .paymentTime(appointment.getScheduledStart().minusDays(1))
+                        .refundedAt(refunded ? appointment.getScheduledStart() : null)
+                        .build());
+            }
+            paymentRepository.saveAll(payments);
+        }
+        return doctorIds;
+    }
+
+    private UserAccount user(UserRole role, String suffix) {
+        return UserAccount.builder()
+                .role(role)
+                .status(AccountStatus.ACTIVE)
+                .fullName("Benchmark " + role + " " + suffix)
+                .email("benchmark-" + suffix + "@example.com")
+                .phoneNumber("0900000000")
+                .dateOfBirth(LocalDate.of(1985, 1, 1))
+                .gender(Gender.FEMALE)
+                .isDeleted(false)
+                .build();
+    }
+
+    private DoctorProfile doctorProfile(UUID doctorId, String suffix) {
+        return DoctorProfile.builder()
+                .userId(doctorId)
+                .practiceLicenseNo("BENCH-" + suffix)
+                .cccdNumber("000000000000")
+                .title("BS")
+                .workplaceName("Benchmark")
+                .facilityName("Benchmark")
+                .clinicAddress("Benchmark")
+                .careTarget("ALL")
+                .specialties("General")
+                .diseasesTreated("General")
+                .educationSummary("Benchmark")
+                .trainingInstitution("Benchmark")
+                .graduationYear(2010)
+                .major("General")
+                .address("Benchmark")
+                .build();
+    }
+
+    private static <T> T time(String label, String phase, Supplier<T> action) {
+        long startTime = System.nanoTime();
+        T result = action.get();
+        System.out.printf("%s %-24s %.3f ms%n", label, phase, (System.nanoTime() - startTime) / 1_000_000.0);
+        return result;
+    }
+
+    private static void report(String label, String phase, int iterations, Supplier<?> action) {
+        report(label, phase, iterations, () -> { }, action);
+    }
+
+    private static void report(String label, String phase, int iterations, Runnable before, Supplier<?> action) {
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            before.run();
+            long startTime = System.nanoTime();
+            action.get();
+            long elapsed = System.nanoTime() - startTime;
+            total += elapsed;
+            min = Math.min(min, elapsed);
+        }
+        System.out.printf("%s %-24s avg=%.3f ms min=%.3f ms (%d runs)%n",
+                label, phase, total / 1_000_000.0 / iterations, min / 1_000_000.0, iterations);
+    }
+
+    private static OffsetDateTime periodStart(YearMonth period) {
+        return period.atDay(1).atStartOfDay().atOffset(DoctorAvailabilityIndex.CLINIC_OFFSET);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.HealthCare.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Đo độ trễ và thông lượng của StompClusterRelay qua Redis pub/sub: gửi tới một user không có phiên trên
+ * node này, một listener đóng vai node giữ phiên của user nhận envelope và ghi thời gian khứ hồi.
+ * Chỉ chạy khi bật: mvn test -Dtest=StompClusterRelayBenchmarkTest -Dbenchmark=true
+ *   [-Dbenchmark.messages=1000] [-Dbenchmark.payload-bytes=256]
+ */
+@SpringBootTest(properties = "websocket.cluster.mode=redis")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class StompClusterRelayBenchmarkTest {
+
+    @Autowired
+    private StompClusterRelay stompClusterRelay;
+
+    @Autowired
+    private UserDestinationRouter userDestinationRouter;
+
+    @Autowired
+    private RedisConnectionFactory connectionFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void relayThroughRedis() throws Exception {
+        assumeTrue(stompClusterRelay.isClusterMode(), "Redis is not configured");
+        int messages = Integer.getInteger("benchmark.messages", 1000);
+        String padding = "x".repeat(Integer.getInteger("benchmark.payload-bytes", 256));
+        UUID userId = UUID.randomUUID();
+
+        long[] sentAt = new long[messages];
+        long[] latencies = new long[messages];
+        CountDownLatch received = new CountDownLatch(messages);
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener((message, pattern) -> {
+            try {
+                // Cùng đường với node nhận thật: parse envelope rồi dựng frame bằng converter của broker
+                JsonNode payload = objectMapper.readTree(message.getBody()).path("p");
+                userDestinationRouter.toMessage(payload);
+                int seq = payload.path("s").asInt();
+                latencies[seq] = System.nanoTime() - sentAt[seq];
+                received.countDown();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, new ChannelTopic(StompClusterRelay.USER_CHANNEL_PREFIX + userId));
+        container.afterPropertiesSet();
+        container.start();
+        try {
+            long startedAt = System.nanoTime();
+            for (int seq = 0; seq < messages; seq++) {
+                sentAt[seq] = System.nanoTime();
+                stompClusterRelay.sendToUser(userId, "/queue/benchmark", Map.of("s", seq, "p", padding));
+            }
+            long publishNanos = System.nanoTime() - startedAt;
+            assertTrue(received.await(30, TimeUnit.SECONDS), "Not every relayed message arrived");
+            long totalNanos = System.nanoTime() - startedAt;
+
+            Arrays.sort(latencies);
+            System.out.printf("messages=%d payloadBytes=%d publish/s=%d deliveries/s=%d "
+                            + "roundTrip p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms%n",
+                    messages, padding.length(), perSecond(messages, publishNanos), perSecond(messages, totalNanos),
+                    percentileMillis(latencies, 0.50), percentileMillis(latencies, 0.95),
+                    percentileMillis(latencies, 0.99), latencies[messages - 1] / 1_000_000.0);
+        } finally {
+            container.destroy();
+        }
+    }
+
+    private static double percentileMillis(long[] sorted, double percentile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos <= 0 ? count : Math.round(count * 1_000_000_000.0 / nanos);
+    }
+}
@@ -49,7 +49,7 @@ export function CanceledAppointmentsTable() {
   const loadAppointments = async () => {
     setLoading(true)
     try {
-      const response = await canceledAppointmentService.getCanceledAppointments(search, page, 10)
+      const response = await canceledAppointmentService.getCanceledAppointments(search, page, 10, statusFilter)
       setAppointments(response.content || [])
       setTotalPages(response.totalPages || 0)
       setTotalElements(response.totalElements || 0)
@@ -71,7 +71,7 @@ export function CanceledAppointmentsTable() {
 
   useEffect(() => {
     loadAppointments()
-  }, [page])
+  }, [page, statusFilter])
 
   const handleSearch = () => {
     setPage(0)
@@ -176,10 +176,13 @@ export function CanceledAppointmentsTable() {
     }
   }
 
-  // Filter appointments by status (client-side for better UX)
-  const filteredAppointments = statusFilter === "all" 
-    ? appointments 
-    : appointments.filter(apt => apt.appointmentStatus?.toLowerCase() === statusFilter)
+  // Status is filtered by the backend so paging and totals stay correct
+  const filteredAppointments = appointments
+
+  const changeStatusFilter = (status: string) => {
+    setPage(0)
+    setStatusFilter(status)
+  }
 
   return (
     <div className="space-y-4">
@@ -198,35 +201,35 @@ export function CanceledAppointmentsTable() {
         <Button 
           variant={statusFilter === "all" ? "default" : "outline"}
           size="sm"
-          onClick={() => setStatusFilter("all")}
+          onClick={() => changeStatusFilter("all")}
         >
           {t("all")}
         </Button>
         <Button 
           variant={statusFilter === "scheduled" ? "default" : "outline"}
           size="sm"
-          onClick={() => setStatusFilter("scheduled")}
+          onClick={() => changeStatusFilter("scheduled")}
         >
           {t("scheduledTab")}
         </Button>
         <Button 
           variant={statusFilter === "in_process" ? "default" : "outline"}
           size="sm"
-          onClick={() => setStatusFilter("in_process")}
+          onClick={() => changeStatusFilter("in_process")}
         >
           {t("inProgressTab")}
         </Button>
         <Button 
           variant={statusFilter === "completed" ? "default" : "outline"}
           size="sm"
-          onClick={() => setStatusFilter("completed")}
+          onClick={() => changeStatusFilter("completed")}
         >
           {t("completed")}
         </Button>
         <Button 
           variant={statusFilter === "canceled" ? "default" : "outline"}
           size="sm"
-          onClick={() => setStatusFilter("canceled")}
+          onClick={() => changeStatusFilter("canceled")}
         >
           {t("cancelled")}
         </Button>
@@ -7,7 +7,7 @@ import { webSocketService } from "@/services/websocket.service"
 import { incrementChatPendingIfNeeded, touchPeerConversationOrder } from "@/lib/chat-inbox-pending"
 import type { ChatRealtimePayload } from "@/services/chat-messaging.service"
 
-/** Một subscription STOMP `/topic/chat/{userId}` — badge/pending realtime. */
+/** Một subscription STOMP `/user/queue/chat` — badge/pending realtime. */
 export function ChatInboundSubscriber() {
   const [userId, setUserId] = useState<string | null>(() =>
     typeof window === "undefined" ? null : (authService.getUserInfo()?.id ?? null)
@@ -49,7 +49,7 @@ export function ChatInboundSubscriber() {
   useEffect(() => {
     if (!userId) return
     webSocketService.connect()
-    const dest = `/topic/chat/${userId}`
+    const dest = "/user/queue/chat"
     return webSocketService.subscribe(dest, (payload: ChatRealtimePayload) => {
       if (!payload || typeof payload !== "object") return
       const otherPeerId =
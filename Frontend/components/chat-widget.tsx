@@ -277,7 +277,7 @@ export default function ChatWidget() {
     const peerId = selectedPeerRef.current?.id
     if (!peerId) return
     webSocketService.connect()
-    const dest = `/topic/chat/${userId}`
+    const dest = "/user/queue/chat"
     const unsub = webSocketService.subscribe(dest, (payload: ChatRealtimePayload) => {
       const openPeer = selectedPeerRef.current
       if (!openPeer || !isSameThreadWs(payload, userId, openPeer.id)) return
@@ -376,7 +376,7 @@ function YsalusPeerChatRoom({ selectedChat, setSelectedChat, currentUserId }: Ys
 
   useEffect(() => {
     webSocketService.connect()
-    const dest = `/topic/chat/${currentUserId}`
+    const dest = "/user/queue/chat"
     return webSocketService.subscribe(dest, (payload: ChatRealtimePayload) => {
       const open = selectedChatRef.current
       if (!open || !isSameThread(payload, open)) return
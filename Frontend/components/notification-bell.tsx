@@ -61,7 +61,7 @@ export function NotificationBell() {
       webSocketService.connect()
 
       const unsubNotifications = webSocketService.subscribe(
-        `/topic/notifications/${userInfo.id}`,
+        "/user/queue/notifications",
         (notification: Notification) => {
           setNotifications(prev => {
             const exists = prev.some(n => 
@@ -75,7 +75,7 @@ export function NotificationBell() {
       )
 
       const unsubCount = webSocketService.subscribe(
-        `/topic/notifications/${userInfo.id}/count`,
+        "/user/queue/notifications/count",
         (count: number) => {
           setUnreadCount(Number(count))
         }
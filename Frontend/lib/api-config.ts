@@ -76,6 +76,10 @@ export const API_ENDPOINTS = {
     PEERS: '/api/chat/peers',
     MESSAGES: '/api/chat/messages',
     MESSAGES_GROUP_BY_DATE: '/api/chat/messages-group-by-date',
+    MESSAGES_PAGE: '/api/chat/messages-page',
+    MESSAGES_SINCE: '/api/chat/messages-since',
+    CONVERSATIONS: '/api/chat/conversations',
+    CONVERSATIONS_READ: '/api/chat/conversations/read',
   },
   AI: {
     CHAT: '/api/ai/chat',
@@ -31,7 +31,7 @@ export interface RefundRequest {
 }
 
 export const canceledAppointmentService = {
-  async getCanceledAppointments(search?: string, page: number = 0, size: number = 10) {
+  async getCanceledAppointments(search?: string, page: number = 0, size: number = 10, status?: string) {
     const params = new URLSearchParams({
       page: page.toString(),
       size: size.toString(),
@@ -41,6 +41,10 @@ export const canceledAppointmentService = {
       params.append('search', search);
     }
 
+    if (status && status !== 'all') {
+      params.append('status', status);
+    }
+
     const response: any = await apiClient.get(
       `${API_ENDPOINTS.ADMIN.CANCELED_APPOINTMENTS}?${params.toString()}`
     );
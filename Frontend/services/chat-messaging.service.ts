@@ -9,6 +9,10 @@ export interface ChatPeerDto {
   avatarUrl: string | null
   /** ADMIN | DOCTOR | … từ backend — dùng để highlight inbox. */
   role?: string
+  /** Đang kết nối realtime. */
+  online?: boolean
+  /** ISO time lần cuối online; null nếu đang online hoặc chưa từng kết nối. */
+  lastSeenAt?: string | null
 }
 
 export interface ChatMessageCreatorDto {
@@ -30,6 +34,24 @@ export interface ChatMessageGroupDto {
   messages: ChatMessageItemDto[]
 }
 
+export interface ChatMessagePageDto {
+  groups: ChatMessageGroupDto[]
+  hasMore: boolean
+  oldestMessageId: string | null
+  newestMessageId: string | null
+}
+
+export interface ChatConversationDto {
+  threadId: string
+  peer: ChatPeerDto
+  lastMessageId: string | null
+  lastMessagePreview: string | null
+  lastMessageType: string | null
+  lastMessageSenderId: string | null
+  lastMessageAt: string | null
+  unreadCount: number
+}
+
 export interface ChatRealtimePayload {
   id: string
   senderId: string
@@ -56,6 +78,44 @@ export async function fetchChatMessagesGrouped(receiverId: string, senderId: str
   return res.data
 }
 
+const EMPTY_PAGE: ChatMessagePageDto = { groups: [], hasMore: false, oldestMessageId: null, newestMessageId: null }
+
+/** Trang lịch sử theo cursor: không truyền `before` = trang mới nhất. */
+export async function fetchChatMessagePage(
+  receiverId: string,
+  options: { before?: string; limit?: number } = {}
+): Promise<ChatMessagePageDto> {
+  const res = (await apiClient.post<{ success: boolean; data: ChatMessagePageDto }>(
+    API_ENDPOINTS.CHAT.MESSAGES_PAGE,
+    { receiverId, ...options }
+  )) as { success: boolean; data: ChatMessagePageDto }
+  if (!res?.success || !res.data) return EMPTY_PAGE
+  return res.data
+}
+
+/** Chỉ lấy tin nhắn mới hơn `after` (newestMessageId của lần tải trước). */
+export async function fetchChatMessagesSince(receiverId: string, after: string, limit?: number): Promise<ChatMessagePageDto> {
+  const res = (await apiClient.post<{ success: boolean; data: ChatMessagePageDto }>(
+    API_ENDPOINTS.CHAT.MESSAGES_SINCE,
+    { receiverId, after, limit }
+  )) as { success: boolean; data: ChatMessagePageDto }
+  if (!res?.success || !res.data) return EMPTY_PAGE
+  return res.data
+}
+
+/** Inbox: hội thoại kèm tin nhắn cuối và số tin chưa đọc, mới nhất trước. */
+export async function fetchChatConversations(): Promise<ChatConversationDto[]> {
+  const res = (await apiClient.get<{ success: boolean; data: ChatConversationDto[] }>(
+    API_ENDPOINTS.CHAT.CONVERSATIONS
+  )) as { success: boolean; data: ChatConversationDto[] }
+  if (!res?.success || !Array.isArray(res.data)) return []
+  return res.data
+}
+
+export async function markChatConversationRead(receiverId: string): Promise<void> {
+  await apiClient.post(API_ENDPOINTS.CHAT.CONVERSATIONS_READ, { receiverId })
+}
+
 export async function sendChatMessage(receiverId: string, content: string, senderId: string): Promise<string> {
   const res = (await apiClient.post<{ success: boolean; data: { id: string } }>(API_ENDPOINTS.CHAT.MESSAGES, {
     receiverId,
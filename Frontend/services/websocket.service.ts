@@ -90,18 +90,9 @@ class WebSocketService {
     if (this.isConnected && this.client?.connected) {
       if (!this.activeSubscriptions.has(destination)) {
         const subscription = this.client.subscribe(destination, (message: IMessage) => {
-          try {
-            const data = JSON.parse(message.body)
-            const callbacks = this.subscribers.get(destination)
-            if (callbacks) {
-              callbacks.forEach((cb) => cb(data))
-            }
-          } catch (error) {
-            console.error('Error parsing WebSocket message:', error)
-            const callbacks = this.subscribers.get(destination)
-            if (callbacks) {
-              callbacks.forEach((cb) => cb(message.body))
-            }
+          const callbacks = this.subscribers.get(destination)
+          if (callbacks) {
+            this.dispatch(message, callbacks)
           }
         })
         this.activeSubscriptions.set(destination, subscription)
@@ -124,6 +115,18 @@ class WebSocketService {
     }
   }
 
+  /** Frame có header x-batch là mảng JSON gộp nhiều message (server gộp chat trong một cửa sổ ngắn). */
+  private dispatch(message: IMessage, callbacks: Set<(data: any) => void>) {
+    try {
+      const data = JSON.parse(message.body)
+      const items = message.headers['x-batch'] === 'true' && Array.isArray(data) ? data : [data]
+      items.forEach((item) => callbacks.forEach((callback) => callback(item)))
+    } catch (error) {
+      console.error('Error parsing WebSocket message:', error)
+      callbacks.forEach((callback) => callback(message.body))
+    }
+  }
+
   private resubscribeAll() {
     if (!this.client?.connected) return
 
@@ -134,13 +137,7 @@ class WebSocketService {
 
     for (const [destination, callbacks] of this.subscribers.entries()) {
       const subscription = this.client.subscribe(destination, (message: IMessage) => {
-        try {
-          const data = JSON.parse(message.body)
-          callbacks.forEach((callback) => callback(data))
-        } catch (error) {
-          console.error('Error parsing WebSocket message:', error)
-          callbacks.forEach((callback) => callback(message.body))
-        }
+        this.dispatch(message, callbacks)
       })
       this.activeSubscriptions.set(destination, subscription)
     }